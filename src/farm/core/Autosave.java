@@ -0,0 +1,221 @@
+package farm.core;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saves a {@link Farm} to a {@link SaveGame} file in the background, at a fixed interval.
+ * <p>
+ * Each save first captures the farm, holding its locks only while it takes snapshots of the
+ * stock, customer details and retained transactions. The snapshots share their arrays with the
+ * farm rather than copying them, and the farm copies an array only if it changes part of it
+ * that a snapshot covers, so a capture takes constant time however large the farm grows. A
+ * history not yet loaded from a save file is not loaded to save it again. Encoding and writing
+ * the file then happen on the autosave's own thread, so commands are held up for at most the
+ * capture, never the write.
+ * </p>
+ * <p>
+ * The time each save spent capturing the farm and writing the file is kept separately, so that
+ * the time commands could have been held up can be told apart from the time spent saving.
+ * </p>
+ */
+public class Autosave implements AutoCloseable {
+    private final Farm farm;
+    private final Path path;
+    private final Duration interval;
+    private final ScheduledExecutorService executor;
+
+    private int saves;
+    private long lastCaptureNanos;
+    private long lastWriteNanos;
+    private long totalCaptureNanos;
+    private long totalWriteNanos;
+    private long longestCaptureNanos;
+    private IOException lastFailure;
+
+    /**
+     * Starts saving the given farm to the given file, once every interval.
+     *
+     * @param farm The farm to save.
+     * @param path The file to save to.
+     * @param interval The time between the end of one save and the start of the next.
+     * @throws IllegalArgumentException if the interval is not positive.
+     */
+    public Autosave(Farm farm, Path path, Duration interval) {
+        if (interval.isNegative() || interval.isZero()) {
+            throw new IllegalArgumentException("The autosave interval must be positive.");
+        }
+        this.farm = farm;
+        this.path = path;
+        this.interval = interval;
+        this.executor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "autosave-" + path.getFileName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = interval.toMillis();
+        executor.scheduleWithFixedDelay(this::autosave, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the time between saves.
+     *
+     * @return The autosave interval.
+     */
+    public Duration getInterval() {
+        return interval;
+    }
+
+    /**
+     * Saves the farm straight away on the autosave's thread, and waits for the save to finish.
+     *
+     * @throws IOException if the farm could not be saved.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public void saveNow() throws IOException, InterruptedException {
+        Future<?> save = executor.submit(() -> {
+            save();
+            return null;
+        });
+        try {
+            save.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Autosave failed.", e.getCause());
+        }
+    }
+
+    /**
+     * Returns the number of saves completed.
+     *
+     * @return The number of successful saves.
+     */
+    public synchronized int getSaveCount() {
+        return saves;
+    }
+
+    /**
+     * Returns the time the latest save spent capturing the farm, holding its locks.
+     *
+     * @return The capture time, or zero if no save has completed.
+     */
+    public synchronized Duration getLastCaptureTime() {
+        return Duration.ofNanos(lastCaptureNanos);
+    }
+
+    /**
+     * Returns the time the latest save spent encoding and writing the file.
+     *
+     * @return The write time, or zero if no save has completed.
+     */
+    public synchronized Duration getLastWriteTime() {
+        return Duration.ofNanos(lastWriteNanos);
+    }
+
+    /**
+     * Returns the longest time any save spent capturing the farm, which is the longest any
+     * command could have been held up by autosaving.
+     *
+     * @return The longest capture time, or zero if no save has completed.
+     */
+    public synchronized Duration getLongestCaptureTime() {
+        return Duration.ofNanos(longestCaptureNanos);
+    }
+
+    /**
+     * Returns the error from the most recent failed save, if the latest save failed.
+     *
+     * @return The error, or null if the latest save succeeded or none has been attempted.
+     */
+    public synchronized IOException getLastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * Describes how much time saves have spent capturing the farm, compared with writing it.
+     *
+     * @return A short report of the autosave timings.
+     */
+    public synchronized String getReport() {
+        if (saves == 0) {
+            return lastFailure == null ? "No autosaves yet."
+                    : "Autosave failed: " + lastFailure.getMessage();
+        }
+        String report = String.format("""
+            |--------------------------
+            | Autosaves:           %d to %s
+            | Last Capture:        %.3f ms
+            | Last Write:          %.3f ms
+            | Average Capture:     %.3f ms
+            | Average Write:       %.3f ms
+            | Longest Capture:     %.3f ms
+            |--------------------------""",
+                saves, path, lastCaptureNanos / 1e6, lastWriteNanos / 1e6,
+                totalCaptureNanos / 1e6 / saves, totalWriteNanos / 1e6 / saves,
+                longestCaptureNanos / 1e6);
+        if (lastFailure != null) {
+            report += "\nLatest autosave failed: " + lastFailure.getMessage();
+        }
+        return report;
+    }
+
+    /**
+     * Stops autosaving, then saves the farm one last time.
+     *
+     * @throws IOException if the final save failed.
+     */
+    @Override
+    public void close() throws IOException {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        save();
+    }
+
+    private void autosave() {
+        try {
+            save();
+        } catch (IOException e) {
+            // recorded for the report, and retried at the next interval
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                lastFailure = new IOException("Could not capture the farm.", e);
+            }
+        }
+    }
+
+    private void save() throws IOException {
+        long start = System.nanoTime();
+        SaveGame capture = SaveGame.capture(farm);
+        long captured = System.nanoTime();
+        try {
+            capture.write(path);
+        } catch (IOException e) {
+            synchronized (this) {
+                lastFailure = e;
+            }
+            throw e;
+        }
+        long written = System.nanoTime();
+        synchronized (this) {
+            saves++;
+            lastCaptureNanos = captured - start;
+            lastWriteNanos = written - captured;
+            totalCaptureNanos += lastCaptureNanos;
+            totalWriteNanos += lastWriteNanos;
+            longestCaptureNanos = Math.max(longestCaptureNanos, lastCaptureNanos);
+            lastFailure = null;
+        }
+    }
+}
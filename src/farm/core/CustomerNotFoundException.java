@@ -20,4 +20,19 @@ public class CustomerNotFoundException extends Exception {
     public CustomerNotFoundException(String message) {
         super(message);
     }
+
+    /**
+     * Constructs a new CustomerNotFoundException with the specified detail message,
+     * optionally without capturing a stack trace.
+     * <p>
+     * A missing customer is an expected outcome of a lookup rather than a programming error,
+     * so lookups throw this exception without paying to fill in a stack trace.
+     * </p>
+     *
+     * @param message The detail message.
+     * @param captureStackTrace Whether the stack trace should be filled in.
+     */
+    public CustomerNotFoundException(String message, boolean captureStackTrace) {
+        super(message, null, false, captureStackTrace);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,486 @@
+package farm.core;
+
+import farm.customer.AddressBook;
+import farm.customer.Customer;
+import farm.customer.CustomerDetails;
+import farm.inventory.Inventory;
+import farm.inventory.product.Product;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+import farm.sales.HistoryRollup;
+import farm.sales.TransactionHistory;
+import farm.sales.journal.RecordLog;
+import farm.sales.journal.TransactionCodec;
+import farm.sales.journal.TransactionJournal;
+import farm.sales.transaction.Transaction;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * The durable record of every change made to a {@link Farm}, from which the farm is rebuilt on
+ * startup.
+ * <p>
+ * Each stock, customer and checkout operation is appended as a {@link FarmEvent} to an
+ * event log in the store's directory, with group commit so that operations never wait for the
+ * disk. Every {@value #DEFAULT_SNAPSHOT_INTERVAL} events by default, the farm's inventory,
+ * address book and transaction history are written to a snapshot, along with the position in
+ * the log it was taken at. Snapshots are taken on the store's own thread, so the operation that
+ * makes one due does not wait for it. The snapshot is written to a temporary file and then
+ * moved into place, so a crash mid-write leaves the previous snapshot intact.
+ * </p>
+ * <p>
+ * Open carts are not stored. The products in them are still counted as stock, in snapshots
+ * and in the log, and only leave the inventory for good at checkout, so a farm restored after
+ * a restart has them back on its shelves.
+ * </p>
+ * <p>
+ * Restoring loads the latest snapshot and the events logged after it. Checkouts are decoded in
+ * parallel first, then the inventory, address book and history are each rebuilt in parallel.
+ * </p>
+ * <p>
+ * The log is never cut down after a snapshot, so if the snapshot is lost or damaged the farm
+ * is rebuilt from every event instead. Snapshots hold in full only the transactions whose detail
+ * the history still retains, alongside the history's rollup of the rest.
+ * </p>
+ */
+public class EventStore implements AutoCloseable {
+    /**
+     * The number of events logged between snapshots by default.
+     */
+    public static final int DEFAULT_SNAPSHOT_INTERVAL = 10_000;
+
+    /**
+     * The name of the event log within the store's directory.
+     */
+    public static final String LOG_FILE_NAME = "events.log";
+
+    /**
+     * The name of the snapshot within the store's directory.
+     */
+    public static final String SNAPSHOT_FILE_NAME = "snapshot.bin";
+
+    private static final int LOG_MAGIC = 0x46455654; // "FEVT"
+    private static final int SNAPSHOT_MAGIC = 0x46534E50; // "FSNP"
+    private static final int SNAPSHOT_VERSION = 2;
+
+    private final Path directory;
+    private final RecordLog log;
+    private final TransactionCodec codec;
+    private final int snapshotInterval;
+    private final ExecutorService snapshotter;
+    private long eventsSinceSnapshot;
+    private boolean snapshotting;
+    private IOException lastSnapshotFailure;
+
+    /**
+     * Opens the event store in the given directory, creating it if it does not exist,
+     * and snapshots every {@value #DEFAULT_SNAPSHOT_INTERVAL} events.
+     *
+     * @param directory The directory holding the event log and snapshot.
+     * @throws IOException if the store cannot be opened.
+     */
+    public EventStore(Path directory) throws IOException {
+        this(directory, DEFAULT_SNAPSHOT_INTERVAL);
+    }
+
+    /**
+     * Opens the event store in the given directory, creating it if it does not exist.
+     *
+     * @param directory The directory holding the event log and snapshot.
+     * @param snapshotInterval The number of events to log between snapshots.
+     * @throws IOException if the store cannot be opened.
+     * @throws IllegalArgumentException if the interval is less than 1.
+     */
+    public EventStore(Path directory, int snapshotInterval) throws IOException {
+        if (snapshotInterval < 1) {
+            throw new IllegalArgumentException("Snapshot interval must be at least 1.");
+        }
+        Files.createDirectories(directory);
+        this.directory = directory;
+        this.log = new RecordLog(directory.resolve(LOG_FILE_NAME), LOG_MAGIC,
+                TransactionJournal.DEFAULT_GROUP_SIZE,
+                TransactionJournal.DEFAULT_GROUP_DELAY_MILLIS);
+        this.codec = new TransactionCodec();
+        this.snapshotInterval = snapshotInterval;
+        this.snapshotter = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "snapshot-" + directory.getFileName());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Appends an event to the log. This does not wait for the event to reach the disk.
+     *
+     * @param event The event to append.
+     * @throws UncheckedIOException if an earlier write to the log failed.
+     */
+    public synchronized void append(FarmEvent event) {
+        log.append(event.encode(codec));
+        eventsSinceSnapshot++;
+    }
+
+    /**
+     * Waits until every event appended so far is durable on disk.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     * @throws UncheckedIOException if writing to the log failed.
+     */
+    public void flush() throws InterruptedException {
+        log.flush();
+    }
+
+    /**
+     * Returns the number of events appended since the last snapshot, or since the store was
+     * opened if no snapshot has been taken since.
+     *
+     * @return The number of events.
+     */
+    public synchronized long getEventsSinceSnapshot() {
+        return eventsSinceSnapshot;
+    }
+
+    /**
+     * Returns the error from the most recent snapshot taken in the background, if it failed.
+     * A failed snapshot loses nothing, as the log still holds every event, but restoring
+     * replays more of it.
+     *
+     * @return The error, or null if the latest background snapshot succeeded or none was taken.
+     */
+    public synchronized IOException getLastSnapshotFailure() {
+        return lastSnapshotFailure;
+    }
+
+    /**
+     * Starts taking a snapshot of the given farm on the store's own thread, if enough events
+     * have been logged since the last one and no other snapshot is being taken.
+     *
+     * @param farm The farm whose events this store holds.
+     * @return true if a snapshot was started.
+     */
+    public boolean snapshotIfDue(Farm farm) {
+        synchronized (this) {
+            if (snapshotting || eventsSinceSnapshot < snapshotInterval) {
+                return false;
+            }
+            snapshotting = true;
+        }
+        try {
+            snapshotter.execute(() -> {
+                IOException failure = null;
+                try {
+                    snapshot(farm);
+                } catch (IOException e) {
+                    failure = e;
+                } catch (RuntimeException e) {
+                    failure = new IOException("Could not snapshot the farm.", e);
+                }
+                synchronized (this) {
+                    lastSnapshotFailure = failure;
+                    snapshotting = false;
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            // the store is closing, and the log still holds every event
+            synchronized (this) {
+                snapshotting = false;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Writes a snapshot of the given farm's inventory, address book and transaction history,
+     * replacing the previous one. The farm's state is snapshotted while holding the lock of
+     * each aggregate, so no operation can change it part way through, which takes constant
+     * time, and only read and encoded once the locks are released.
+     *
+     * @param farm The farm whose events this store holds.
+     * @throws IOException if the snapshot could not be written.
+     */
+    public void snapshot(Farm farm) throws IOException {
+        long offset;
+        List<Product> products;
+        List<Product> cartProducts;
+        List<CustomerDetails> customers;
+        List<Transaction> transactions;
+        HistoryRollup rollup;
+        // every operation appends its event while holding its aggregate's lock, so holding
+        // them all means every change captured is logged before the offset, and none after
+        synchronized (farm.getInventory()) {
+            synchronized (farm.getAddressBook()) {
+                synchronized (farm.getTransactionHistory()) {
+                    synchronized (this) {
+                        offset = log.getAppendedLength();
+                        eventsSinceSnapshot = 0;
+                    }
+                    products = farm.getInventory().snapshotProducts();
+                    cartProducts = farm.getProductsInOpenCarts();
+                    customers = farm.getAddressBook().snapshotDetails();
+                    transactions = farm.getTransactionHistory().getRetainedTransactions();
+                    rollup = farm.getTransactionHistory().getRollup();
+                }
+            }
+        }
+        byte[] inventory = FarmState.encodeInventory(products, cartProducts);
+        byte[] customerBytes = FarmState.encodeCustomers(customers);
+        byte[] history = FarmState.encodeTransactions(transactions);
+        byte[] rollupBytes = FarmState.encodeRollup(rollup);
+        try {
+            // the snapshot must never be ahead of what a restart will find in the log
+            log.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while flushing the event log.");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(4 + 4 + 8 + 4 * 4 + inventory.length
+                + customerBytes.length + history.length + rollupBytes.length + 8);
+        buffer.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).putLong(offset);
+        for (byte[] section : List.of(inventory, customerBytes, history, rollupBytes)) {
+            buffer.putInt(section.length).put(section);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putLong(crc.getValue());
+        buffer.flip();
+
+        Path temporary = directory.resolve(SNAPSHOT_FILE_NAME + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, directory.resolve(SNAPSHOT_FILE_NAME),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Rebuilds the given farm from the latest snapshot and the events logged after it,
+     * rebuilding its inventory, address book and transaction history in parallel. Products
+     * that were in carts left open are restored to the inventory.
+     *
+     * @param farm The farm to rebuild, whose aggregates should be empty.
+     * @return The number of events replayed after the snapshot.
+     * @throws IOException if the store cannot be read.
+     * @throws IllegalStateException if a restored customer is already in the address book.
+     */
+    public int restore(Farm farm) throws IOException {
+        byte[][] sections = readSnapshot();
+        long offset = 0;
+        if (sections != null) {
+            offset = ByteBuffer.wrap(sections[0]).getLong();
+        }
+        // checkouts change the inventory as well as the history, so the inventory's events
+        // keep them in their place among the stockings
+        List<byte[]> inventoryEvents = new ArrayList<>();
+        List<byte[]> customerEvents = new ArrayList<>();
+        List<byte[]> checkoutEvents = new ArrayList<>();
+        log.read(offset, payload -> {
+            switch (FarmEvent.typeOf(payload)) {
+                case STOCK -> inventoryEvents.add(payload);
+                case CUSTOMER -> customerEvents.add(payload);
+                case CHECKOUT -> {
+                    inventoryEvents.add(payload);
+                    checkoutEvents.add(payload);
+                }
+            }
+        });
+
+        CompletableFuture<List<Transaction>> checkouts = CompletableFuture.supplyAsync(() ->
+                checkoutEvents.parallelStream()
+                        .map(payload -> FarmState.decodeEvent(payload).getTransaction())
+                        .toList());
+        CompletableFuture<Void> inventory = checkouts.thenAcceptAsync(sold -> restoreInventory(
+                farm.getInventory(), sections == null ? null : sections[1], inventoryEvents,
+                sold));
+        CompletableFuture<Void> customers = CompletableFuture.runAsync(() -> restoreCustomers(
+                farm.getAddressBook(), sections == null ? null : sections[2], customerEvents));
+        CompletableFuture<Void> history = CompletableFuture.supplyAsync(() ->
+                decodeTransactions(sections == null ? null : sections[3]))
+                .thenAcceptBothAsync(checkouts, (snapshotted, sold) ->
+                        restoreHistory(farm.getTransactionHistory(),
+                                sections == null ? null : sections[4], snapshotted, sold));
+        try {
+            CompletableFuture.allOf(inventory, customers, history).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw e;
+        }
+        return inventoryEvents.size() + customerEvents.size();
+    }
+
+    /**
+     * Waits for any snapshot being taken to finish, then writes every queued event to disk and
+     * closes the log.
+     *
+     * @throws IOException if the log could not be written or closed.
+     */
+    @Override
+    public void close() throws IOException {
+        snapshotter.shutdown();
+        try {
+            snapshotter.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.close();
+    }
+
+    /**
+     * Reads the snapshot, returning its offset followed by its sections,
+     * or null if there is no intact snapshot.
+     */
+    private byte[][] readSnapshot() throws IOException {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(directory.resolve(SNAPSHOT_FILE_NAME));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        if (bytes.length < 4 + 4 + 8 + 8) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 8);
+        if (buffer.getLong(bytes.length - 8) != crc.getValue()
+                || buffer.getInt() != SNAPSHOT_MAGIC || buffer.getInt() != SNAPSHOT_VERSION) {
+            return null; // the log still holds every event, so it can be replayed in full
+        }
+        byte[][] sections = new byte[5][];
+        sections[0] = new byte[8];
+        buffer.get(sections[0]);
+        for (int i = 1; i < sections.length; i++) {
+            sections[i] = new byte[buffer.getInt()];
+            buffer.get(sections[i]);
+        }
+        return sections;
+    }
+
+    private static void restoreInventory(Inventory inventory, byte[] snapshot,
+                                         List<byte[]> events, List<Transaction> checkouts) {
+        // replayed into a list first, since a checkout takes out exactly the qualities sold,
+        // while an inventory can only be asked for the best of a barcode
+        List<Stocked> stock = new ArrayList<>();
+        Map<Stocked, ArrayDeque<Integer>> positions = new HashMap<>();
+        BiConsumer<Barcode, Quality> add = (barcode, quality) -> {
+            Stocked product = new Stocked(barcode, quality);
+            positions.computeIfAbsent(product, key -> new ArrayDeque<>()).add(stock.size());
+            stock.add(product);
+        };
+        if (snapshot != null) {
+            FarmState.decodeInventory(ByteBuffer.wrap(snapshot), add);
+        }
+        int checkout = 0;
+        for (byte[] payload : events) {
+            if (FarmEvent.typeOf(payload) == FarmEvent.Type.CHECKOUT) {
+                for (Product product : checkouts.get(checkout++).getPurchases()) {
+                    ArrayDeque<Integer> matching = positions.get(
+                            new Stocked(product.getBarcode(), product.getQuality()));
+                    if (matching != null && !matching.isEmpty()) {
+                        stock.set(matching.poll(), null);
+                    }
+                }
+                continue;
+            }
+            FarmEvent event = FarmState.decodeEvent(payload);
+            for (int i = 0; i < event.getQuantity(); i++) {
+                add.accept(event.getBarcode(), event.getQuality());
+            }
+        }
+        synchronized (inventory) {
+            for (Stocked product : stock) {
+                if (product != null) {
+                    inventory.addProduct(product.barcode(), product.quality());
+                }
+            }
+        }
+    }
+
+    private static void restoreCustomers(AddressBook addressBook, byte[] snapshot,
+                                         List<byte[]> events) {
+        List<Customer> customers = new ArrayList<>();
+        if (snapshot != null) {
+            customers.addAll(FarmState.decodeCustomers(ByteBuffer.wrap(snapshot)));
+        }
+        for (byte[] payload : events) {
+            customers.add(FarmState.decodeEvent(payload).getCustomer());
+        }
+        synchronized (addressBook) {
+            for (Customer customer : customers) {
+                try {
+                    addressBook.addCustomer(customer);
+                } catch (DuplicateCustomerException e) {
+                    throw new IllegalStateException("Restored a customer twice: "
+                            + customer.getName(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Decodes the transactions of a snapshot's history section in parallel, as decoding
+     * dominates restoring the history.
+     */
+    private static List<Transaction> decodeTransactions(byte[] snapshot) {
+        if (snapshot == null) {
+            return List.of();
+        }
+        return FarmState.splitTransactions(ByteBuffer.wrap(snapshot)).parallelStream()
+                .map(FarmState::decodeTransaction)
+                .toList();
+    }
+
+    private static void restoreHistory(TransactionHistory history, byte[] rollup,
+                                       List<Transaction> snapshotted,
+                                       List<Transaction> checkouts) {
+        synchronized (history) {
+            if (rollup != null) {
+                history.restoreRollup(FarmState.decodeRollup(ByteBuffer.wrap(rollup)));
+            }
+            for (Transaction transaction : snapshotted) {
+                history.recordTransaction(transaction);
+            }
+            for (Transaction transaction : checkouts) {
+                history.recordTransaction(transaction);
+            }
+        }
+    }
+
+    /**
+     * A product in the inventory being restored.
+     */
+    private record Stocked(Barcode barcode, Quality quality) {
+    }
+}
@@ -1,28 +1,59 @@
 package farm.core;
 
 import farm.customer.AddressBook;
+import farm.customer.CacheEvictionPolicy;
 import farm.customer.Customer;
+import farm.customer.CustomerCache;
+import farm.customer.CustomerKey;
+import farm.customer.CustomerOrder;
+import farm.customer.CustomerPage;
+import farm.customer.PossibleDuplicate;
 import farm.inventory.FancyInventory;
 import farm.inventory.Inventory;
 import farm.inventory.product.*;
 import farm.inventory.product.data.Quality;
+import farm.sales.HistoryReport;
+import farm.sales.ParallelHistoryAnalytics;
 import farm.sales.TransactionHistory;
 import farm.sales.TransactionManager;
+import farm.sales.journal.TransactionJournal;
 import farm.sales.transaction.Transaction;
 import farm.inventory.product.data.Barcode;
 
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 
 /**
  * The Farm class represents a farm management system that handles inventory,
  * customer records, and transactions.
+ * <p>
+ * Sales can be served in several lanes at once, each identified by a string such as a till
+ * number. The lane-less sales methods use {@link TransactionManager#DEFAULT_LANE}. Access to
+ * the shared inventory and transaction history is serialised on those objects, while
+ * everything belonging to a single lane is handled without any shared lock. Adding to a cart
+ * holds the inventory's lock only while products move from the shelf into the cart, and
+ * checkout never takes it: the lane is closed and the sale recorded, journaled and logged under
+ * the history's lock alone, so one lane's checkout never holds up another lane's cart. A
+ * snapshot holding both locks therefore finds every product exactly once, on a shelf, in an
+ * open cart or in a recorded sale.
+ * </p>
  */
 public class Farm {
+    private static final int DEFAULT_CUSTOMER_CACHE_SIZE = 256;
+
     private final Inventory inventory;
     private final AddressBook addressBook;
     private final TransactionManager transactionManager;
     private final TransactionHistory transactionHistory;
+    private final CustomerCache customerCache;
+    private TransactionJournal journal;
+    private volatile EventStore eventStore;
+    private volatile Autosave autosave;
+    private volatile Consumer<TransactionHistory> pendingHistory;
 
     /**
      * Creates a new Farm instance with the specified inventory and address book.
@@ -31,10 +62,44 @@ public class Farm {
      * @param addressBook The address book storing the farm's customer records.
      */
     public Farm(Inventory inventory, AddressBook addressBook) {
+        this(inventory, addressBook, new CustomerCache(DEFAULT_CUSTOMER_CACHE_SIZE,
+                CacheEvictionPolicy.TINY_LFU));
+    }
+
+    /**
+     * Creates a new Farm instance with the specified inventory and address book,
+     * looking customers up through the given cache before consulting the address book.
+     *
+     * @param inventory The inventory through which access to the farm's stock is provisioned.
+     * @param addressBook The address book storing the farm's customer records.
+     * @param customerCache The cache holding the farm's most frequently requested customers.
+     */
+    public Farm(Inventory inventory, AddressBook addressBook, CustomerCache customerCache) {
+        this(inventory, addressBook, customerCache, new TransactionHistory());
+    }
+
+    /**
+     * Creates a new Farm instance with the specified inventory and address book,
+     * recording its sales in the given transaction history, such as one that only keeps
+     * the detail of recent transactions.
+     *
+     * @param inventory The inventory through which access to the farm's stock is provisioned.
+     * @param addressBook The address book storing the farm's customer records.
+     * @param transactionHistory The history in which to record the farm's transactions.
+     */
+    public Farm(Inventory inventory, AddressBook addressBook,
+                TransactionHistory transactionHistory) {
+        this(inventory, addressBook, new CustomerCache(DEFAULT_CUSTOMER_CACHE_SIZE,
+                CacheEvictionPolicy.TINY_LFU), transactionHistory);
+    }
+
+    private Farm(Inventory inventory, AddressBook addressBook, CustomerCache customerCache,
+                 TransactionHistory transactionHistory) {
         this.inventory = inventory;
         this.addressBook = addressBook;
         this.transactionManager = new TransactionManager();
-        this.transactionHistory = new TransactionHistory();
+        this.transactionHistory = transactionHistory;
+        this.customerCache = customerCache;
     }
 
     /**
@@ -48,6 +113,19 @@ public class Farm {
         return addressBook.getAllRecords();
     }
 
+    /**
+     * Retrieves a single page of customer records from the farm's address book.
+     *
+     * @param offset The position of the first customer to include.
+     * @param limit The maximum number of customers to include.
+     * @param order The order in which customers should be listed.
+     * @return The requested page of customers.
+     * @throws IllegalArgumentException If the offset is negative or the limit is less than 1.
+     */
+    public CustomerPage getCustomerPage(int offset, int limit, CustomerOrder order) {
+        return addressBook.getPage(offset, limit, order);
+    }
+
     /**
      * Retrieves all products currently stored in the farm's inventory.
      *
@@ -55,7 +133,9 @@ public class Farm {
      * @ensures The returned list is a shallow copy and cannot modify the original inventory.
      */
     public List<Product> getAllStock() {
-        return inventory.getAllProducts();
+        synchronized (inventory) {
+            return inventory.getAllProducts();
+        }
     }
 
     /**
@@ -67,15 +147,211 @@ public class Farm {
         return transactionManager;
     }
 
+    /**
+     * Retrieves the cache of customer records sitting in front of the farm's address book.
+     *
+     * @return The farm's customer cache.
+     */
+    public CustomerCache getCustomerCache() {
+        return customerCache;
+    }
+
     /**
      * Retrieves the farm's transaction history.
      *
      * @return The farm's transaction history.
      */
     public TransactionHistory getTransactionHistory() {
+        return loadedHistory();
+    }
+
+    /**
+     * Reports whether the farm's transaction history has been loaded. A farm loaded from a
+     * {@link SaveGame} decodes its history the first time the history is used.
+     *
+     * @return true if the history is ready; false if it is still waiting to be decoded.
+     */
+    public boolean isHistoryLoaded() {
+        return pendingHistory == null;
+    }
+
+    /**
+     * Defers filling the farm's transaction history until it is first used.
+     *
+     * @param loader Records the saved transactions into the history it is given.
+     */
+    void deferHistory(Consumer<TransactionHistory> loader) {
+        pendingHistory = loader;
+    }
+
+    /**
+     * Retrieves the loader deferred by {@link #deferHistory(Consumer)}, if it has not run yet.
+     * Only stable while holding the lock of {@link #getUnloadedHistory()}, under which it runs.
+     *
+     * @return The loader, or null if the history is loaded.
+     */
+    Consumer<TransactionHistory> getPendingHistory() {
+        return pendingHistory;
+    }
+
+    /**
+     * Retrieves the farm's transaction history without loading it, such as for saving a farm
+     * whose history is still waiting to be decoded.
+     *
+     * @return The history, which is empty until loaded if {@link #isHistoryLoaded()} is false.
+     */
+    TransactionHistory getUnloadedHistory() {
         return transactionHistory;
     }
 
+    /**
+     * Runs the deferred history loader, if there is one, before the history is used.
+     */
+    private TransactionHistory loadedHistory() {
+        if (pendingHistory != null) {
+            synchronized (transactionHistory) {
+                Consumer<TransactionHistory> loader = pendingHistory;
+                if (loader != null) {
+                    loader.accept(transactionHistory);
+                    // cleared only once loaded, so a failed load is retried on next use
+                    pendingHistory = null;
+                }
+            }
+        }
+        return transactionHistory;
+    }
+
+    /**
+     * Sets the journal to which every transaction recorded at checkout is also appended,
+     * so that the farm's transaction history survives a restart.
+     *
+     * @param journal The journal to append to, or null to stop journaling.
+     */
+    public void setJournal(TransactionJournal journal) {
+        synchronized (transactionHistory) {
+            this.journal = journal;
+        }
+    }
+
+    /**
+     * Sets the event store to which every stock, customer and checkout operation is
+     * appended, snapshotting the farm in the background whenever the store finds a snapshot
+     * is due.
+     *
+     * @param eventStore The store to append events to, or null to stop recording events.
+     */
+    public void setEventStore(EventStore eventStore) {
+        this.eventStore = eventStore;
+    }
+
+    /**
+     * Retrieves the event store operations are appended to.
+     *
+     * @return The farm's event store, or null if events are not recorded.
+     */
+    public EventStore getEventStore() {
+        return eventStore;
+    }
+
+    /**
+     * Sets the autosave saving this farm in the background, so that its timings can be
+     * reported.
+     *
+     * @param autosave The farm's autosave, or null if the farm is not autosaved.
+     */
+    public void setAutosave(Autosave autosave) {
+        this.autosave = autosave;
+    }
+
+    /**
+     * Retrieves the autosave saving this farm in the background.
+     *
+     * @return The farm's autosave, or null if the farm is not autosaved.
+     */
+    public Autosave getAutosave() {
+        return autosave;
+    }
+
+    /**
+     * Reports whether the farm's inventory is a {@link FancyInventory}, which can stock and sell
+     * several products at once.
+     *
+     * @return true if the farm has a fancy inventory; false otherwise.
+     */
+    public boolean hasFancyInventory() {
+        return inventory instanceof FancyInventory;
+    }
+
+    /**
+     * Retrieves the farm's inventory, for rebuilding and snapshotting its state.
+     *
+     * @return The farm's inventory.
+     */
+    Inventory getInventory() {
+        return inventory;
+    }
+
+    /**
+     * Retrieves the farm's address book, for rebuilding and snapshotting its state.
+     *
+     * @return The farm's address book.
+     */
+    AddressBook getAddressBook() {
+        return addressBook;
+    }
+
+    /**
+     * Retrieves the products sitting in open carts, which are still part of the farm's stock
+     * until checkout. Carts are not kept across a restart, so these are saved as stock.
+     * Called while holding the inventory's lock, under which products move into carts, and the
+     * history's lock, under which carts are checked out.
+     *
+     * @return The products in open carts.
+     */
+    List<Product> getProductsInOpenCarts() {
+        List<Product> products = new ArrayList<>();
+        for (String lane : transactionManager.getActiveLanes()) {
+            Transaction transaction = transactionManager.getOngoingTransaction(lane);
+            if (transaction != null && !transaction.isFinalised()) {
+                products.addAll(transaction.getAssociatedCustomer().getCart().getContents());
+            }
+        }
+        return products;
+    }
+
+    /**
+     * Appends an event to the event store, if there is one.
+     * Called while holding the lock of the aggregate the event changes.
+     */
+    private void recordEvent(FarmEvent event) {
+        EventStore store = eventStore;
+        if (store != null) {
+            store.append(event);
+        }
+    }
+
+    /**
+     * Snapshots the farm if its event store is due for one.
+     * Called without holding any aggregate's lock.
+     */
+    private void snapshotIfDue() {
+        EventStore store = eventStore;
+        if (store != null) {
+            store.snapshotIfDue(this);
+        }
+    }
+
+    /**
+     * Retrieves the journal transactions are appended to at checkout.
+     *
+     * @return The farm's journal, or null if transactions are not journaled.
+     */
+    public TransactionJournal getJournal() {
+        synchronized (transactionHistory) {
+            return journal;
+        }
+    }
+
     /**
      * Saves the specified customer in the farm's address book.
      *
@@ -89,7 +365,31 @@ public class Farm {
         }
 
         // Add the customer to the address book
-        addressBook.addCustomer(customer);
+        synchronized (addressBook) {
+            addressBook.addCustomer(customer);
+            recordEvent(FarmEvent.customer(customer));
+        }
+        snapshotIfDue();
+    }
+
+    /**
+     * Finds customers in the farm's address book that are likely to be the same person as
+     * the given customer, such as a slightly different spelling of the name at the same phone number.
+     *
+     * @param customer The customer to check.
+     * @return The likely duplicates, most similar first, or an empty list if there are none.
+     */
+    public List<Customer> findLikelyDuplicates(Customer customer) {
+        return addressBook.findLikelyDuplicates(customer);
+    }
+
+    /**
+     * Finds every pair of customers in the farm's address book that are likely to be the same person.
+     *
+     * @return Every likely duplicate pair.
+     */
+    public List<PossibleDuplicate> findAllLikelyDuplicates() {
+        return addressBook.findAllLikelyDuplicates();
     }
 
     /**
@@ -99,7 +399,11 @@ public class Farm {
      * @param quality The quality of the product to add to the inventory.
      */
     public void stockProduct(Barcode barcode, Quality quality) {
-        this.inventory.addProduct(barcode, quality);
+        synchronized (inventory) {
+            this.inventory.addProduct(barcode, quality);
+            recordEvent(FarmEvent.stock(barcode, quality, 1));
+        }
+        snapshotIfDue();
     }
 
     /**
@@ -116,7 +420,11 @@ public class Farm {
         if (quantity < 1) {
             throw new IllegalArgumentException("Quantity must be at least 1.");
         }
-        this.inventory.addProduct(barcode, quality, quantity);
+        synchronized (inventory) {
+            this.inventory.addProduct(barcode, quality, quantity);
+            recordEvent(FarmEvent.stock(barcode, quality, quantity));
+        }
+        snapshotIfDue();
     }
 
     /**
@@ -128,9 +436,23 @@ public class Farm {
      */
     public void startTransaction(Transaction transaction) throws
             FailedTransactionException {
+        startTransaction(TransactionManager.DEFAULT_LANE, transaction);
+    }
+
+    /**
+     * Sets the provided transaction as the ongoing transaction in the given lane,
+     * such as a till or a session. Different lanes may serve customers concurrently.
+     *
+     * @param lane The identifier of the lane to serve the transaction in.
+     * @param transaction The transaction to set as ongoing.
+     * @throws FailedTransactionException If the transaction manager rejects the request to begin managing this transaction.
+     * @requires The customer associated with the transaction exists in the farm's address book.
+     */
+    public void startTransaction(String lane, Transaction transaction) throws
+            FailedTransactionException {
 
         // Set the transaction as the ongoing transaction in the transaction manager
-        transactionManager.setOngoingTransaction(transaction);
+        transactionManager.setOngoingTransaction(lane, transaction);
     }
 
     /**
@@ -142,22 +464,37 @@ public class Farm {
      */
     public int addToCart(Barcode barcode) throws
             FailedTransactionException {
+        return addToCart(TransactionManager.DEFAULT_LANE, barcode);
+    }
+
+    /**
+     * Attempts to add a single product of the given type to the cart of the customer
+     * being served in the given lane.
+     *
+     * @param lane The identifier of the lane.
+     * @param barcode The product type to add to the cart.
+     * @return The number of products successfully added to the cart (0 or 1).
+     * @throws FailedTransactionException If no transaction is ongoing in that lane.
+     */
+    public int addToCart(String lane, Barcode barcode) throws
+            FailedTransactionException {
 
-        if (!transactionManager.hasOngoingTransaction()) {
+        if (!transactionManager.hasOngoingTransaction(lane)) {
             throw new FailedTransactionException(
                     "Cannot add to cart when no customer has started shopping.");
         }
 
-        // Check if the product exists in the inventory
-        if (!inventory.existsProduct(barcode)) {
-            return 0;
-        }
-
-        List<Product> getProducts = inventory.removeProduct(barcode);
-
-        if (!getProducts.isEmpty()) {
-            // Add the product to the customer's cart via the transaction manager
-            transactionManager.registerPendingPurchase(getProducts.getFirst());
+        // moved into the cart under the inventory's lock, so snapshots always find the product
+        synchronized (inventory) {
+            // Check if the product exists in the inventory
+            if (!inventory.existsProduct(barcode)) {
+                return 0;
+            }
+            List<Product> getProducts = inventory.removeProduct(barcode);
+            if (!getProducts.isEmpty()) {
+                // Add the product to the customer's cart via the transaction manager
+                transactionManager.registerPendingPurchase(lane, getProducts.getFirst());
+            }
         }
 
         return 1;  // Successfully added one product to the cart
@@ -174,8 +511,24 @@ public class Farm {
      */
     public int addToCart(Barcode barcode, int quantity) throws
             FailedTransactionException {
+        return addToCart(TransactionManager.DEFAULT_LANE, barcode, quantity);
+    }
+
+    /**
+     * Attempts to add the specified number of products of the given type to the cart of the
+     * customer being served in the given lane.
+     *
+     * @param lane The identifier of the lane.
+     * @param barcode The product type to add to the cart.
+     * @param quantity The number of products to add to the cart.
+     * @return The number of products successfully added to the cart.
+     * @throws FailedTransactionException If no transaction is ongoing in that lane or if the quantity is invalid.
+     * @throws IllegalArgumentException If quantity is less than 1.
+     */
+    public int addToCart(String lane, Barcode barcode, int quantity) throws
+            FailedTransactionException {
 
-        if (!transactionManager.hasOngoingTransaction()) {
+        if (!transactionManager.hasOngoingTransaction(lane)) {
             throw new FailedTransactionException(
                     "Cannot add to cart when no customer has started shopping.");
         }
@@ -191,12 +544,12 @@ public class Farm {
                             +
                             "Please purchase products one at a time.");
         }
-        List<Product> getProducts = inventory.removeProduct(barcode, quantity);
-
-        if (!getProducts.isEmpty()) {
+        List<Product> getProducts;
+        synchronized (inventory) {
+            getProducts = inventory.removeProduct(barcode, quantity);
             // Add the product to the customer's cart via the transaction manager
             for (Product product : getProducts) {
-                transactionManager.registerPendingPurchase(product);
+                transactionManager.registerPendingPurchase(lane, product);
             }
         }
 
@@ -210,23 +563,75 @@ public class Farm {
      * @throws FailedTransactionException If the transaction cannot be closed.
      */
     public boolean checkout() throws FailedTransactionException {
+        return checkout(TransactionManager.DEFAULT_LANE);
+    }
+
+    /**
+     * Closes the transaction ongoing in the given lane and records it in the farm's transaction
+     * history if products were purchased.
+     *
+     * @param lane The identifier of the lane.
+     * @return true if the finalized transaction contained products; false otherwise.
+     * @throws FailedTransactionException If the transaction cannot be closed.
+     */
+    public boolean checkout(String lane) throws FailedTransactionException {
         // Check if there is an ongoing transaction
-        if (!transactionManager.hasOngoingTransaction()) {
+        if (!transactionManager.hasOngoingTransaction(lane)) {
             throw new FailedTransactionException("No ongoing transaction to checkout.");
         }
+        // a journal that has already failed would lose the sale, so leave the transaction open
+        TransactionJournal activeJournal = getJournal();
+        if (activeJournal != null) {
+            try {
+                activeJournal.checkFailure();
+            } catch (UncheckedIOException e) {
+                throw new FailedTransactionException("The transaction journal cannot be written: "
+                        + e.getCause().getMessage());
+            }
+        }
 
-        // Finalize the current transaction
-        Transaction transaction = transactionManager.closeCurrentTransaction();
+        UncheckedIOException journalFailure = null;
+        // the lane is closed under the same lock the sale is recorded under, so a snapshot
+        // finds the products either in the open cart or in the history, never in neither
+        synchronized (loadedHistory()) {
+            // Finalize the current transaction
+            Transaction transaction = transactionManager.closeCurrentTransaction(lane);
 
-        // Check if the transaction contained any products
-        if (!transaction.getPurchases().isEmpty()) {
+            // If the transaction was empty, there is nothing to record
+            if (transaction.getPurchaseCount() == 0) {
+                return false;
+            }
             // If the transaction had products, record it in the transaction history
             transactionHistory.recordTransaction(transaction);
-            return true; // Indicate that the transaction contained products
+            // appended under the same lock, so the journal replays in history order
+            if (journal != null) {
+                try {
+                    journal.append(transaction);
+                } catch (UncheckedIOException e) {
+                    journalFailure = e;
+                }
+            }
+            recordEvent(FarmEvent.checkout(transaction));
         }
+        snapshotIfDue();
+        if (journalFailure != null) {
+            // the journal failed after the check above; the sale itself has gone through
+            throw new FailedTransactionException("The sale was recorded, but the transaction "
+                    + "journal could not be written: " + journalFailure.getCause().getMessage());
+        }
+        return true; // Indicate that the transaction contained products
+    }
 
-        // If the transaction was empty, return false
-        return false;
+    /**
+     * Builds a report over the farm's whole transaction history, scanning it in parallel.
+     * Transactions cannot be recorded while the report is being built.
+     *
+     * @return The report of the farm's sales.
+     */
+    public HistoryReport getHistoryReport() {
+        synchronized (loadedHistory()) {
+            return new ParallelHistoryAnalytics(transactionHistory.getLineItems()).analyse();
+        }
     }
 
     /**
@@ -237,7 +642,10 @@ public class Farm {
      */
     public String getLastReceipt() {
         // Retrieve the most recent transaction from the transaction history
-        Transaction lastTransaction = transactionHistory.getLastTransaction();
+        Transaction lastTransaction;
+        synchronized (loadedHistory()) {
+            lastTransaction = transactionHistory.getLastTransaction();
+        }
 
         // Check if there is a transaction available
         if (lastTransaction == null) {
@@ -258,17 +666,34 @@ public class Farm {
      * @throws CustomerNotFoundException If no customer with the given name and phone number exists in the address book.
      */
     public Customer getCustomer(String name, int phoneNumber) throws CustomerNotFoundException {
-        // Search for the customer in the address book
-        Customer customer = addressBook.getCustomer(name, phoneNumber);
-
-        // Check if the customer was found
+        CustomerKey key = new CustomerKey(name, phoneNumber);
+        Customer customer = customerCache.get(key);
         if (customer == null) {
-            throw new CustomerNotFoundException(
-                    "No customer found with name: " + name + " and phone number: " + phoneNumber);
+            // Search for the customer in the address book
+            customer = addressBook.getCustomer(key);
+            customerCache.put(customer);
         }
-
-        // Return the found customer
         return customer;
     }
 
+    /**
+     * Looks up a customer in the address book using the specified name and phone number,
+     * without throwing if they are not found.
+     * Prefer this over {@link #getCustomer(String, int)} where a missing customer is an expected outcome.
+     *
+     * @param name The name of the customer to find.
+     * @param phoneNumber The phone number of the customer to find.
+     * @return The matching customer, or an empty optional if no such customer exists.
+     */
+    public Optional<Customer> findCustomer(String name, int phoneNumber) {
+        CustomerKey key = new CustomerKey(name, phoneNumber);
+        Customer customer = customerCache.get(key);
+        if (customer != null) {
+            return Optional.of(customer);
+        }
+        Optional<Customer> found = addressBook.findCustomer(key);
+        found.ifPresent(customerCache::put);
+        return found;
+    }
+
 }
@@ -0,0 +1,227 @@
+package farm.core;
+
+import farm.customer.Customer;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+import farm.sales.journal.TransactionCodec;
+import farm.sales.transaction.Transaction;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * A single change to a farm's state, as appended to its {@link EventStore}.
+ * <p>
+ * Stocking products changes the farm's inventory and saving customers changes its address book.
+ * Checking out records a transaction in its history and takes the purchased products out of its
+ * inventory for good. Adding products to a cart is not an event: carts are not kept across a
+ * restart, so products in a cart that was never checked out are back in stock once the farm is
+ * restored. Events are encoded compactly, as a type byte followed by the event's fields;
+ * checkouts carry the transaction as encoded by a {@link TransactionCodec}.
+ * </p>
+ */
+public final class FarmEvent {
+    /**
+     * The kinds of change an event can record.
+     */
+    public enum Type {
+        /** Products were added to the inventory. */
+        STOCK,
+        /** A customer was saved to the address book. */
+        CUSTOMER,
+        /** A transaction was recorded in the history, and its purchases left the inventory. */
+        CHECKOUT
+    }
+
+    private static final Type[] TYPES = Type.values();
+    private static final Barcode[] BARCODES = Barcode.values();
+    private static final Quality[] QUALITIES = Quality.values();
+
+    private final Type type;
+    private final Barcode barcode;
+    private final Quality quality;
+    private final int quantity;
+    private final Customer customer;
+    private final Transaction transaction;
+
+    private FarmEvent(Type type, Barcode barcode, Quality quality, int quantity,
+                      Customer customer, Transaction transaction) {
+        this.type = type;
+        this.barcode = barcode;
+        this.quality = quality;
+        this.quantity = quantity;
+        this.customer = customer;
+        this.transaction = transaction;
+    }
+
+    /**
+     * Creates an event recording products stocked in the inventory.
+     *
+     * @param barcode The type of product stocked.
+     * @param quality The quality of product stocked.
+     * @param quantity The number of products stocked.
+     * @return The new event.
+     */
+    public static FarmEvent stock(Barcode barcode, Quality quality, int quantity) {
+        return new FarmEvent(Type.STOCK, barcode, quality, quantity, null, null);
+    }
+
+    /**
+     * Creates an event recording a customer saved in the address book.
+     *
+     * @param customer The customer saved.
+     * @return The new event.
+     */
+    public static FarmEvent customer(Customer customer) {
+        return new FarmEvent(Type.CUSTOMER, null, null, 0, customer, null);
+    }
+
+    /**
+     * Creates an event recording a transaction checked out into the history.
+     *
+     * @param transaction The finalised transaction.
+     * @return The new event.
+     */
+    public static FarmEvent checkout(Transaction transaction) {
+        return new FarmEvent(Type.CHECKOUT, null, null, 0, null, transaction);
+    }
+
+    /**
+     * Returns the kind of change this event records.
+     *
+     * @return The event type.
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the type of product stocked.
+     *
+     * @return The barcode, or null for events other than stocking.
+     */
+    public Barcode getBarcode() {
+        return barcode;
+    }
+
+    /**
+     * Returns the quality of product stocked.
+     *
+     * @return The quality, or null for events other than stocking.
+     */
+    public Quality getQuality() {
+        return quality;
+    }
+
+    /**
+     * Returns the number of products stocked.
+     *
+     * @return The quantity, or 0 for events other than stocking.
+     */
+    public int getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * Returns the customer saved.
+     *
+     * @return The customer, or null for events other than saving a customer.
+     */
+    public Customer getCustomer() {
+        return customer;
+    }
+
+    /**
+     * Returns the transaction checked out.
+     *
+     * @return The transaction, or null for events other than checkouts.
+     */
+    public Transaction getTransaction() {
+        return transaction;
+    }
+
+    /**
+     * Encodes this event, using the given codec for any transaction it carries.
+     *
+     * @param codec The codec to encode transactions with.
+     * @return The encoded event.
+     */
+    public byte[] encode(TransactionCodec codec) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(type.ordinal());
+            switch (type) {
+                case STOCK -> {
+                    out.writeByte(barcode.ordinal());
+                    out.writeByte(quality.ordinal());
+                    out.writeInt(quantity);
+                }
+                case CUSTOMER -> {
+                    out.writeUTF(customer.getName());
+                    out.writeInt(customer.getPhoneNumber());
+                    out.writeUTF(customer.getAddress() == null ? "" : customer.getAddress());
+                }
+                case CHECKOUT -> codec.encode(transaction, out);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // never thrown by an in-memory stream
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Returns the type of an encoded event without decoding the rest of it.
+     *
+     * @param encoded The encoded event.
+     * @return The event type.
+     * @throws IllegalArgumentException if the type is unknown.
+     */
+    public static Type typeOf(byte[] encoded) {
+        if (encoded.length == 0 || encoded[0] < 0 || encoded[0] >= TYPES.length) {
+            throw new IllegalArgumentException("Unknown event type.");
+        }
+        return TYPES[encoded[0]];
+    }
+
+    /**
+     * Decodes an event produced by {@link #encode(TransactionCodec)}.
+     *
+     * @param encoded The encoded event.
+     * @param codec The codec to decode transactions with.
+     * @return The decoded event.
+     * @throws IllegalArgumentException if the bytes are not a valid encoded event.
+     */
+    public static FarmEvent decode(byte[] encoded, TransactionCodec codec) {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded));
+        try {
+            Type type = TYPES[in.readUnsignedByte()];
+            return switch (type) {
+                case STOCK -> stock(BARCODES[in.readUnsignedByte()],
+                        QUALITIES[in.readUnsignedByte()], in.readInt());
+                case CUSTOMER -> customer(new Customer(in.readUTF(), in.readInt(), in.readUTF()));
+                case CHECKOUT -> checkout(codec.decode(in));
+            };
+        } catch (IOException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Malformed event.", e);
+        }
+    }
+
+    /**
+     * Returns a string representation of this event.
+     *
+     * @return A short description of the change.
+     */
+    @Override
+    public String toString() {
+        return switch (type) {
+            case STOCK -> "stock " + quantity + " " + quality + " " + barcode;
+            case CUSTOMER -> "customer " + customer.getName();
+            case CHECKOUT -> "checkout " + transaction.getCustomerKey().getName();
+        };
+    }
+}
@@ -1,15 +1,24 @@
 package farm.core;
 
 import farm.customer.Customer;
+import farm.customer.CustomerKey;
+import farm.customer.CustomerOrder;
+import farm.customer.CustomerPage;
+import farm.customer.PossibleDuplicate;
 import farm.inventory.Inventory;
 import farm.inventory.product.Product;
 import farm.inventory.product.data.Barcode;
 import farm.inventory.product.data.Quality;
+import farm.sales.HistoryReport;
+import farm.sales.SlidingSalesWindow;
 import farm.sales.TransactionHistory;
+import farm.sales.sketch.SalesSketches;
 import farm.sales.transaction.CategorisedTransaction;
 import farm.sales.transaction.SpecialSaleTransaction;
 import farm.sales.transaction.Transaction;
 
+import java.time.Duration;
+import java.time.LocalDate;
 import java.util.*;
 
 /**
@@ -29,6 +38,8 @@ import java.util.*;
  * @stage2
  */
 public class FarmManager {
+    private static final int ADDRESS_BOOK_PAGE_SIZE = 10;
+
     private final Farm farm;
     private final ShopFront shop;
     private final boolean enableFancy;
@@ -70,6 +81,7 @@ public class FarmManager {
                 case "address" -> this.launchAddressBookMode();
                 case "sales" -> this.launchSalesMode();
                 case "history" -> this.launchHistoryMode();
+                case "autosave" -> this.displayAutosave();
             }
         }
     }
@@ -134,26 +146,21 @@ public class FarmManager {
             int phone = Integer.parseInt(phoneNumber);
 
             // Check if a customer with the same details already exists
-            Customer existingCustomer = farm.getCustomer(name, phone);
-            if (existingCustomer != null) {
+            if (farm.findCustomer(name, phone).isPresent()) {
                 shop.displayDuplicateCustomer();
-            } else {
-                // Create and save the new customer if they do not already exist
-                Customer customer = new Customer(name, phone, address);
-                farm.saveCustomer(customer);
+                return;
             }
-        } catch (CustomerNotFoundException e) {
-            // If no customer is found, create a new one
-            Customer customer = new Customer(name, Integer.parseInt(phoneNumber), address);
-            try {
-                farm.saveCustomer(customer);
-            } catch (DuplicateCustomerException dce) {
-                shop.displayDuplicateCustomer();
+
+            // Create and save the new customer, warning about any near matches
+            Customer customer = new Customer(name, phone, address);
+            for (Customer similar : farm.findLikelyDuplicates(customer)) {
+                shop.displayMessage("Warning: possible duplicate of " + similar);
             }
+            farm.saveCustomer(customer);
         } catch (NumberFormatException e) {
             shop.displayInvalidPhoneNumber();
         } catch (DuplicateCustomerException e) {
-            throw new RuntimeException(e);
+            shop.displayDuplicateCustomer();
         }
 
     }
@@ -178,7 +185,12 @@ public class FarmManager {
         try {
             // Convert phone number to integer and retrieve customer
             int phoneInt = Integer.parseInt(phoneNumber);
-            Customer customer = farm.getCustomer(name, phoneInt);
+            Optional<Customer> found = farm.findCustomer(name, phoneInt);
+            if (found.isEmpty()) {
+                shop.displayCustomerNotFound();
+                return;
+            }
+            Customer customer = found.get();
 
             // Determine the type of transaction to create based on the input parameter
             Transaction transaction = switch (transactionType) {
@@ -197,8 +209,6 @@ public class FarmManager {
             } catch (FailedTransactionException e) {
                 shop.displayFailedToCreateTransaction();
             }
-        } catch (CustomerNotFoundException e) {
-            shop.displayCustomerNotFound();
         } catch (NumberFormatException e) {
             shop.displayInvalidPhoneNumber();
         }
@@ -258,14 +268,34 @@ public class FarmManager {
      */
     private void launchAddressBookMode() {
         boolean running = true;
+        CustomerPage page = null;
         while (running) {
             List<String> input = shop.promptAddressBookCmd();
             switch (input.getFirst()) {
                 case "q" -> running = false;
                 case "add" -> createCustomer();
-                case "list" -> {
-                    for (Customer customer : farm.getAllCustomers()) {
-                        shop.displayMessage(customer.toString());
+                case "list" -> page = handleAddressBookList(input);
+                case "duplicates" -> {
+                    List<PossibleDuplicate> duplicates = farm.findAllLikelyDuplicates();
+                    if (duplicates.isEmpty()) {
+                        shop.displayMessage("No likely duplicate customers found.");
+                    }
+                    for (PossibleDuplicate duplicate : duplicates) {
+                        shop.displayMessage(duplicate.toString());
+                    }
+                }
+                case "next" -> {
+                    if (page == null || !page.hasNext()) {
+                        shop.displayMessage("No more customers to show.");
+                    } else {
+                        page = displayCustomerPage(page.getNextOffset(), page.getOrder());
+                    }
+                }
+                case "prev" -> {
+                    if (page == null || !page.hasPrevious()) {
+                        shop.displayMessage("Already at the start of the address book.");
+                    } else {
+                        page = displayCustomerPage(page.getPreviousOffset(), page.getOrder());
                     }
                 }
             }
@@ -295,6 +325,14 @@ public class FarmManager {
         }
     }
 
+    /**
+     * Displays how long the farm's autosaves have spent capturing versus writing the farm.
+     */
+    private void displayAutosave() {
+        Autosave autosave = farm.getAutosave();
+        shop.displayMessage(autosave == null ? "Autosave is off." : autosave.getReport());
+    }
+
     /**
      * Launches the sales history mode of the CLI.
      */
@@ -312,14 +350,11 @@ public class FarmManager {
                         shop.displayReceipt(farm.getLastReceipt());
                     }
                 }
-                case "grossing" -> {
-                    if (farm.getTransactionHistory().getTotalTransactionsMade() == 0) {
-                        shop.displayMessage("No transactions made!");
-                    } else {
-                        shop.displayReceipt(farm.getTransactionHistory()
-                                .getHighestGrossingTransaction().getReceipt());
-                    }
-                }
+                case "grossing" -> handleHistoryGrossing(input);
+                case "recent" -> handleHistoryRecent(input);
+                case "report" -> handleHistoryReport();
+                case "sketch" -> handleHistorySketch();
+                case "customer" -> handleHistoryCustomer(input);
                 case "popular" -> shop.displayMessage(
                         farm.getTransactionHistory().getMostPopularProduct().getDisplayName()
                                 + " is the most popular!!");
@@ -328,6 +363,136 @@ public class FarmManager {
     }
 
 
+    private void handleHistoryCustomer(List<String> input) {
+        if (input.size() < 3) {
+            shop.displayIncorrectArguments();
+            return;
+        }
+        int phoneNumber;
+        try {
+            phoneNumber = Integer.parseInt(input.getLast());
+        } catch (NumberFormatException e) {
+            shop.displayIncorrectArguments();
+            return;
+        }
+        // commands are lowercased, so names are matched ignoring case
+        String name = String.join(" ", input.subList(1, input.size() - 1));
+        TransactionHistory history = farm.getTransactionHistory();
+        List<CustomerKey> matches = history.getCustomersWithPhoneNumber(phoneNumber).stream()
+                .filter(key -> key.getName().equalsIgnoreCase(name))
+                .toList();
+        if (matches.isEmpty()) {
+            shop.displayMessage("No transactions found for that customer.");
+            return;
+        }
+        for (CustomerKey customer : matches) {
+            List<Transaction> transactions = history.getTransactionsFor(customer);
+            shop.displayMessage(customer.getName() + " has made "
+                    + transactions.size() + " transaction(s):");
+            for (Transaction transaction : transactions) {
+                shop.displayReceipt(transaction.getReceipt());
+            }
+        }
+    }
+
+    private void handleHistorySketch() {
+        TransactionHistory history = farm.getTransactionHistory();
+        SalesSketches sketches = history.getSketches();
+        List<Barcode> topProducts = sketches.getTopProducts();
+        shop.displayMessage(String.format("""
+            |--------------------------
+            |     Approximate (exact)
+            | Distinct Customers:  %d (%d)
+            | Customers Today:     %d
+            | Most Popular:        %s (%s)
+            | Top Customers:       %s
+            | Median Spend:        $%.2f
+            | 90th Pct Spend:      $%.2f
+            | 99th Pct Spend:      $%.2f
+            |--------------------------
+            """, sketches.getDistinctCustomers(), history.getDistinctCustomerCount(),
+                sketches.getDistinctCustomers(LocalDate.now()),
+                topProducts.isEmpty() ? "none" : topProducts.getFirst().getDisplayName(),
+                history.getMostPopularProduct().getDisplayName(),
+                sketches.getTopCustomers().stream().limit(3)
+                        .map(CustomerKey::getName).toList(),
+                sketches.getSpendQuantile(0.5) / 100.0,
+                sketches.getSpendQuantile(0.9) / 100.0,
+                sketches.getSpendQuantile(0.99) / 100.0));
+    }
+
+    private void handleHistoryReport() {
+        HistoryReport report = farm.getHistoryReport();
+        shop.displayMessage("Transactions: " + report.getTransactionCount()
+                + ", gross earnings: " + String.format("$%.2f", report.getGrossEarnings() / 100.0)
+                + ", average spend: "
+                + String.format("$%.2f", report.getAverageSpendPerVisit() / 100.0));
+        for (Barcode barcode : Barcode.values()) {
+            shop.displayMessage(barcode.getDisplayName() + ": "
+                    + report.getUnitsSold(barcode) + " sold, "
+                    + String.format("%.2f", report.getAverageProductDiscount(barcode))
+                    + "% average discount");
+        }
+        int[] bounds = report.getSpendUpperBounds();
+        long[] distribution = report.getSpendDistribution();
+        for (int i = 0; i < distribution.length; i++) {
+            String range = i < bounds.length
+                    ? String.format("under $%.2f", bounds[i] / 100.0)
+                    : String.format("$%.2f or more", bounds[bounds.length - 1] / 100.0);
+            shop.displayMessage("Spent " + range + ": " + distribution[i]);
+        }
+    }
+
+    private void handleHistoryRecent(List<String> input) {
+        Duration window;
+        String period = input.size() == 1 ? "hour" : input.get(1);
+        switch (period) {
+            case "hour" -> window = Duration.ofHours(1);
+            case "day" -> window = Duration.ofDays(1);
+            case "week" -> window = Duration.ofDays(7);
+            default -> {
+                shop.displayIncorrectArguments();
+                return;
+            }
+        }
+        SlidingSalesWindow recent = farm.getTransactionHistory().getRecentSales();
+        shop.displayMessage("Sales in the last " + period + ": "
+                + recent.getTransactionCount(window) + " transactions, "
+                + String.format("$%.2f", recent.getGrossEarnings(window) / 100.0));
+        for (Barcode barcode : Barcode.values()) {
+            shop.displayMessage(barcode.getDisplayName() + ": "
+                    + recent.getUnitsSold(barcode, window));
+        }
+    }
+
+    private void handleHistoryGrossing(List<String> input) {
+        TransactionHistory history = farm.getTransactionHistory();
+        if (history.getTotalTransactionsMade() == 0) {
+            shop.displayMessage("No transactions made!");
+            return;
+        }
+        if (input.size() == 1) {
+            shop.displayReceipt(history.getHighestGrossingTransaction().getReceipt());
+            return;
+        }
+        int count;
+        try {
+            count = Integer.parseInt(input.get(1));
+        } catch (NumberFormatException e) {
+            shop.displayIncorrectArguments();
+            return;
+        }
+        if (count < 1 || count > history.getLeaderboardSize()) {
+            shop.displayMessage("Count must be between 1 and " + history.getLeaderboardSize() + ".");
+            return;
+        }
+        List<Transaction> top = history.getTopGrossingTransactions();
+        for (Transaction transaction : top.subList(0, Math.min(count, top.size()))) {
+            shop.displayReceipt(transaction.getReceipt());
+        }
+    }
+
+
     // -- INVENTORY MODE CONTROLS -- //
 
     private void handleInventoryAddRequest(List<String> cmdInput) {
@@ -358,6 +523,40 @@ public class FarmManager {
 
     // -- ADDRESS BOOK MODE CONTROLS -- //
 
+    private CustomerPage handleAddressBookList(List<String> input) {
+        CustomerOrder order = CustomerOrder.INSERTION;
+        if (input.size() == 2) {
+            switch (input.get(1)) {
+                case "name" -> order = CustomerOrder.NAME;
+                case "phone" -> order = CustomerOrder.PHONE_NUMBER;
+                default -> {
+                    shop.displayIncorrectArguments();
+                    return null;
+                }
+            }
+        } else if (input.size() > 2) {
+            shop.displayIncorrectArguments();
+            return null;
+        }
+        return displayCustomerPage(0, order);
+    }
+
+    private CustomerPage displayCustomerPage(int offset, CustomerOrder order) {
+        CustomerPage page = farm.getCustomerPage(offset, ADDRESS_BOOK_PAGE_SIZE, order);
+        if (page.getTotalRecords() == 0) {
+            shop.displayMessage("Address book is empty.");
+            return page;
+        }
+        for (Customer customer : page.getRecords()) {
+            shop.displayMessage(customer.toString());
+        }
+        int first = page.getOffset() + 1;
+        int last = page.getOffset() + page.getRecords().size();
+        shop.displayMessage("Showing " + first + "-" + last + " of " + page.getTotalRecords()
+                + (page.hasNext() ? " (next for more)" : ""));
+        return page;
+    }
+
 
     // -- SALES MODE CONTROLS -- //
 
@@ -490,8 +689,8 @@ public class FarmManager {
                     """, history.getTotalTransactionsMade(),
                                 history.getAverageSpendPerVisit() / 100.0f,
                         barcode.getDisplayName(),
-                                history.getTotalProductsSold(barcode),
-                                history.getGrossEarnings(barcode) / 100.0f,
+                                history.getExactProductsSold(barcode),
+                                history.getExactGrossEarnings(barcode) / 100.0,
                                 history.getAverageProductDiscount(barcode)
                         ).replace("`", "%")
                 );
@@ -510,7 +709,7 @@ public class FarmManager {
             | Gross Earning        $%.2f
             |--------------------------
             """, history.getTotalTransactionsMade(), history.getAverageSpendPerVisit() / 100.0f,
-                history.getTotalProductsSold(), history.getGrossEarnings() / 100.0f));
+                history.getExactProductsSold(), history.getExactGrossEarnings() / 100.0));
     }
 
     /** Private Helper Methods **/
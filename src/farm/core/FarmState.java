@@ -0,0 +1,218 @@
+package farm.core;
+
+import farm.customer.AddressPool;
+import farm.customer.Customer;
+import farm.customer.CustomerDetails;
+import farm.inventory.product.Product;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+import farm.sales.HistoryRollup;
+import farm.sales.journal.TransactionCodec;
+import farm.sales.transaction.Transaction;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Encodes the state of a farm's inventory, address book and transaction history, for the
+ * snapshots of an {@link EventStore} and the files of a {@link SaveGame}.
+ * <p>
+ * Stock is encoded as runs of identical products, customers as their name, phone number and
+ * address, and transactions one after another, each prefixed with its length so that they can
+ * be split apart without decoding and then decoded in parallel. A history's rolled up
+ * transactions are encoded separately, as a {@link HistoryRollup}.
+ * </p>
+ */
+final class FarmState {
+    private static final Barcode[] BARCODES = Barcode.values();
+    private static final Quality[] QUALITIES = Quality.values();
+    private static final ThreadLocal<TransactionCodec> CODECS =
+            ThreadLocal.withInitial(TransactionCodec::new);
+
+    private FarmState() {
+    }
+
+    /**
+     * Encodes the given stock, the products on the shelves followed by those in open carts,
+     * as runs of products with the same barcode and quality.
+     */
+    static byte[] encodeInventory(List<Product> shelves, List<Product> carts) {
+        List<int[]> runs = new ArrayList<>();
+        for (List<Product> products : List.of(shelves, carts)) {
+            for (Product product : products) {
+                int[] last = runs.isEmpty() ? null : runs.getLast();
+                if (last != null && last[0] == product.getBarcode().ordinal()
+                        && last[1] == product.getQuality().ordinal()) {
+                    last[2]++;
+                } else {
+                    runs.add(new int[] {product.getBarcode().ordinal(),
+                            product.getQuality().ordinal(), 1});
+                }
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(4 + runs.size() * 6);
+        buffer.putInt(runs.size());
+        for (int[] run : runs) {
+            buffer.put((byte) run[0]).put((byte) run[1]).putInt(run[2]);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Passes each product of the stock encoded in the buffer to the given consumer, such as an
+     * inventory's {@code addProduct}, in its original order.
+     *
+     * @throws IllegalArgumentException if the buffer is not valid encoded stock.
+     */
+    static void decodeInventory(ByteBuffer buffer, BiConsumer<Barcode, Quality> stock) {
+        try {
+            int runs = buffer.getInt();
+            for (int i = 0; i < runs; i++) {
+                Barcode barcode = BARCODES[buffer.get()];
+                Quality quality = QUALITIES[buffer.get()];
+                int count = buffer.getInt();
+                for (int j = 0; j < count; j++) {
+                    stock.accept(barcode, quality);
+                }
+            }
+        } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Malformed stock.", e);
+        }
+    }
+
+    /**
+     * Encodes the given customers in order.
+     */
+    static byte[] encodeCustomers(List<CustomerDetails> customers) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(customers.size());
+            for (CustomerDetails customer : customers) {
+                writeString(out, customer.getName());
+                out.writeInt(customer.getPhoneNumber());
+                writeString(out, customer.getAddress() == null ? "" : customer.getAddress());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // never thrown by an in-memory stream
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes the customers encoded in the buffer, in their original order, with customers at
+     * the same address sharing one copy of it.
+     *
+     * @throws IllegalArgumentException if the buffer is not valid encoded customers.
+     */
+    static List<Customer> decodeCustomers(ByteBuffer buffer) {
+        try {
+            int count = buffer.getInt();
+            List<Customer> customers = new ArrayList<>(Math.min(count, 1 << 16));
+            // decoded strings are all new, so shared addresses are pooled straight away
+            AddressPool addresses = new AddressPool();
+            for (int i = 0; i < count; i++) {
+                String name = readString(buffer);
+                int phoneNumber = buffer.getInt();
+                customers.add(new Customer(name, phoneNumber,
+                        addresses.intern(readString(buffer))));
+            }
+            return customers;
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            throw new IllegalArgumentException("Malformed customers.", e);
+        }
+    }
+
+    /**
+     * Encodes the rollup of a history's evicted transactions.
+     */
+    static byte[] encodeRollup(HistoryRollup rollup) {
+        return rollup.encode(CODECS.get());
+    }
+
+    /**
+     * Decodes a rollup encoded by {@link #encodeRollup(HistoryRollup)}.
+     *
+     * @throws IllegalArgumentException if the buffer is not a valid encoded rollup.
+     */
+    static HistoryRollup decodeRollup(ByteBuffer buffer) {
+        byte[] encoded = new byte[buffer.remaining()];
+        buffer.duplicate().get(encoded);
+        return HistoryRollup.decode(encoded, CODECS.get());
+    }
+
+    /**
+     * Encodes the given transactions in order, each prefixed with its length.
+     */
+    static byte[] encodeTransactions(List<Transaction> transactions) {
+        TransactionCodec codec = CODECS.get();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(transactions.size());
+            for (Transaction transaction : transactions) {
+                byte[] encoded = codec.encode(transaction);
+                out.writeInt(encoded.length);
+                out.write(encoded);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // never thrown by an in-memory stream
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Splits the transactions encoded in the buffer apart, without decoding them.
+     *
+     * @throws IllegalArgumentException if the buffer is not valid encoded transactions.
+     */
+    static List<byte[]> splitTransactions(ByteBuffer buffer) {
+        try {
+            int count = buffer.getInt();
+            List<byte[]> encoded = new ArrayList<>(Math.min(count, 1 << 16));
+            for (int i = 0; i < count; i++) {
+                byte[] transaction = new byte[buffer.getInt()];
+                buffer.get(transaction);
+                encoded.add(transaction);
+            }
+            return encoded;
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            throw new IllegalArgumentException("Malformed transactions.", e);
+        }
+    }
+
+    /**
+     * Decodes a transaction split apart by {@link #splitTransactions(ByteBuffer)}, with a codec
+     * belonging to the calling thread, so that transactions can be decoded in parallel.
+     */
+    static Transaction decodeTransaction(byte[] encoded) {
+        return CODECS.get().decode(encoded);
+    }
+
+    /**
+     * Decodes an event, with a codec belonging to the calling thread.
+     */
+    static FarmEvent decodeEvent(byte[] encoded) {
+        return FarmEvent.decode(encoded, CODECS.get());
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
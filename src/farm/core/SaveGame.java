@@ -0,0 +1,334 @@
+package farm.core;
+
+import farm.customer.AddressBook;
+import farm.customer.Customer;
+import farm.customer.CustomerDetails;
+import farm.inventory.BasicInventory;
+import farm.inventory.FancyInventory;
+import farm.inventory.Inventory;
+import farm.inventory.product.Product;
+import farm.sales.HistoryRollup;
+import farm.sales.TransactionHistory;
+import farm.sales.transaction.Transaction;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * The whole state of a {@link Farm}, captured so that it can be saved to a file and loaded
+ * again in a later game.
+ * <p>
+ * A save file starts with a header holding its format version and a table of sections, one each
+ * for the inventory, the address book, the transaction history and the history's rollup of
+ * transactions it no longer keeps in detail, giving the offset, length and CRC-32 checksum of
+ * each. Sections are written with a single gathering write, to a temporary
+ * file that is then moved into place, so a crash mid-save leaves the previous save intact.
+ * Readers skip sections they do not recognise, so later versions may add sections.
+ * </p>
+ * <p>
+ * Loading maps the file into memory rather than reading it. The inventory and address book are
+ * rebuilt straight away, but the history, by far the largest section, is left in the mapped file
+ * until the farm's history is first used, then decoded in parallel. A farm with years of sales
+ * therefore opens in the time it takes to rebuild its stock and customers. Saving a farm whose
+ * history has not been used since it was loaded writes the mapped section back as it was read,
+ * without decoding it.
+ * </p>
+ * <p>
+ * Capturing a farm holds its locks only long enough to take constant-time snapshots of its
+ * stock, customer details and retained transactions, which later changes to the farm copy around
+ * rather than write through, so a capture costs the farm the same however large it grows.
+ * </p>
+ * <p>
+ * As with event store snapshots, only the transactions whose detail the history still retains
+ * are saved in full, alongside the rollup of the rest and the history's retention settings, and
+ * products in open carts are saved as stock.
+ * </p>
+ */
+public final class SaveGame {
+    /**
+     * The version of the save format written by this class.
+     */
+    public static final int VERSION = 1;
+
+    private static final int MAGIC = 0x46534156; // "FSAV"
+    private static final int FANCY_INVENTORY = 1;
+    private static final int INVENTORY_SECTION = 1;
+    private static final int CUSTOMERS_SECTION = 2;
+    private static final int HISTORY_SECTION = 3;
+    private static final int ROLLUP_SECTION = 4;
+    private static final int HEADER_LENGTH = 16;
+    private static final int SECTION_ENTRY_LENGTH = 20;
+
+    private final boolean fancy;
+    private final List<Product> products;
+    private final List<Product> cartProducts;
+    private final List<CustomerDetails> customers;
+    private final List<Transaction> transactions;
+    private final HistoryRollup rollup;
+    private final ByteBuffer savedHistory;
+    private final int savedHistoryCrc;
+
+    private SaveGame(boolean fancy, List<Product> products, List<Product> cartProducts,
+                     List<CustomerDetails> customers, List<Transaction> transactions,
+                     HistoryRollup rollup, ByteBuffer savedHistory, int savedHistoryCrc) {
+        this.fancy = fancy;
+        this.products = products;
+        this.cartProducts = cartProducts;
+        this.customers = customers;
+        this.transactions = transactions;
+        this.rollup = rollup;
+        this.savedHistory = savedHistory;
+        this.savedHistoryCrc = savedHistoryCrc;
+    }
+
+    /**
+     * Captures the current state of the given farm. Each aggregate's lock is held only while a
+     * snapshot of its contents is taken, which takes constant time, and nothing is copied or
+     * encoded until the capture is written, so the capture can be written on another thread
+     * while the farm carries on changing. A history not yet loaded is not loaded by capturing it.
+     *
+     * @param farm The farm to capture.
+     * @return The captured state.
+     */
+    public static SaveGame capture(Farm farm) {
+        Inventory inventory = farm.getInventory();
+        AddressBook addressBook = farm.getAddressBook();
+        TransactionHistory history = farm.getUnloadedHistory();
+        synchronized (inventory) {
+            synchronized (addressBook) {
+                synchronized (history) {
+                    boolean fancy = inventory instanceof FancyInventory;
+                    List<Product> products = inventory.snapshotProducts();
+                    List<Product> cartProducts = farm.getProductsInOpenCarts();
+                    List<CustomerDetails> customers = addressBook.snapshotDetails();
+                    if (farm.getPendingHistory() instanceof SavedHistory saved) {
+                        // unchanged since it was loaded, so written back without decoding it
+                        return new SaveGame(fancy, products, cartProducts, customers, List.of(),
+                                saved.rollup == null ? history.getRollup() : saved.rollup,
+                                saved.section, saved.crc);
+                    }
+                    TransactionHistory loaded = farm.getTransactionHistory();
+                    return new SaveGame(fancy, products, cartProducts, customers,
+                            loaded.getRetainedTransactions(), loaded.getRollup(), null, 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Saves the current state of the given farm to a file, replacing any previous save.
+     *
+     * @param farm The farm to save.
+     * @param path The file to save to.
+     * @throws IOException if the file could not be written.
+     */
+    public static void save(Farm farm, Path path) throws IOException {
+        capture(farm).write(path);
+    }
+
+    /**
+     * Returns the number of transactions captured.
+     *
+     * @return The number of transactions that will be saved.
+     */
+    public int getTransactionCount() {
+        // a saved section starts with its count of transactions
+        return savedHistory == null ? transactions.size() : savedHistory.getInt(0);
+    }
+
+    /**
+     * Encodes the captured state and writes it to a file, replacing any previous save.
+     *
+     * @param path The file to save to.
+     * @throws IOException if the file could not be written.
+     */
+    public void write(Path path) throws IOException {
+        ByteBuffer[] sections = {
+            ByteBuffer.wrap(FarmState.encodeInventory(products, cartProducts)),
+            ByteBuffer.wrap(FarmState.encodeCustomers(customers)),
+            savedHistory == null ? ByteBuffer.wrap(FarmState.encodeTransactions(transactions))
+                    : savedHistory.duplicate(),
+            ByteBuffer.wrap(FarmState.encodeRollup(rollup))
+        };
+        int[] ids = {INVENTORY_SECTION, CUSTOMERS_SECTION, HISTORY_SECTION, ROLLUP_SECTION};
+        int[] crcs = new int[sections.length];
+        for (int i = 0; i < sections.length; i++) {
+            crcs[i] = checksum(sections[i]);
+        }
+        if (savedHistory != null) {
+            // never checked since it was read, so damage to it is still caught on loading
+            crcs[2] = savedHistoryCrc;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH
+                + sections.length * SECTION_ENTRY_LENGTH);
+        header.putInt(MAGIC).putInt(VERSION).putInt(fancy ? FANCY_INVENTORY : 0)
+                .putInt(sections.length);
+        long offset = header.capacity();
+        for (int i = 0; i < sections.length; i++) {
+            header.putInt(ids[i]).putLong(offset).putInt(sections[i].remaining()).putInt(crcs[i]);
+            offset += sections[i].remaining();
+        }
+        header.flip();
+
+        ByteBuffer[] buffers = new ByteBuffer[sections.length + 1];
+        buffers[0] = header;
+        System.arraycopy(sections, 0, buffers, 1, sections.length);
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long remaining = offset;
+            while (remaining > 0) {
+                remaining -= channel.write(buffers);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, path,
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Loads a farm saved by {@link #save(Farm, Path)}. The farm's transaction history is
+     * decoded the first time it is used, and keeps the retention settings it was saved with.
+     *
+     * @param path The file to load.
+     * @return The loaded farm.
+     * @throws IOException if the file cannot be read, is not a save file, was saved by a later
+     *                     version, or its inventory or address book is damaged.
+     */
+    public static Farm load(Path path) throws IOException {
+        MappedByteBuffer file;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (file.capacity() < HEADER_LENGTH || file.getInt(0) != MAGIC) {
+            throw new IOException("Not a saved farm: " + path);
+        }
+        int version = file.getInt(4);
+        if (version > VERSION) {
+            throw new IOException("The farm was saved by a later version (" + version + ").");
+        }
+        boolean fancy = (file.getInt(8) & FANCY_INVENTORY) != 0;
+        int count = file.getInt(12);
+        if (count < 0 || HEADER_LENGTH + (long) count * SECTION_ENTRY_LENGTH > file.capacity()) {
+            throw new IOException("The save file's section table is damaged.");
+        }
+
+        ByteBuffer inventorySection = null;
+        ByteBuffer customersSection = null;
+        ByteBuffer historySection = null;
+        ByteBuffer rollupSection = null;
+        int historyCrc = 0;
+        for (int i = 0; i < count; i++) {
+            int entry = HEADER_LENGTH + i * SECTION_ENTRY_LENGTH;
+            int id = file.getInt(entry);
+            long offset = file.getLong(entry + 4);
+            int length = file.getInt(entry + 12);
+            int crc = file.getInt(entry + 16);
+            if (offset < 0 || length < 0 || offset + length > file.capacity()) {
+                throw new IOException("Section " + id + " lies outside the save file.");
+            }
+            ByteBuffer section = file.slice((int) offset, length);
+            switch (id) {
+                case INVENTORY_SECTION -> inventorySection = checked(section, crc, id);
+                case CUSTOMERS_SECTION -> customersSection = checked(section, crc, id);
+                case ROLLUP_SECTION -> rollupSection = checked(section, crc, id);
+                case HISTORY_SECTION -> {
+                    // checked when the history is decoded, so opening never reads it
+                    historySection = section;
+                    historyCrc = crc;
+                }
+                default -> {
+                    // written by a later version, and not needed by this one
+                }
+            }
+        }
+
+        Inventory inventory = fancy ? new FancyInventory() : new BasicInventory();
+        AddressBook addressBook;
+        HistoryRollup rollup;
+        try {
+            if (inventorySection != null) {
+                FarmState.decodeInventory(inventorySection, inventory::addProduct);
+            }
+            List<Customer> customers = customersSection == null
+                    ? List.of() : FarmState.decodeCustomers(customersSection);
+            addressBook = AddressBook.withExpectedCustomers(Math.max(customers.size(), 16));
+            for (Customer customer : customers) {
+                addressBook.addCustomer(customer);
+            }
+            // small, and needed up front for the history's retention settings
+            rollup = rollupSection == null ? null : FarmState.decodeRollup(rollupSection);
+        } catch (IllegalArgumentException | DuplicateCustomerException e) {
+            throw new IOException("The save file is damaged.", e);
+        }
+
+        Farm farm = rollup == null ? new Farm(inventory, addressBook)
+                : new Farm(inventory, addressBook, rollup.createHistory());
+        if (historySection != null || rollup != null) {
+            farm.deferHistory(new SavedHistory(historySection, historyCrc, rollup));
+        }
+        return farm;
+    }
+
+    private static ByteBuffer checked(ByteBuffer section, int crc, int id) throws IOException {
+        if (checksum(section) != crc) {
+            throw new IOException("Section " + id + " of the save file is damaged.");
+        }
+        return section;
+    }
+
+    private static int checksum(ByteBuffer section) {
+        CRC32 crc = new CRC32();
+        crc.update(section.duplicate());
+        return (int) crc.getValue();
+    }
+
+    /**
+     * The history sections of a loaded save file, left mapped until the farm's history is first
+     * used, when they are decoded into it.
+     */
+    private static final class SavedHistory implements Consumer<TransactionHistory> {
+        private final ByteBuffer section;
+        private final int crc;
+        private final HistoryRollup rollup;
+
+        private SavedHistory(ByteBuffer section, int crc, HistoryRollup rollup) {
+            this.section = section;
+            this.crc = crc;
+            this.rollup = rollup;
+        }
+
+        @Override
+        public void accept(TransactionHistory history) {
+            List<Transaction> transactions = List.of();
+            if (section != null) {
+                if (checksum(section) != crc) {
+                    throw new UncheckedIOException(
+                            new IOException("The saved transaction history is damaged."));
+                }
+                List<byte[]> encoded = FarmState.splitTransactions(section.duplicate());
+                transactions = encoded.parallelStream()
+                        .map(FarmState::decodeTransaction)
+                        .toList();
+            }
+            // only changed once everything is decoded, so a failed load can be retried
+            if (rollup != null) {
+                history.restoreRollup(rollup);
+            }
+            for (Transaction transaction : transactions) {
+                history.recordTransaction(transaction);
+            }
+        }
+    }
+}
@@ -55,7 +55,8 @@ public class ShopFront {
      * @hidden
      */
     public List<String> promptModeSelect() {
-        Set<String> commands = Set.of("q", "inventory", "address", "sales", "history");
+        Set<String> commands = Set.of("q", "inventory", "address", "sales", "history",
+                "autosave");
         String helpMsg = """
                     Mode Options:
                      - q: Quit the application.
@@ -63,6 +64,7 @@ public class ShopFront {
                      - address: Manage the farm's address book.
                      - sales: Enter the sales mode.
                      - history: View the farm's sales history.
+                     - autosave: Report how long autosaves spend capturing and writing.
                     """;
         System.out.println(CAT);
         System.out.println(BARN);
@@ -92,12 +94,16 @@ public class ShopFront {
      * @hidden
      */
     public List<String> promptAddressBookCmd() {
-        Set<String> commands = Set.of("add", "list", "q");
+        Set<String> commands = Set.of("add", "list", "next", "prev", "duplicates", "q");
         String helpMsg = """
                     Command Options:
                      - q: Quit the address book mode.
                      - add: Add a customer to the address book.
-                     - list: Display all the customers in the address book.
+                     - list [name | phone]: Display the first page of customers in the address book.
+                                            [Optional sort order].
+                     - next: Display the next page of customers.
+                     - prev: Display the previous page of customers.
+                     - duplicates: List customers that are likely to have been entered twice.
                     """;
         return List.of(modePromptHandler("ADDRESS BOOK", commands, helpMsg));
     }
@@ -128,13 +134,18 @@ public class ShopFront {
      * @hidden
      */
     public List<String> promptHistoryCmd() {
-        Set<String> commands = Set.of("q", "stats", "last", "grossing", "popular");
+        Set<String> commands = Set.of("q", "stats", "last", "grossing", "recent", "report",
+                "sketch", "customer", "popular");
         String helpMsg = """
             Command Options:
             - q: Quit the sales history mode.
             - stats [<product-name>]: Get the total stats for the shop. [Optional product stats]
             - last: Prints the receipt of the last transaction made.
-            - grossing: Prints the receipt of the highest grossing transaction.
+            - grossing [<count>]: Prints the receipt of the highest grossing transaction. [Optional top <count>]
+            - recent [hour|day|week]: Displays sales in the last hour, day or week.
+            - report: Displays a full sales report, including how much customers spend.
+            - sketch: Displays approximate statistics next to their exact values.
+            - customer <name> <phone>: Prints the receipts of every transaction made by a customer.
             - popular: Displays the name of the most sold product.
             """;
         return List.of(modePromptHandler("HISTORY", commands, helpMsg));
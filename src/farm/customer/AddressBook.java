@@ -4,22 +4,116 @@ import farm.core.CustomerNotFoundException;
 import farm.core.DuplicateCustomerException;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * AddressBook provides functionality to store and manage a list of customers.
  * Customers can be added
  * searched by name and phone number
  * the entire list of customers can be retrieved
+ * <p>
+ * Customers are indexed by their {@link CustomerKey}, so lookups by name and phone number do not
+ * need to scan the whole book. Customers tell the books holding them when their details change,
+ * and are re-indexed under their new key, so a renamed customer is found by its new name only.
+ * Large books can be listed a page at a time, or streamed, without copying every record.
+ * </p>
+ * <p>
+ * Names are also indexed by trigram so that customers who look like someone already in the book,
+ * such as "Jon Smith" and "John Smith" sharing a phone number, can be flagged as likely duplicates.
+ * </p>
+ * <p>
+ * Every lookup first consults a Bloom filter of the keys in the book, so that the common case of
+ * checking for a customer who has not registered yet is answered without touching the records.
+ * The filter is rebuilt at twice the size whenever the book outgrows it.
+ * </p>
+ * <p>
+ * A book may be shared between threads: every method synchronizes on the book, including those
+ * its customers call to re-index themselves. A customer cannot be renamed, or given a new phone
+ * number, onto the name and phone number of another customer in the book, just as such a
+ * customer could not be added.
+ * </p>
+ * <p>
+ * Addresses are pooled, so that the many customers sharing an address, such as everyone on
+ * "1st Street", share one string instead of each keeping a copy.
+ * </p>
+ * <p>
+ * The book also keeps the details of each customer as they were last added or changed, so that
+ * they can be snapshotted for saving in constant time. The snapshot shares the book's array of
+ * details, and the first change after it to a customer already in the snapshot copies the array
+ * before writing to it.
+ * </p>
  */
 public class AddressBook {
+    private static final double DEFAULT_DUPLICATE_THRESHOLD = 0.7;
+    private static final int DEFAULT_EXPECTED_CUSTOMERS = 1024;
+    private static final double FILTER_FALSE_POSITIVE_RATE = 0.01;
+
     private final List<Customer> customers;
+    private final Map<CustomerKey, Integer> index;
+    private final Map<CustomerOrder, Customer[]> sortedViews;
+    private final DuplicateDetector duplicateDetector;
+    private final AddressPool addresses;
+    private CustomerDetails[] details;
+    private int sharedDetails;
+    private CustomerBloomFilter filter;
+    private long filterRejections;
+    private long filterFalsePositives;
 
     /**
      * Constructs an empty AddressBook.
      */
     public AddressBook() {
+        this(DEFAULT_EXPECTED_CUSTOMERS, DEFAULT_DUPLICATE_THRESHOLD);
+    }
+
+    /**
+     * Creates an empty AddressBook which flags customers as likely duplicates
+     * when their names are at least as similar as the given threshold
+     *
+     * @param duplicateThreshold the minimum name similarity, between 0 and 1, of a likely duplicate
+     * @return the new address book
+     * @throws IllegalArgumentException if the threshold is not between 0 and 1
+     */
+    public static AddressBook withDuplicateThreshold(double duplicateThreshold) {
+        return new AddressBook(DEFAULT_EXPECTED_CUSTOMERS, duplicateThreshold);
+    }
+
+    /**
+     * Creates an empty AddressBook whose lookup filter is sized for the given number of customers
+     *
+     * @param expectedCustomers the number of customers the book is expected to hold
+     * @return the new address book
+     * @throws IllegalArgumentException if the expected number of customers is less than 1
+     */
+    public static AddressBook withExpectedCustomers(int expectedCustomers) {
+        return new AddressBook(expectedCustomers, DEFAULT_DUPLICATE_THRESHOLD);
+    }
+
+    /**
+     * Constructs an empty AddressBook whose lookup filter is sized for the given number of customers,
+     * and which flags customers as likely duplicates when their names are at least as similar
+     * as the given threshold
+     *
+     * @param expectedCustomers the number of customers the book is expected to hold
+     * @param duplicateThreshold the minimum name similarity, between 0 and 1, of a likely duplicate
+     * @throws IllegalArgumentException if the expected number of customers is less than 1,
+     *                                  or the threshold is not between 0 and 1
+     */
+    public AddressBook(int expectedCustomers, double duplicateThreshold) {
         customers = new ArrayList<>();
+        index = new HashMap<>();
+        sortedViews = new EnumMap<>(CustomerOrder.class);
+        duplicateDetector = new DuplicateDetector(customers, duplicateThreshold);
+        addresses = new AddressPool();
+        details = new CustomerDetails[16];
+        filter = new CustomerBloomFilter(expectedCustomers, FILTER_FALSE_POSITIVE_RATE);
     }
 
     /**
@@ -29,11 +123,112 @@ public class AddressBook {
      * @param customer The customer to be added.
      * @throws DuplicateCustomerException if a customer with the same name and phone number already exists.
      */
-    public void addCustomer(Customer customer) throws DuplicateCustomerException {
+    public synchronized void addCustomer(Customer customer) throws DuplicateCustomerException {
         if (containsCustomer(customer)) {
             throw new DuplicateCustomerException("Customer already exists: " + customer.getName());
         }
+        customer.poolAddress(addresses);
         customers.add(customer);
+        index.put(customer.getKey(), customers.size() - 1);
+        setDetails(customers.size() - 1, customer);
+        sortedViews.clear();
+        duplicateDetector.index(customers.size() - 1);
+        addToFilter(customer.getKey());
+        customer.addBook(this);
+    }
+
+    /**
+     * Checks that a customer in this book may take the given key, because no other customer
+     * in the book already holds it.
+     *
+     * @param customer The customer about to change its key.
+     * @param key The key it is about to take.
+     * @throws IllegalArgumentException if another customer in this book holds the key.
+     */
+    synchronized void checkKeyAvailable(Customer customer, CustomerKey key) {
+        Integer row = index.get(key);
+        if (row != null && customers.get(row) != customer) {
+            throw new IllegalArgumentException("Customer already exists: " + key.getName());
+        }
+    }
+
+    /**
+     * Re-indexes a customer in this book whose details have just changed.
+     *
+     * @param customer The customer that changed.
+     * @param previous The customer's key before the change.
+     */
+    synchronized void customerChanged(Customer customer, CustomerKey previous) {
+        Integer row = index.get(previous);
+        if (row == null || customers.get(row) != customer) {
+            return;
+        }
+        setDetails(row, customer);
+        sortedViews.clear();
+        CustomerKey key = customer.getKey();
+        if (key.equals(previous)) {
+            return; // only the address changed, which is read afresh by every lookup
+        }
+        index.remove(previous);
+        // checkKeyAvailable has already rejected keys held by other customers
+        index.put(key, row);
+        duplicateDetector.reindex(row, previous.getPhoneNumber());
+        addToFilter(key);
+    }
+
+    /**
+     * Returns the copy of the given address shared by the customers in this book.
+     *
+     * @param address The address to look up, which may be null.
+     * @return The pooled address.
+     */
+    synchronized String internAddress(String address) {
+        return addresses.intern(address);
+    }
+
+    /**
+     * Returns the number of distinct addresses shared by the customers in the address book
+     * Addresses no customer lives at any more are still counted
+     *
+     * @return the number of pooled addresses
+     */
+    public synchronized int getPooledAddressCount() {
+        return addresses.size();
+    }
+
+    /**
+     * Finds customers already in the address book that are likely to be the same person
+     * as the given customer, without adding it
+     * Only customers sharing a phone number or an address are considered
+     *
+     * @param customer the customer to check
+     * @return the likely duplicates, most similar first, or an empty list if there are none
+     */
+    public synchronized List<Customer> findLikelyDuplicates(Customer customer) {
+        List<Customer> matches = new ArrayList<>();
+        for (int row : duplicateDetector.findLikelyDuplicates(customer, customers.size())) {
+            matches.add(customers.get(row));
+        }
+        return matches;
+    }
+
+    /**
+     * Sweeps the whole address book for pairs of customers that are likely to be the same person
+     * Each customer is only compared against the candidates sharing its name trigrams or phone number
+     *
+     * @return every likely duplicate pair, with the customer added first as the existing one
+     */
+    public synchronized List<PossibleDuplicate> findAllLikelyDuplicates() {
+        List<PossibleDuplicate> duplicates = new ArrayList<>();
+        for (int row = 1; row < customers.size(); row++) {
+            Customer candidate = customers.get(row);
+            for (int match : duplicateDetector.findLikelyDuplicates(candidate, row)) {
+                Customer existing = customers.get(match);
+                duplicates.add(new PossibleDuplicate(existing, candidate,
+                        DuplicateDetector.similarity(existing, candidate)));
+            }
+        }
+        return duplicates;
     }
 
     /**
@@ -41,18 +236,78 @@ public class AddressBook {
      *
      * @return a List containing all Customer objects
      */
-    public List<Customer> getAllRecords() {
+    public synchronized List<Customer> getAllRecords() {
         return new ArrayList<>(customers);
     }
 
+    /**
+     * Returns the details of every customer in the address book, in insertion order, as they
+     * are now
+     * The list is read-only and is not affected by later changes to the book or its customers,
+     * and taking it does not copy the book
+     *
+     * @return the details of all customers
+     */
+    public synchronized List<CustomerDetails> snapshotDetails() {
+        sharedDetails = customers.size();
+        return Collections.unmodifiableList(Arrays.asList(details).subList(0, sharedDetails));
+    }
+
+    /**
+     * Returns the number of customers in the address book
+     *
+     * @return the number of customers
+     */
+    public synchronized int size() {
+        return customers.size();
+    }
+
+    /**
+     * Returns a sequential stream over the customers in the address book, in insertion order,
+     * without copying the underlying records
+     * The address book must not be modified while the stream is being consumed
+     *
+     * @return a stream of all Customer objects
+     */
+    public synchronized Stream<Customer> streamRecords() {
+        return Collections.unmodifiableList(customers).stream();
+    }
+
+    /**
+     * Returns a single page of customers in the requested order
+     * Sorted orders are computed once and reused for every page until the book is next modified
+     *
+     * @param offset the position of the first customer to include
+     * @param limit the maximum number of customers to include
+     * @param order the order in which customers should be listed
+     * @return the requested page, which is empty if the offset is past the end of the book
+     * @throws IllegalArgumentException if the offset is negative or the limit is less than 1
+     */
+    public synchronized CustomerPage getPage(int offset, int limit, CustomerOrder order) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset must not be negative.");
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be at least 1.");
+        }
+        int total = customers.size();
+        int from = Math.min(offset, total);
+        int to = from + Math.min(limit, total - from);
+        // copied, as the page outlives the lock; sorted views are never changed once built
+        List<Customer> records = order == CustomerOrder.INSERTION
+                ? List.copyOf(customers.subList(from, to))
+                : Arrays.asList(getSortedView(order)).subList(from, to);
+        return new CustomerPage(records, from, limit, total, order);
+    }
+
     /**
      * Checks if a customer with the same name and phone number already exists in the address book
      *
      * @param customer The customer to check
      * @return true if the customer exists, false otherwise
      */
-    public boolean containsCustomer(Customer customer) {
-        return customers.contains(customer);
+    public synchronized boolean containsCustomer(Customer customer) {
+        return lookup(customer.getKey()) != null;
     }
 
     /**
@@ -64,13 +319,141 @@ public class AddressBook {
      * @return The customer with the specified name and phone number
      * @throws CustomerNotFoundException if no customer with the specified name and phone number exists
      */
-    public Customer getCustomer(String name, int phoneNumber) throws CustomerNotFoundException {
-        for (Customer customer : customers) {
-            if (customer.getName().equals(name) && customer.getPhoneNumber() == phoneNumber) {
-                return customer;
-            }
+    public synchronized Customer getCustomer(String name, int phoneNumber)
+            throws CustomerNotFoundException {
+        return getCustomer(new CustomerKey(name, phoneNumber));
+    }
+
+    /**
+     * Retrieves a customer by their key
+     * If no such customer exists, a CustomerNotFoundException is thrown
+     *
+     * @param key The key identifying the customer
+     * @return The customer with the specified key
+     * @throws CustomerNotFoundException if no customer with the specified key exists
+     */
+    public synchronized Customer getCustomer(CustomerKey key) throws CustomerNotFoundException {
+        Customer customer = lookup(key);
+        if (customer == null) {
+            throw new CustomerNotFoundException("Customer not found: " + key.getName(), false);
+        }
+        return customer;
+    }
+
+    /**
+     * Looks up a customer by their name and phone number, without throwing if they are not found
+     *
+     * @param name The name of the customer
+     * @param phoneNumber The phone number of the customer
+     * @return The matching customer, or an empty optional if no such customer exists
+     */
+    public synchronized Optional<Customer> findCustomer(String name, int phoneNumber) {
+        return findCustomer(new CustomerKey(name, phoneNumber));
+    }
+
+    /**
+     * Looks up a customer by their key, without throwing if they are not found
+     *
+     * @param key The key identifying the customer
+     * @return The matching customer, or an empty optional if no such customer exists
+     */
+    public synchronized Optional<Customer> findCustomer(CustomerKey key) {
+        return Optional.ofNullable(lookup(key));
+    }
+
+    /**
+     * Rebuilds the lookup filter from the customers currently in the book,
+     * sized for the given number of customers
+     *
+     * @param expectedCustomers the number of customers the rebuilt filter should be sized for
+     * @throws IllegalArgumentException if the expected number of customers is less than 1
+     */
+    public synchronized void rebuildFilter(int expectedCustomers) {
+        CustomerBloomFilter rebuilt = new CustomerBloomFilter(
+                Math.max(expectedCustomers, customers.size()), FILTER_FALSE_POSITIVE_RATE);
+        for (CustomerKey key : index.keySet()) {
+            rebuilt.add(key);
         }
-        throw new CustomerNotFoundException("Customer not found: " + name);
+        filter = rebuilt;
     }
 
-}
\ No newline at end of file
+    /**
+     * Returns the number of lookups answered by the filter alone, without consulting the records
+     *
+     * @return the number of lookups rejected by the filter
+     */
+    public synchronized long getFilterRejections() {
+        return filterRejections;
+    }
+
+    /**
+     * Returns the number of lookups the filter let through for customers that did not exist
+     *
+     * @return the number of false positives observed
+     */
+    public synchronized long getFilterFalsePositives() {
+        return filterFalsePositives;
+    }
+
+    /**
+     * Returns the fraction of lookups for missing customers that the filter failed to reject
+     *
+     * @return the observed false positive rate, or 0.0 if no missing customers have been looked up
+     */
+    public synchronized double getObservedFalsePositiveRate() {
+        long misses = filterRejections + filterFalsePositives;
+        return misses == 0 ? 0.0 : (double) filterFalsePositives / misses;
+    }
+
+    /**
+     * Returns the false positive rate the filter is expected to have at its current occupancy
+     *
+     * @return the estimated false positive rate
+     */
+    public synchronized double getEstimatedFalsePositiveRate() {
+        return filter.getEstimatedFalsePositiveRate();
+    }
+
+    private void addToFilter(CustomerKey key) {
+        filter.add(key);
+        if (filter.isSaturated()) {
+            rebuildFilter(2 * customers.size());
+        }
+    }
+
+    /**
+     * Records a customer's current details in the given row, first copying the array of details
+     * if the row is part of a snapshot.
+     */
+    private void setDetails(int row, Customer customer) {
+        if (row >= details.length) {
+            details = Arrays.copyOf(details, Math.max(row + 1, 2 * details.length));
+            sharedDetails = 0;
+        } else if (row < sharedDetails) {
+            details = details.clone();
+            sharedDetails = 0;
+        }
+        details[row] = new CustomerDetails(customer);
+    }
+
+    private Customer lookup(CustomerKey key) {
+        if (!filter.mightContain(key)) {
+            filterRejections++;
+            return null;
+        }
+        Integer row = index.get(key);
+        if (row == null) {
+            filterFalsePositives++;
+            return null;
+        }
+        return customers.get(row);
+    }
+
+    private Customer[] getSortedView(CustomerOrder order) {
+        return sortedViews.computeIfAbsent(order, o -> {
+            Customer[] view = customers.toArray(new Customer[0]);
+            Arrays.sort(view, o.getComparator());
+            return view;
+        });
+    }
+}
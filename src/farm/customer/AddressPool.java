@@ -0,0 +1,49 @@
+package farm.customer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A pool of addresses, so that customers living at the same address share one string rather
+ * than each holding their own copy.
+ * <p>
+ * Many customers share an address, such as everyone on "1st Street", and an address is the
+ * largest part of a customer's details. Pooling it saves the string, and the array holding its
+ * characters, for every customer after the first at each address. Addresses stay in the pool
+ * until the pool itself is discarded, even once no customer lives there any more.
+ * </p>
+ */
+public final class AddressPool {
+    private final Map<String, String> addresses;
+
+    /**
+     * Constructs an empty pool.
+     */
+    public AddressPool() {
+        this.addresses = new HashMap<>();
+    }
+
+    /**
+     * Returns the pooled copy of the given address, adding it to the pool if it is new.
+     *
+     * @param address The address to look up, which may be null.
+     * @return An address equal to the given one, shared with every earlier caller asking for
+     *         the same address, or null if the address is null.
+     */
+    public String intern(String address) {
+        if (address == null) {
+            return null;
+        }
+        String pooled = addresses.putIfAbsent(address, address);
+        return pooled == null ? address : pooled;
+    }
+
+    /**
+     * Returns the number of distinct addresses in the pool.
+     *
+     * @return The number of pooled addresses.
+     */
+    public int size() {
+        return addresses.size();
+    }
+}
@@ -0,0 +1,17 @@
+package farm.customer;
+
+/**
+ * Strategies a {@link CustomerCache} can use to decide which customers to keep once it is full.
+ */
+public enum CacheEvictionPolicy {
+    /**
+     * Always admit the newly requested customer and evict the least recently used one.
+     */
+    LRU,
+    /**
+     * Only admit the newly requested customer if it has been requested more often, recently,
+     * than the least recently used one it would replace. Keeps regulars cached when a burst
+     * of one-off customers passes through.
+     */
+    TINY_LFU,
+}
@@ -2,6 +2,8 @@ package farm.customer;
 
 import farm.sales.Cart;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 
 /**
@@ -11,7 +13,10 @@ public class Customer {
     private String name;
     private int phoneNumber;
     private String address;
-    private final Cart cart;
+    private Cart cart;
+    private CustomerKey key;
+    private int hash;
+    private List<AddressBook> books;
 
     /**
      * Constructs a new Customer with the specified name, phone number, and address.
@@ -24,7 +29,7 @@ public class Customer {
         this.name = name;
         this.phoneNumber = phoneNumber;
         this.address = address;
-        this.cart = new Cart();  // Initialize the cart for the customer
+        this.cart = null;  // Created on first use, most customers never shop again
     }
 
     /**
@@ -40,9 +45,15 @@ public class Customer {
      * Sets the name of the customer.
      *
      * @param name The new name of the customer.
+     * @throws IllegalArgumentException if an address book holding this customer already holds
+     *                                  another customer with the new name and this phone number.
      */
     public void setName(String name) {
+        CustomerKey previous = getKey();
+        checkKeyAvailable(new CustomerKey(name, phoneNumber));
         this.name = name;
+        invalidateIdentity();
+        notifyBooks(previous);
     }
 
     /**
@@ -58,9 +69,15 @@ public class Customer {
      * Sets the phone number of the customer.
      *
      * @param phoneNumber The new phone number of the customer.
+     * @throws IllegalArgumentException if an address book holding this customer already holds
+     *                                  another customer with this name and the new phone number.
      */
     public void setPhoneNumber(int phoneNumber) {
+        CustomerKey previous = getKey();
+        checkKeyAvailable(new CustomerKey(name, phoneNumber));
         this.phoneNumber = phoneNumber;
+        invalidateIdentity();
+        notifyBooks(previous);
     }
 
     /**
@@ -78,15 +95,37 @@ public class Customer {
      * @param address The new address of the customer.
      */
     public void setAddress(String address) {
-        this.address = address;
+        this.address = pooledAddress(address);
+        this.hash = 0;
+        notifyBooks(getKey());
+    }
+
+    /**
+     * Returns the immutable key identifying this customer by name and phone number.
+     * <p>
+     * The key reflects the customer's current details; if the name or phone number is
+     * changed, subsequent calls return a new key.
+     * </p>
+     *
+     * @return The key for this customer.
+     */
+    public CustomerKey getKey() {
+        if (key == null) {
+            key = new CustomerKey(name, phoneNumber);
+        }
+        return key;
     }
 
     /**
      * Returns the cart associated with this customer.
+     * The cart is only allocated the first time it is requested.
      *
      * @return The customer's cart.
      */
     public Cart getCart() {
+        if (cart == null) {
+            cart = new Cart();
+        }
         return cart;
     }
 
@@ -130,6 +169,70 @@ public class Customer {
      */
     @Override
     public int hashCode() {
-        return Objects.hash(name, phoneNumber, address);
+        int result = hash;
+        if (result == 0) {
+            result = 31 * (31 * (31 + Objects.hashCode(name)) + phoneNumber)
+                    + Objects.hashCode(address);
+            hash = result;
+        }
+        return result;
+    }
+
+    /**
+     * Registers an address book holding this customer, so that it is told when the customer's
+     * details change and can re-index them.
+     */
+    synchronized void addBook(AddressBook book) {
+        if (books == null) {
+            books = new ArrayList<>(1);
+        }
+        books.add(book);
+    }
+
+    /**
+     * Replaces this customer's address with the copy held by the given pool.
+     */
+    void poolAddress(AddressPool pool) {
+        address = pool.intern(address);
+    }
+
+    /**
+     * Returns the copy of the given address pooled by the first address book holding this
+     * customer, or the address itself if no book holds the customer.
+     */
+    private String pooledAddress(String address) {
+        AddressBook book;
+        synchronized (this) {
+            if (books == null) {
+                return address;
+            }
+            book = books.getFirst();
+        }
+        return book.internAddress(address);
+    }
+
+    /**
+     * Checks that no address book holding this customer holds another customer with the given
+     * key, which the customer is about to take.
+     */
+    private void checkKeyAvailable(CustomerKey key) {
+        for (AddressBook book : holdingBooks()) {
+            book.checkKeyAvailable(this, key);
+        }
+    }
+
+    private void notifyBooks(CustomerKey previous) {
+        for (AddressBook book : holdingBooks()) {
+            book.customerChanged(this, previous);
+        }
+    }
+
+    private synchronized List<AddressBook> holdingBooks() {
+        return books == null ? List.of() : List.copyOf(books);
+    }
+
+    private void invalidateIdentity() {
+        this.key = null;
+        this.hash = 0;
     }
 }
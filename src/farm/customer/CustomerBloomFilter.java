@@ -0,0 +1,124 @@
+package farm.customer;
+
+/**
+ * A Bloom filter over customer keys, used to answer "definitely not a customer" without
+ * consulting the address book's storage.
+ * <p>
+ * The filter is sized from the number of customers it is expected to hold and the desired
+ * false positive probability. Adding more customers than expected degrades the false positive
+ * rate, so the owner should rebuild the filter with a larger expected count once it is full.
+ * </p>
+ */
+public class CustomerBloomFilter {
+    private final long[] bits;
+    private final int bitCount;
+    private final int hashCount;
+    private final int expectedInsertions;
+    private int insertions;
+
+    /**
+     * Constructs an empty filter sized for the given number of customers.
+     *
+     * @param expectedInsertions The number of customers the filter is expected to hold.
+     * @param falsePositiveRate The desired probability, between 0 and 1 exclusive,
+     *                          of reporting an absent customer as possibly present.
+     * @throws IllegalArgumentException if either parameter is out of range.
+     */
+    public CustomerBloomFilter(int expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions < 1) {
+            throw new IllegalArgumentException("Expected insertions must be at least 1.");
+        }
+        if (falsePositiveRate <= 0.0 || falsePositiveRate >= 1.0) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1.");
+        }
+        double ln2 = Math.log(2);
+        long optimalBits = (long) Math.ceil(
+                -expectedInsertions * Math.log(falsePositiveRate) / (ln2 * ln2));
+        this.bitCount = (int) Math.max(64, Math.min(Integer.MAX_VALUE - 63, optimalBits));
+        this.bits = new long[(bitCount + 63) / 64];
+        this.hashCount = Math.max(1,
+                (int) Math.round((double) bitCount / expectedInsertions * ln2));
+        this.expectedInsertions = expectedInsertions;
+        this.insertions = 0;
+    }
+
+    /**
+     * Records the given key as present.
+     *
+     * @param key The key to add.
+     */
+    public void add(CustomerKey key) {
+        long hash = spread(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bitCount);
+            bits[bit >>> 6] |= 1L << bit;
+        }
+        insertions++;
+    }
+
+    /**
+     * Determines whether the given key might have been added to the filter.
+     *
+     * @param key The key to check.
+     * @return false if the key was definitely never added, true if it possibly was.
+     */
+    public boolean mightContain(CustomerKey key) {
+        long hash = spread(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines whether the filter holds more keys than it was sized for.
+     *
+     * @return true if the filter should be rebuilt with a larger expected size.
+     */
+    public boolean isSaturated() {
+        return insertions > expectedInsertions;
+    }
+
+    /**
+     * Returns the number of keys added to the filter.
+     *
+     * @return The number of insertions.
+     */
+    public int getInsertions() {
+        return insertions;
+    }
+
+    /**
+     * Returns the number of keys the filter was sized for.
+     *
+     * @return The expected number of insertions.
+     */
+    public int getExpectedInsertions() {
+        return expectedInsertions;
+    }
+
+    /**
+     * Estimates the current false positive probability from the number of keys added.
+     *
+     * @return The expected false positive rate, between 0 and 1.
+     */
+    public double getEstimatedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-(double) hashCount * insertions / bitCount), hashCount);
+    }
+
+    private static long spread(CustomerKey key) {
+        long hash = key.getName().hashCode() * 0x9E3779B97F4A7C15L + key.getPhoneNumber();
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        return hash ^ (hash >>> 33);
+    }
+}
@@ -0,0 +1,229 @@
+package farm.customer;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of customer records, keyed by {@link CustomerKey}.
+ * <p>
+ * Entries are kept in least recently used order. Under {@link CacheEvictionPolicy#TINY_LFU},
+ * a small count-min sketch of recent request frequencies additionally guards admission, so that
+ * a customer seen once cannot push out a regular. The sketch's counters are halved periodically
+ * so that frequencies reflect recent traffic rather than all time.
+ * </p>
+ * <p>
+ * All methods are thread-safe.
+ * </p>
+ */
+public class CustomerCache {
+    private static final int SKETCH_DEPTH = 4;
+    private static final int MAX_FREQUENCY = 15;
+    private static final long[] SKETCH_SEEDS = {
+        0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0x27D4EB2F165667C5L
+    };
+
+    private final int capacity;
+    private final CacheEvictionPolicy policy;
+    private final LinkedHashMap<CustomerKey, Customer> entries;
+    private final int[][] frequencies;
+    private final int sketchMask;
+    private final int resetInterval;
+    private int sketchIncrements;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long rejections;
+
+    /**
+     * Constructs an empty cache holding at most the given number of customers.
+     *
+     * @param capacity The maximum number of customers to cache.
+     * @param policy How to choose which customers to keep once the cache is full.
+     * @throws IllegalArgumentException if the capacity is less than 1.
+     */
+    public CustomerCache(int capacity, CacheEvictionPolicy policy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1.");
+        }
+        this.capacity = capacity;
+        this.policy = policy;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        int width = Integer.highestOneBit(Math.max(16, capacity * 2 - 1) << 1);
+        this.frequencies = policy == CacheEvictionPolicy.TINY_LFU
+                ? new int[SKETCH_DEPTH][width] : new int[0][0];
+        this.sketchMask = width - 1;
+        this.resetInterval = capacity * 10;
+    }
+
+    /**
+     * Retrieves the cached customer with the given key, recording the request.
+     *
+     * @param key The key of the customer.
+     * @return The cached customer, or null if the customer is not cached.
+     */
+    public synchronized Customer get(CustomerKey key) {
+        recordRequest(key);
+        Customer customer = entries.get(key);
+        if (customer != null && !customer.getKey().equals(key)) {
+            // renamed since it was cached, so it no longer answers to this key
+            entries.remove(key);
+            customer = null;
+        }
+        if (customer == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return customer;
+    }
+
+    /**
+     * Offers a customer to the cache. If the cache is full, the least recently used customer
+     * is evicted to make room, unless the eviction policy decides the new customer is less
+     * valuable than that one, in which case the new customer is not cached.
+     *
+     * @param customer The customer to cache.
+     * @return true if the customer is now cached, false if it was rejected.
+     */
+    public synchronized boolean put(Customer customer) {
+        CustomerKey key = customer.getKey();
+        if (entries.containsKey(key) || entries.size() < capacity) {
+            entries.put(key, customer);
+            return true;
+        }
+        Iterator<Map.Entry<CustomerKey, Customer>> eldest = entries.entrySet().iterator();
+        CustomerKey victim = eldest.next().getKey();
+        if (policy == CacheEvictionPolicy.TINY_LFU && frequency(key) <= frequency(victim)) {
+            rejections++;
+            return false;
+        }
+        eldest.remove();
+        evictions++;
+        entries.put(key, customer);
+        return true;
+    }
+
+    /**
+     * Removes the customer with the given key from the cache, if present.
+     *
+     * @param key The key of the customer to remove.
+     */
+    public synchronized void invalidate(CustomerKey key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Removes every customer from the cache. Statistics are retained.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Returns the number of customers currently cached.
+     *
+     * @return The number of cached customers.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the maximum number of customers the cache can hold.
+     *
+     * @return The capacity of the cache.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the eviction policy of this cache.
+     *
+     * @return The eviction policy.
+     */
+    public CacheEvictionPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Returns the number of requests answered from the cache.
+     *
+     * @return The number of hits.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of requests for customers that were not cached.
+     *
+     * @return The number of misses.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of customers evicted to make room for others.
+     *
+     * @return The number of evictions.
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of customers the eviction policy declined to cache.
+     *
+     * @return The number of rejected admissions.
+     */
+    public synchronized long getRejections() {
+        return rejections;
+    }
+
+    /**
+     * Returns the fraction of requests answered from the cache.
+     *
+     * @return The hit rate, or 0.0 if there have been no requests.
+     */
+    public synchronized double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0.0 : (double) hits / requests;
+    }
+
+    private void recordRequest(CustomerKey key) {
+        if (policy != CacheEvictionPolicy.TINY_LFU) {
+            return;
+        }
+        for (int row = 0; row < SKETCH_DEPTH; row++) {
+            int column = column(key, row);
+            if (frequencies[row][column] < MAX_FREQUENCY) {
+                frequencies[row][column]++;
+            }
+        }
+        if (++sketchIncrements >= resetInterval) {
+            for (int[] counters : frequencies) {
+                for (int i = 0; i < counters.length; i++) {
+                    counters[i] >>>= 1;
+                }
+            }
+            sketchIncrements = 0;
+        }
+    }
+
+    private int frequency(CustomerKey key) {
+        int frequency = MAX_FREQUENCY;
+        for (int row = 0; row < SKETCH_DEPTH; row++) {
+            frequency = Math.min(frequency, frequencies[row][column(key, row)]);
+        }
+        return frequency;
+    }
+
+    private int column(CustomerKey key, int row) {
+        long hash = (key.hashCode() + SKETCH_SEEDS[row]) * SKETCH_SEEDS[row];
+        return (int) (hash ^ (hash >>> 32)) & sketchMask;
+    }
+}
@@ -0,0 +1,49 @@
+package farm.customer;
+
+/**
+ * The name, phone number and address of a customer at one point in time, which unlike the
+ * customer itself cannot be edited.
+ */
+public final class CustomerDetails {
+    private final String name;
+    private final int phoneNumber;
+    private final String address;
+
+    /**
+     * Constructs a new CustomerDetails holding the given customer's current details.
+     *
+     * @param customer The customer whose details to hold.
+     */
+    public CustomerDetails(Customer customer) {
+        this.name = customer.getName();
+        this.phoneNumber = customer.getPhoneNumber();
+        this.address = customer.getAddress();
+    }
+
+    /**
+     * Returns the name of the customer.
+     *
+     * @return The name of the customer.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the phone number of the customer.
+     *
+     * @return The phone number of the customer.
+     */
+    public int getPhoneNumber() {
+        return phoneNumber;
+    }
+
+    /**
+     * Returns the address of the customer.
+     *
+     * @return The address of the customer, which may be null.
+     */
+    public String getAddress() {
+        return address;
+    }
+}
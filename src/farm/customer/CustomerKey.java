@@ -0,0 +1,89 @@
+package farm.customer;
+
+/**
+ * An immutable identifier for a customer, made up of the name and phone number
+ * by which customers are looked up in the address book.
+ * <p>
+ * Unlike {@link Customer}, which can be modified after creation, a key never changes, so it is
+ * safe to use in hash based collections. Its hash code is computed once on construction.
+ * </p>
+ */
+public final class CustomerKey {
+    private final String name;
+    private final int phoneNumber;
+    private final int hash;
+
+    /**
+     * Constructs a new CustomerKey for the given name and phone number.
+     *
+     * @param name        The name of the customer.
+     * @param phoneNumber The phone number of the customer.
+     * @throws NullPointerException if the name is null.
+     */
+    public CustomerKey(String name, int phoneNumber) {
+        if (name == null) {
+            throw new NullPointerException("Customer name must not be null.");
+        }
+        this.name = name;
+        this.phoneNumber = phoneNumber;
+        this.hash = 31 * name.hashCode() + phoneNumber;
+    }
+
+    /**
+     * Returns the name of the customer this key identifies.
+     *
+     * @return The name of the customer.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the phone number of the customer this key identifies.
+     *
+     * @return The phone number of the customer.
+     */
+    public int getPhoneNumber() {
+        return phoneNumber;
+    }
+
+    /**
+     * Returns a string representation of the key.
+     *
+     * @return A string describing the key.
+     */
+    @Override
+    public String toString() {
+        return name + " (" + phoneNumber + ")";
+    }
+
+    /**
+     * Compares this key to the specified object. The result is true if and only if the argument
+     * is a CustomerKey with the same name and phone number as this key.
+     *
+     * @param o The object to compare this CustomerKey against.
+     * @return true if the given object is an equivalent key, false otherwise.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CustomerKey other)) {
+            return false;
+        }
+        return hash == other.hash
+                && phoneNumber == other.phoneNumber
+                && name.equals(other.name);
+    }
+
+    /**
+     * Returns the precomputed hash code of this key.
+     *
+     * @return A hash code value for this key.
+     */
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
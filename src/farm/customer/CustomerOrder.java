@@ -0,0 +1,39 @@
+package farm.customer;
+
+import java.util.Comparator;
+
+/**
+ * The orders in which customer records can be listed from an {@link AddressBook}.
+ */
+public enum CustomerOrder {
+    /**
+     * The order in which customers were added to the address book.
+     */
+    INSERTION(null),
+    /**
+     * Alphabetical by name, with ties broken by phone number.
+     */
+    NAME(Comparator.comparing(Customer::getName)
+            .thenComparingInt(Customer::getPhoneNumber)),
+    /**
+     * Ascending by phone number, with ties broken by name.
+     */
+    PHONE_NUMBER(Comparator.comparingInt(Customer::getPhoneNumber)
+            .thenComparing(Customer::getName)),
+    ;
+
+    private final Comparator<Customer> comparator;
+
+    CustomerOrder(Comparator<Customer> comparator) {
+        this.comparator = comparator;
+    }
+
+    /**
+     * Retrieve the comparator used to sort customers in this order.
+     *
+     * @return the comparator for this order, or null for insertion order.
+     */
+    public Comparator<Customer> getComparator() {
+        return comparator;
+    }
+}
@@ -0,0 +1,117 @@
+package farm.customer;
+
+import java.util.List;
+
+/**
+ * A single page of customer records retrieved from an {@link AddressBook}.
+ * <p>
+ * A page remembers where it sits within the full listing, so the offsets of the
+ * neighbouring pages can be used to continue listing in either direction.
+ * </p>
+ */
+public class CustomerPage {
+    private final List<Customer> records;
+    private final int offset;
+    private final int limit;
+    private final int totalRecords;
+    private final CustomerOrder order;
+
+    /**
+     * Constructs a new CustomerPage.
+     *
+     * @param records      The customers on this page.
+     * @param offset       The position of the first record on this page within the full listing.
+     * @param limit        The maximum number of records per page.
+     * @param totalRecords The number of records in the full listing.
+     * @param order        The order the listing is sorted in.
+     */
+    public CustomerPage(List<Customer> records, int offset, int limit,
+                        int totalRecords, CustomerOrder order) {
+        this.records = List.copyOf(records);
+        this.offset = offset;
+        this.limit = limit;
+        this.totalRecords = totalRecords;
+        this.order = order;
+    }
+
+    /**
+     * Returns the customers on this page.
+     *
+     * @return An unmodifiable list of the customers on this page.
+     */
+    public List<Customer> getRecords() {
+        return records;
+    }
+
+    /**
+     * Returns the position of the first record on this page within the full listing.
+     *
+     * @return The offset of this page.
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Returns the maximum number of records per page.
+     *
+     * @return The page size limit.
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Returns the number of records in the full listing.
+     *
+     * @return The total number of records.
+     */
+    public int getTotalRecords() {
+        return totalRecords;
+    }
+
+    /**
+     * Returns the order the listing is sorted in.
+     *
+     * @return The order of the listing.
+     */
+    public CustomerOrder getOrder() {
+        return order;
+    }
+
+    /**
+     * Determines if there are records after this page.
+     *
+     * @return true if a following page exists, false otherwise.
+     */
+    public boolean hasNext() {
+        return offset + records.size() < totalRecords;
+    }
+
+    /**
+     * Determines if there are records before this page.
+     *
+     * @return true if a preceding page exists, false otherwise.
+     */
+    public boolean hasPrevious() {
+        return offset > 0;
+    }
+
+    /**
+     * Returns the offset at which the following page begins.
+     *
+     * @return The offset of the next page.
+     */
+    public int getNextOffset() {
+        return offset + records.size();
+    }
+
+    /**
+     * Returns the offset at which the preceding page begins.
+     *
+     * @return The offset of the previous page.
+     */
+    public int getPreviousOffset() {
+        return Math.max(0, offset - limit);
+    }
+}
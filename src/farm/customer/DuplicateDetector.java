@@ -0,0 +1,219 @@
+package farm.customer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Finds customers whose details are close enough to be the same person entered twice,
+ * such as "Jon Smith" and "John Smith" sharing a phone number.
+ * <p>
+ * Names are broken into character trigrams and kept in an inverted index from trigram to
+ * the rows of the customers containing it, alongside an index of rows by phone number.
+ * A lookup only scores customers that share at least one trigram or the phone number, so
+ * no all-pairs comparison is ever made. Trigrams shared by a very large number of customers
+ * carry little information and are skipped when gathering candidates.
+ * </p>
+ * <p>
+ * Two customers are reported as likely duplicates when the Dice similarity of their name
+ * trigrams meets the threshold and they also share a phone number or an address.
+ * </p>
+ */
+class DuplicateDetector {
+    private static final int GRAM_LENGTH = 3;
+    private static final int MAX_POSTINGS_SCANNED = 1024;
+    private static final Pattern SEPARATORS = Pattern.compile("[^a-z0-9]+");
+
+    private final List<Customer> customers;
+    private final double threshold;
+    private final Map<String, Postings> gramIndex;
+    private final Map<Integer, Postings> phoneIndex;
+    private final List<String[]> gramsByRow;
+
+    /**
+     * Constructs a detector over the given list of customers, which is indexed row by row
+     * as customers are added to it.
+     *
+     * @param customers The customers being indexed, addressed by their position in this list.
+     * @param threshold The minimum name similarity, between 0 and 1, for a likely duplicate.
+     */
+    DuplicateDetector(List<Customer> customers, double threshold) {
+        if (threshold < 0.0 || threshold > 1.0) {
+            throw new IllegalArgumentException("Threshold must be between 0 and 1.");
+        }
+        this.customers = customers;
+        this.threshold = threshold;
+        this.gramIndex = new HashMap<>();
+        this.phoneIndex = new HashMap<>();
+        this.gramsByRow = new ArrayList<>();
+    }
+
+    /**
+     * Indexes the customer stored at the given row. Rows must be indexed in order.
+     *
+     * @param row The position of the customer in the indexed list.
+     */
+    void index(int row) {
+        Customer customer = customers.get(row);
+        String[] grams = grams(customer.getName());
+        gramsByRow.add(grams);
+        for (String gram : grams) {
+            gramIndex.computeIfAbsent(gram, g -> new Postings()).add(row);
+        }
+        phoneIndex.computeIfAbsent(customer.getPhoneNumber(), p -> new Postings()).add(row);
+    }
+
+    /**
+     * Re-indexes the customer stored at the given row after its name or phone number changed.
+     *
+     * @param row The position of the customer in the indexed list.
+     * @param previousPhoneNumber The phone number the customer was indexed under.
+     */
+    void reindex(int row, int previousPhoneNumber) {
+        for (String gram : gramsByRow.get(row)) {
+            gramIndex.get(gram).remove(row);
+        }
+        phoneIndex.get(previousPhoneNumber).remove(row);
+
+        Customer customer = customers.get(row);
+        String[] grams = grams(customer.getName());
+        gramsByRow.set(row, grams);
+        for (String gram : grams) {
+            gramIndex.computeIfAbsent(gram, g -> new Postings()).insert(row);
+        }
+        phoneIndex.computeIfAbsent(customer.getPhoneNumber(), p -> new Postings()).insert(row);
+    }
+
+    /**
+     * Finds the rows of indexed customers that are likely duplicates of the given customer.
+     *
+     * @param customer The customer to check.
+     * @param belowRow Only rows strictly below this one are considered.
+     * @return The matching rows, most similar first.
+     */
+    List<Integer> findLikelyDuplicates(Customer customer, int belowRow) {
+        String[] grams = grams(customer.getName());
+        Set<Integer> candidates = new HashSet<>();
+        for (String gram : grams) {
+            Postings postings = gramIndex.get(gram);
+            if (postings == null || postings.size > MAX_POSTINGS_SCANNED) {
+                continue;
+            }
+            for (int i = 0; i < postings.size && postings.rows[i] < belowRow; i++) {
+                candidates.add(postings.rows[i]);
+            }
+        }
+        Postings samePhone = phoneIndex.get(customer.getPhoneNumber());
+        if (samePhone != null) {
+            for (int i = 0; i < samePhone.size && samePhone.rows[i] < belowRow; i++) {
+                candidates.add(samePhone.rows[i]);
+            }
+        }
+
+        List<Integer> matches = new ArrayList<>();
+        Map<Integer, Double> scores = new HashMap<>();
+        String address = normalise(customer.getAddress());
+        for (int row : candidates) {
+            Customer candidate = customers.get(row);
+            if (candidate.getKey().equals(customer.getKey())) {
+                continue;
+            }
+            boolean related = candidate.getPhoneNumber() == customer.getPhoneNumber()
+                    || normalise(candidate.getAddress()).equals(address);
+            if (!related) {
+                continue;
+            }
+            int shared = sharedGrams(grams, gramsByRow.get(row));
+            double similarity = 2.0 * shared / (grams.length + gramsByRow.get(row).length);
+            if (similarity >= threshold) {
+                matches.add(row);
+                scores.put(row, similarity);
+            }
+        }
+        matches.sort((a, b) -> Double.compare(scores.get(b), scores.get(a)));
+        return matches;
+    }
+
+    /**
+     * Returns the name similarity of two customers, between 0 and 1.
+     *
+     * @param first The first customer.
+     * @param second The second customer.
+     * @return The Dice similarity of the two customers' name trigrams.
+     */
+    static double similarity(Customer first, Customer second) {
+        String[] a = grams(first.getName());
+        String[] b = grams(second.getName());
+        return 2.0 * sharedGrams(a, b) / (a.length + b.length);
+    }
+
+    private static int sharedGrams(String[] a, String[] b) {
+        Set<String> other = new HashSet<>(Arrays.asList(b));
+        int shared = 0;
+        for (String gram : a) {
+            if (other.contains(gram)) {
+                shared++;
+            }
+        }
+        return shared;
+    }
+
+    private static String[] grams(String name) {
+        String padded = " " + normalise(name) + " ";
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + GRAM_LENGTH));
+        }
+        return grams.toArray(new String[0]);
+    }
+
+    private static String normalise(String value) {
+        if (value == null) {
+            return "";
+        }
+        return SEPARATORS.matcher(value.toLowerCase()).replaceAll(" ").trim();
+    }
+
+    /**
+     * A growable list of rows in ascending order.
+     */
+    private static final class Postings {
+        private int[] rows = new int[4];
+        private int size;
+
+        private void add(int row) {
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            rows[size++] = row;
+        }
+
+        private void insert(int row) {
+            int position = Arrays.binarySearch(rows, 0, size, row);
+            if (position >= 0) {
+                return;
+            }
+            position = -position - 1;
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            System.arraycopy(rows, position, rows, position + 1, size - position);
+            rows[position] = row;
+            size++;
+        }
+
+        private void remove(int row) {
+            int position = Arrays.binarySearch(rows, 0, size, row);
+            if (position >= 0) {
+                System.arraycopy(rows, position + 1, rows, position, size - position - 1);
+                size--;
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package farm.customer;
+
+/**
+ * A pair of customers in an address book that are likely to be the same person.
+ */
+public class PossibleDuplicate {
+    private final Customer existing;
+    private final Customer candidate;
+    private final double similarity;
+
+    /**
+     * Constructs a new PossibleDuplicate.
+     *
+     * @param existing   The customer that was added to the address book first.
+     * @param candidate  The customer that appears to duplicate it.
+     * @param similarity How similar the two customers' names are, between 0 and 1.
+     */
+    public PossibleDuplicate(Customer existing, Customer candidate, double similarity) {
+        this.existing = existing;
+        this.candidate = candidate;
+        this.similarity = similarity;
+    }
+
+    /**
+     * Returns the customer that was added to the address book first.
+     *
+     * @return The existing customer.
+     */
+    public Customer getExisting() {
+        return existing;
+    }
+
+    /**
+     * Returns the customer that appears to duplicate the existing one.
+     *
+     * @return The candidate duplicate.
+     */
+    public Customer getCandidate() {
+        return candidate;
+    }
+
+    /**
+     * Returns how similar the two customers' names are.
+     *
+     * @return The name similarity, between 0 and 1.
+     */
+    public double getSimilarity() {
+        return similarity;
+    }
+
+    /**
+     * Returns a string representation of the possible duplicate.
+     *
+     * @return A string describing both customers.
+     */
+    @Override
+    public String toString() {
+        return existing + " ~ " + candidate + String.format(" (%.0f%% similar)", similarity * 100);
+    }
+}
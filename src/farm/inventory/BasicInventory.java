@@ -16,13 +16,13 @@ import java.util.List;
  */
 public class BasicInventory implements Inventory {
 
-    private final List<Product> inventory;
+    private final StockList inventory;
 
     /**
      * Constructs a new BasicInventory instance with an empty product list.
      */
     public BasicInventory() {
-        this.inventory = new ArrayList<>();
+        this.inventory = new StockList();
     }
 
     /**
@@ -90,6 +90,17 @@ public class BasicInventory implements Inventory {
         return new ArrayList<>(inventory);
     }
 
+    /**
+     * Retrieves the stock held in the inventory without copying it, as a read-only list that
+     * later changes to the inventory do not affect.
+     *
+     * @return a snapshot of the products currently stored in the inventory.
+     */
+    @Override
+    public List<Product> snapshotProducts() {
+        return inventory.snapshot();
+    }
+
     /**
      * Removes the first product with the given barcode from the inventory.
      *
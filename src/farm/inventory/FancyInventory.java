@@ -15,13 +15,13 @@ import java.util.*;
  */
 public class FancyInventory implements Inventory {
 
-    private static List<Product> products;
+    private final StockList products;
 
     /**
      * Constructs an empty FancyInventory.
      */
     public FancyInventory() {
-        products = new ArrayList<>();
+        products = new StockList();
     }
 
     /**
@@ -150,6 +150,17 @@ public class FancyInventory implements Inventory {
         return sortedProducts;
     }
 
+    /**
+     * Retrieves the stock held in the inventory without copying or sorting it, as a read-only
+     * list that later changes to the inventory do not affect.
+     *
+     * @return A snapshot of the products currently stored in the inventory, in stocking order.
+     */
+    @Override
+    public List<Product> snapshotProducts() {
+        return products.snapshot();
+    }
+
     /**
      * Get the quantity of a specific product in the inventory.
      * used chatgpt to help
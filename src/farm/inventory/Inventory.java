@@ -52,6 +52,19 @@ public interface Inventory {
      */
     List<Product> getAllProducts();
 
+    /**
+     * Retrieves the stock held in the inventory as a read-only list that later changes to the
+     * inventory do not affect, such as for saving it while the inventory carries on changing.
+     * Unlike {@link #getAllProducts()}, the products are in the order the inventory stores them,
+     * and implementations may share the list with the inventory until it next changes, rather
+     * than copying the stock.
+     *
+     * @return a snapshot of the products currently stored in the inventory.
+     */
+    default List<Product> snapshotProducts() {
+        return List.copyOf(getAllProducts());
+    }
+
     /**
      * Removes the first product with the specified barcode from the inventory.
      *
@@ -0,0 +1,101 @@
+package farm.inventory;
+
+import farm.inventory.product.Product;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * The products stored by an inventory, in a list that can hand out snapshots without copying.
+ * <p>
+ * A snapshot shares the list's array, and the first change after it that would write to the
+ * part of the array the snapshot covers copies the array first. Taking a snapshot is therefore
+ * constant time, the copy is paid at most once per snapshot, and products added at the end of
+ * the list after a snapshot do not copy it at all.
+ * </p>
+ */
+class StockList extends AbstractList<Product> implements RandomAccess {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private Product[] products;
+    private int size;
+    private int shared;
+
+    /**
+     * Constructs an empty list.
+     */
+    StockList() {
+        this.products = new Product[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Returns a read-only list of the products stored now, which later changes to this list
+     * do not affect.
+     */
+    List<Product> snapshot() {
+        shared = size;
+        return Collections.unmodifiableList(Arrays.asList(products).subList(0, size));
+    }
+
+    @Override
+    public Product get(int index) {
+        Objects.checkIndex(index, size);
+        return products[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Product set(int index, Product product) {
+        Objects.checkIndex(index, size);
+        prepareWrite(index, size);
+        Product previous = products[index];
+        products[index] = product;
+        return previous;
+    }
+
+    @Override
+    public void add(int index, Product product) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length "
+                    + size);
+        }
+        prepareWrite(index, size + 1);
+        System.arraycopy(products, index, products, index + 1, size - index);
+        products[index] = product;
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public Product remove(int index) {
+        Objects.checkIndex(index, size);
+        prepareWrite(index, size);
+        Product removed = products[index];
+        System.arraycopy(products, index + 1, products, index, size - index - 1);
+        products[--size] = null;
+        modCount++;
+        return removed;
+    }
+
+    /**
+     * Makes sure the array can hold the given number of products, and that writing to it from
+     * the given index onwards does not change a snapshot, copying it if not.
+     */
+    private void prepareWrite(int index, int capacity) {
+        if (capacity > products.length) {
+            products = Arrays.copyOf(products, Math.max(capacity, products.length * 2));
+            shared = 0;
+        } else if (index < shared) {
+            products = products.clone();
+            shared = 0;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package farm.inventory.product;
 
 import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.PriceTable;
 import farm.inventory.product.data.Quality;
 
 import java.util.Objects;
@@ -18,6 +19,22 @@ public abstract class Product {
         this.quality = quality;
     }
 
+    /**
+     * Creates a new product of the type identified by the given barcode.
+     *
+     * @param barcode The barcode of the product to create.
+     * @param quality The quality of the product to create.
+     * @return A new product with the given barcode and quality.
+     */
+    public static Product create(Barcode barcode, Quality quality) {
+        return switch (barcode) {
+            case EGG -> new Egg(quality);
+            case MILK -> new Milk(quality);
+            case JAM -> new Jam(quality);
+            case WOOL -> new Wool(quality);
+        };
+    }
+
     /**
      * Returns the barcode of the product.
      *
@@ -46,13 +63,13 @@ public abstract class Product {
     }
 
     /**
-     * Returns the base price of the product.
-     * Subclasses must implement this to provide the specific price of the product.
+     * Returns the price of the product, which depends on both its type and its quality.
+     * Prices are looked up in the default {@link PriceTable}.
      *
-     * @return The base price of the product.
+     * @return The price of the product, in cents.
      */
     public int getBasePrice() {
-        return barcode.getBasePrice();
+        return PriceTable.getDefault().getPrice(barcode, quality);
     }
 
     /**
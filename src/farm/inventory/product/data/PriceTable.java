@@ -0,0 +1,110 @@
+package farm.inventory.product.data;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The price of every combination of product type and quality.
+ * <p>
+ * Each price is a barcode's base price scaled by a percentage multiplier for the product's quality,
+ * so that higher quality products sell for more. Prices are computed once, when the table is built,
+ * into a flat array indexed by {@link Barcode} ordinal, then {@link Quality} ordinal, so looking one
+ * up is a single array read.
+ * </p>
+ * <p>
+ * Tables are immutable. The {@link #getDefault() default table} gives each product its list
+ * price; a farm that prices qualities differently builds its own table and gives it to the
+ * {@link farm.sales.PricingEngine} its transactions are priced by, so that their unit prices,
+ * subtotals and receipts all come from the same table.
+ * </p>
+ */
+public final class PriceTable {
+    private static final Barcode[] BARCODES = Barcode.values();
+    private static final Quality[] QUALITIES = Quality.values();
+
+    /**
+     * The default multiplier for each quality, as a percentage of the base price.
+     */
+    public static final Map<Quality, Integer> DEFAULT_MULTIPLIERS = Map.of(
+            Quality.REGULAR, 100,
+            Quality.SILVER, 125,
+            Quality.GOLD, 150,
+            Quality.IRIDIUM, 200);
+
+    private static final PriceTable DEFAULT_TABLE = new PriceTable(DEFAULT_MULTIPLIERS);
+
+    private final int[] prices;
+    private final int[] multipliers;
+
+    /**
+     * Constructs a new PriceTable with the given quality multipliers.
+     * Qualities missing from the map are sold at the base price.
+     *
+     * @param multipliers A map from each quality to its price as a percentage of the base price.
+     * @throws IllegalArgumentException if any multiplier is negative.
+     */
+    public PriceTable(Map<Quality, Integer> multipliers) {
+        this.multipliers = new int[QUALITIES.length];
+        for (Quality quality : QUALITIES) {
+            int multiplier = multipliers.getOrDefault(quality, 100);
+            if (multiplier < 0) {
+                throw new IllegalArgumentException("Price multipliers cannot be negative.");
+            }
+            this.multipliers[quality.ordinal()] = multiplier;
+        }
+        this.prices = new int[BARCODES.length * QUALITIES.length];
+        for (Barcode barcode : BARCODES) {
+            for (Quality quality : QUALITIES) {
+                prices[index(barcode, quality)] =
+                        barcode.getBasePrice() * this.multipliers[quality.ordinal()] / 100;
+            }
+        }
+    }
+
+    /**
+     * Returns the table of list prices, built with the {@link #DEFAULT_MULTIPLIERS}.
+     *
+     * @return The default price table.
+     */
+    public static PriceTable getDefault() {
+        return DEFAULT_TABLE;
+    }
+
+    /**
+     * Returns the price of a product of the given type and quality.
+     *
+     * @param barcode The type of product.
+     * @param quality The quality of product.
+     * @return The price in cents.
+     */
+    public int getPrice(Barcode barcode, Quality quality) {
+        return prices[index(barcode, quality)];
+    }
+
+    /**
+     * Returns the multiplier applied to the base price of products of the given quality.
+     *
+     * @param quality The quality of product.
+     * @return The multiplier, as a percentage of the base price.
+     */
+    public int getMultiplier(Quality quality) {
+        return multipliers[quality.ordinal()];
+    }
+
+    /**
+     * Returns the multipliers this table was built with.
+     *
+     * @return A map from each quality to its multiplier, as a percentage of the base price.
+     */
+    public Map<Quality, Integer> getMultipliers() {
+        Map<Quality, Integer> result = new EnumMap<>(Quality.class);
+        for (Quality quality : QUALITIES) {
+            result.put(quality, multipliers[quality.ordinal()]);
+        }
+        return result;
+    }
+
+    private static int index(Barcode barcode, Quality quality) {
+        return barcode.ordinal() * QUALITIES.length + quality.ordinal();
+    }
+}
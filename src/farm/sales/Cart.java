@@ -1,21 +1,52 @@
 package farm.sales;
 
 import farm.inventory.product.Product;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * Represents a shopping cart that holds products for purchase.
+ * <p>
+ * Since products of the same type and quality are interchangeable, the cart only stores how many
+ * of each barcode and quality it holds, along with running subtotals that are updated as products
+ * are added. The size of the cart therefore never affects how much memory it uses, and its
+ * quantities and totals are available in constant time. The cart can still be expanded into the
+ * full list of products when one is needed, with products listed in barcode order, then quality order.
+ * </p>
  */
 public class Cart {
-    private final List<Product> contents;
+    private static final Barcode[] BARCODES = Barcode.values();
+    private static final Quality[] QUALITIES = Quality.values();
+
+    private final int[] counts;
+    private final int[] subtotals;
+    private int size;
+    private int subtotal;
 
     /**
      * Constructs a new Cart with an empty list of products.
      */
     public Cart() {
-        this.contents = new ArrayList<>();
+        this.counts = new int[BARCODES.length * QUALITIES.length];
+        this.subtotals = new int[BARCODES.length];
+        this.size = 0;
+        this.subtotal = 0;
+    }
+
+    /**
+     * Constructs a new Cart holding the same products as the given cart.
+     *
+     * @param other The cart to copy.
+     */
+    public Cart(Cart other) {
+        this.counts = other.counts.clone();
+        this.subtotals = other.subtotals.clone();
+        this.size = other.size;
+        this.subtotal = other.subtotal;
     }
 
     /**
@@ -24,7 +55,11 @@ public class Cart {
      * @param product The product to be added.
      */
     public void addProduct(Product product) {
-        contents.add(product);
+        int price = product.getBasePrice();
+        counts[index(product.getBarcode(), product.getQuality())]++;
+        subtotals[product.getBarcode().ordinal()] += price;
+        subtotal += price;
+        size++;
     }
 
     /**
@@ -33,14 +68,83 @@ public class Cart {
      * @return A list of products in the cart.
      */
     public List<Product> getContents() {
-        return new ArrayList<>(contents);
+        List<Product> contents = new ArrayList<>(size);
+        for (Barcode barcode : BARCODES) {
+            for (Quality quality : QUALITIES) {
+                int count = counts[index(barcode, quality)];
+                for (int i = 0; i < count; i++) {
+                    contents.add(Product.create(barcode, quality));
+                }
+            }
+        }
+        return contents;
+    }
+
+    /**
+     * Returns the number of products in the cart.
+     *
+     * @return The number of products.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of products of the given type in the cart.
+     *
+     * @param barcode The type of product.
+     * @return The number of products of that type.
+     */
+    public int getQuantity(Barcode barcode) {
+        int quantity = 0;
+        int base = barcode.ordinal() * QUALITIES.length;
+        for (int i = 0; i < QUALITIES.length; i++) {
+            quantity += counts[base + i];
+        }
+        return quantity;
+    }
+
+    /**
+     * Returns the number of products of the given type and quality in the cart.
+     *
+     * @param barcode The type of product.
+     * @param quality The quality of product.
+     * @return The number of products of that type and quality.
+     */
+    public int getQuantity(Barcode barcode, Quality quality) {
+        return counts[index(barcode, quality)];
+    }
+
+    /**
+     * Returns the combined price of every product in the cart, at the default prices and
+     * before any promotion.
+     *
+     * @return The subtotal, in cents.
+     */
+    public int getSubtotal() {
+        return subtotal;
+    }
+
+    /**
+     * Returns the combined price of the products of the given type in the cart, at the default
+     * prices and before any promotion. Read by {@link PricingEngine} in place of pricing each
+     * quality again.
+     *
+     * @param barcode The type of product.
+     * @return The subtotal for that type, in cents.
+     */
+    public int getSubtotal(Barcode barcode) {
+        return subtotals[barcode.ordinal()];
     }
 
     /**
      * Empties the cart, removing all products.
      */
     public void setEmpty() {
-        contents.clear();
+        Arrays.fill(counts, 0);
+        Arrays.fill(subtotals, 0);
+        size = 0;
+        subtotal = 0;
     }
 
     /**
@@ -49,6 +153,10 @@ public class Cart {
      * @return true if the cart is empty, false otherwise.
      */
     public boolean isEmpty() {
-        return contents.isEmpty();
+        return size == 0;
+    }
+
+    private static int index(Barcode barcode, Quality quality) {
+        return barcode.ordinal() * QUALITIES.length + quality.ordinal();
     }
 }
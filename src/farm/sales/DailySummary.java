@@ -0,0 +1,187 @@
+package farm.sales;
+
+import farm.inventory.product.data.Barcode;
+import farm.sales.transaction.SpecialSaleTransaction;
+import farm.sales.transaction.Transaction;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.LocalDate;
+
+/**
+ * The rolled up totals of every transaction on one day whose detail is no longer retained
+ * by a {@link TransactionHistory}.
+ * <p>
+ * A summary holds the day's transaction count and earnings, and the units sold, gross
+ * earnings and special sale discounts of each product type, in place of the transactions
+ * themselves and the customers they reference.
+ * </p>
+ */
+public class DailySummary {
+    private static final Barcode[] BARCODES = Barcode.values();
+
+    private final LocalDate date;
+    private int transactionCount;
+    private long grossEarnings;
+    private final long[] unitsSold;
+    private final long[] grossEarningsByType;
+    private final long[] discountedUnits;
+    private final long[] discountPercentages;
+
+    /**
+     * Constructs an empty summary of the given day.
+     *
+     * @param date the day summarised.
+     */
+    DailySummary(LocalDate date) {
+        this.date = date;
+        this.unitsSold = new long[BARCODES.length];
+        this.grossEarningsByType = new long[BARCODES.length];
+        this.discountedUnits = new long[BARCODES.length];
+        this.discountPercentages = new long[BARCODES.length];
+    }
+
+    /**
+     * Constructs a copy of the given summary, which is unaffected by later rollups.
+     */
+    DailySummary(DailySummary other) {
+        this.date = other.date;
+        this.transactionCount = other.transactionCount;
+        this.grossEarnings = other.grossEarnings;
+        this.unitsSold = other.unitsSold.clone();
+        this.grossEarningsByType = other.grossEarningsByType.clone();
+        this.discountedUnits = other.discountedUnits.clone();
+        this.discountPercentages = other.discountPercentages.clone();
+    }
+
+    /**
+     * Adds a transaction made on this summary's day to its totals.
+     */
+    void add(Transaction transaction) {
+        transactionCount++;
+        grossEarnings += transaction.getTotal();
+        for (Barcode type : BARCODES) {
+            int quantity = transaction.getPurchaseQuantity(type);
+            if (quantity > 0) {
+                unitsSold[type.ordinal()] += quantity;
+                grossEarningsByType[type.ordinal()] += transaction.getUndiscountedSubtotal(type);
+                if (transaction instanceof SpecialSaleTransaction specialTransaction) {
+                    discountedUnits[type.ordinal()] += quantity;
+                    discountPercentages[type.ordinal()] += (long) quantity
+                            * specialTransaction.getDiscountAmount(type);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes this summary, for {@link HistoryRollup#encode}.
+     */
+    void write(DataOutput out) throws IOException {
+        out.writeLong(date.toEpochDay());
+        out.writeInt(transactionCount);
+        out.writeLong(grossEarnings);
+        for (int i = 0; i < BARCODES.length; i++) {
+            out.writeLong(unitsSold[i]);
+            out.writeLong(grossEarningsByType[i]);
+            out.writeLong(discountedUnits[i]);
+            out.writeLong(discountPercentages[i]);
+        }
+    }
+
+    /**
+     * Reads a summary written by {@link #write(DataOutput)}.
+     */
+    static DailySummary read(DataInput in) throws IOException {
+        DailySummary summary = new DailySummary(LocalDate.ofEpochDay(in.readLong()));
+        summary.transactionCount = in.readInt();
+        summary.grossEarnings = in.readLong();
+        for (int i = 0; i < BARCODES.length; i++) {
+            summary.unitsSold[i] = in.readLong();
+            summary.grossEarningsByType[i] = in.readLong();
+            summary.discountedUnits[i] = in.readLong();
+            summary.discountPercentages[i] = in.readLong();
+        }
+        return summary;
+    }
+
+    /**
+     * Retrieves the day this summary covers.
+     *
+     * @return the day summarised.
+     */
+    public LocalDate getDate() {
+        return date;
+    }
+
+    /**
+     * Retrieves the number of transactions rolled up into this summary.
+     *
+     * @return the number of transactions.
+     */
+    public int getTransactionCount() {
+        return transactionCount;
+    }
+
+    /**
+     * Retrieves the sum of the totals reported by the summarised transactions.
+     *
+     * @return the gross earnings, in cents.
+     */
+    public long getGrossEarnings() {
+        return grossEarnings;
+    }
+
+    /**
+     * Retrieves the undiscounted earnings from sales of a particular product type.
+     *
+     * @param type the Barcode of the product of interest.
+     * @return the gross earnings from that product type, in cents.
+     */
+    public long getGrossEarnings(Barcode type) {
+        return grossEarningsByType[type.ordinal()];
+    }
+
+    /**
+     * Retrieves the number of units sold of a particular product type.
+     *
+     * @param type the Barcode of the product of interest.
+     * @return the number of units sold.
+     */
+    public long getUnitsSold(Barcode type) {
+        return unitsSold[type.ordinal()];
+    }
+
+    /**
+     * Retrieves the number of units of a particular product type sold in special sales.
+     *
+     * @param type the Barcode of the product of interest.
+     * @return the number of discounted units sold.
+     */
+    public long getDiscountedUnits(Barcode type) {
+        return discountedUnits[type.ordinal()];
+    }
+
+    /**
+     * Retrieves the sum of the discount percentages given on each unit of a particular
+     * product type sold in special sales.
+     *
+     * @param type the Barcode of the product of interest.
+     * @return the summed discount percentages.
+     */
+    public long getDiscountPercentages(Barcode type) {
+        return discountPercentages[type.ordinal()];
+    }
+
+    /**
+     * Returns a string representation of this summary.
+     *
+     * @return the day, its transaction count and its gross earnings.
+     */
+    @Override
+    public String toString() {
+        return String.format("%s: %d transactions, $%d.%02d",
+                date, transactionCount, grossEarnings / 100, grossEarnings % 100);
+    }
+}
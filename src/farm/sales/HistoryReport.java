@@ -0,0 +1,211 @@
+package farm.sales;
+
+import farm.inventory.product.data.Barcode;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A summary of the sales in a transaction history, as produced by {@link ParallelHistoryAnalytics}.
+ * <p>
+ * Reports are built by merging the partial reports of disjoint chunks of the history,
+ * so every figure is kept as a sum that can be combined by addition, and averages are only
+ * derived when asked for.
+ * </p>
+ */
+public class HistoryReport {
+    private static final int BARCODE_COUNT = Barcode.values().length;
+
+    private final int[] spendUpperBounds;
+    private long transactionCount;
+    private long grossEarnings;
+    private final long[] unitsSold;
+    private final long[] grossEarningsByType;
+    private final long[] specialSaleUnits;
+    private final long[] discountPercentages;
+    private final long[] spendDistribution;
+
+    /**
+     * Constructs a new, empty report using the given spend distribution buckets.
+     *
+     * @param spendUpperBounds The exclusive upper bound of each spend bucket, in ascending order.
+     */
+    HistoryReport(int[] spendUpperBounds) {
+        this.spendUpperBounds = spendUpperBounds;
+        this.unitsSold = new long[BARCODE_COUNT];
+        this.grossEarningsByType = new long[BARCODE_COUNT];
+        this.specialSaleUnits = new long[BARCODE_COUNT];
+        this.discountPercentages = new long[BARCODE_COUNT];
+        this.spendDistribution = new long[spendUpperBounds.length + 1];
+    }
+
+    /**
+     * Adds the figures for a range of transactions in the given log to this report.
+     */
+    void accumulate(LineItemLog log, int fromTransaction, int toTransaction) {
+        int fromLine = log.getFirstLine(fromTransaction);
+        int toLine = toTransaction < log.getTransactionCount()
+                ? log.getFirstLine(toTransaction) : log.getLineCount();
+        log.accumulateLines(fromLine, toLine, unitsSold, grossEarningsByType,
+                specialSaleUnits, discountPercentages);
+        grossEarnings += log.accumulateTotals(fromTransaction, toTransaction,
+                spendUpperBounds, spendDistribution);
+        transactionCount += toTransaction - fromTransaction;
+    }
+
+    /**
+     * Adds every figure in the other report, covering a disjoint part of the history, to this one.
+     */
+    void merge(HistoryReport other) {
+        transactionCount += other.transactionCount;
+        grossEarnings += other.grossEarnings;
+        for (int i = 0; i < BARCODE_COUNT; i++) {
+            unitsSold[i] += other.unitsSold[i];
+            grossEarningsByType[i] += other.grossEarningsByType[i];
+            specialSaleUnits[i] += other.specialSaleUnits[i];
+            discountPercentages[i] += other.discountPercentages[i];
+        }
+        for (int i = 0; i < spendDistribution.length; i++) {
+            spendDistribution[i] += other.spendDistribution[i];
+        }
+    }
+
+    /**
+     * Writes this report, for {@link HistoryRollup#encode}.
+     */
+    void write(DataOutput out) throws IOException {
+        out.writeInt(spendUpperBounds.length);
+        for (int bound : spendUpperBounds) {
+            out.writeInt(bound);
+        }
+        out.writeLong(transactionCount);
+        out.writeLong(grossEarnings);
+        for (int i = 0; i < BARCODE_COUNT; i++) {
+            out.writeLong(unitsSold[i]);
+            out.writeLong(grossEarningsByType[i]);
+            out.writeLong(specialSaleUnits[i]);
+            out.writeLong(discountPercentages[i]);
+        }
+        for (long count : spendDistribution) {
+            out.writeLong(count);
+        }
+    }
+
+    /**
+     * Reads a report written by {@link #write(DataOutput)}.
+     */
+    static HistoryReport read(DataInput in) throws IOException {
+        int[] spendUpperBounds = new int[in.readInt()];
+        for (int i = 0; i < spendUpperBounds.length; i++) {
+            spendUpperBounds[i] = in.readInt();
+        }
+        HistoryReport report = new HistoryReport(spendUpperBounds);
+        report.transactionCount = in.readLong();
+        report.grossEarnings = in.readLong();
+        for (int i = 0; i < BARCODE_COUNT; i++) {
+            report.unitsSold[i] = in.readLong();
+            report.grossEarningsByType[i] = in.readLong();
+            report.specialSaleUnits[i] = in.readLong();
+            report.discountPercentages[i] = in.readLong();
+        }
+        for (int i = 0; i < report.spendDistribution.length; i++) {
+            report.spendDistribution[i] = in.readLong();
+        }
+        return report;
+    }
+
+    /**
+     * Returns the number of transactions covered by this report.
+     *
+     * @return The number of transactions.
+     */
+    public long getTransactionCount() {
+        return transactionCount;
+    }
+
+    /**
+     * Returns the sum of every transaction's total.
+     *
+     * @return The gross earnings, in cents.
+     */
+    public long getGrossEarnings() {
+        return grossEarnings;
+    }
+
+    /**
+     * Returns the undiscounted earnings from all sales of a product type.
+     *
+     * @param type The type of product.
+     * @return The gross earnings for that type, in cents.
+     */
+    public long getGrossEarnings(Barcode type) {
+        return grossEarningsByType[type.ordinal()];
+    }
+
+    /**
+     * Returns the number of products of a type sold.
+     *
+     * @param type The type of product.
+     * @return The number of products sold.
+     */
+    public long getUnitsSold(Barcode type) {
+        return unitsSold[type.ordinal()];
+    }
+
+    /**
+     * Returns the average amount spent per transaction.
+     *
+     * @return The average spend in cents, or 0.0 if there are no transactions.
+     */
+    public double getAverageSpendPerVisit() {
+        return transactionCount == 0 ? 0.0 : (double) grossEarnings / transactionCount;
+    }
+
+    /**
+     * Returns the average discount percentage of a product type over its special sales,
+     * as defined by {@link TransactionHistory#getAverageProductDiscount(Barcode)}.
+     *
+     * @param type The type of product.
+     * @return The average discount, or 0.0 if none were sold in special sales.
+     */
+    public double getAverageProductDiscount(Barcode type) {
+        long units = specialSaleUnits[type.ordinal()];
+        return units == 0 ? 0.0 : (double) discountPercentages[type.ordinal()] / units;
+    }
+
+    /**
+     * Returns the upper bounds of the spend distribution buckets. Bucket {@code i} counts
+     * transactions below bound {@code i} and at or above the previous bound, and the final,
+     * extra bucket counts transactions at or above the last bound.
+     *
+     * @return The exclusive upper bound of each bucket but the last, in cents.
+     */
+    public int[] getSpendUpperBounds() {
+        return spendUpperBounds.clone();
+    }
+
+    /**
+     * Returns the number of transactions whose total falls into each spend bucket.
+     *
+     * @return The count for each bucket, one more than the number of upper bounds.
+     */
+    public long[] getSpendDistribution() {
+        return spendDistribution.clone();
+    }
+
+    /**
+     * Returns a string representation of this report.
+     *
+     * @return The main figures of the report.
+     */
+    @Override
+    public String toString() {
+        return "HistoryReport {Transactions: " + transactionCount
+                + ", Gross: " + grossEarnings
+                + ", Units: " + Arrays.toString(unitsSold)
+                + ", Spend distribution: " + Arrays.toString(spendDistribution)
+                + "}";
+    }
+}
@@ -0,0 +1,167 @@
+package farm.sales;
+
+import farm.customer.CustomerKey;
+import farm.sales.journal.TransactionCodec;
+import farm.sales.transaction.Transaction;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Everything a {@link TransactionHistory} keeps about transactions whose detail it has
+ * evicted, so that it can be saved alongside the retained transactions.
+ * <p>
+ * A rollup holds the history's retention settings, its daily summaries, the rolled up
+ * transactions still on its leaderboard, the customers known only from rolled up transactions,
+ * and its line item log's rolled up report. Restoring it into an empty history, then recording
+ * the retained transactions again, gives back the same statistics, summaries and leaderboard.
+ * The approximate {@link farm.sales.sketch.SalesSketches} and the {@link SlidingSalesWindow}
+ * are not kept, and are rebuilt from the retained transactions alone.
+ * </p>
+ */
+public final class HistoryRollup {
+    private final int leaderboardSize;
+    private final Duration detailRetention;
+    private final ZoneId zone;
+    private final List<DailySummary> summaries;
+    private final List<Transaction> leaders;
+    private final long[] leaderIds;
+    private final List<CustomerKey> customers;
+    private final HistoryReport lineItems;
+
+    HistoryRollup(int leaderboardSize, Duration detailRetention, ZoneId zone,
+                  List<DailySummary> summaries, List<Transaction> leaders, long[] leaderIds,
+                  List<CustomerKey> customers, HistoryReport lineItems) {
+        this.leaderboardSize = leaderboardSize;
+        this.detailRetention = detailRetention;
+        this.zone = zone;
+        this.summaries = summaries;
+        this.leaders = leaders;
+        this.leaderIds = leaderIds;
+        this.customers = customers;
+        this.lineItems = lineItems;
+    }
+
+    /**
+     * Creates an empty history with the same leaderboard size, retention period and time zone
+     * as the history this rollup was taken from, ready for the rollup to be restored into.
+     *
+     * @return The new history.
+     */
+    public TransactionHistory createHistory() {
+        return new TransactionHistory(leaderboardSize, detailRetention, zone);
+    }
+
+    /**
+     * Returns the number of transactions rolled up.
+     *
+     * @return The number of transactions whose detail had been evicted.
+     */
+    public int getRolledUpCount() {
+        int count = 0;
+        for (DailySummary summary : summaries) {
+            count += summary.getTransactionCount();
+        }
+        return count;
+    }
+
+    List<DailySummary> getSummaries() {
+        return summaries;
+    }
+
+    List<Transaction> getLeaders() {
+        return leaders;
+    }
+
+    long[] getLeaderIds() {
+        return leaderIds;
+    }
+
+    List<CustomerKey> getCustomers() {
+        return customers;
+    }
+
+    HistoryReport getLineItems() {
+        return lineItems;
+    }
+
+    /**
+     * Encodes this rollup, using the given codec for the transactions on the leaderboard.
+     *
+     * @param codec The codec to encode transactions with.
+     * @return The encoded rollup.
+     */
+    public byte[] encode(TransactionCodec codec) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(leaderboardSize);
+            out.writeLong(detailRetention == null ? -1 : detailRetention.toMillis());
+            out.writeUTF(zone.getId());
+            out.writeInt(summaries.size());
+            for (DailySummary summary : summaries) {
+                summary.write(out);
+            }
+            out.writeInt(leaders.size());
+            for (int i = 0; i < leaders.size(); i++) {
+                out.writeLong(leaderIds[i]);
+                codec.encode(leaders.get(i), out);
+            }
+            out.writeInt(customers.size());
+            for (CustomerKey customer : customers) {
+                out.writeUTF(customer.getName());
+                out.writeInt(customer.getPhoneNumber());
+            }
+            lineItems.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // never thrown by an in-memory stream
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a rollup produced by {@link #encode(TransactionCodec)}.
+     *
+     * @param encoded The encoded rollup.
+     * @param codec The codec to decode transactions with.
+     * @return The decoded rollup.
+     * @throws IllegalArgumentException if the bytes are not a valid encoded rollup.
+     */
+    public static HistoryRollup decode(byte[] encoded, TransactionCodec codec) {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded));
+        try {
+            int leaderboardSize = in.readInt();
+            long retentionMillis = in.readLong();
+            ZoneId zone = ZoneId.of(in.readUTF());
+            List<DailySummary> summaries = new ArrayList<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                summaries.add(DailySummary.read(in));
+            }
+            int leaderCount = in.readInt();
+            List<Transaction> leaders = new ArrayList<>();
+            long[] leaderIds = new long[leaderCount];
+            for (int i = 0; i < leaderCount; i++) {
+                leaderIds[i] = in.readLong();
+                leaders.add(codec.decode(in));
+            }
+            List<CustomerKey> customers = new ArrayList<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                customers.add(new CustomerKey(in.readUTF(), in.readInt()));
+            }
+            return new HistoryRollup(leaderboardSize,
+                    retentionMillis < 0 ? null : Duration.ofMillis(retentionMillis), zone,
+                    summaries, leaders, leaderIds, customers, HistoryReport.read(in));
+        } catch (IOException | DateTimeException | NegativeArraySizeException e) {
+            throw new IllegalArgumentException("Malformed history rollup.", e);
+        }
+    }
+}
@@ -0,0 +1,548 @@
+package farm.sales;
+
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+import farm.sales.transaction.SpecialSaleTransaction;
+import farm.sales.transaction.Transaction;
+
+import java.util.Arrays;
+
+/**
+ * A column-oriented log of every line item sold, for analytics that scan the whole history.
+ * <p>
+ * Each recorded transaction is broken into one line per barcode and quality it contains, and
+ * each field of a line is stored in its own primitive array: the transaction id, barcode ordinal,
+ * quality ordinal, quantity, unit price, discount percentage and subtotal. A query that only
+ * needs quantities and barcodes therefore only reads those two arrays, front to back, with no
+ * objects to dereference, which lets the JIT unroll and vectorise the loop. Per-transaction
+ * fields (total, time of sale, first line and whether it was a special sale) are kept in a
+ * second set of columns indexed by transaction id, which is the order transactions were
+ * recorded in.
+ * </p>
+ * <p>
+ * Unit prices are the list prices of the transaction's own pricing engine and subtotals the
+ * amounts it charged, so the log agrees with its receipts whatever prices or promotions it was
+ * sold under, and the subtotals of a transaction's lines add up to its total.
+ * </p>
+ * <p>
+ * Scans take a half-open range of lines, so that large logs can be split into chunks
+ * and scanned in parallel.
+ * </p>
+ * <p>
+ * The oldest transactions can be {@link #rollUp(int) rolled up}: their figures are added to a
+ * {@link HistoryReport} kept by the log, with the default spend buckets, and their lines are
+ * dropped, so a history that only retains recent detail keeps a log of the same size. The
+ * remaining transactions' ids are shifted down by the number rolled up.
+ * </p>
+ */
+public class LineItemLog {
+    private static final Barcode[] BARCODES = Barcode.values();
+    private static final Quality[] QUALITIES = Quality.values();
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int[] lineTransactions;
+    private byte[] lineBarcodes;
+    private byte[] lineQualities;
+    private int[] lineQuantities;
+    private int[] lineUnitPrices;
+    private short[] lineDiscounts;
+    private int[] lineSubtotals;
+    private int lineCount;
+
+    private int[] transactionTotals;
+    private long[] transactionTimes;
+    private int[] transactionFirstLines;
+    private boolean[] transactionSpecialSales;
+    private int transactionCount;
+
+    private final HistoryReport rolledUp;
+
+    /**
+     * Constructs a new, empty LineItemLog.
+     */
+    public LineItemLog() {
+        this.lineTransactions = new int[INITIAL_CAPACITY];
+        this.lineBarcodes = new byte[INITIAL_CAPACITY];
+        this.lineQualities = new byte[INITIAL_CAPACITY];
+        this.lineQuantities = new int[INITIAL_CAPACITY];
+        this.lineUnitPrices = new int[INITIAL_CAPACITY];
+        this.lineDiscounts = new short[INITIAL_CAPACITY];
+        this.lineSubtotals = new int[INITIAL_CAPACITY];
+        this.transactionTotals = new int[INITIAL_CAPACITY];
+        this.transactionTimes = new long[INITIAL_CAPACITY];
+        this.transactionFirstLines = new int[INITIAL_CAPACITY];
+        this.transactionSpecialSales = new boolean[INITIAL_CAPACITY];
+        this.rolledUp = new HistoryReport(ParallelHistoryAnalytics.DEFAULT_SPEND_UPPER_BOUNDS);
+    }
+
+    /**
+     * Appends the line items of a finalised transaction to the log.
+     * Each line records its list price and the subtotal the transaction charged for it.
+     *
+     * @param transaction The transaction to append.
+     * @return The id given to the transaction in this log.
+     * @throws IllegalArgumentException if the transaction is not finalised.
+     */
+    public int append(Transaction transaction) {
+        if (!transaction.isFinalised()) {
+            throw new IllegalArgumentException("Transaction must be finalised before recording.");
+        }
+        ensureTransactionCapacity(transactionCount + 1);
+        int id = transactionCount;
+        SpecialSaleTransaction specialSale = transaction instanceof SpecialSaleTransaction special
+                ? special : null;
+        transactionTotals[id] = transaction.getTotal();
+        transactionTimes[id] = transaction.getFinalisedAt();
+        transactionFirstLines[id] = lineCount;
+        transactionSpecialSales[id] = specialSale != null;
+
+        for (Barcode barcode : BARCODES) {
+            if (transaction.getPurchaseQuantity(barcode) == 0) {
+                continue;
+            }
+            int discount = specialSale != null ? specialSale.getDiscountAmount(barcode) : 0;
+            for (Quality quality : QUALITIES) {
+                int quantity = transaction.getPurchaseQuantity(barcode, quality);
+                if (quantity > 0) {
+                    appendLine(id, barcode, quality, quantity,
+                            transaction.getUnitPrice(barcode, quality), discount,
+                            transaction.getLineSubtotal(barcode, quality));
+                }
+            }
+        }
+        transactionCount++;
+        return id;
+    }
+
+    private void appendLine(int transaction, Barcode barcode, Quality quality,
+                            int quantity, int unitPrice, int discount, int subtotal) {
+        ensureLineCapacity(lineCount + 1);
+        lineTransactions[lineCount] = transaction;
+        lineBarcodes[lineCount] = (byte) barcode.ordinal();
+        lineQualities[lineCount] = (byte) quality.ordinal();
+        lineQuantities[lineCount] = quantity;
+        lineUnitPrices[lineCount] = unitPrice;
+        lineDiscounts[lineCount] = (short) discount;
+        lineSubtotals[lineCount] = subtotal;
+        lineCount++;
+    }
+
+    /**
+     * Adds the figures of the given number of oldest transactions to the log's rolled up
+     * report, then drops their lines. The ids of the remaining transactions are shifted down
+     * by the number rolled up, so the oldest remaining transaction has id 0.
+     *
+     * @param count The number of transactions to roll up.
+     * @throws IndexOutOfBoundsException if the log holds fewer transactions.
+     */
+    public void rollUp(int count) {
+        if (count < 0 || count > transactionCount) {
+            throw new IndexOutOfBoundsException("Cannot roll up " + count + " transactions");
+        }
+        if (count == 0) {
+            return;
+        }
+        rolledUp.accumulate(this, 0, count);
+        int lines = count < transactionCount ? transactionFirstLines[count] : lineCount;
+        int keptLines = lineCount - lines;
+        System.arraycopy(lineTransactions, lines, lineTransactions, 0, keptLines);
+        System.arraycopy(lineBarcodes, lines, lineBarcodes, 0, keptLines);
+        System.arraycopy(lineQualities, lines, lineQualities, 0, keptLines);
+        System.arraycopy(lineQuantities, lines, lineQuantities, 0, keptLines);
+        System.arraycopy(lineUnitPrices, lines, lineUnitPrices, 0, keptLines);
+        System.arraycopy(lineDiscounts, lines, lineDiscounts, 0, keptLines);
+        System.arraycopy(lineSubtotals, lines, lineSubtotals, 0, keptLines);
+        for (int i = 0; i < keptLines; i++) {
+            lineTransactions[i] -= count;
+        }
+        lineCount = keptLines;
+
+        int kept = transactionCount - count;
+        System.arraycopy(transactionTotals, count, transactionTotals, 0, kept);
+        System.arraycopy(transactionTimes, count, transactionTimes, 0, kept);
+        System.arraycopy(transactionFirstLines, count, transactionFirstLines, 0, kept);
+        System.arraycopy(transactionSpecialSales, count, transactionSpecialSales, 0, kept);
+        for (int i = 0; i < kept; i++) {
+            transactionFirstLines[i] -= lines;
+        }
+        transactionCount = kept;
+    }
+
+    /**
+     * Returns the number of transactions rolled up out of the log.
+     *
+     * @return The number of transactions whose lines have been dropped.
+     */
+    public int getRolledUpCount() {
+        return (int) rolledUp.getTransactionCount();
+    }
+
+    /**
+     * Adds the figures of every rolled up transaction to the given report,
+     * which must use the default spend buckets.
+     */
+    void mergeRolledUp(HistoryReport report) {
+        report.merge(rolledUp);
+    }
+
+    /**
+     * Adds the figures of transactions rolled up before this log was created, such as those
+     * of a restored history, to the log's rolled up report.
+     */
+    void restoreRolledUp(HistoryReport report) {
+        rolledUp.merge(report);
+    }
+
+    /**
+     * Returns the number of lines in the log.
+     *
+     * @return The number of line items.
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Returns the number of transactions in the log.
+     *
+     * @return The number of transactions.
+     */
+    public int getTransactionCount() {
+        return transactionCount;
+    }
+
+    /**
+     * Returns the id of the transaction a line belongs to.
+     *
+     * @param line The index of the line.
+     * @return The transaction id.
+     */
+    public int getTransactionId(int line) {
+        checkLine(line);
+        return lineTransactions[line];
+    }
+
+    /**
+     * Returns the type of product sold on a line.
+     *
+     * @param line The index of the line.
+     * @return The barcode of the products on the line.
+     */
+    public Barcode getBarcode(int line) {
+        checkLine(line);
+        return BARCODES[lineBarcodes[line]];
+    }
+
+    /**
+     * Returns the quality of product sold on a line.
+     *
+     * @param line The index of the line.
+     * @return The quality of the products on the line.
+     */
+    public Quality getQuality(int line) {
+        checkLine(line);
+        return QUALITIES[lineQualities[line]];
+    }
+
+    /**
+     * Returns the number of products sold on a line.
+     *
+     * @param line The index of the line.
+     * @return The quantity sold.
+     */
+    public int getQuantity(int line) {
+        checkLine(line);
+        return lineQuantities[line];
+    }
+
+    /**
+     * Returns the undiscounted price of each product sold on a line.
+     *
+     * @param line The index of the line.
+     * @return The unit price, in cents.
+     */
+    public int getUnitPrice(int line) {
+        checkLine(line);
+        return lineUnitPrices[line];
+    }
+
+    /**
+     * Returns the percentage discount applied to a line by a special sale.
+     *
+     * @param line The index of the line.
+     * @return The discount percentage, or 0 if none applied.
+     */
+    public int getDiscount(int line) {
+        checkLine(line);
+        return lineDiscounts[line];
+    }
+
+    /**
+     * Returns the amount charged for a line, with its share of every promotion and discount.
+     *
+     * @param line The index of the line.
+     * @return The line's subtotal, in cents.
+     */
+    public int getSubtotal(int line) {
+        checkLine(line);
+        return lineSubtotals[line];
+    }
+
+    /**
+     * Returns the total reported by a transaction when it was recorded.
+     *
+     * @param transaction The id of the transaction.
+     * @return The transaction's total, in cents.
+     */
+    public int getTotal(int transaction) {
+        checkTransaction(transaction);
+        return transactionTotals[transaction];
+    }
+
+    /**
+     * Returns the time a transaction was finalised.
+     *
+     * @param transaction The id of the transaction.
+     * @return The time of sale, in milliseconds since the epoch.
+     */
+    public long getTimestamp(int transaction) {
+        checkTransaction(transaction);
+        return transactionTimes[transaction];
+    }
+
+    /**
+     * Determines whether a transaction was a special sale.
+     *
+     * @param transaction The id of the transaction.
+     * @return true if the transaction was a special sale.
+     */
+    public boolean isSpecialSale(int transaction) {
+        checkTransaction(transaction);
+        return transactionSpecialSales[transaction];
+    }
+
+    /**
+     * Returns the index of the first line belonging to a transaction. Its lines run up to
+     * the first line of the next transaction, or the end of the log.
+     *
+     * @param transaction The id of the transaction.
+     * @return The index of the transaction's first line.
+     */
+    public int getFirstLine(int transaction) {
+        checkTransaction(transaction);
+        return transactionFirstLines[transaction];
+    }
+
+    /**
+     * Counts the products of a type sold on the given range of lines.
+     *
+     * @param type The type of product.
+     * @param from The first line to scan, inclusive.
+     * @param to The last line to scan, exclusive.
+     * @return The number of products sold.
+     */
+    public long sumQuantity(Barcode type, int from, int to) {
+        checkRange(from, to);
+        byte ordinal = (byte) type.ordinal();
+        long sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += lineBarcodes[i] == ordinal ? lineQuantities[i] : 0;
+        }
+        return sum;
+    }
+
+    /**
+     * Sums the undiscounted price of the products of a type sold on the given range of lines.
+     *
+     * @param type The type of product.
+     * @param from The first line to scan, inclusive.
+     * @param to The last line to scan, exclusive.
+     * @return The gross earnings before discounts, in cents.
+     */
+    public long sumGross(Barcode type, int from, int to) {
+        checkRange(from, to);
+        byte ordinal = (byte) type.ordinal();
+        long sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += lineBarcodes[i] == ordinal ? (long) lineQuantities[i] * lineUnitPrices[i] : 0;
+        }
+        return sum;
+    }
+
+    /**
+     * Sums the amount charged for the products of a type sold on the given range of lines,
+     * after every promotion and discount.
+     *
+     * @param type The type of product.
+     * @param from The first line to scan, inclusive.
+     * @param to The last line to scan, exclusive.
+     * @return The net earnings, in cents.
+     */
+    public long sumNet(Barcode type, int from, int to) {
+        checkRange(from, to);
+        byte ordinal = (byte) type.ordinal();
+        long sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += lineBarcodes[i] == ordinal ? lineSubtotals[i] : 0;
+        }
+        return sum;
+    }
+
+    /**
+     * Counts the products of a type sold in special sales on the given range of lines,
+     * which are the products {@link #sumDiscountPercentages} averages over.
+     *
+     * @param type The type of product.
+     * @param from The first line to scan, inclusive.
+     * @param to The last line to scan, exclusive.
+     * @return The number of products sold in special sales.
+     */
+    public long sumSpecialSaleQuantity(Barcode type, int from, int to) {
+        checkRange(from, to);
+        byte ordinal = (byte) type.ordinal();
+        long sum = 0;
+        for (int i = from; i < to; i++) {
+            boolean counted = lineBarcodes[i] == ordinal
+                    && transactionSpecialSales[lineTransactions[i]];
+            sum += counted ? lineQuantities[i] : 0;
+        }
+        return sum;
+    }
+
+    /**
+     * Sums the discount percentage of every product of a type sold on the given range of lines.
+     * Dividing by the number of products sold in special sales gives the average discount.
+     *
+     * @param type The type of product.
+     * @param from The first line to scan, inclusive.
+     * @param to The last line to scan, exclusive.
+     * @return The sum of the discount percentages, one per product.
+     */
+    public long sumDiscountPercentages(Barcode type, int from, int to) {
+        checkRange(from, to);
+        byte ordinal = (byte) type.ordinal();
+        long sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += lineBarcodes[i] == ordinal ? (long) lineQuantities[i] * lineDiscounts[i] : 0;
+        }
+        return sum;
+    }
+
+    /**
+     * Counts the products of a type sold on the given range of lines, by quality.
+     *
+     * @param type The type of product.
+     * @param from The first line to scan, inclusive.
+     * @param to The last line to scan, exclusive.
+     * @return The number of products sold, indexed by quality ordinal.
+     */
+    public long[] sumQuantityByQuality(Barcode type, int from, int to) {
+        checkRange(from, to);
+        byte ordinal = (byte) type.ordinal();
+        long[] sums = new long[QUALITIES.length];
+        for (int i = from; i < to; i++) {
+            if (lineBarcodes[i] == ordinal) {
+                sums[lineQualities[i]] += lineQuantities[i];
+            }
+        }
+        return sums;
+    }
+
+    /**
+     * Sums the totals of the given range of transactions.
+     *
+     * @param from The id of the first transaction to scan, inclusive.
+     * @param to The id of the last transaction to scan, exclusive.
+     * @return The combined totals, in cents.
+     */
+    public long sumTotals(int from, int to) {
+        if (from < 0 || to > transactionCount || from > to) {
+            throw new IndexOutOfBoundsException("Invalid transaction range " + from + " to " + to);
+        }
+        long sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += transactionTotals[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Accumulates per-barcode figures for the given range of lines in a single pass,
+     * adding to the arrays given, which are indexed by barcode ordinal.
+     */
+    void accumulateLines(int from, int to, long[] units, long[] gross,
+                         long[] specialUnits, long[] discountPercentages) {
+        checkRange(from, to);
+        for (int i = from; i < to; i++) {
+            int barcode = lineBarcodes[i];
+            long quantity = lineQuantities[i];
+            units[barcode] += quantity;
+            gross[barcode] += quantity * lineUnitPrices[i];
+            if (transactionSpecialSales[lineTransactions[i]]) {
+                specialUnits[barcode] += quantity;
+                discountPercentages[barcode] += quantity * lineDiscounts[i];
+            }
+        }
+    }
+
+    /**
+     * Sums the totals of the given range of transactions, also counting each total into the
+     * histogram bucket of the first upper bound it is below, or the last bucket if none.
+     */
+    long accumulateTotals(int from, int to, int[] upperBounds, long[] histogram) {
+        if (from < 0 || to > transactionCount || from > to) {
+            throw new IndexOutOfBoundsException("Invalid transaction range " + from + " to " + to);
+        }
+        long sum = 0;
+        for (int i = from; i < to; i++) {
+            int total = transactionTotals[i];
+            sum += total;
+            int bucket = Arrays.binarySearch(upperBounds, total);
+            histogram[bucket < 0 ? -bucket - 1 : bucket + 1]++;
+        }
+        return sum;
+    }
+
+    private void checkLine(int line) {
+        if (line < 0 || line >= lineCount) {
+            throw new IndexOutOfBoundsException("Invalid line " + line);
+        }
+    }
+
+    private void checkTransaction(int transaction) {
+        if (transaction < 0 || transaction >= transactionCount) {
+            throw new IndexOutOfBoundsException("Invalid transaction " + transaction);
+        }
+    }
+
+    private void checkRange(int from, int to) {
+        if (from < 0 || to > lineCount || from > to) {
+            throw new IndexOutOfBoundsException("Invalid line range " + from + " to " + to);
+        }
+    }
+
+    private void ensureLineCapacity(int capacity) {
+        if (capacity <= lineTransactions.length) {
+            return;
+        }
+        int grown = Math.max(capacity, lineTransactions.length * 2);
+        lineTransactions = Arrays.copyOf(lineTransactions, grown);
+        lineBarcodes = Arrays.copyOf(lineBarcodes, grown);
+        lineQualities = Arrays.copyOf(lineQualities, grown);
+        lineQuantities = Arrays.copyOf(lineQuantities, grown);
+        lineUnitPrices = Arrays.copyOf(lineUnitPrices, grown);
+        lineDiscounts = Arrays.copyOf(lineDiscounts, grown);
+        lineSubtotals = Arrays.copyOf(lineSubtotals, grown);
+    }
+
+    private void ensureTransactionCapacity(int capacity) {
+        if (capacity <= transactionTotals.length) {
+            return;
+        }
+        int grown = Math.max(capacity, transactionTotals.length * 2);
+        transactionTotals = Arrays.copyOf(transactionTotals, grown);
+        transactionTimes = Arrays.copyOf(transactionTimes, grown);
+        transactionFirstLines = Arrays.copyOf(transactionFirstLines, grown);
+        transactionSpecialSales = Arrays.copyOf(transactionSpecialSales, grown);
+    }
+}
@@ -0,0 +1,148 @@
+package farm.sales;
+
+import java.io.Serial;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Builds {@link HistoryReport}s over a {@link LineItemLog}, optionally in parallel.
+ * <p>
+ * The parallel mode splits the logged transactions in half recursively with fork/join until
+ * each chunk holds at most the chunk size, scans each chunk's columns into a partial report,
+ * then merges the partial reports back up the tree. Since each chunk covers whole transactions,
+ * and so a contiguous run of line items, no two tasks ever touch the same data.
+ * </p>
+ * <p>
+ * Transactions the log has rolled up are included through the log's rolled up report, whose
+ * spend distribution uses the {@link #DEFAULT_SPEND_UPPER_BOUNDS}; analytics with any other
+ * bounds only cover the transactions still in the log.
+ * </p>
+ * <p>
+ * Analytics cover the transactions logged when the analytics object was created. The log must
+ * not be appended to while a report is being built, so callers sharing the log with other threads
+ * should hold whatever lock guards its history, as {@code Farm.getHistoryReport()} does.
+ * </p>
+ */
+public class ParallelHistoryAnalytics {
+    /**
+     * The default spend distribution bucket bounds: under $5, $10, $25, $50, $100, and over.
+     */
+    public static final int[] DEFAULT_SPEND_UPPER_BOUNDS = {500, 1000, 2500, 5000, 10000};
+
+    /**
+     * The default number of transactions scanned by a single task.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 8192;
+
+    private final LineItemLog log;
+    private final int transactionCount;
+    private final int[] spendUpperBounds;
+    private final int chunkSize;
+    private final HistoryReport rolledUp;
+
+    /**
+     * Constructs analytics over the given log with the default buckets and chunk size.
+     *
+     * @param log The line items to analyse.
+     */
+    public ParallelHistoryAnalytics(LineItemLog log) {
+        this(log, DEFAULT_SPEND_UPPER_BOUNDS, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Constructs analytics over the given log.
+     *
+     * @param log The line items to analyse.
+     * @param spendUpperBounds The exclusive upper bounds of the spend distribution buckets.
+     * @param chunkSize The largest number of transactions scanned by a single task.
+     * @throws IllegalArgumentException if the bounds are not in strictly ascending order
+     *                                  or the chunk size is less than 1.
+     */
+    public ParallelHistoryAnalytics(LineItemLog log, int[] spendUpperBounds, int chunkSize) {
+        for (int i = 1; i < spendUpperBounds.length; i++) {
+            if (spendUpperBounds[i] <= spendUpperBounds[i - 1]) {
+                throw new IllegalArgumentException("Spend bounds must be strictly ascending.");
+            }
+        }
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1.");
+        }
+        this.log = log;
+        this.transactionCount = log.getTransactionCount();
+        this.spendUpperBounds = Arrays.copyOf(spendUpperBounds, spendUpperBounds.length);
+        this.chunkSize = chunkSize;
+        this.rolledUp = new HistoryReport(this.spendUpperBounds);
+        if (Arrays.equals(spendUpperBounds, DEFAULT_SPEND_UPPER_BOUNDS)) {
+            log.mergeRolledUp(rolledUp);
+        }
+    }
+
+    /**
+     * Builds a report on the calling thread alone.
+     *
+     * @return The report over every analysed transaction.
+     */
+    public HistoryReport analyseSequentially() {
+        HistoryReport report = new HistoryReport(spendUpperBounds);
+        if (transactionCount > 0) {
+            report.accumulate(log, 0, transactionCount);
+        }
+        report.merge(rolledUp);
+        return report;
+    }
+
+    /**
+     * Builds a report in parallel using the common fork/join pool.
+     *
+     * @return The report over every analysed transaction.
+     */
+    public HistoryReport analyse() {
+        return analyse(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Builds a report in parallel using the given fork/join pool.
+     *
+     * @param pool The pool to run the chunk tasks in.
+     * @return The report over every analysed transaction.
+     */
+    public HistoryReport analyse(ForkJoinPool pool) {
+        HistoryReport report = pool.invoke(new ChunkTask(0, transactionCount));
+        report.merge(rolledUp);
+        return report;
+    }
+
+    /**
+     * Scans a range of transactions, splitting it in two while it is larger than a chunk.
+     */
+    private final class ChunkTask extends RecursiveTask<HistoryReport> {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        private ChunkTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected HistoryReport compute() {
+            if (to - from <= chunkSize) {
+                HistoryReport report = new HistoryReport(spendUpperBounds);
+                if (to > from) {
+                    report.accumulate(log, from, to);
+                }
+                return report;
+            }
+            int middle = (from + to) >>> 1;
+            ChunkTask left = new ChunkTask(from, middle);
+            left.fork();
+            HistoryReport report = new ChunkTask(middle, to).compute();
+            report.merge(left.join());
+            return report;
+        }
+    }
+}
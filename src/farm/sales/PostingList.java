@@ -0,0 +1,122 @@
+package farm.sales;
+
+import java.util.Arrays;
+
+/**
+ * An ascending list of transaction ids, compressed for use in the history's indexes.
+ * <p>
+ * Each id is stored as the gap from the previous id, written as a variable-length integer of
+ * seven bits per byte, with the high bit marking that more bytes follow. Since ids are appended
+ * in the order transactions are recorded, gaps are small for busy customers and products, and
+ * most ids take a single byte rather than four.
+ * </p>
+ */
+final class PostingList {
+    private byte[] bytes;
+    private int length;
+    private int size;
+    private int last;
+
+    /**
+     * Constructs a new, empty posting list.
+     */
+    PostingList() {
+        this.bytes = new byte[8];
+        this.length = 0;
+        this.size = 0;
+        this.last = -1;
+    }
+
+    /**
+     * Appends an id, which must be greater than every id already in the list.
+     *
+     * @throws IllegalArgumentException if the id is not greater than the last id.
+     */
+    void add(int id) {
+        if (id <= last) {
+            throw new IllegalArgumentException("Ids must be added in ascending order.");
+        }
+        int gap = size == 0 ? id : id - last;
+        if (length + 5 > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + 5));
+        }
+        while ((gap & ~0x7F) != 0) {
+            bytes[length++] = (byte) ((gap & 0x7F) | 0x80);
+            gap >>>= 7;
+        }
+        bytes[length++] = (byte) gap;
+        last = id;
+        size++;
+    }
+
+    /**
+     * Returns the number of ids in the list.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of bytes used to store the ids.
+     */
+    int getEncodedLength() {
+        return length;
+    }
+
+    /**
+     * Decodes every id in the list, in ascending order.
+     */
+    int[] toArray() {
+        int[] ids = new int[size];
+        int position = 0;
+        int previous = 0;
+        for (int i = 0; i < size; i++) {
+            int gap = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[position++];
+                gap |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            previous = i == 0 ? gap : previous + gap;
+            ids[i] = previous;
+        }
+        return ids;
+    }
+
+    /**
+     * Copies the ids no less than the given minimum into a new posting list.
+     */
+    PostingList from(int minimum) {
+        PostingList kept = new PostingList();
+        for (int id : toArray()) {
+            if (id >= minimum) {
+                kept.add(id);
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Finds the ids present in both of two ascending arrays of ids.
+     */
+    static int[] intersect(int[] first, int[] second) {
+        int[] common = new int[Math.min(first.length, second.length)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                common[count++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(common, count);
+    }
+}
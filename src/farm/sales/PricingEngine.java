@@ -0,0 +1,386 @@
+package farm.sales;
+
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.PriceTable;
+import farm.inventory.product.data.Quality;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
+/**
+ * Prices carts according to a set of {@link PromotionRule}s.
+ * <p>
+ * Rules are compiled once, when the engine is constructed, into a plan for each product type:
+ * a unit price for every quality, starting from the engine's {@link PriceTable}, the single most
+ * generous buy-get deal, and the quantity breaks as a sorted threshold table. Basket thresholds are compiled into one sorted table for the whole
+ * cart. Pricing a cart then only looks at each product type once and performs a binary search
+ * per table, so its cost does not depend on how many rules are active. Product types without
+ * promotions are read straight from the cart's running subtotals when the engine charges the
+ * default prices the cart keeps them at, so pricing a cart without promotions does not depend
+ * on what is in it either.
+ * </p>
+ * <p>
+ * For each product type, the buy-get deal makes the cheapest products in the cart free, and the
+ * best quantity break reached is taken off what remains. The best basket threshold reached by
+ * the sum of all product types is then taken off the whole cart. A quality price replaces the
+ * list price, even when it is higher. Where several rules of the same kind compete, such as two
+ * quality prices for the same type and quality, the one most favourable to the customer wins. Percentage discounts are rounded
+ * down to the cent, in the same way as {@link farm.sales.transaction.SpecialSaleTransaction}.
+ * </p>
+ * <p>
+ * Any {@link farm.sales.transaction.Transaction} can be priced by an engine. Besides the total,
+ * the engine can split each product type's subtotal into one amount per quality, so that receipts
+ * and line item logs show what was actually charged for each line and the lines add up to the
+ * total.
+ * </p>
+ * <p>
+ * Engines are immutable, so one engine may be shared by any number of transactions and threads.
+ * </p>
+ */
+public class PricingEngine {
+    private static final Barcode[] BARCODES = Barcode.values();
+    private static final Quality[] QUALITIES = Quality.values();
+
+    /**
+     * An engine with no rules, which charges the default price of every product.
+     */
+    public static final PricingEngine BASE_PRICES = new PricingEngine(List.of());
+
+    private final PriceTable prices;
+    private final boolean cartPrices;
+    private final Plan[] plans;
+    private final int[] basketThresholds;
+    private final int[] basketPercents;
+    private final List<PromotionRule> rules;
+
+    /**
+     * Constructs a new PricingEngine, compiling the given rules against the default prices.
+     *
+     * @param rules The promotions the engine should apply.
+     */
+    public PricingEngine(Collection<PromotionRule> rules) {
+        this(PriceTable.getDefault(), rules);
+    }
+
+    /**
+     * Constructs a new PricingEngine, compiling the given rules against the given prices.
+     *
+     * @param prices The list price of every product type and quality.
+     * @param rules The promotions the engine should apply.
+     */
+    public PricingEngine(PriceTable prices, Collection<PromotionRule> rules) {
+        this.prices = prices;
+        this.cartPrices = prices == PriceTable.getDefault();
+        int[][] unitPrices = new int[BARCODES.length][];
+        boolean[][] qualityPriced = new boolean[BARCODES.length][QUALITIES.length];
+        int[] buy = new int[BARCODES.length];
+        int[] free = new int[BARCODES.length];
+        List<Map<Integer, Integer>> breaks =
+                new ArrayList<>(Collections.nCopies(BARCODES.length, null));
+        Map<Integer, Integer> basket = new TreeMap<>();
+
+        for (PromotionRule rule : rules) {
+            int type = rule.getKind() == PromotionRule.Kind.BASKET_THRESHOLD
+                    ? -1 : rule.getBarcode().ordinal();
+            switch (rule.getKind()) {
+                case QUALITY_PRICE -> {
+                    if (unitPrices[type] == null) {
+                        unitPrices[type] = basePrices(prices, BARCODES[type]);
+                    }
+                    int quality = rule.getQuality().ordinal();
+                    // the list price is replaced; only competing rules keep the lowest price
+                    unitPrices[type][quality] = qualityPriced[type][quality]
+                            ? Math.min(unitPrices[type][quality], rule.getUnitPrice())
+                            : rule.getUnitPrice();
+                    qualityPriced[type][quality] = true;
+                }
+                case BUY_GET -> {
+                    if (isBetterDeal(rule.getBuyQuantity(), rule.getFreeQuantity(),
+                            buy[type], free[type])) {
+                        buy[type] = rule.getBuyQuantity();
+                        free[type] = rule.getFreeQuantity();
+                    }
+                }
+                case QUANTITY_BREAK -> {
+                    if (breaks.get(type) == null) {
+                        breaks.set(type, new TreeMap<>());
+                    }
+                    breaks.get(type).merge(rule.getThreshold(), rule.getPercentOff(), Math::max);
+                }
+                case BASKET_THRESHOLD -> basket.merge(rule.getThreshold(),
+                        rule.getPercentOff(), Math::max);
+            }
+        }
+
+        this.plans = new Plan[BARCODES.length];
+        for (int type = 0; type < BARCODES.length; type++) {
+            if (unitPrices[type] != null || buy[type] > 0 || breaks.get(type) != null) {
+                int[] typePrices = unitPrices[type] != null
+                        ? unitPrices[type] : basePrices(prices, BARCODES[type]);
+                Map<Integer, Integer> typeBreaks = breaks.get(type) != null
+                        ? breaks.get(type) : Map.of();
+                plans[type] = new Plan(typePrices, buy[type], free[type],
+                        thresholds(typeBreaks), percents(typeBreaks));
+            }
+        }
+        this.basketThresholds = thresholds(basket);
+        this.basketPercents = percents(basket);
+        this.rules = List.copyOf(rules);
+    }
+
+    /**
+     * Calculates the total price of the given cart, with every promotion applied.
+     *
+     * @param cart The cart to price.
+     * @return The total price, in cents.
+     */
+    public int getTotal(Cart cart) {
+        int total = 0;
+        for (Barcode barcode : BARCODES) {
+            total += getSubtotal(cart, barcode);
+        }
+        return applyBasketThreshold(total);
+    }
+
+    /**
+     * Takes the best basket threshold reached by the given total off it.
+     *
+     * @param total The sum of every product type's subtotal, in cents.
+     * @return The total with the basket discount applied, in cents.
+     */
+    public int applyBasketThreshold(int total) {
+        int percent = lookup(basketThresholds, basketPercents, total);
+        return total - total * percent / 100;
+    }
+
+    /**
+     * Calculates the price of the products of one type in the given cart,
+     * with that type's promotions applied but before any basket threshold.
+     *
+     * @param cart The cart to price.
+     * @param barcode The type of product to price.
+     * @return The subtotal for that type, in cents.
+     */
+    public int getSubtotal(Cart cart, Barcode barcode) {
+        return price(cart, barcode, null);
+    }
+
+    /**
+     * Splits the price of the products of one type in the given cart between their qualities,
+     * with that type's promotions applied but before any basket threshold. Free products are
+     * taken from the cheapest qualities, and a quantity break is shared between the qualities
+     * in proportion to what each would otherwise cost, so the amounts add up to
+     * {@link #getSubtotal(Cart, Barcode)}.
+     *
+     * @param cart The cart to price.
+     * @param barcode The type of product to price.
+     * @return The amount charged for each quality, in cents, indexed by {@link Quality} ordinal.
+     */
+    public int[] getLineSubtotals(Cart cart, Barcode barcode) {
+        int[] lines = new int[QUALITIES.length];
+        price(cart, barcode, lines);
+        return lines;
+    }
+
+    /**
+     * Returns the list price of a product of the given type and quality, before any promotion.
+     *
+     * @param barcode The type of product.
+     * @param quality The quality of product.
+     * @return The unit price, in cents.
+     */
+    public int getUnitPrice(Barcode barcode, Quality quality) {
+        return prices.getPrice(barcode, quality);
+    }
+
+    /**
+     * Returns the table of list prices this engine charges before any promotion.
+     *
+     * @return The engine's price table.
+     */
+    public PriceTable getPriceTable() {
+        return prices;
+    }
+
+    /**
+     * Determines whether any rule affects the price of the given product type.
+     *
+     * @param barcode The type of product.
+     * @return true if the product type has promotions compiled for it.
+     */
+    public boolean hasPromotions(Barcode barcode) {
+        return plans[barcode.ordinal()] != null;
+    }
+
+    /**
+     * Returns the number of rules this engine was compiled from.
+     *
+     * @return The number of rules.
+     */
+    public int getRuleCount() {
+        return rules.size();
+    }
+
+    /**
+     * Returns the rules this engine was compiled from, in the order they were given.
+     *
+     * @return An unmodifiable list of the engine's rules.
+     */
+    public List<PromotionRule> getRules() {
+        return rules;
+    }
+
+    /**
+     * Shares an amount out between parts in proportion to their size, rounding each share down
+     * and giving what rounding leaves over to the last part that is not zero, so that the shares
+     * always add up to exactly the amount.
+     *
+     * @param parts The sizes of the parts, none of them negative.
+     * @param amount The amount to share out.
+     * @return The share of each part, in the same order as the parts.
+     */
+    public static int[] allocate(int[] parts, int amount) {
+        int[] shares = new int[parts.length];
+        long whole = 0;
+        for (int part : parts) {
+            whole += part;
+        }
+        if (whole == 0) {
+            return shares;
+        }
+        int given = 0;
+        int last = -1;
+        for (int i = 0; i < parts.length; i++) {
+            if (parts[i] != 0) {
+                shares[i] = (int) ((long) parts[i] * amount / whole);
+                given += shares[i];
+                last = i;
+            }
+        }
+        shares[last] += amount - given;
+        return shares;
+    }
+
+    /*
+     * Prices one product type, filling in the amount charged for each quality if lines is given.
+     */
+    private int price(Cart cart, Barcode barcode, int[] lines) {
+        Plan plan = plans[barcode.ordinal()];
+        int subtotal = 0;
+        if (plan == null) {
+            if (cartPrices && lines == null) {
+                return cart.getSubtotal(barcode);
+            }
+            for (Quality quality : QUALITIES) {
+                int line = cart.getQuantity(barcode, quality) * prices.getPrice(barcode, quality);
+                subtotal += line;
+                if (lines != null) {
+                    lines[quality.ordinal()] = line;
+                }
+            }
+            return subtotal;
+        }
+        int quantity = cart.getQuantity(barcode);
+        if (quantity == 0) {
+            return 0;
+        }
+
+        int freeRemaining = plan.buy > 0 ? quantity / (plan.buy + plan.free) * plan.free : 0;
+        for (int quality : plan.cheapestFirst) {
+            int count = cart.getQuantity(barcode, QUALITIES[quality]);
+            int waived = Math.min(count, freeRemaining);
+            freeRemaining -= waived;
+            int line = (count - waived) * plan.unitPrices[quality];
+            subtotal += line;
+            if (lines != null) {
+                lines[quality] = line;
+            }
+        }
+        int percent = lookup(plan.breakQuantities, plan.breakPercents, quantity);
+        int discounted = subtotal - subtotal * percent / 100;
+        if (lines != null && discounted != subtotal) {
+            System.arraycopy(allocate(lines, discounted), 0, lines, 0, lines.length);
+        }
+        return discounted;
+    }
+
+    private static int[] basePrices(PriceTable table, Barcode barcode) {
+        int[] prices = new int[QUALITIES.length];
+        for (Quality quality : QUALITIES) {
+            prices[quality.ordinal()] = table.getPrice(barcode, quality);
+        }
+        return prices;
+    }
+
+    /*
+     * A deal is better if it gives away a larger fraction of each group,
+     * or the same fraction in smaller groups, which customers reach sooner.
+     */
+    private static boolean isBetterDeal(int buy, int free, int bestBuy, int bestFree) {
+        if (bestBuy == 0) {
+            return true;
+        }
+        long ratio = (long) free * (bestBuy + bestFree);
+        long bestRatio = (long) bestFree * (buy + free);
+        return ratio > bestRatio || (ratio == bestRatio && buy + free < bestBuy + bestFree);
+    }
+
+    private static int[] thresholds(Map<Integer, Integer> table) {
+        return table.keySet().stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /*
+     * Percentages are made non-decreasing, since reaching a higher threshold
+     * also reaches every lower one.
+     */
+    private static int[] percents(Map<Integer, Integer> table) {
+        int[] percents = new int[table.size()];
+        int best = 0;
+        int i = 0;
+        for (int percent : table.values()) {
+            best = Math.max(best, percent);
+            percents[i++] = best;
+        }
+        return percents;
+    }
+
+    private static int lookup(int[] thresholds, int[] percents, int value) {
+        int index = Arrays.binarySearch(thresholds, value);
+        if (index < 0) {
+            index = -index - 2;
+        }
+        return index < 0 ? 0 : percents[index];
+    }
+
+    /**
+     * The compiled promotions for a single product type.
+     */
+    private static final class Plan {
+        private final int[] unitPrices;
+        private final int[] cheapestFirst;
+        private final int buy;
+        private final int free;
+        private final int[] breakQuantities;
+        private final int[] breakPercents;
+
+        private Plan(int[] unitPrices, int buy, int free,
+                     int[] breakQuantities, int[] breakPercents) {
+            this.unitPrices = unitPrices;
+            this.cheapestFirst = IntStream.range(0, unitPrices.length)
+                    .boxed()
+                    .sorted((a, b) -> Integer.compare(unitPrices[a], unitPrices[b]))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            this.buy = buy;
+            this.free = free;
+            this.breakQuantities = breakQuantities;
+            this.breakPercents = breakPercents;
+        }
+    }
+}
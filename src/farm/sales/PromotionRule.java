@@ -0,0 +1,207 @@
+package farm.sales;
+
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+
+/**
+ * A single promotion that a {@link PricingEngine} can apply when pricing a cart.
+ * <p>
+ * Rules only describe a promotion; they are never evaluated directly. Instead, a pricing engine
+ * compiles all of its rules up front into a plan for each product type. Rules are immutable and
+ * are created through the static factory methods below, one for each kind of promotion.
+ * </p>
+ */
+public final class PromotionRule {
+    /**
+     * The kinds of promotion a rule can describe.
+     */
+    public enum Kind {
+        /** Buy a number of products of one type, get more of that type free. */
+        BUY_GET,
+        /** A percentage off a product type once enough of it is bought. */
+        QUANTITY_BREAK,
+        /** A fixed unit price for products of one type and quality. */
+        QUALITY_PRICE,
+        /** A percentage off the whole cart once its total reaches a threshold. */
+        BASKET_THRESHOLD
+    }
+
+    private final Kind kind;
+    private final Barcode barcode;
+    private final Quality quality;
+    private final int first;
+    private final int second;
+
+    private PromotionRule(Kind kind, Barcode barcode, Quality quality, int first, int second) {
+        this.kind = kind;
+        this.barcode = barcode;
+        this.quality = quality;
+        this.first = first;
+        this.second = second;
+    }
+
+    /**
+     * Creates a rule making some products of a type free for every group bought,
+     * e.g. buy 2 get 1 free. The cheapest products in the cart are the ones made free.
+     *
+     * @param barcode The type of product the promotion applies to.
+     * @param buy The number of products that must be paid for in each group.
+     * @param free The number of products given free in each group.
+     * @return The new rule.
+     * @throws IllegalArgumentException if buy or free is less than 1.
+     */
+    public static PromotionRule buyGet(Barcode barcode, int buy, int free) {
+        if (buy < 1 || free < 1) {
+            throw new IllegalArgumentException("Buy and free quantities must be at least 1.");
+        }
+        return new PromotionRule(Kind.BUY_GET, barcode, null, buy, free);
+    }
+
+    /**
+     * Creates a rule taking a percentage off a product type once at least the given quantity
+     * of it is in the cart.
+     *
+     * @param barcode The type of product the promotion applies to.
+     * @param minimumQuantity The quantity at which the discount starts to apply.
+     * @param percentOff The integer percentage taken off that product type's subtotal.
+     * @return The new rule.
+     * @throws IllegalArgumentException if the quantity is less than 1 or the percentage
+     *                                  is not between 0 and 100.
+     */
+    public static PromotionRule quantityBreak(Barcode barcode, int minimumQuantity, int percentOff) {
+        if (minimumQuantity < 1) {
+            throw new IllegalArgumentException("Minimum quantity must be at least 1.");
+        }
+        checkPercentage(percentOff);
+        return new PromotionRule(Kind.QUANTITY_BREAK, barcode, null, minimumQuantity, percentOff);
+    }
+
+    /**
+     * Creates a rule charging a fixed price for each product of the given type and quality.
+     *
+     * @param barcode The type of product the promotion applies to.
+     * @param quality The quality of product the promotion applies to.
+     * @param unitPrice The price charged for each such product, in cents.
+     * @return The new rule.
+     * @throws IllegalArgumentException if the price is negative.
+     */
+    public static PromotionRule qualityPrice(Barcode barcode, Quality quality, int unitPrice) {
+        if (unitPrice < 0) {
+            throw new IllegalArgumentException("Unit price cannot be negative.");
+        }
+        return new PromotionRule(Kind.QUALITY_PRICE, barcode, quality, unitPrice, 0);
+    }
+
+    /**
+     * Creates a rule taking a percentage off the whole cart once its total, after all product
+     * promotions, reaches the given threshold.
+     *
+     * @param minimumTotal The cart total at which the discount starts to apply, in cents.
+     * @param percentOff The integer percentage taken off the cart total.
+     * @return The new rule.
+     * @throws IllegalArgumentException if the threshold is negative or the percentage
+     *                                  is not between 0 and 100.
+     */
+    public static PromotionRule basketThreshold(int minimumTotal, int percentOff) {
+        if (minimumTotal < 0) {
+            throw new IllegalArgumentException("Minimum total cannot be negative.");
+        }
+        checkPercentage(percentOff);
+        return new PromotionRule(Kind.BASKET_THRESHOLD, null, null, minimumTotal, percentOff);
+    }
+
+    private static void checkPercentage(int percentage) {
+        if (percentage < 0 || percentage > 100) {
+            throw new IllegalArgumentException("Percentage must be between 0 and 100.");
+        }
+    }
+
+    /**
+     * Returns the kind of promotion this rule describes.
+     *
+     * @return The kind of rule.
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Returns the type of product this rule applies to.
+     *
+     * @return The barcode, or null for basket threshold rules.
+     */
+    public Barcode getBarcode() {
+        return barcode;
+    }
+
+    /**
+     * Returns the quality of product this rule applies to.
+     *
+     * @return The quality, or null for rules other than quality prices.
+     */
+    public Quality getQuality() {
+        return quality;
+    }
+
+    /**
+     * Returns the number of products that must be paid for in each group of a buy-get rule.
+     *
+     * @return The buy quantity, or 0 for other rules.
+     */
+    public int getBuyQuantity() {
+        return kind == Kind.BUY_GET ? first : 0;
+    }
+
+    /**
+     * Returns the number of products given free in each group of a buy-get rule.
+     *
+     * @return The free quantity, or 0 for other rules.
+     */
+    public int getFreeQuantity() {
+        return kind == Kind.BUY_GET ? second : 0;
+    }
+
+    /**
+     * Returns the quantity or cart total at which a quantity break or basket threshold applies.
+     *
+     * @return The threshold, or 0 for other rules.
+     */
+    public int getThreshold() {
+        return kind == Kind.QUANTITY_BREAK || kind == Kind.BASKET_THRESHOLD ? first : 0;
+    }
+
+    /**
+     * Returns the percentage taken off by a quantity break or basket threshold.
+     *
+     * @return The percentage discount, or 0 for other rules.
+     */
+    public int getPercentOff() {
+        return kind == Kind.QUANTITY_BREAK || kind == Kind.BASKET_THRESHOLD ? second : 0;
+    }
+
+    /**
+     * Returns the fixed unit price of a quality price rule.
+     *
+     * @return The unit price in cents, or 0 for other rules.
+     */
+    public int getUnitPrice() {
+        return kind == Kind.QUALITY_PRICE ? first : 0;
+    }
+
+    /**
+     * Returns a string representation of this rule.
+     *
+     * @return A short description of the promotion.
+     */
+    @Override
+    public String toString() {
+        return switch (kind) {
+            case BUY_GET -> "buy " + first + " " + barcode.getDisplayName()
+                    + " get " + second + " free";
+            case QUANTITY_BREAK -> second + "% off " + first + "+ " + barcode.getDisplayName();
+            case QUALITY_PRICE -> quality.name().toLowerCase() + " " + barcode.getDisplayName()
+                    + " for " + first + "c";
+            case BASKET_THRESHOLD -> second + "% off carts of " + first + "c or more";
+        };
+    }
+}
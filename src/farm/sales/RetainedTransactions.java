@@ -0,0 +1,113 @@
+package farm.sales;
+
+import farm.sales.transaction.Transaction;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * The transactions whose detail a {@link TransactionHistory} still retains, oldest first.
+ * <p>
+ * Transactions are only ever appended at the end or dropped from the front, and a slot is never
+ * written again once a transaction is stored in it: growing and compacting both move the
+ * transactions into a new array. A {@link #snapshot()} can therefore be a view of the current
+ * range of the array rather than a copy, and later changes never show through it. Dropping from
+ * the front only moves the start of the range, and the array is compacted once more than half
+ * of it has been dropped, so eviction costs amortised constant time per transaction.
+ * </p>
+ */
+final class RetainedTransactions {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private Transaction[] transactions;
+    private int start;
+    private int end;
+
+    /**
+     * Constructs an empty list of transactions.
+     */
+    RetainedTransactions() {
+        this.transactions = new Transaction[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Appends a transaction after the most recent one.
+     */
+    void add(Transaction transaction) {
+        if (end == transactions.length) {
+            moveTo(new Transaction[Math.max(INITIAL_CAPACITY, 2 * size())]);
+        }
+        transactions[end++] = transaction;
+    }
+
+    /**
+     * Drops the given number of the oldest transactions.
+     */
+    void dropFirst(int count) {
+        Objects.checkFromIndexSize(0, count, size());
+        start += count;
+        // dropped slots stay readable by earlier snapshots until the array is replaced
+        if (start > transactions.length / 2) {
+            moveTo(new Transaction[Math.max(INITIAL_CAPACITY, 2 * size())]);
+        }
+    }
+
+    /**
+     * Retrieves the transaction at the given position, counting from the oldest retained.
+     */
+    Transaction get(int index) {
+        Objects.checkIndex(index, size());
+        return transactions[start + index];
+    }
+
+    /**
+     * Retrieves the oldest retained transaction.
+     *
+     * @throws NoSuchElementException if no transactions are retained.
+     */
+    Transaction getFirst() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return transactions[start];
+    }
+
+    /**
+     * Retrieves the most recent transaction.
+     *
+     * @throws NoSuchElementException if no transactions are retained.
+     */
+    Transaction getLast() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return transactions[end - 1];
+    }
+
+    int size() {
+        return end - start;
+    }
+
+    boolean isEmpty() {
+        return end == start;
+    }
+
+    /**
+     * Returns a read-only view of the transactions retained now, oldest first, which later
+     * changes do not affect. Takes constant time.
+     */
+    List<Transaction> snapshot() {
+        return Collections.unmodifiableList(Arrays.asList(transactions).subList(start, end));
+    }
+
+    private void moveTo(Transaction[] array) {
+        int size = size();
+        System.arraycopy(transactions, start, array, 0, size);
+        transactions = array;
+        start = 0;
+        end = size;
+    }
+}
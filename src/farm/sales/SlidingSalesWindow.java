@@ -0,0 +1,199 @@
+package farm.sales;
+
+import farm.inventory.product.data.Barcode;
+import farm.sales.transaction.Transaction;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Aggregates recent sales into time buckets, so that questions such as
+ * "how much milk sold in the last hour" can be answered without scanning past transactions.
+ * <p>
+ * Sales are counted twice: into one-minute buckets covering the last hour, and into one-hour
+ * buckets covering the last week. Each set of buckets is a ring buffer, where a bucket is
+ * cleared and reused once the time it covers falls out of the window, so memory use never grows.
+ * A windowed query sums at most one ring's worth of buckets, regardless of how many transactions
+ * were made.
+ * </p>
+ * <p>
+ * Windows of up to an hour are answered to the minute, and longer windows, up to a week, to
+ * the hour. A window always includes the bucket holding the current time, so the last hour
+ * covers the current minute and the 59 minutes before it. Transactions older than a ring
+ * covers when they are recorded are left out of that ring.
+ * </p>
+ */
+public class SlidingSalesWindow {
+    /**
+     * The longest window answered from the per-minute buckets.
+     */
+    public static final Duration MINUTE_WINDOW = Duration.ofHours(1);
+
+    /**
+     * The longest window that can be queried at all, answered from the per-hour buckets.
+     */
+    public static final Duration HOUR_WINDOW = Duration.ofDays(7);
+
+    private static final Barcode[] BARCODES = Barcode.values();
+
+    private final Clock clock;
+    private final Ring minutes;
+    private final Ring hours;
+
+    /**
+     * Constructs a new, empty SlidingSalesWindow using the system clock.
+     */
+    public SlidingSalesWindow() {
+        this(Clock.systemUTC());
+    }
+
+    /**
+     * Constructs a new, empty SlidingSalesWindow measuring windows against the given clock.
+     *
+     * @param clock The clock providing the current time for queries.
+     */
+    public SlidingSalesWindow(Clock clock) {
+        this.clock = clock;
+        this.minutes = new Ring(Duration.ofMinutes(1).toMillis(),
+                (int) MINUTE_WINDOW.toMinutes());
+        this.hours = new Ring(Duration.ofHours(1).toMillis(), (int) HOUR_WINDOW.toHours());
+    }
+
+    /**
+     * Adds a finalised transaction's sales to the buckets covering the time it was finalised.
+     *
+     * @param transaction The transaction to count.
+     * @throws IllegalArgumentException if the transaction is not finalised.
+     */
+    public void record(Transaction transaction) {
+        if (!transaction.isFinalised()) {
+            throw new IllegalArgumentException("Transaction must be finalised before recording.");
+        }
+        long timestamp = transaction.getFinalisedAt();
+        minutes.add(timestamp, transaction);
+        hours.add(timestamp, transaction);
+    }
+
+    /**
+     * Calculates the number of products of a type sold within the given window of the current time.
+     *
+     * @param type The type of product.
+     * @param window How far back to count, at most {@link #HOUR_WINDOW}.
+     * @return The number of products sold in the window.
+     * @throws IllegalArgumentException if the window is not positive or longer than a week.
+     */
+    public int getUnitsSold(Barcode type, Duration window) {
+        Ring ring = ringFor(window);
+        long[] range = ring.range(clock.millis(), window);
+        int units = 0;
+        for (int slot = 0; slot < ring.starts.length; slot++) {
+            if (ring.covers(slot, range)) {
+                units += ring.units[slot * BARCODES.length + type.ordinal()];
+            }
+        }
+        return units;
+    }
+
+    /**
+     * Calculates the gross earnings, as reported by each transaction's total,
+     * from the transactions made within the given window of the current time.
+     *
+     * @param window How far back to count, at most {@link #HOUR_WINDOW}.
+     * @return The earnings in the window, in cents.
+     * @throws IllegalArgumentException if the window is not positive or longer than a week.
+     */
+    public long getGrossEarnings(Duration window) {
+        Ring ring = ringFor(window);
+        long[] range = ring.range(clock.millis(), window);
+        long earnings = 0;
+        for (int slot = 0; slot < ring.starts.length; slot++) {
+            if (ring.covers(slot, range)) {
+                earnings += ring.earnings[slot];
+            }
+        }
+        return earnings;
+    }
+
+    /**
+     * Calculates the number of transactions made within the given window of the current time.
+     *
+     * @param window How far back to count, at most {@link #HOUR_WINDOW}.
+     * @return The number of transactions in the window.
+     * @throws IllegalArgumentException if the window is not positive or longer than a week.
+     */
+    public int getTransactionCount(Duration window) {
+        Ring ring = ringFor(window);
+        long[] range = ring.range(clock.millis(), window);
+        int count = 0;
+        for (int slot = 0; slot < ring.starts.length; slot++) {
+            if (ring.covers(slot, range)) {
+                count += ring.transactions[slot];
+            }
+        }
+        return count;
+    }
+
+    private Ring ringFor(Duration window) {
+        if (window.isNegative() || window.isZero() || window.compareTo(HOUR_WINDOW) > 0) {
+            throw new IllegalArgumentException("Window must be between zero and "
+                    + HOUR_WINDOW.toDays() + " days.");
+        }
+        return window.compareTo(MINUTE_WINDOW) <= 0 ? minutes : hours;
+    }
+
+    /**
+     * A ring buffer of equally sized time buckets.
+     */
+    private static final class Ring {
+        private final long width;
+        private final long[] starts;
+        private final int[] units;
+        private final long[] earnings;
+        private final int[] transactions;
+
+        private Ring(long width, int buckets) {
+            this.width = width;
+            this.starts = new long[buckets];
+            this.units = new int[buckets * BARCODES.length];
+            this.earnings = new long[buckets];
+            this.transactions = new int[buckets];
+            Arrays.fill(starts, Long.MIN_VALUE);
+        }
+
+        private void add(long timestamp, Transaction transaction) {
+            long bucket = Math.floorDiv(timestamp, width);
+            int slot = (int) Math.floorMod(bucket, (long) starts.length);
+            if (starts[slot] > bucket) {
+                // the slot has already moved on to a later period
+                return;
+            }
+            if (starts[slot] < bucket) {
+                starts[slot] = bucket;
+                Arrays.fill(units, slot * BARCODES.length, (slot + 1) * BARCODES.length, 0);
+                earnings[slot] = 0;
+                transactions[slot] = 0;
+            }
+            for (Barcode type : BARCODES) {
+                units[slot * BARCODES.length + type.ordinal()] +=
+                        transaction.getPurchaseQuantity(type);
+            }
+            earnings[slot] += transaction.getTotal();
+            transactions[slot]++;
+        }
+
+        /*
+         * Returns the first and last bucket numbers covered by a window ending now,
+         * rounding the window up to whole buckets.
+         */
+        private long[] range(long now, Duration window) {
+            long last = Math.floorDiv(now, width);
+            long count = Math.max(1, (window.toMillis() + width - 1) / width);
+            return new long[] {last - count + 1, last};
+        }
+
+        private boolean covers(int slot, long[] range) {
+            return starts[slot] >= range[0] && starts[slot] <= range[1];
+        }
+    }
+}
@@ -1,25 +1,167 @@
 package farm.sales;
 
-import farm.inventory.product.Product;
+import farm.customer.CustomerKey;
+import farm.sales.sketch.SalesSketches;
 import farm.sales.transaction.SpecialSaleTransaction;
 import farm.sales.transaction.Transaction;
 import farm.inventory.product.data.Barcode;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.*;
 import java.util.stream.LongStream;
 
 /**
  * Constructs a new TransactionHistory object.
+ * <p>
+ * Alongside the transactions themselves, the history keeps running totals that are updated
+ * as each transaction is recorded: overall earnings and products sold, and units sold, gross
+ * earnings and discounts given per product type. Every statistic is read straight from these
+ * totals, so none of them rescan the history, no matter how long it grows.
+ * </p>
+ * <p>
+ * The highest grossing transaction is tracked in the same way, together with a leaderboard
+ * of the top grossing transactions. The leaderboard is a min-heap bounded to its capacity,
+ * whose root is the transaction that would be displaced next, so each recorded transaction
+ * costs at most O(log k) to rank.
+ * </p>
+ * <p>
+ * Recent sales are also counted into a {@link SlidingSalesWindow}, for questions about the
+ * last hour, day or week rather than all time, and their line items are appended to a
+ * column-oriented {@link LineItemLog} for ad-hoc analytics over the whole history. Approximate
+ * statistics that would otherwise need memory growing with the history, such as distinct
+ * customers, are kept in fixed-size {@link SalesSketches}.
+ * </p>
+ * <p>
+ * Each transaction is given an id, its position in the order transactions were recorded.
+ * Secondary indexes from each customer, and from each product type, to the ids of their
+ * transactions are kept as compressed posting lists, so finding a customer's purchases or every
+ * transaction containing wool reads only the matching transactions.
+ * </p>
+ * <p>
+ * A history may be given a detail retention period, after which transactions are rolled up
+ * into a {@link DailySummary} per day and their detail, along with the customers it references,
+ * is evicted. Every statistic is kept across both tiers, as are the sketches, and the
+ * leaderboard and highest grossing transaction, which keep their few transactions alive. The
+ * line item log rolls up the same transactions into its own report, and customers left without
+ * retained transactions are dropped from the customer indexes, remembered only so that they are
+ * still counted as distinct customers. Lookups by id or through the secondary indexes only find
+ * transactions whose detail is still retained. Rollups happen in batches, once the oldest
+ * retained transaction is a whole day past the retention period, and only revisit the customers
+ * of the transactions rolled up, so evicting detail costs amortised constant time per
+ * transaction. The rolled up tier can be copied out as a {@link HistoryRollup}, to be saved
+ * with the retained transactions and later restored into an empty history. The retained
+ * transactions are only appended to or dropped from the front, so they can be listed for saving
+ * as a view that later changes do not affect, without copying them.
+ * </p>
  */
 public class TransactionHistory {
-    private final List<Transaction> transactionHistory;
+    /**
+     * The number of transactions kept on the top grossing leaderboard by default.
+     */
+    public static final int DEFAULT_LEADERBOARD_SIZE = 10;
+
+    private static final Barcode[] BARCODES = Barcode.values();
+
+    /*
+     * How far past the retention period the oldest transaction may be before a rollup.
+     */
+    private static final long ROLLUP_INTERVAL = Duration.ofDays(1).toMillis();
+
+    /*
+     * Orders leaderboard entries from first to be displaced to last: lower totals first,
+     * and among equal totals, later transactions first, since earlier ones win ties.
+     */
+    private static final Comparator<RankedTransaction> DISPLACEMENT_ORDER =
+            Comparator.comparingInt(RankedTransaction::total)
+                    .thenComparing(Comparator.comparingLong(RankedTransaction::sequence).reversed());
+
+    private final RetainedTransactions transactionHistory;
+    private int evicted;
+    private final Duration detailRetention;
+    private final ZoneId zone;
+    private final NavigableMap<LocalDate, DailySummary> rollups;
+    private final Map<CustomerKey, PostingList> customerIndex;
+    private final Map<Integer, List<CustomerKey>> customersByPhoneNumber;
+    private final Set<CustomerKey> rolledUpCustomers;
+    private List<CustomerKey> rolledUpCustomerList;
+    private final PostingList[] barcodeIndex;
+    private long grossEarnings;
+    private long productsSold;
+    private final long[] unitsSold;
+    private final long[] grossEarningsByType;
+    private final long[] discountedUnits;
+    private final long[] discountPercentages;
+    private Transaction highestGrossing;
+    private int highestTotal;
+    private final int leaderboardSize;
+    private final PriorityQueue<RankedTransaction> leaderboard;
+    private final SlidingSalesWindow recentSales;
+    private final LineItemLog lineItems;
+    private final SalesSketches sketches;
 
     /**
      * Constructs a new TransactionHistory object.
      */
     public TransactionHistory() {
-        // Constructor implementation
-        this.transactionHistory = new ArrayList<>();
+        this(DEFAULT_LEADERBOARD_SIZE);
+    }
+
+    /**
+     * Constructs a new TransactionHistory object keeping the given number of transactions
+     * on its top grossing leaderboard.
+     *
+     * @param leaderboardSize the number of top grossing transactions to keep.
+     * @throws IllegalArgumentException if the size is less than 1.
+     */
+    public TransactionHistory(int leaderboardSize) {
+        this(leaderboardSize, null, ZoneId.systemDefault());
+    }
+
+    /**
+     * Constructs a new TransactionHistory object that keeps the detail of each transaction
+     * for the given period, then rolls it up into a summary of the day it was made on.
+     *
+     * @param leaderboardSize the number of top grossing transactions to keep.
+     * @param detailRetention how long to keep each transaction's detail after it is finalised,
+     *                        or null to keep it forever.
+     * @param zone the time zone in which each day of rolled up transactions starts and ends.
+     * @throws IllegalArgumentException if the size is less than 1,
+     *                                  or the retention period is negative.
+     */
+    public TransactionHistory(int leaderboardSize, Duration detailRetention, ZoneId zone) {
+        if (leaderboardSize < 1) {
+            throw new IllegalArgumentException("Leaderboard size must be at least 1.");
+        }
+        if (detailRetention != null && detailRetention.isNegative()) {
+            throw new IllegalArgumentException("Detail retention cannot be negative.");
+        }
+        this.transactionHistory = new RetainedTransactions();
+        this.evicted = 0;
+        this.detailRetention = detailRetention;
+        this.zone = zone;
+        this.rollups = new TreeMap<>();
+        this.customerIndex = new HashMap<>();
+        this.customersByPhoneNumber = new HashMap<>();
+        this.rolledUpCustomers = new HashSet<>();
+        this.rolledUpCustomerList = List.of();
+        this.barcodeIndex = new PostingList[BARCODES.length];
+        for (int i = 0; i < BARCODES.length; i++) {
+            barcodeIndex[i] = new PostingList();
+        }
+        this.unitsSold = new long[BARCODES.length];
+        this.grossEarningsByType = new long[BARCODES.length];
+        this.discountedUnits = new long[BARCODES.length];
+        this.discountPercentages = new long[BARCODES.length];
+        this.highestGrossing = null;
+        this.highestTotal = 0;
+        this.leaderboardSize = leaderboardSize;
+        this.leaderboard = new PriorityQueue<>(leaderboardSize, DISPLACEMENT_ORDER);
+        this.recentSales = new SlidingSalesWindow();
+        this.lineItems = new LineItemLog();
+        this.sketches = new SalesSketches(zone);
     }
 
     /**
@@ -29,16 +171,270 @@ public class TransactionHistory {
      */
     public void recordTransaction(Transaction transaction) {
         if (transaction.isFinalised()) {
+            int id = getTotalTransactionsMade();
             transactionHistory.add(transaction);
+            updateIndexes(id, transaction);
+            updateAggregates(id, transaction);
+            recentSales.record(transaction);
+            lineItems.append(transaction);
+            sketches.record(transaction);
+            if (detailRetention != null && transactionHistory.getFirst().getFinalisedAt()
+                    < transaction.getFinalisedAt() - detailRetention.toMillis() - ROLLUP_INTERVAL) {
+                rollUp(transaction.getFinalisedAt());
+            }
         } else {
             throw new IllegalArgumentException("Transaction must be finalised before recording.");
         }
     }
 
+    /**
+     * Adds the given transaction's id to the postings of its customer and product types.
+     */
+    private void updateIndexes(int id, Transaction transaction) {
+        CustomerKey customer = transaction.getCustomerKey();
+        PostingList postings = customerIndex.get(customer);
+        if (postings == null) {
+            postings = new PostingList();
+            customerIndex.put(customer, postings);
+            customersByPhoneNumber.computeIfAbsent(customer.getPhoneNumber(),
+                    phone -> new ArrayList<>()).add(customer);
+            if (rolledUpCustomers.remove(customer)) {
+                rolledUpCustomerList = null;
+            }
+        }
+        postings.add(id);
+        for (Barcode type : BARCODES) {
+            if (transaction.getPurchaseQuantity(type) > 0) {
+                barcodeIndex[type.ordinal()].add(id);
+            }
+        }
+    }
+
+    /**
+     * Adds the given transaction's purchases to the running totals.
+     */
+    private void updateAggregates(int id, Transaction transaction) {
+        int total = transaction.getTotal();
+        grossEarnings += total;
+        rank(transaction, total, id);
+        productsSold += transaction.getPurchaseCount();
+        for (Barcode type : BARCODES) {
+            int quantity = transaction.getPurchaseQuantity(type);
+            if (quantity == 0) {
+                continue;
+            }
+            int index = type.ordinal();
+            unitsSold[index] += quantity;
+            grossEarningsByType[index] += transaction.getUndiscountedSubtotal(type);
+            if (transaction instanceof SpecialSaleTransaction specialTransaction) {
+                discountedUnits[index] += quantity;
+                discountPercentages[index] += (long) quantity
+                        * specialTransaction.getDiscountAmount(type);
+            }
+        }
+    }
+
+    /**
+     * Ranks the given transaction against the highest grossing and the leaderboard.
+     */
+    private void rank(Transaction transaction, int total, long id) {
+        // strictly greater, so the earliest of equally grossing transactions is kept
+        if (highestGrossing == null || total > highestTotal) {
+            highestGrossing = transaction;
+            highestTotal = total;
+        }
+        RankedTransaction ranked = new RankedTransaction(transaction, total, id);
+        if (leaderboard.size() < leaderboardSize) {
+            leaderboard.add(ranked);
+        } else if (DISPLACEMENT_ORDER.compare(ranked, leaderboard.peek()) > 0) {
+            leaderboard.poll();
+            leaderboard.add(ranked);
+        }
+    }
+
+    /**
+     * Copies everything this history keeps about the transactions it has rolled up, so that
+     * it can be saved along with the retained transactions. Only the daily summaries, the
+     * leaderboard and the customers known only from rolled up transactions are copied.
+     *
+     * @return the rollup of this history's evicted transactions.
+     */
+    public HistoryRollup getRollup() {
+        List<DailySummary> summaries = new ArrayList<>(rollups.size());
+        for (DailySummary summary : rollups.values()) {
+            summaries.add(new DailySummary(summary));
+        }
+        // retained leaders are ranked again when their transactions are recorded
+        List<RankedTransaction> evictedLeaders = leaderboard.stream()
+                .filter(ranked -> ranked.sequence() < evicted)
+                .sorted(Comparator.comparingLong(RankedTransaction::sequence))
+                .toList();
+        long[] leaderIds = new long[evictedLeaders.size()];
+        for (int i = 0; i < leaderIds.length; i++) {
+            leaderIds[i] = evictedLeaders.get(i).sequence();
+        }
+        HistoryReport lineItemRollup =
+                new HistoryReport(ParallelHistoryAnalytics.DEFAULT_SPEND_UPPER_BOUNDS);
+        lineItems.mergeRolledUp(lineItemRollup);
+        return new HistoryRollup(leaderboardSize, detailRetention, zone, summaries,
+                evictedLeaders.stream().map(RankedTransaction::transaction).toList(), leaderIds,
+                getRolledUpCustomers(), lineItemRollup);
+    }
+
+    /**
+     * Lists the customers known only from rolled up transactions, copying them only when they
+     * have changed since last listed.
+     */
+    private List<CustomerKey> getRolledUpCustomers() {
+        if (rolledUpCustomerList == null) {
+            rolledUpCustomerList = List.copyOf(rolledUpCustomers);
+        }
+        return rolledUpCustomerList;
+    }
+
+    /**
+     * Restores the rollup of another history's evicted transactions into this history, which
+     * must be empty. The other history's retained transactions should then be recorded in the
+     * order they were originally recorded, so that they keep their ids.
+     *
+     * @param rollup the rollup to restore.
+     * @throws IllegalStateException if this history already holds transactions.
+     */
+    public void restoreRollup(HistoryRollup rollup) {
+        if (getTotalTransactionsMade() > 0) {
+            throw new IllegalStateException("A rollup can only be restored into an empty history.");
+        }
+        for (DailySummary summary : rollup.getSummaries()) {
+            rollups.put(summary.getDate(), new DailySummary(summary));
+            evicted += summary.getTransactionCount();
+            grossEarnings += summary.getGrossEarnings();
+            for (Barcode type : BARCODES) {
+                int index = type.ordinal();
+                productsSold += summary.getUnitsSold(type);
+                unitsSold[index] += summary.getUnitsSold(type);
+                grossEarningsByType[index] += summary.getGrossEarnings(type);
+                discountedUnits[index] += summary.getDiscountedUnits(type);
+                discountPercentages[index] += summary.getDiscountPercentages(type);
+            }
+        }
+        List<Transaction> leaders = rollup.getLeaders();
+        for (int i = 0; i < leaders.size(); i++) {
+            rank(leaders.get(i), leaders.get(i).getTotal(), rollup.getLeaderIds()[i]);
+        }
+        rolledUpCustomers.addAll(rollup.getCustomers());
+        rolledUpCustomerList = null;
+        lineItems.restoreRolledUp(rollup.getLineItems());
+    }
+
+    /**
+     * Rolls up every transaction finalised more than the retention period before the given time
+     * into its day's summary, and evicts its detail. Transactions are rolled up in the order they
+     * were recorded, stopping at the first one still within the period.
+     *
+     * <p>Recording a transaction rolls up older ones automatically; this forces a rollup now.</p>
+     *
+     * @param now the current time, in milliseconds since the epoch.
+     * @return the number of transactions rolled up.
+     */
+    public int rollUp(long now) {
+        if (detailRetention == null) {
+            return 0;
+        }
+        long cutoff = now - detailRetention.toMillis();
+        int count = 0;
+        Set<CustomerKey> customers = new HashSet<>();
+        while (count < transactionHistory.size()
+                && transactionHistory.get(count).getFinalisedAt() < cutoff) {
+            Transaction transaction = transactionHistory.get(count);
+            LocalDate date = LocalDate.ofInstant(
+                    Instant.ofEpochMilli(transaction.getFinalisedAt()), zone);
+            rollups.computeIfAbsent(date, DailySummary::new).add(transaction);
+            customers.add(transaction.getCustomerKey());
+            count++;
+        }
+        if (count == 0) {
+            return 0;
+        }
+        transactionHistory.dropFirst(count);
+        evicted += count;
+        lineItems.rollUp(count);
+        // only the customers of evicted transactions can have lost postings
+        for (CustomerKey customer : customers) {
+            PostingList postings = customerIndex.get(customer).from(evicted);
+            if (postings.size() > 0) {
+                customerIndex.put(customer, postings);
+                continue;
+            }
+            customerIndex.remove(customer);
+            List<CustomerKey> samePhone = customersByPhoneNumber.get(customer.getPhoneNumber());
+            samePhone.remove(customer);
+            if (samePhone.isEmpty()) {
+                customersByPhoneNumber.remove(customer.getPhoneNumber());
+            }
+            rolledUpCustomers.add(customer);
+            rolledUpCustomerList = null;
+        }
+        for (int i = 0; i < barcodeIndex.length; i++) {
+            barcodeIndex[i] = barcodeIndex[i].from(evicted);
+        }
+        return count;
+    }
+
+    /**
+     * Retrieves the summaries of every day whose transactions have been rolled up, earliest first.
+     * A day still within the retention period may be only partly rolled up.
+     *
+     * @return the daily summaries.
+     */
+    public List<DailySummary> getDailySummaries() {
+        return List.copyOf(rollups.values());
+    }
+
+    /**
+     * Retrieves the summary of the transactions rolled up from the given day.
+     *
+     * @param date the day of interest.
+     * @return the day's summary, or null if none of its transactions have been rolled up.
+     */
+    public DailySummary getDailySummary(LocalDate date) {
+        return rollups.get(date);
+    }
+
+    /**
+     * Retrieves how long each transaction's detail is kept after it is finalised.
+     *
+     * @return the retention period, or null if detail is kept forever.
+     */
+    public Duration getDetailRetention() {
+        return detailRetention;
+    }
+
+    /**
+     * Calculates the number of transactions whose detail is still retained.
+     *
+     * @return the number of retained transactions.
+     */
+    public int getRetainedTransactionCount() {
+        return transactionHistory.size();
+    }
+
+    /**
+     * Retrieves the transactions whose detail is still retained, in the order they were
+     * recorded, such as for saving them. The list is a read-only view rather than a copy, so
+     * this takes constant time, and transactions recorded or rolled up later do not show
+     * through it.
+     *
+     * @return the retained transactions, oldest first.
+     */
+    public List<Transaction> getRetainedTransactions() {
+        return transactionHistory.snapshot();
+    }
+
     /**
      * Retrieves the most recent transaction added to the record.
      *
-     * @return the most recent transaction added to the record.
+     * @return the most recent transaction added to the record,
+     *         or null if no transaction's detail is retained.
      */
     public Transaction getLastTransaction() {
         if (transactionHistory.isEmpty()) {
@@ -47,6 +443,134 @@ public class TransactionHistory {
         return transactionHistory.getLast(); // Return the last transaction in the list
     }
 
+    /**
+     * Retrieves all transactions attributed to the customer with the given key,
+     * in the order they were recorded.
+     *
+     * @param customer the key of the customer of interest.
+     * @return the transactions made by that customer, or an empty list if there are none.
+     */
+    public List<Transaction> getTransactionsFor(CustomerKey customer) {
+        return getTransactions(getTransactionIdsFor(customer));
+    }
+
+    /**
+     * Retrieves all transactions containing at least one product of the given type,
+     * in the order they were recorded.
+     *
+     * @param type the Barcode of the product of interest.
+     * @return the transactions containing that product, or an empty list if there are none.
+     */
+    public List<Transaction> getTransactionsContaining(Barcode type) {
+        return getTransactions(getTransactionIdsContaining(type));
+    }
+
+    /**
+     * Retrieves the transactions made by the given customer that contain at least one product
+     * of the given type, in the order they were recorded.
+     *
+     * @param customer the key of the customer of interest.
+     * @param type the Barcode of the product of interest.
+     * @return the matching transactions, or an empty list if there are none.
+     */
+    public List<Transaction> getTransactionsFor(CustomerKey customer, Barcode type) {
+        return getTransactions(PostingList.intersect(getTransactionIdsFor(customer),
+                getTransactionIdsContaining(type)));
+    }
+
+    /**
+     * Retrieves the ids of all transactions attributed to the customer with the given key.
+     *
+     * @param customer the key of the customer of interest.
+     * @return the ids of that customer's transactions, in ascending order.
+     */
+    public int[] getTransactionIdsFor(CustomerKey customer) {
+        PostingList postings = customerIndex.get(customer);
+        return postings == null ? new int[0] : postings.toArray();
+    }
+
+    /**
+     * Retrieves the ids of all transactions containing at least one product of the given type.
+     *
+     * @param type the Barcode of the product of interest.
+     * @return the ids of the matching transactions, in ascending order.
+     */
+    public int[] getTransactionIdsContaining(Barcode type) {
+        return barcodeIndex[type.ordinal()].toArray();
+    }
+
+    /**
+     * Retrieves the transaction with the given id, i.e. the position it was recorded at.
+     *
+     * @param id the id of the transaction.
+     * @return the transaction with that id.
+     * @throws IndexOutOfBoundsException if no transaction has that id,
+     *                                   or its detail has been rolled up.
+     */
+    public Transaction getTransaction(int id) {
+        if (id < evicted) {
+            throw new IndexOutOfBoundsException("Transaction " + id + " has been rolled up.");
+        }
+        return transactionHistory.get(id - evicted);
+    }
+
+    /**
+     * Retrieves the keys of every customer with the given phone number who has made
+     * a transaction whose detail is still retained.
+     *
+     * @param phoneNumber the phone number of interest.
+     * @return the keys of the matching customers, in the order of their first transaction.
+     */
+    public List<CustomerKey> getCustomersWithPhoneNumber(int phoneNumber) {
+        return List.copyOf(customersByPhoneNumber.getOrDefault(phoneNumber, List.of()));
+    }
+
+    private List<Transaction> getTransactions(int[] ids) {
+        List<Transaction> transactions = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            transactions.add(transactionHistory.get(id - evicted));
+        }
+        return transactions;
+    }
+
+    /**
+     * Retrieves the windowed counts of recent sales, such as those in the last hour.
+     *
+     * @return the recent sales in this history.
+     */
+    public SlidingSalesWindow getRecentSales() {
+        return recentSales;
+    }
+
+    /**
+     * Retrieves the line items of every retained transaction in this history, stored column by
+     * column, along with a report rolled up from the rest. Transaction ids in the log follow the
+     * order transactions were recorded in, starting from the first retained transaction.
+     *
+     * @return the line item log.
+     */
+    public LineItemLog getLineItems() {
+        return lineItems;
+    }
+
+    /**
+     * Retrieves the approximate statistics kept over this history.
+     *
+     * @return the sales sketches.
+     */
+    public SalesSketches getSketches() {
+        return sketches;
+    }
+
+    /**
+     * Calculates the exact number of distinct customers who have made a transaction.
+     *
+     * @return the number of distinct customers.
+     */
+    public int getDistinctCustomerCount() {
+        return customerIndex.size() + rolledUpCustomers.size();
+    }
+
     /**
      * Calculates the gross earnings, i.e., total income, from all transactions.
      *
@@ -63,11 +587,21 @@ public class TransactionHistory {
      * <p>Note: returns the calculated total in integer cents.</p>
      *
      * @return the gross earnings from all transactions in history, in cents.
+     * @throws ArithmeticException if the gross earnings do not fit in an int; use
+     *         {@link #getExactGrossEarnings()} instead.
      */
     public int getGrossEarnings() {
-        return transactionHistory.stream()
-                .mapToInt(Transaction::getTotal)
-                .sum();
+        return Math.toIntExact(grossEarnings);
+    }
+
+    /**
+     * Calculates the gross earnings from all transactions in history, as defined in
+     * {@code getGrossEarnings()}, without limiting them to the range of an int.
+     *
+     * @return the gross earnings from all transactions in history, in cents.
+     */
+    public long getExactGrossEarnings() {
+        return grossEarnings;
     }
 
     /**
@@ -81,33 +615,52 @@ public class TransactionHistory {
      *
      * @param type the Barcode of the item of interest.
      * @return the gross earnings from all sales of the product type, in cents.
+     * @throws ArithmeticException if the gross earnings do not fit in an int; use
+     *         {@link #getExactGrossEarnings(Barcode)} instead.
      */
     public int getGrossEarnings(Barcode type) {
-        return transactionHistory.stream()
-                .flatMap(t -> t.getPurchases().stream())
-                .filter(product -> product.getBarcode().equals(type))
-                .mapToInt(Product::getBasePrice)
-                .sum();
+        return Math.toIntExact(grossEarningsByType[type.ordinal()]);
+    }
+
+    /**
+     * Calculates the gross earnings from all sales of a particular product type, without
+     * limiting them to the range of an int.
+     *
+     * @param type the Barcode of the item of interest.
+     * @return the gross earnings from all sales of the product type, in cents.
+     */
+    public long getExactGrossEarnings(Barcode type) {
+        return grossEarningsByType[type.ordinal()];
     }
 
     /**
-     * Calculates the number of transactions made.
+     * Calculates the number of transactions made, including those rolled up.
      *
      * @return the number of transactions in total.
      */
     public int getTotalTransactionsMade() {
-        return transactionHistory.size(); // Returns the total number of transactions
+        return evicted + transactionHistory.size(); // Returns the total number of transactions
     }
 
     /**
      * Calculates the number of products sold over all transactions.
      *
      * @return the total number of products sold.
+     * @throws ArithmeticException if the number does not fit in an int; use
+     *         {@link #getExactProductsSold()} instead.
      */
     public int getTotalProductsSold() {
-        return transactionHistory.stream()
-                .mapToInt(t -> t.getPurchases().size())
-                .sum();
+        return Math.toIntExact(productsSold);
+    }
+
+    /**
+     * Calculates the number of products sold over all transactions, without limiting it to the
+     * range of an int.
+     *
+     * @return the total number of products sold.
+     */
+    public long getExactProductsSold() {
+        return productsSold;
     }
 
     /**
@@ -116,13 +669,22 @@ public class TransactionHistory {
      *
      * @param type the Barcode for the product of interest.
      * @return the total number of products sold, for that particular product.
+     * @throws ArithmeticException if the number does not fit in an int; use
+     *         {@link #getExactProductsSold(Barcode)} instead.
      */
     public int getTotalProductsSold(Barcode type) {
-        return transactionHistory.stream()
-                .flatMap(t -> t.getPurchases().stream())
-                .filter(product -> product.getBarcode().equals(type))
-                .mapToInt(product -> 1)
-                .sum();
+        return Math.toIntExact(unitsSold[type.ordinal()]);
+    }
+
+    /**
+     * Calculates the number of products sold of a particular type over all transactions,
+     * without limiting it to the range of an int.
+     *
+     * @param type the Barcode for the product of interest.
+     * @return the total number of products sold, for that particular product.
+     */
+    public long getExactProductsSold(Barcode type) {
+        return unitsSold[type.ordinal()];
     }
 
     /**
@@ -130,10 +692,34 @@ public class TransactionHistory {
      *
      * <p>If there are multiple transactions with the same highest earnings, return the one that was recorded first.</p>
      *
-     * @return the transaction with the highest gross earnings.
+     * @return the transaction with the highest gross earnings, or null if there are none.
      */
     public Transaction getHighestGrossingTransaction() {
-        return transactionHistory.getFirst();
+        return highestGrossing;
+    }
+
+    /**
+     * Retrieves the top grossing transactions, highest first.
+     *
+     * <p>Transactions with the same earnings are ordered by when they were recorded, earliest
+     * first. At most {@link #getLeaderboardSize()} transactions are returned.</p>
+     *
+     * @return the top grossing transactions.
+     */
+    public List<Transaction> getTopGrossingTransactions() {
+        return leaderboard.stream()
+                .sorted(DISPLACEMENT_ORDER.reversed())
+                .map(RankedTransaction::transaction)
+                .toList();
+    }
+
+    /**
+     * Returns the number of transactions kept on the top grossing leaderboard.
+     *
+     * @return the leaderboard capacity.
+     */
+    public int getLeaderboardSize() {
+        return leaderboardSize;
     }
 
     /**
@@ -147,9 +733,13 @@ public class TransactionHistory {
      * @return the identifier for the product type of the most popular product.
      */
     public Barcode getMostPopularProduct() {
-        return Arrays.stream(Barcode.values())
-                .max(Comparator.comparingInt(this::getTotalProductsSold))
-                .orElse(null);
+        Barcode mostPopular = BARCODES[0];
+        for (Barcode type : BARCODES) {
+            if (unitsSold[type.ordinal()] > unitsSold[mostPopular.ordinal()]) {
+                mostPopular = type;
+            }
+        }
+        return mostPopular;
     }
 
     /**
@@ -168,7 +758,7 @@ public class TransactionHistory {
      * @return the average amount spent overall, in cents (with decimals).
      */
     public double getAverageSpendPerVisit() {
-        if (transactionHistory.isEmpty()) {
+        if (getTotalTransactionsMade() == 0) {
             return 0.0;
         }
 
@@ -192,22 +782,15 @@ public class TransactionHistory {
      * @return the average discount for the product, in cents (with decimals).
      */
     public double getAverageProductDiscount(Barcode type) {
-        double totalDiscountPercentage = 0.0;
-        int productCount = 0;
-        // Calculate the total discount for the given product type across all transactions
-        for (Transaction transaction : transactionHistory) {
-            if (transaction instanceof SpecialSaleTransaction specialTransaction) {
-                for (Product product : transaction.getPurchases()) {
-                    if (product.getBarcode().equals(type)) {
-                        int discountPercentage = specialTransaction.getDiscountAmount(type);
-                        totalDiscountPercentage += discountPercentage;
-                        productCount++;
-                    }
-                }
-            }
-        }
+        long productCount = discountedUnits[type.ordinal()];
         // If no products were sold, return 0.0
-        return productCount > 0 ? totalDiscountPercentage / productCount : 0.0;
+        return productCount > 0
+                ? (double) discountPercentages[type.ordinal()] / productCount : 0.0;
     }
 
-}
\ No newline at end of file
+    /**
+     * A transaction on the leaderboard, with its total and position in the history.
+     */
+    private record RankedTransaction(Transaction transaction, int total, long sequence) {
+    }
+}
@@ -1,31 +1,51 @@
 package farm.sales;
 
 import farm.core.FailedTransactionException;
+import farm.customer.CustomerKey;
 import farm.inventory.product.Product;
 import farm.sales.transaction.Transaction;
 
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * The controlling class for all transactions.
  * <p>
  * This class is responsible for opening and closing transactions,
  * as well as ensuring that only one transaction
- * is active at any given time. It does not create transactions
+ * is active in each lane at any given time. It does not create transactions
  * but keeps track of the currently ongoing transaction
  * and the associated customer cart.
  * </p>
  * <p>
+ * Transactions are managed per lane, such as a till or a session, identified by a string.
+ * Each lane has at most one ongoing transaction, but any number of lanes may be serving
+ * customers at once, and a customer may only be served in one lane at a time so that every
+ * ongoing transaction has its own cart. Lanes are held in concurrent maps, so separate lanes
+ * can be driven from separate threads without a shared lock; a single lane must only be used
+ * by one thread at a time. The lane-less methods operate on {@link #DEFAULT_LANE}.
+ * </p>
+ * <p>
  * Component of Stage 2.
  * </p>
  */
 public class TransactionManager {
-    private Transaction ongoingTransaction;
+    /**
+     * The lane used by the methods that do not take a lane identifier.
+     */
+    public static final String DEFAULT_LANE = "default";
+
+    private final Map<String, Transaction> ongoingTransactions;
+    private final Set<CustomerKey> customersBeingServed;
 
     /**
      * Constructs a new TransactionManager object.
      */
     public TransactionManager() {
         // Constructor implementation
-        this.ongoingTransaction = null;
+        this.ongoingTransactions = new ConcurrentHashMap<>();
+        this.customersBeingServed = ConcurrentHashMap.newKeySet();
     }
 
     /**
@@ -34,8 +54,36 @@ public class TransactionManager {
      * @return {@code true} if a transaction is in progress, else {@code false}.
      */
     public boolean hasOngoingTransaction() {
-        // Method implementation
-        return ongoingTransaction != null;
+        return hasOngoingTransaction(DEFAULT_LANE);
+    }
+
+    /**
+     * Determines whether a transaction is currently in progress in the given lane.
+     *
+     * @param lane the identifier of the lane.
+     * @return {@code true} if a transaction is in progress in that lane, else {@code false}.
+     */
+    public boolean hasOngoingTransaction(String lane) {
+        return ongoingTransactions.containsKey(lane);
+    }
+
+    /**
+     * Retrieves the transaction currently in progress in the given lane.
+     *
+     * @param lane the identifier of the lane.
+     * @return the ongoing transaction, or null if the lane is free.
+     */
+    public Transaction getOngoingTransaction(String lane) {
+        return ongoingTransactions.get(lane);
+    }
+
+    /**
+     * Retrieves the identifiers of every lane with a transaction in progress.
+     *
+     * @return a snapshot of the busy lanes.
+     */
+    public Set<String> getActiveLanes() {
+        return Set.copyOf(ongoingTransactions.keySet());
     }
 
     /**
@@ -52,11 +100,29 @@ public class TransactionManager {
      * @throws FailedTransactionException if a transaction is already in progress.
      */
     public void setOngoingTransaction(Transaction transaction) throws FailedTransactionException {
-        // Method implementation
-        if (hasOngoingTransaction()) {
+        setOngoingTransaction(DEFAULT_LANE, transaction);
+    }
+
+    /**
+     * Begins managing the specified transaction in the given lane,
+     * provided that lane is free and the customer is not being served in any other lane.
+     *
+     * @param lane the identifier of the lane to serve the transaction in.
+     * @param transaction the transaction to set as the lane's ongoing transaction.
+     * @throws FailedTransactionException if a transaction is already in progress in that lane,
+     * or the customer already has a transaction in progress.
+     */
+    public void setOngoingTransaction(String lane, Transaction transaction)
+            throws FailedTransactionException {
+        CustomerKey customer = transaction.getCustomerKey();
+        if (!customersBeingServed.add(customer)) {
+            throw new FailedTransactionException(
+                    "This customer already has a transaction in progress.");
+        }
+        if (ongoingTransactions.putIfAbsent(lane, transaction) != null) {
+            customersBeingServed.remove(customer);
             throw new FailedTransactionException("A transaction is already in progress.");
         }
-        this.ongoingTransaction = transaction;
     }
 
     /**
@@ -74,8 +140,24 @@ public class TransactionManager {
      * i.e., has been successfully retrieved from the farm's inventory.
      */
     public void registerPendingPurchase(Product product) throws FailedTransactionException {
-        // Method implementation
-        if (!hasOngoingTransaction()) {
+        registerPendingPurchase(DEFAULT_LANE, product);
+    }
+
+    /**
+     * Adds the given product to the cart of the customer associated
+     * with the transaction ongoing in the given lane.
+     *
+     * @param lane the identifier of the lane.
+     * @param product the product to add to the customer's cart.
+     * @throws FailedTransactionException if there is no ongoing transaction in that lane
+     * or the transaction has already been finalised.
+     * @requires the provided product is known to be valid for purchase,
+     * i.e., has been successfully retrieved from the farm's inventory.
+     */
+    public void registerPendingPurchase(String lane, Product product)
+            throws FailedTransactionException {
+        Transaction ongoingTransaction = ongoingTransactions.get(lane);
+        if (ongoingTransaction == null) {
             throw new FailedTransactionException("No ongoing transaction to register purchase.");
         }
         if (ongoingTransaction.isFinalised()) {
@@ -103,13 +185,24 @@ public class TransactionManager {
      * transaction to close.
      */
     public Transaction closeCurrentTransaction() throws FailedTransactionException {
-        // Method implementation
-        if (!hasOngoingTransaction()) {
+        return closeCurrentTransaction(DEFAULT_LANE);
+    }
+
+    /**
+     * Finalises the transaction ongoing in the given lane and frees the lane
+     * to accept a new transaction.
+     *
+     * @param lane the identifier of the lane.
+     * @return the finalised transaction.
+     * @throws FailedTransactionException if there is no ongoing transaction in that lane.
+     */
+    public Transaction closeCurrentTransaction(String lane) throws FailedTransactionException {
+        Transaction transactionToClose = ongoingTransactions.remove(lane);
+        if (transactionToClose == null) {
             throw new FailedTransactionException("No ongoing transaction to close.");
         }
-        Transaction transactionToClose = ongoingTransaction;
-        this.ongoingTransaction = null;
         transactionToClose.finalise();
+        customersBeingServed.remove(transactionToClose.getCustomerKey());
         return transactionToClose;
     }
 }
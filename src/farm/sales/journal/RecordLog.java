@@ -0,0 +1,394 @@
+package farm.sales.journal;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * A durable, append-only file of binary records, written with group commit.
+ * <p>
+ * The file starts with a short header identifying what kind of log it is, followed by one
+ * record per append: the length of the payload, its CRC-32 checksum, then the payload itself.
+ * When the log is opened, records are checked in order and the file is cut off after the last
+ * intact one, dropping any record torn by a crash mid-write.
+ * </p>
+ * <p>
+ * Appending only frames the payload and queues it, so it never waits for the disk. A background
+ * writer takes queued records in groups, writes each group at once and then forces it to disk
+ * with a single fsync. A group is committed once it holds the configured number of records, or
+ * the configured time has passed since its first record was queued, whichever comes first.
+ * Callers that must know a record is durable can commit the current group straight away and
+ * wait for it with {@link #flush()}.
+ * </p>
+ */
+public class RecordLog implements AutoCloseable {
+    private static final int VERSION = 1;
+    private static final int HEADER_LENGTH = 8;
+    private static final int RECORD_HEADER_LENGTH = 8;
+    private static final int MAX_RECORD_LENGTH = 1 << 24;
+
+    /*
+     * Queued by close() to tell the writer to stop once everything before it is written.
+     */
+    private static final byte[] SHUTDOWN = new byte[0];
+
+    /*
+     * Queued by flush() to tell the writer to commit its group without waiting for it to fill.
+     */
+    private static final byte[] FLUSH = new byte[0];
+
+    private final Path path;
+    private final int magic;
+    private final FileChannel channel;
+    private final int groupSize;
+    private final long groupDelayNanos;
+    private final BlockingQueue<byte[]> pending;
+    private final Thread writer;
+    private final long openedLength;
+    private final int recordCount;
+    private final Object durableLock;
+    private long appendedCount;
+    private long appendedLength;
+    private long durableCount;
+    private volatile IOException failure;
+    private boolean closed;
+
+    /**
+     * Opens the log at the given path, creating it if it does not exist, and starts
+     * its background writer.
+     *
+     * @param path The file to log records to.
+     * @param magic The number identifying this kind of log, written at the start of the file.
+     * @param groupSize The largest number of records to commit with a single fsync.
+     * @param groupDelayMillis The longest a record may wait for others to share its fsync.
+     * @throws IOException if the file cannot be opened, or is not a log of this kind.
+     * @throws IllegalArgumentException if the group size is less than 1,
+     *                                  or the delay is negative.
+     */
+    public RecordLog(Path path, int magic, int groupSize, long groupDelayMillis)
+            throws IOException {
+        if (groupSize < 1) {
+            throw new IllegalArgumentException("Group size must be at least 1.");
+        }
+        if (groupDelayMillis < 0) {
+            throw new IllegalArgumentException("Group delay cannot be negative.");
+        }
+        this.path = path;
+        this.magic = magic;
+        this.groupSize = groupSize;
+        this.groupDelayNanos = TimeUnit.MILLISECONDS.toNanos(groupDelayMillis);
+        this.pending = new LinkedBlockingQueue<>();
+        this.durableLock = new Object();
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).putInt(magic).putInt(VERSION);
+                writeFully(header.flip());
+                channel.force(true);
+            }
+            checkHeader();
+            int[] count = new int[1];
+            channel.position(HEADER_LENGTH);
+            long end = HEADER_LENGTH + readRecords(Channels.newInputStream(channel),
+                    Long.MAX_VALUE, payload -> count[0]++);
+            if (end < channel.size()) {
+                channel.truncate(end);
+                channel.force(true);
+            }
+            channel.position(end);
+            this.openedLength = end;
+            this.appendedLength = end;
+            this.recordCount = count[0];
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        this.writer = new Thread(this::writeLoop, "record-log-" + path.getFileName());
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Returns the number of intact records the log held when it was opened.
+     *
+     * @return The number of records that {@link #read(long, Consumer)} can visit.
+     */
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Returns the offset just past the last record appended so far, whether or not it is
+     * durable yet. Reading from this offset after a restart visits only later records.
+     *
+     * @return The offset in bytes from the start of the file.
+     */
+    public synchronized long getAppendedLength() {
+        return appendedLength;
+    }
+
+    /**
+     * Passes the payload of every record the log held when it was opened, from the record
+     * at the given offset onwards, to the visitor in order. Records appended since opening
+     * are not visited.
+     *
+     * @param offset The offset of the first record to visit, as returned by
+     *               {@link #getAppendedLength()}, or 0 to visit every record.
+     * @param visitor The consumer of each record's payload.
+     * @throws IOException if the log cannot be read.
+     */
+    public void read(long offset, Consumer<byte[]> visitor) throws IOException {
+        long start = Math.max(offset, HEADER_LENGTH);
+        if (start >= openedLength) {
+            return;
+        }
+        try (FileChannel reader = FileChannel.open(path, StandardOpenOption.READ)) {
+            reader.position(start);
+            readRecords(Channels.newInputStream(reader), openedLength - start, visitor);
+        }
+    }
+
+    /**
+     * Queues a record to be written to the log. This does not wait for the record
+     * to reach the disk.
+     *
+     * @param payload The contents of the record.
+     * @return The number of records appended since opening, including this one, which can be
+     *         passed to {@link #awaitDurable(long)}.
+     * @throws IllegalArgumentException if the payload is too large.
+     * @throws IllegalStateException if the log has been closed.
+     * @throws UncheckedIOException if an earlier write to the log failed.
+     */
+    public synchronized long append(byte[] payload) {
+        if (closed) {
+            throw new IllegalStateException("The log has been closed.");
+        }
+        if (payload.length > MAX_RECORD_LENGTH) {
+            throw new IllegalArgumentException("Records cannot exceed "
+                    + MAX_RECORD_LENGTH + " bytes.");
+        }
+        checkFailure();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        byte[] record = ByteBuffer.allocate(RECORD_HEADER_LENGTH + payload.length)
+                .putInt(payload.length)
+                .putInt((int) crc.getValue())
+                .put(payload)
+                .array();
+        pending.add(record);
+        appendedLength += record.length;
+        return ++appendedCount;
+    }
+
+    /**
+     * Waits until the given number of appended records are durable on disk.
+     *
+     * @param count The number of appended records to wait for.
+     * @throws InterruptedException if interrupted while waiting.
+     * @throws UncheckedIOException if writing to the log failed.
+     */
+    public void awaitDurable(long count) throws InterruptedException {
+        synchronized (durableLock) {
+            while (durableCount < count && failure == null) {
+                durableLock.wait();
+            }
+        }
+        checkFailure();
+    }
+
+    /**
+     * Commits every record appended so far without waiting for its group to fill or its delay
+     * to pass, and waits until they are durable on disk.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     * @throws UncheckedIOException if writing to the log failed.
+     */
+    public void flush() throws InterruptedException {
+        long count;
+        synchronized (this) {
+            count = appendedCount;
+            if (!closed) {
+                pending.add(FLUSH);
+            }
+        }
+        awaitDurable(count);
+    }
+
+    /**
+     * Checks that no write to the log has failed, so that a caller can find out before
+     * changing anything that the log will refuse its next record.
+     *
+     * @throws UncheckedIOException if an earlier write to the log failed.
+     */
+    public void checkFailure() {
+        IOException e = failure;
+        if (e != null) {
+            throw new UncheckedIOException("Writing to the log failed.", e);
+        }
+    }
+
+    /**
+     * Returns the number of appended records known to be durable on disk.
+     *
+     * @return The number of durable records.
+     */
+    public long getDurableCount() {
+        synchronized (durableLock) {
+            return durableCount;
+        }
+    }
+
+    /**
+     * Writes and forces every queued record to disk, stops the writer and closes the file.
+     *
+     * @throws IOException if the log could not be written or closed.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            pending.add(SHUTDOWN);
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            channel.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void writeLoop() {
+        List<byte[]> group = new ArrayList<>(groupSize);
+        try {
+            boolean shutdown = false;
+            while (!shutdown) {
+                byte[] record = pending.take();
+                long deadline = System.nanoTime() + groupDelayNanos;
+                while (record != null) {
+                    if (record == SHUTDOWN) {
+                        shutdown = true;
+                        break;
+                    }
+                    if (record == FLUSH) {
+                        break;
+                    }
+                    group.add(record);
+                    if (group.size() == groupSize) {
+                        break;
+                    }
+                    record = pending.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                }
+                if (!group.isEmpty()) {
+                    writeGroup(group);
+                    group.clear();
+                }
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            failure = new IOException("The log writer was interrupted.", e);
+        } finally {
+            synchronized (durableLock) {
+                durableLock.notifyAll();
+            }
+        }
+    }
+
+    private void writeGroup(List<byte[]> group) throws IOException {
+        int length = 0;
+        for (byte[] record : group) {
+            length += record.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        for (byte[] record : group) {
+            buffer.put(record);
+        }
+        writeFully(buffer.flip());
+        channel.force(false);
+        synchronized (durableLock) {
+            durableCount += group.size();
+            durableLock.notifyAll();
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void checkHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+            // keep reading until the header is complete or the file ends
+        }
+        header.flip();
+        if (header.remaining() < HEADER_LENGTH || header.getInt() != magic) {
+            throw new IOException("Not a log of the expected kind.");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported log version " + version + ".");
+        }
+    }
+
+    /**
+     * Reads intact records from the stream until the limit, the end of the stream, or a torn or
+     * corrupt record, passing each payload to the visitor.
+     *
+     * @return the number of bytes taken up by the intact records.
+     */
+    private static long readRecords(InputStream stream, long limit, Consumer<byte[]> visitor)
+            throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 1 << 16));
+        CRC32 crc = new CRC32();
+        long read = 0;
+        while (read + RECORD_HEADER_LENGTH <= limit) {
+            byte[] payload;
+            int checksum;
+            try {
+                int length = in.readInt();
+                checksum = in.readInt();
+                if (length < 0 || length > MAX_RECORD_LENGTH
+                        || read + RECORD_HEADER_LENGTH + length > limit) {
+                    break;
+                }
+                payload = new byte[length];
+                in.readFully(payload);
+            } catch (EOFException e) {
+                break;
+            }
+            crc.reset();
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            visitor.accept(payload);
+            read += RECORD_HEADER_LENGTH + payload.length;
+        }
+        return read;
+    }
+}
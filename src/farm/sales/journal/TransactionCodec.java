@@ -0,0 +1,305 @@
+package farm.sales.journal;
+
+import farm.customer.Customer;
+import farm.customer.CustomerKey;
+import farm.inventory.product.Product;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.PriceTable;
+import farm.inventory.product.data.Quality;
+import farm.sales.PricingEngine;
+import farm.sales.PromotionRule;
+import farm.sales.transaction.CategorisedTransaction;
+import farm.sales.transaction.DiscountTable;
+import farm.sales.transaction.SpecialSaleTransaction;
+import farm.sales.transaction.Transaction;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts finalised transactions to and from a compact binary form.
+ * <p>
+ * An encoded transaction holds its kind, the time it was finalised, the key and address of its
+ * customer, the quantity bought of each product type and quality, and the rules of its pricing
+ * engine, along with the engine's price multipliers unless it uses the default
+ * {@link PriceTable}. Special sales also hold their discounts, so that a decoded transaction of
+ * any kind reports the same total and line subtotals as the original.
+ * </p>
+ * <p>
+ * Decoded transactions are attributed to new customer objects with the original key and
+ * address. Since consecutive transactions usually share a pricing engine, the engine decoded
+ * last is reused whenever the next transaction's rules and prices are the same, rather than
+ * compiled again. A codec is therefore not thread-safe.
+ * </p>
+ */
+public class TransactionCodec {
+    private static final Barcode[] BARCODES = Barcode.values();
+    private static final Quality[] QUALITIES = Quality.values();
+    private static final PromotionRule.Kind[] RULE_KINDS = PromotionRule.Kind.values();
+
+    private static final int PLAIN = 0;
+    private static final int CATEGORISED = 1;
+    private static final int SPECIAL_SALE = 2;
+
+    private List<PromotionRule> lastRules;
+    private PricingEngine lastEngine;
+
+    /**
+     * Constructs a new codec.
+     */
+    public TransactionCodec() {
+        this.lastRules = List.of();
+        this.lastEngine = PricingEngine.BASE_PRICES;
+    }
+
+    /**
+     * Encodes a finalised transaction into a new array.
+     *
+     * @param transaction The transaction to encode.
+     * @return The encoded transaction.
+     * @throws IllegalArgumentException if the transaction is not finalised.
+     */
+    public byte[] encode(Transaction transaction) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try {
+            encode(transaction, new DataOutputStream(bytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // never thrown by an in-memory stream
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes a finalised transaction to the given output.
+     *
+     * @param transaction The transaction to encode.
+     * @param out The output to write to.
+     * @throws IOException if the output cannot be written.
+     * @throws IllegalArgumentException if the transaction is not finalised.
+     */
+    public void encode(Transaction transaction, DataOutput out) throws IOException {
+        if (!transaction.isFinalised()) {
+            throw new IllegalArgumentException("Only finalised transactions can be encoded.");
+        }
+        int kind = transaction instanceof SpecialSaleTransaction ? SPECIAL_SALE
+                : transaction instanceof CategorisedTransaction ? CATEGORISED : PLAIN;
+        out.writeByte(kind);
+        out.writeLong(transaction.getFinalisedAt());
+        CustomerKey customer = transaction.getCustomerKey();
+        out.writeUTF(customer.getName());
+        out.writeInt(customer.getPhoneNumber());
+        String address = transaction.getAssociatedCustomer().getAddress();
+        out.writeUTF(address == null ? "" : address);
+
+        int lines = 0;
+        for (Barcode barcode : BARCODES) {
+            for (Quality quality : QUALITIES) {
+                if (transaction.getPurchaseQuantity(barcode, quality) > 0) {
+                    lines++;
+                }
+            }
+        }
+        out.writeByte(lines);
+        for (Barcode barcode : BARCODES) {
+            for (Quality quality : QUALITIES) {
+                int quantity = transaction.getPurchaseQuantity(barcode, quality);
+                if (quantity > 0) {
+                    out.writeByte(barcode.ordinal());
+                    out.writeByte(quality.ordinal());
+                    out.writeInt(quantity);
+                }
+            }
+        }
+
+        if (kind == SPECIAL_SALE) {
+            SpecialSaleTransaction specialSale = (SpecialSaleTransaction) transaction;
+            for (Barcode barcode : BARCODES) {
+                out.writeInt(specialSale.getDiscountAmount(barcode));
+            }
+        }
+        PricingEngine engine = transaction.getPricingEngine();
+        List<PromotionRule> rules = engine.getRules();
+        out.writeInt(rules.size());
+        for (PromotionRule rule : rules) {
+            writeRule(rule, out);
+        }
+        PriceTable prices = engine.getPriceTable();
+        out.writeBoolean(prices != PriceTable.getDefault());
+        if (prices != PriceTable.getDefault()) {
+            for (Quality quality : QUALITIES) {
+                out.writeInt(prices.getMultiplier(quality));
+            }
+        }
+    }
+
+    /**
+     * Decodes a transaction from an array produced by {@link #encode(Transaction)}.
+     *
+     * @param encoded The encoded transaction.
+     * @return The decoded, finalised transaction.
+     * @throws IllegalArgumentException if the bytes are not a valid encoded transaction.
+     */
+    public Transaction decode(byte[] encoded) {
+        try {
+            return decode(new DataInputStream(new ByteArrayInputStream(encoded)));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed transaction.", e);
+        }
+    }
+
+    /**
+     * Reads a transaction written by {@link #encode(Transaction, DataOutput)}.
+     *
+     * @param in The input to read from.
+     * @return The decoded, finalised transaction.
+     * @throws IOException if the input cannot be read or ends early.
+     * @throws IllegalArgumentException if the input is not a valid encoded transaction.
+     */
+    public Transaction decode(DataInput in) throws IOException {
+        int kind = in.readUnsignedByte();
+        long finalisedAt = in.readLong();
+        String name = in.readUTF();
+        int phoneNumber = in.readInt();
+        String address = in.readUTF();
+        Customer customer = new Customer(name, phoneNumber, address);
+
+        int lines = in.readUnsignedByte();
+        for (int i = 0; i < lines; i++) {
+            Barcode barcode = BARCODES[checkIndex(in.readUnsignedByte(), BARCODES.length)];
+            Quality quality = QUALITIES[checkIndex(in.readUnsignedByte(), QUALITIES.length)];
+            int quantity = in.readInt();
+            for (int j = 0; j < quantity; j++) {
+                customer.getCart().addProduct(Product.create(barcode, quality));
+            }
+        }
+
+        Transaction transaction = switch (kind) {
+            case PLAIN -> new Transaction(customer, readEngine(in));
+            case CATEGORISED -> new CategorisedTransaction(customer, readEngine(in));
+            case SPECIAL_SALE -> {
+                DiscountTable discounts = readDiscounts(in);
+                yield new SpecialSaleTransaction(customer, discounts, readEngine(in));
+            }
+            default -> throw new IllegalArgumentException("Unknown transaction kind " + kind + ".");
+        };
+        transaction.finalise(finalisedAt);
+        return transaction;
+    }
+
+    private static void writeRule(PromotionRule rule, DataOutput out) throws IOException {
+        out.writeByte(rule.getKind().ordinal());
+        switch (rule.getKind()) {
+            case BUY_GET -> {
+                out.writeByte(rule.getBarcode().ordinal());
+                out.writeInt(rule.getBuyQuantity());
+                out.writeInt(rule.getFreeQuantity());
+            }
+            case QUANTITY_BREAK -> {
+                out.writeByte(rule.getBarcode().ordinal());
+                out.writeInt(rule.getThreshold());
+                out.writeInt(rule.getPercentOff());
+            }
+            case QUALITY_PRICE -> {
+                out.writeByte(rule.getBarcode().ordinal());
+                out.writeByte(rule.getQuality().ordinal());
+                out.writeInt(rule.getUnitPrice());
+            }
+            case BASKET_THRESHOLD -> {
+                out.writeInt(rule.getThreshold());
+                out.writeInt(rule.getPercentOff());
+            }
+        }
+    }
+
+    private static PromotionRule readRule(DataInput in) throws IOException {
+        PromotionRule.Kind kind = RULE_KINDS[checkIndex(in.readUnsignedByte(), RULE_KINDS.length)];
+        return switch (kind) {
+            case BUY_GET -> PromotionRule.buyGet(readBarcode(in), in.readInt(), in.readInt());
+            case QUANTITY_BREAK ->
+                    PromotionRule.quantityBreak(readBarcode(in), in.readInt(), in.readInt());
+            case QUALITY_PRICE -> PromotionRule.qualityPrice(readBarcode(in),
+                    QUALITIES[checkIndex(in.readUnsignedByte(), QUALITIES.length)], in.readInt());
+            case BASKET_THRESHOLD -> PromotionRule.basketThreshold(in.readInt(), in.readInt());
+        };
+    }
+
+    private PricingEngine readEngine(DataInput in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IllegalArgumentException("Negative rule count.");
+        }
+        List<PromotionRule> rules = new ArrayList<>(Math.min(count, 1024));
+        for (int i = 0; i < count; i++) {
+            rules.add(readRule(in));
+        }
+        PriceTable prices = PriceTable.getDefault();
+        if (in.readBoolean()) {
+            Map<Quality, Integer> multipliers = new EnumMap<>(Quality.class);
+            for (Quality quality : QUALITIES) {
+                multipliers.put(quality, in.readInt());
+            }
+            PriceTable lastPrices = lastEngine.getPriceTable();
+            prices = lastPrices != PriceTable.getDefault()
+                    && lastPrices.getMultipliers().equals(multipliers)
+                    ? lastPrices : new PriceTable(multipliers);
+        }
+        if (!sameRules(rules, lastRules) || prices != lastEngine.getPriceTable()) {
+            lastEngine = rules.isEmpty() && prices == PriceTable.getDefault()
+                    ? PricingEngine.BASE_PRICES : new PricingEngine(prices, rules);
+            lastRules = rules;
+        }
+        return lastEngine;
+    }
+
+    private static DiscountTable readDiscounts(DataInput in) throws IOException {
+        Map<Barcode, Integer> discounts = new EnumMap<>(Barcode.class);
+        for (Barcode barcode : BARCODES) {
+            int discount = in.readInt();
+            if (discount != 0) {
+                discounts.put(barcode, discount);
+            }
+        }
+        return discounts.isEmpty() ? DiscountTable.NONE : new DiscountTable(discounts);
+    }
+
+    private static Barcode readBarcode(DataInput in) throws IOException {
+        return BARCODES[checkIndex(in.readUnsignedByte(), BARCODES.length)];
+    }
+
+    private static boolean sameRules(List<PromotionRule> first, List<PromotionRule> second) {
+        if (first.size() != second.size()) {
+            return false;
+        }
+        for (int i = 0; i < first.size(); i++) {
+            PromotionRule a = first.get(i);
+            PromotionRule b = second.get(i);
+            if (a.getKind() != b.getKind() || a.getBarcode() != b.getBarcode()
+                    || a.getQuality() != b.getQuality()
+                    || a.getBuyQuantity() != b.getBuyQuantity()
+                    || a.getFreeQuantity() != b.getFreeQuantity()
+                    || a.getThreshold() != b.getThreshold()
+                    || a.getPercentOff() != b.getPercentOff()
+                    || a.getUnitPrice() != b.getUnitPrice()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int checkIndex(int index, int length) {
+        if (index >= length) {
+            throw new IllegalArgumentException("Unknown ordinal " + index + ".");
+        }
+        return index;
+    }
+}
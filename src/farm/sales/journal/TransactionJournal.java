@@ -0,0 +1,162 @@
+package farm.sales.journal;
+
+import farm.sales.TransactionHistory;
+import farm.sales.transaction.Transaction;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+/**
+ * A durable, append-only file of completed transactions, from which a
+ * {@link TransactionHistory} can be rebuilt after a restart.
+ * <p>
+ * Each transaction is encoded by a {@link TransactionCodec} into one record of a
+ * {@link RecordLog}, so every record is length-prefixed and checked with a CRC-32, and records
+ * torn by a crash mid-write are dropped when the journal is opened.
+ * </p>
+ * <p>
+ * Appending only encodes the transaction and queues it, so it never waits for the disk. A
+ * background writer takes queued records in groups, writes each group at once and then forces
+ * it to disk with a single fsync. A group is committed once it holds the configured number of
+ * records, or the configured time has passed since its first record was queued, whichever comes
+ * first. Callers that must know a sale is durable can commit it straight away and wait for it
+ * with {@link #flush()}.
+ * </p>
+ */
+public class TransactionJournal implements AutoCloseable {
+    /**
+     * The largest number of records committed by a single fsync by default.
+     */
+    public static final int DEFAULT_GROUP_SIZE = 64;
+
+    /**
+     * The longest a record waits for others to share its fsync by default, in milliseconds.
+     */
+    public static final long DEFAULT_GROUP_DELAY_MILLIS = 5;
+
+    private static final int MAGIC = 0x464A524E; // "FJRN"
+
+    private final RecordLog log;
+    private final TransactionCodec codec;
+
+    /**
+     * Opens the journal at the given path with the default group commit settings,
+     * creating it if it does not exist.
+     *
+     * @param path The file to journal transactions to.
+     * @throws IOException if the file cannot be opened, or is not a transaction journal.
+     */
+    public TransactionJournal(Path path) throws IOException {
+        this(path, DEFAULT_GROUP_SIZE, DEFAULT_GROUP_DELAY_MILLIS);
+    }
+
+    /**
+     * Opens the journal at the given path, creating it if it does not exist, and starts
+     * its background writer.
+     *
+     * @param path The file to journal transactions to.
+     * @param groupSize The largest number of records to commit with a single fsync.
+     * @param groupDelayMillis The longest a record may wait for others to share its fsync.
+     * @throws IOException if the file cannot be opened, or is not a transaction journal.
+     * @throws IllegalArgumentException if the group size is less than 1,
+     *                                  or the delay is negative.
+     */
+    public TransactionJournal(Path path, int groupSize, long groupDelayMillis) throws IOException {
+        this.log = new RecordLog(path, MAGIC, groupSize, groupDelayMillis);
+        this.codec = new TransactionCodec();
+    }
+
+    /**
+     * Returns the number of intact records the journal held when it was opened.
+     *
+     * @return The number of transactions that {@link #replay(TransactionHistory)} restores.
+     */
+    public int getReplayableCount() {
+        return log.getRecordCount();
+    }
+
+    /**
+     * Records every transaction the journal held when it was opened into the given history,
+     * in the order they were journaled. Transactions appended since opening are not replayed.
+     *
+     * @param history The history to rebuild.
+     * @return The number of transactions replayed.
+     * @throws IOException if the journal cannot be read.
+     */
+    public int replay(TransactionHistory history) throws IOException {
+        TransactionCodec replayCodec = new TransactionCodec();
+        int[] count = new int[1];
+        log.read(0, payload -> {
+            history.recordTransaction(replayCodec.decode(payload));
+            count[0]++;
+        });
+        return count[0];
+    }
+
+    /**
+     * Queues a finalised transaction to be written to the journal. This does not wait for
+     * the transaction to reach the disk.
+     *
+     * @param transaction The transaction to journal.
+     * @return The number of transactions appended so far, including this one, which can be
+     *         passed to {@link #awaitDurable(long)}.
+     * @throws IllegalArgumentException if the transaction is not finalised.
+     * @throws IllegalStateException if the journal has been closed.
+     * @throws UncheckedIOException if an earlier write to the journal failed.
+     */
+    public synchronized long append(Transaction transaction) {
+        return log.append(codec.encode(transaction));
+    }
+
+    /**
+     * Waits until the given number of appended transactions are durable on disk.
+     *
+     * @param count The number of appended transactions to wait for.
+     * @throws InterruptedException if interrupted while waiting.
+     * @throws UncheckedIOException if writing to the journal failed.
+     */
+    public void awaitDurable(long count) throws InterruptedException {
+        log.awaitDurable(count);
+    }
+
+    /**
+     * Commits every transaction appended so far without waiting for its group to fill or its
+     * delay to pass, and waits until they are durable on disk.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     * @throws UncheckedIOException if writing to the journal failed.
+     */
+    public void flush() throws InterruptedException {
+        log.flush();
+    }
+
+    /**
+     * Checks that no write to the journal has failed, so that a caller can find out before
+     * changing anything that the journal will refuse its next transaction.
+     *
+     * @throws UncheckedIOException if an earlier write to the journal failed.
+     */
+    public void checkFailure() {
+        log.checkFailure();
+    }
+
+    /**
+     * Returns the number of appended transactions known to be durable on disk.
+     *
+     * @return The number of durable transactions.
+     */
+    public long getDurableCount() {
+        return log.getDurableCount();
+    }
+
+    /**
+     * Writes and forces every queued transaction to disk, stops the writer and closes the file.
+     *
+     * @throws IOException if the journal could not be written or closed.
+     */
+    @Override
+    public void close() throws IOException {
+        log.close();
+    }
+}
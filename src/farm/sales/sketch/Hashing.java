@@ -0,0 +1,22 @@
+package farm.sales.sketch;
+
+/**
+ * Hash mixing shared by the sketches, which need well distributed 64-bit hashes
+ * even when the items' own hash codes are not.
+ */
+final class Hashing {
+    private Hashing() {
+    }
+
+    /**
+     * Scrambles the bits of a value so that similar values give very different results.
+     */
+    static long mix64(long value) {
+        long hash = value * 0x9E3779B97F4A7C15L;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        return hash ^ (hash >>> 33);
+    }
+}
@@ -0,0 +1,143 @@
+package farm.sales.sketch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks the most frequent items in a stream using a fixed amount of memory.
+ * <p>
+ * Frequencies are kept in a Count-Min sketch: a small grid of counters where each item adds to
+ * one counter per row, chosen by a different hash for each row. An item's frequency is estimated
+ * as the smallest of its counters, which can overestimate when items collide but never
+ * underestimates. Alongside the sketch, the k items with the highest estimates seen so far are
+ * kept as candidates, so the heaviest hitters can be listed without storing every item.
+ * </p>
+ *
+ * @param <T> The type of item being counted.
+ */
+public class HeavyHitters<T> {
+    /**
+     * The default number of counters in each row.
+     */
+    public static final int DEFAULT_WIDTH = 2048;
+
+    /**
+     * The default number of rows.
+     */
+    public static final int DEFAULT_DEPTH = 4;
+
+    private final int width;
+    private final long[][] counts;
+    private final int capacity;
+    private final Map<T, Long> candidates;
+
+    /**
+     * Constructs an empty tracker keeping the given number of heavy hitters,
+     * with a sketch of the default size.
+     *
+     * @param capacity The number of most frequent items to keep.
+     */
+    public HeavyHitters(int capacity) {
+        this(capacity, DEFAULT_WIDTH, DEFAULT_DEPTH);
+    }
+
+    /**
+     * Constructs an empty tracker.
+     *
+     * @param capacity The number of most frequent items to keep.
+     * @param width The number of counters in each row of the sketch.
+     * @param depth The number of rows in the sketch.
+     * @throws IllegalArgumentException if any parameter is less than 1.
+     */
+    public HeavyHitters(int capacity, int width, int depth) {
+        if (capacity < 1 || width < 1 || depth < 1) {
+            throw new IllegalArgumentException("Capacity, width and depth must be at least 1.");
+        }
+        this.width = width;
+        this.counts = new long[depth][width];
+        this.capacity = capacity;
+        this.candidates = new HashMap<>();
+    }
+
+    /**
+     * Counts occurrences of an item.
+     *
+     * @param item The item seen.
+     * @param count The number of times it was seen.
+     */
+    public void add(T item, long count) {
+        long hash = Hashing.mix64(item.hashCode());
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < counts.length; row++) {
+            int column = column(hash, row);
+            counts[row][column] += count;
+            estimate = Math.min(estimate, counts[row][column]);
+        }
+
+        if (candidates.containsKey(item) || candidates.size() < capacity) {
+            candidates.put(item, estimate);
+            return;
+        }
+        Map.Entry<T, Long> lightest = null;
+        for (Map.Entry<T, Long> entry : candidates.entrySet()) {
+            if (lightest == null || entry.getValue() < lightest.getValue()) {
+                lightest = entry;
+            }
+        }
+        if (estimate > lightest.getValue()) {
+            candidates.remove(lightest.getKey());
+            candidates.put(item, estimate);
+        }
+    }
+
+    /**
+     * Estimates how many times an item has been seen. The estimate is never too low.
+     *
+     * @param item The item of interest.
+     * @return The estimated count.
+     */
+    public long estimate(T item) {
+        long hash = Hashing.mix64(item.hashCode());
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < counts.length; row++) {
+            estimate = Math.min(estimate, counts[row][column(hash, row)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Returns the items believed to be the most frequent, most frequent first.
+     *
+     * @return Up to the capacity's worth of items.
+     */
+    public List<T> getTop() {
+        List<Map.Entry<T, Long>> entries = new ArrayList<>(candidates.entrySet());
+        entries.sort(Map.Entry.<T, Long>comparingByValue(Comparator.reverseOrder()));
+        List<T> top = new ArrayList<>(entries.size());
+        for (Map.Entry<T, Long> entry : entries) {
+            top.add(entry.getKey());
+        }
+        return top;
+    }
+
+    /**
+     * Empties the tracker.
+     */
+    public void clear() {
+        for (long[] row : counts) {
+            Arrays.fill(row, 0);
+        }
+        candidates.clear();
+    }
+
+    private int column(long hash, int row) {
+        // derive each row's hash from two halves of one hash, as in double hashing
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        return Math.floorMod(h1 + row * h2, width);
+    }
+}
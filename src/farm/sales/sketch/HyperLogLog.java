@@ -0,0 +1,105 @@
+package farm.sales.sketch;
+
+import java.util.Arrays;
+
+/**
+ * Estimates the number of distinct items added to it, using a fixed amount of memory.
+ * <p>
+ * Each item's hash selects one of 2<sup>p</sup> registers, which records the longest run of
+ * leading zeros seen in the rest of the hash. The registers are then combined with a harmonic
+ * mean into an estimate whose standard error is about 1.04 / sqrt(2<sup>p</sup>), so the
+ * default precision of 12 uses 4 KiB and is typically within 2% of the true count.
+ * Small counts are corrected with linear counting over the empty registers.
+ * </p>
+ */
+public class HyperLogLog {
+    /**
+     * The default precision, giving 4096 registers.
+     */
+    public static final int DEFAULT_PRECISION = 12;
+
+    private final int precision;
+    private final byte[] registers;
+
+    /**
+     * Constructs an empty sketch with the default precision.
+     */
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * Constructs an empty sketch with 2<sup>precision</sup> registers.
+     *
+     * @param precision The number of hash bits used to select a register, from 4 to 18.
+     * @throws IllegalArgumentException if the precision is out of range.
+     */
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException("Precision must be between 4 and 18.");
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * Adds an item to the sketch, identified by a hash of it.
+     *
+     * @param hash A hash of the item. It is mixed again, so it need not be well distributed.
+     */
+    public void add(long hash) {
+        long mixed = Hashing.mix64(hash);
+        int register = (int) (mixed >>> (64 - precision));
+        // a sentinel bit stops the run of zeros at the end of the remaining bits
+        long rest = (mixed << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (rank > registers[register]) {
+            registers[register] = rank;
+        }
+    }
+
+    /**
+     * Estimates the number of distinct items added.
+     *
+     * @return The estimated count.
+     */
+    public long estimate() {
+        int count = registers.length;
+        double sum = 0.0;
+        int empty = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                empty++;
+            }
+        }
+        double alpha = 0.7213 / (1 + 1.079 / count);
+        double estimate = alpha * count * count / sum;
+        if (estimate <= 2.5 * count && empty > 0) {
+            estimate = count * Math.log((double) count / empty);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Adds every item counted by another sketch of the same precision to this one.
+     *
+     * @param other The sketch to merge in.
+     * @throws IllegalArgumentException if the sketches have different precisions.
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge sketches of different precision.");
+        }
+        for (int i = 0; i < registers.length; i++) {
+            registers[i] = (byte) Math.max(registers[i], other.registers[i]);
+        }
+    }
+
+    /**
+     * Empties the sketch.
+     */
+    public void clear() {
+        Arrays.fill(registers, (byte) 0);
+    }
+}
@@ -0,0 +1,124 @@
+package farm.sales.sketch;
+
+/**
+ * Estimates quantiles, such as the median, of a stream of non-negative values
+ * using a fixed amount of memory.
+ * <p>
+ * Values are counted into buckets whose bounds grow geometrically, so that every value in a
+ * bucket is within the sketch's relative accuracy of the bucket's midpoint. A quantile is then
+ * found by walking the buckets until enough values have been passed. With the default accuracy
+ * of 1%, any int value fits in about 1100 buckets, and estimates are always within 1% of a value
+ * actually at that rank. Zero is counted separately, since it has no logarithm.
+ * </p>
+ */
+public class QuantileSketch {
+    /**
+     * The default relative accuracy of estimated quantiles.
+     */
+    public static final double DEFAULT_ACCURACY = 0.01;
+
+    private final double gamma;
+    private final double logGamma;
+    private final long[] buckets;
+    private long zeroCount;
+    private long count;
+
+    /**
+     * Constructs an empty sketch with the default accuracy.
+     */
+    public QuantileSketch() {
+        this(DEFAULT_ACCURACY);
+    }
+
+    /**
+     * Constructs an empty sketch with the given relative accuracy.
+     *
+     * @param accuracy The largest relative error allowed in an estimate, between 0 and 1 exclusive.
+     * @throws IllegalArgumentException if the accuracy is out of range.
+     */
+    public QuantileSketch(double accuracy) {
+        if (accuracy <= 0.0 || accuracy >= 1.0) {
+            throw new IllegalArgumentException("Accuracy must be between 0 and 1.");
+        }
+        this.gamma = (1 + accuracy) / (1 - accuracy);
+        this.logGamma = Math.log(gamma);
+        this.buckets = new long[bucket(Integer.MAX_VALUE) + 1];
+    }
+
+    /**
+     * Adds a value to the sketch.
+     *
+     * @param value The value to add.
+     * @throws IllegalArgumentException if the value is negative.
+     */
+    public void add(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Values cannot be negative.");
+        }
+        if (value == 0) {
+            zeroCount++;
+        } else {
+            buckets[bucket(value)]++;
+        }
+        count++;
+    }
+
+    /**
+     * Estimates the value at the given quantile, e.g. 0.5 for the median.
+     *
+     * @param quantile The quantile, between 0 and 1 inclusive.
+     * @return The estimated value, or 0 if the sketch is empty.
+     * @throws IllegalArgumentException if the quantile is out of range.
+     */
+    public double getQuantile(double quantile) {
+        if (quantile < 0.0 || quantile > 1.0) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1.");
+        }
+        if (count == 0) {
+            return 0.0;
+        }
+        long rank = (long) Math.ceil(quantile * count);
+        long seen = zeroCount;
+        if (rank <= seen) {
+            return 0.0;
+        }
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                // the midpoint of the bucket, in relative terms
+                return 2 * Math.pow(gamma, i) / (gamma + 1);
+            }
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Returns the number of values added.
+     *
+     * @return The count of values.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Adds every value counted by another sketch with the same accuracy to this one.
+     *
+     * @param other The sketch to merge in.
+     * @throws IllegalArgumentException if the sketches have different accuracies.
+     */
+    public void merge(QuantileSketch other) {
+        if (other.gamma != gamma) {
+            throw new IllegalArgumentException("Cannot merge sketches of different accuracy.");
+        }
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] += other.buckets[i];
+        }
+        zeroCount += other.zeroCount;
+        count += other.count;
+    }
+
+    private int bucket(int value) {
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+}
@@ -0,0 +1,165 @@
+package farm.sales.sketch;
+
+import farm.customer.CustomerKey;
+import farm.inventory.product.data.Barcode;
+import farm.sales.transaction.Transaction;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Approximate statistics over every recorded transaction, kept in a fixed amount of memory
+ * however long the history grows.
+ * <p>
+ * Distinct customers are counted with {@link HyperLogLog}s, one for all time and one for each of
+ * the last {@value #DAYS_KEPT} days, held in a ring that reuses the oldest day's sketch for each
+ * new day. The most popular products and customers are tracked with {@link HeavyHitters},
+ * weighted by units bought, and transaction totals are fed to a {@link QuantileSketch} for
+ * spend percentiles.
+ * </p>
+ */
+public class SalesSketches {
+    /**
+     * The number of days for which distinct customers are counted day by day.
+     */
+    public static final int DAYS_KEPT = 30;
+
+    /**
+     * The number of most popular products and customers tracked.
+     */
+    public static final int TOP_K = 10;
+
+    private final ZoneId zone;
+    private final HyperLogLog allCustomers;
+    private final HyperLogLog[] dailyCustomers;
+    private final long[] days;
+    private final HeavyHitters<Barcode> products;
+    private final HeavyHitters<CustomerKey> customers;
+    private final QuantileSketch spend;
+
+    /**
+     * Constructs empty sketches, dividing days in the system's time zone.
+     */
+    public SalesSketches() {
+        this(ZoneId.systemDefault());
+    }
+
+    /**
+     * Constructs empty sketches, dividing days in the given time zone.
+     *
+     * @param zone The time zone in which each day starts and ends.
+     */
+    public SalesSketches(ZoneId zone) {
+        this.zone = zone;
+        this.allCustomers = new HyperLogLog();
+        this.dailyCustomers = new HyperLogLog[DAYS_KEPT];
+        for (int i = 0; i < DAYS_KEPT; i++) {
+            dailyCustomers[i] = new HyperLogLog();
+        }
+        this.days = new long[DAYS_KEPT];
+        Arrays.fill(days, Long.MIN_VALUE);
+        this.products = new HeavyHitters<>(TOP_K);
+        this.customers = new HeavyHitters<>(TOP_K);
+        this.spend = new QuantileSketch();
+    }
+
+    /**
+     * Adds a finalised transaction to every sketch.
+     *
+     * @param transaction The transaction to add.
+     */
+    public void record(Transaction transaction) {
+        CustomerKey customer = transaction.getCustomerKey();
+        long customerHash = ((long) customer.getName().hashCode() << 32)
+                ^ (customer.getPhoneNumber() & 0xFFFFFFFFL);
+        allCustomers.add(customerHash);
+
+        long day = toDay(transaction.getFinalisedAt());
+        int slot = (int) Math.floorMod(day, (long) DAYS_KEPT);
+        if (days[slot] < day) {
+            days[slot] = day;
+            dailyCustomers[slot].clear();
+        }
+        if (days[slot] == day) {
+            dailyCustomers[slot].add(customerHash);
+        }
+
+        int units = transaction.getPurchaseCount();
+        for (Barcode barcode : Barcode.values()) {
+            int quantity = transaction.getPurchaseQuantity(barcode);
+            if (quantity > 0) {
+                products.add(barcode, quantity);
+            }
+        }
+        if (units > 0) {
+            customers.add(customer, units);
+        }
+        spend.add(Math.max(0, transaction.getTotal()));
+    }
+
+    /**
+     * Estimates the number of distinct customers who have ever made a transaction.
+     *
+     * @return The estimated number of customers.
+     */
+    public long getDistinctCustomers() {
+        return allCustomers.estimate();
+    }
+
+    /**
+     * Estimates the number of distinct customers who made a transaction on the given day.
+     *
+     * @param date The day of interest, within the last {@value #DAYS_KEPT} days sold on.
+     * @return The estimated number of customers, or 0 if the day is no longer kept.
+     */
+    public long getDistinctCustomers(LocalDate date) {
+        long day = date.toEpochDay();
+        int slot = (int) Math.floorMod(day, (long) DAYS_KEPT);
+        return days[slot] == day ? dailyCustomers[slot].estimate() : 0;
+    }
+
+    /**
+     * Returns the products believed to have sold the most units, most popular first.
+     *
+     * @return Up to {@value #TOP_K} products.
+     */
+    public List<Barcode> getTopProducts() {
+        return products.getTop();
+    }
+
+    /**
+     * Returns the customers believed to have bought the most units, most frequent first.
+     *
+     * @return Up to {@value #TOP_K} customer keys.
+     */
+    public List<CustomerKey> getTopCustomers() {
+        return customers.getTop();
+    }
+
+    /**
+     * Estimates the number of units bought by a customer. The estimate is never too low.
+     *
+     * @param customer The key of the customer of interest.
+     * @return The estimated number of units.
+     */
+    public long getEstimatedUnitsBought(CustomerKey customer) {
+        return customers.estimate(customer);
+    }
+
+    /**
+     * Estimates a percentile of transaction totals, e.g. 0.5 for the median spend.
+     *
+     * @param quantile The quantile, between 0 and 1 inclusive.
+     * @return The estimated spend at that quantile, in cents.
+     */
+    public double getSpendQuantile(double quantile) {
+        return spend.getQuantile(quantile);
+    }
+
+    private long toDay(long timestamp) {
+        return LocalDate.ofInstant(Instant.ofEpochMilli(timestamp), zone).toEpochDay();
+    }
+}
@@ -4,15 +4,29 @@ import farm.customer.Customer;
 import farm.inventory.product.Product;
 import farm.inventory.product.data.Barcode;
 import farm.inventory.product.data.Quality;
+import farm.sales.Cart;
+import farm.sales.PricingEngine;
 import farm.sales.ReceiptPrinter;
 
 import java.util.*;
 
 /**
  * Represents a categorized transaction where products are grouped by their barcode.
+ * <p>
+ * Quantities and subtotals per product type are read straight from the transaction's cart,
+ * which keeps them per barcode as products are added, so they cost O(types) rather than
+ * a pass over every product. Once the transaction is finalised its grouping can no longer
+ * change, so the products grouped by type are only built once.
+ * </p>
+ * <p>
+ * The receipt has a line for each product type and quality bought, priced at the unit price
+ * the transaction's pricing engine charges for it, with the amount actually charged for that
+ * line as its subtotal. Any promotions or discounts that brought a subtotal down are noted
+ * beneath the last line of their product type.
+ * </p>
  */
 public class CategorisedTransaction extends Transaction {
-    private final Map<Barcode, List<Product>> purchasesByType;
+    private Map<Barcode, List<Product>> purchasesByType;
 
     /**
      * Constructs a new CategorisedTransaction associated with the specified customer.
@@ -20,9 +34,19 @@ public class CategorisedTransaction extends Transaction {
      * @param customer The customer associated with this transaction.
      */
     public CategorisedTransaction(Customer customer) {
-        super(customer);
-        this.purchasesByType = new HashMap<>();
+        this(customer, PricingEngine.BASE_PRICES);
+    }
 
+    /**
+     * Constructs a new CategorisedTransaction associated with the specified customer,
+     * whose subtotals and total are calculated by the given pricing engine.
+     *
+     * @param customer The customer associated with this transaction.
+     * @param pricingEngine The engine applying promotions to this transaction's purchases.
+     */
+    public CategorisedTransaction(Customer customer, PricingEngine pricingEngine) {
+        super(customer, pricingEngine);
+        this.purchasesByType = null;
     }
 
     /**
@@ -31,8 +55,14 @@ public class CategorisedTransaction extends Transaction {
      * @return A set of barcodes.
      */
     public Set<Barcode> getPurchasedTypes() {
-        populatePurchasesByType();
-        return purchasesByType.keySet();
+        Cart cart = getPurchaseCart();
+        Set<Barcode> types = EnumSet.noneOf(Barcode.class);
+        for (Barcode barcode : Barcode.values()) {
+            if (cart.getQuantity(barcode) > 0) {
+                types.add(barcode);
+            }
+        }
+        return types;
     }
 
     /**
@@ -41,51 +71,26 @@ public class CategorisedTransaction extends Transaction {
      * @return A map of barcodes to lists of products.
      */
     public Map<Barcode, List<Product>> getPurchasesByType() {
-        populatePurchasesByType();
-        return new HashMap<>(purchasesByType);
-
-    }
-
-    /**
-     * Returns the total quantity of products for a given barcode.
-     *
-     * @param type The barcode of the product.
-     * @return The total quantity of products with the given barcode.
-     */
-    public int getPurchaseQuantity(Barcode type) {
-        List<Product> products = getPurchasesByType().get(type);
-        return products == null ? 0 : products.size();
-    }
-
-    /**
-     * Returns the subtotal cost for all products of a given barcode.
-     *
-     * @param barcode The barcode of the product.
-     * @return The subtotal cost of products with the given barcode.
-     */
-    public int getPurchaseSubtotal(Barcode barcode) {
-        int quality = getPurchaseQuantity(barcode);
-        return quality * barcode.getBasePrice();
+        if (!isFinalised()) {
+            return groupPurchasesByType();
+        }
+        if (purchasesByType == null) {
+            purchasesByType = groupPurchasesByType();
+        }
+        return new EnumMap<>(purchasesByType);
     }
 
     /**
-     * Populates the purchasesByType map with the products from the current transaction.
+     * Groups the products in the transaction's cart by their barcode.
      */
-    private void populatePurchasesByType() {
-        this.purchasesByType.clear();  // Clear previous data to avoid accumulation
+    private Map<Barcode, List<Product>> groupPurchasesByType() {
+        Map<Barcode, List<Product>> grouped = new EnumMap<>(Barcode.class);
         for (Product product : getPurchases()) {
-            Barcode barcode = product.getBarcode();  // Get the barcode of the product
-
-            // If the map already contains the barcode, add the product to the existing list
-            if (purchasesByType.containsKey(barcode)) {
-                purchasesByType.get(barcode).add(product);
-            } else {
-                // If the barcode is not present, create a new list and add the product to it
-                List<Product> productList = new ArrayList<>();
-                productList.add(product);
-                purchasesByType.put(barcode, productList);
-            }
+            grouped.computeIfAbsent(product.getBarcode(), barcode -> new ArrayList<>())
+                    .add(product);
         }
+        grouped.replaceAll((barcode, products) -> List.copyOf(products));
+        return grouped;
     }
 
     /**
@@ -103,25 +108,40 @@ public class CategorisedTransaction extends Transaction {
         // Define the headings
         List<String> headings = List.of("Item", "Qty", "Price (ea.)", "Subtotal");
 
-        // Create the list of entries
+        // Create the list of entries, and the notes to follow each product type's last entry
         List<List<String>> entries = new ArrayList<>();
+        List<List<String>> notes = new ArrayList<>();
+
+        // Purchased types iterate in Barcode declaration order, then by quality
+        for (Barcode barcode : getPurchasedTypes()) {
+            for (Quality quality : Quality.values()) {
+                int quantity = getPurchaseQuantity(barcode, quality);
+                if (quantity == 0) {
+                    continue;
+                }
+                int pricePerItem = getUnitPrice(barcode, quality);
+                int subtotal = getLineSubtotal(barcode, quality);
+
+                String itemName = barcode.getDisplayName().toLowerCase()
+                        + (quality == Quality.REGULAR ? "" : " (" + quality.name().toLowerCase() + ")");
+                String qtyString = String.valueOf(quantity);
+                String priceString = String.format("$%.2f", pricePerItem / 100.0);
+                String subtotalString = String.format("$%.2f", subtotal / 100.0);
+
+                entries.add(List.of(itemName, qtyString, priceString, subtotalString));
+                notes.add(new ArrayList<>());
+            }
+            notes.getLast().addAll(getReceiptNotes(barcode));
+        }
 
-        List<Barcode> sortedBarcode = new ArrayList<>(getPurchasedTypes());
-        List<Barcode> predefinedOrder = Arrays.asList(Barcode.values());
-
-        sortedBarcode.sort(Comparator.comparingInt(predefinedOrder::indexOf));
-
-        for (Barcode barcode : sortedBarcode) {
-            int quantity = getPurchaseQuantity(barcode);
-            int pricePerItem = barcode.getBasePrice();
-            int subtotal = getPurchaseSubtotal(barcode);
-
-            String itemName = barcode.getDisplayName().toLowerCase();
-            String qtyString = String.valueOf(quantity);
-            String priceString = String.format("$%.2f", pricePerItem / 100.0);
-            String subtotalString = String.format("$%.2f", subtotal / 100.0);
-
-            entries.add(List.of(itemName, qtyString, priceString, subtotalString));
+        // The basket discount is shared between every line, so is noted after the last
+        int beforeBasket = 0;
+        for (Barcode barcode : getPurchasedTypes()) {
+            beforeBasket += getPurchaseSubtotal(barcode);
+        }
+        if (getTotal() < beforeBasket) {
+            notes.getLast().add(String.format("Basket discount applied! $%.2f off",
+                    (beforeBasket - getTotal()) / 100.0));
         }
 
         // Calculate the total price and format it
@@ -131,7 +151,60 @@ public class CategorisedTransaction extends Transaction {
         String customerName = getAssociatedCustomer().getName();
 
         // Generate the formatted receipt using the ReceiptPrinter
+        String receipt = createReceipt(headings, entries, total, customerName);
+        return insertNotes(receipt, entries, notes);
+    }
+
+    /**
+     * Returns the notes to print beneath the last receipt line of the given product type,
+     * explaining how its subtotal was brought down.
+     *
+     * @param barcode The product type, which must have been purchased.
+     * @return The notes for that product type, possibly empty.
+     */
+    protected List<String> getReceiptNotes(Barcode barcode) {
+        int promoted = getPricingEngine().getSubtotal(getPurchaseCart(), barcode);
+        int saved = getUndiscountedSubtotal(barcode) - promoted;
+        if (saved <= 0) {
+            return List.of();
+        }
+        return List.of(String.format("Promotion applied! $%.2f off %s",
+                saved / 100.0, barcode.getDisplayName().toLowerCase()));
+    }
+
+    /**
+     * Lays out the receipt's headings, entries, total and customer name using the
+     * ReceiptPrinter.
+     *
+     * @param headings The headings of the purchases section.
+     * @param entries The entries of the purchases section.
+     * @param total The formatted total.
+     * @param customerName The customer's name.
+     * @return The formatted receipt, without any notes.
+     */
+    protected String createReceipt(List<String> headings, List<List<String>> entries,
+                                   String total, String customerName) {
         return ReceiptPrinter.createReceipt(headings, entries, total, customerName);
     }
 
+    /*
+     * Entries are printed in order, each starting with its item name, so the lines of the
+     * receipt are matched against the entries one at a time.
+     */
+    private static String insertNotes(String receipt, List<List<String>> entries,
+                                      List<List<String>> notes) {
+        StringBuilder sb = new StringBuilder();
+        int entry = 0;
+        for (String line : receipt.split("\n")) {
+            sb.append(line).append("\n");
+            if (entry < entries.size() && line.startsWith(entries.get(entry).getFirst() + " ")) {
+                for (String note : notes.get(entry)) {
+                    sb.append(note).append("\n");
+                }
+                entry++;
+            }
+        }
+        return sb.toString();
+    }
+
 }
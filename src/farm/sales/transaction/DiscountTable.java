@@ -0,0 +1,76 @@
+package farm.sales.transaction;
+
+import farm.inventory.product.data.Barcode;
+
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * An immutable table of percentage discounts, one per product type.
+ * <p>
+ * Discounts are stored in an array indexed by {@link Barcode#ordinal()}, so looking one up
+ * involves no hashing. Since a table can never change once built, a single table can be shared
+ * by every transaction taking part in the same promotion, including across threads.
+ * </p>
+ */
+public final class DiscountTable {
+    /**
+     * A table applying no discount to any product.
+     */
+    public static final DiscountTable NONE = new DiscountTable(Map.of());
+
+    private final int[] discounts;
+
+    /**
+     * Constructs a new DiscountTable from the given discounts.
+     * Product types missing from the map are not discounted.
+     *
+     * @param discounts A map associating barcodes with integer percentage discounts.
+     */
+    public DiscountTable(Map<Barcode, Integer> discounts) {
+        this.discounts = new int[Barcode.values().length];
+        for (Map.Entry<Barcode, Integer> entry : discounts.entrySet()) {
+            this.discounts[entry.getKey().ordinal()] = entry.getValue();
+        }
+    }
+
+    /**
+     * Returns the percentage discount for the given product type.
+     *
+     * @param barcode The barcode of the product.
+     * @return The discount percentage, or 0 if no discount applies.
+     */
+    public int getDiscount(Barcode barcode) {
+        return discounts[barcode.ordinal()];
+    }
+
+    /**
+     * Determines whether this table discounts any product at all.
+     *
+     * @return true if at least one product type has a non-zero discount.
+     */
+    public boolean hasDiscounts() {
+        for (int discount : discounts) {
+            if (discount != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a string representation of the discounted product types and their discounts.
+     *
+     * @return The discounts formatted as a map, in barcode order.
+     */
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ", "{", "}");
+        for (Barcode barcode : Barcode.values()) {
+            if (discounts[barcode.ordinal()] != 0) {
+                joiner.add(barcode + "=" + discounts[barcode.ordinal()]);
+            }
+        }
+        return joiner.toString();
+    }
+}
@@ -3,6 +3,7 @@ package farm.sales.transaction;
 import farm.customer.Customer;
 import farm.inventory.product.Product;
 import farm.inventory.product.data.Barcode;
+import farm.sales.PricingEngine;
 import farm.sales.ReceiptPrinter;
 
 import java.util.*;
@@ -10,9 +11,13 @@ import java.util.stream.Collectors;
 
 /**
  * Represents a special sale transaction where discounts are applied to certain products.
+ * <p>
+ * Each transaction holds its own immutable {@link DiscountTable}, which may be shared with the
+ * other transactions of the same promotion, so concurrent special sales never affect each other.
+ * </p>
  */
 public class SpecialSaleTransaction extends CategorisedTransaction {
-    private static Map<Barcode, Integer> discountMap = Map.of();
+    private final DiscountTable discounts;
 
     /**
      * Constructs a new SpecialSaleTransaction associated with the specified customer.
@@ -21,8 +26,7 @@ public class SpecialSaleTransaction extends CategorisedTransaction {
      * @param customer The customer associated with this transaction.
      */
     public SpecialSaleTransaction(Customer customer) {
-        super(customer);
-        discountMap = new HashMap<>();
+        this(customer, DiscountTable.NONE);
     }
 
     /**
@@ -32,8 +36,32 @@ public class SpecialSaleTransaction extends CategorisedTransaction {
      * @param discountMap A map associating barcodes with discount amounts.
      */
     public SpecialSaleTransaction(Customer customer, Map<Barcode, Integer> discountMap) {
-        super(customer);
-        SpecialSaleTransaction.discountMap = new HashMap<>(discountMap);
+        this(customer, new DiscountTable(discountMap));
+    }
+
+    /**
+     * Constructs a new SpecialSaleTransaction associated with the specified customer,
+     * applying the discounts in the given table.
+     *
+     * @param customer  The customer associated with this transaction.
+     * @param discounts The discounts to apply, possibly shared with other transactions.
+     */
+    public SpecialSaleTransaction(Customer customer, DiscountTable discounts) {
+        this(customer, discounts, PricingEngine.BASE_PRICES);
+    }
+
+    /**
+     * Constructs a new SpecialSaleTransaction associated with the specified customer,
+     * applying the discounts in the given table on top of the given pricing engine's promotions.
+     *
+     * @param customer      The customer associated with this transaction.
+     * @param discounts     The discounts to apply, possibly shared with other transactions.
+     * @param pricingEngine The engine applying promotions to this transaction's purchases.
+     */
+    public SpecialSaleTransaction(Customer customer, DiscountTable discounts,
+                                  PricingEngine pricingEngine) {
+        super(customer, pricingEngine);
+        this.discounts = discounts;
     }
 
     /**
@@ -43,7 +71,16 @@ public class SpecialSaleTransaction extends CategorisedTransaction {
      * @return The discount amount for the specified barcode, or 0 if no discount applies.
      */
     public int getDiscountAmount(Barcode barcode) {
-        return discountMap.getOrDefault(barcode, 0);
+        return discounts.getDiscount(barcode);
+    }
+
+    /**
+     * Returns the table of discounts applied by this transaction.
+     *
+     * @return The discount table.
+     */
+    public DiscountTable getDiscounts() {
+        return discounts;
     }
 
     /**
@@ -55,46 +92,26 @@ public class SpecialSaleTransaction extends CategorisedTransaction {
      */
     @Override
     public int getPurchaseSubtotal(Barcode type) {
-        List<Product> products = getPurchasesByType().get(type);
-        if (products == null || products.isEmpty()) {
+        int subtotal = super.getPurchaseSubtotal(type);
+        if (subtotal == 0) {
             return 0;
         }
 
-        int subtotal = products.stream()
-                .mapToInt(Product::getBasePrice)
-                .sum();
-
         int discountPercentage = getDiscountAmount(type);
         return subtotal - (subtotal * discountPercentage / 100);
     }
 
-    /**
-     * Calculates the total price (with discounts) of all the current products in the transaction.
-     *
-     * @return The total (discounted) price calculated.
-     */
-    @Override
-    public int getTotal() {
-        return new HashSet<>(getPurchasedTypes()).stream()
-                .mapToInt(this::getPurchaseSubtotal)
-                .sum();
-    }
-
     /**
      * Calculates how much the customer has saved from discounts.
      *
      * @return The numerical savings from discounts.
      */
     public int getTotalSaved() {
-        return getPurchasesByType().keySet().stream()
-                .mapToInt(type -> {
-                    int originalSubtotal = getPurchasesByType().get(type).stream()
-                            .mapToInt(Product::getBasePrice)
-                            .sum();
-                    int discountedSubtotal = getPurchaseSubtotal(type);
-                    return originalSubtotal - discountedSubtotal;
-                })
-                .sum();
+        int saved = 0;
+        for (Barcode type : getPurchasedTypes()) {
+            saved += super.getPurchaseSubtotal(type) - getPurchaseSubtotal(type);
+        }
+        return saved;
     }
 
     /**
@@ -108,7 +125,7 @@ public class SpecialSaleTransaction extends CategorisedTransaction {
                 .map(Product::toString)
                 .collect(Collectors.joining(", "));
 
-        String discountsString = discountMap.toString();
+        String discountsString = discounts.toString();
 
         String status = isFinalised() ? "Finalised" : "Active";
 
@@ -140,114 +157,40 @@ public class SpecialSaleTransaction extends CategorisedTransaction {
     }
 
     /**
-     * Converts the transaction into a formatted receipt for display, using the ReceiptPrinter.
-     * used chatgpt to help
+     * Notes the special sale's discount on the given product type, after any promotions.
      *
-     * @return The styled receipt representation of this transaction.
+     * @param barcode The product type, which must have been purchased.
+     * @return The notes for that product type, possibly empty.
      */
     @Override
-    public String getReceipt() {
-        if (!isFinalised()) {
-            return ReceiptPrinter.createActiveReceipt();
+    protected List<String> getReceiptNotes(Barcode barcode) {
+        if (getDiscountAmount(barcode) == 0) {
+            return super.getReceiptNotes(barcode);
         }
-
-        // Generate the receipt string
-        String receipt;
-
-        // Create the list of entries
-        List<List<String>> entries = new ArrayList<>();
-
-        // Define the headings
-        List<String> headings = List.of("Item", "Qty", "Price (ea.)", "Subtotal");
-
-        List<Barcode> sortedBarcode = new ArrayList<>(getPurchasedTypes());
-        List<Barcode> predefinedOrder = Arrays.asList(Barcode.values());
-
-        sortedBarcode.sort(Comparator.comparingInt(predefinedOrder::indexOf));
-
-        for (Barcode barcode : sortedBarcode) {
-            int quantity = getPurchaseQuantity(barcode);
-            int pricePerItem = barcode.getBasePrice();
-            int subtotal = getPurchaseSubtotal(barcode);
-            int discountAmount = getDiscountAmount(barcode);
-
-            String itemName = barcode.getDisplayName().toLowerCase();
-            String qtyString = String.valueOf(quantity);
-            String priceString = String.format("$%.2f", pricePerItem / 100.0);
-            String subtotalString = String.format("$%.2f", subtotal / 100.0);
-
-            List<String> line = List.of(itemName, qtyString, priceString, subtotalString);
-            entries.add(line);
-
-            if (discountAmount > 0) {
-                discountMap.put(barcode, discountAmount);
-            }
-
-        }
-
-        String total = String.format("$%.2f", getTotal() / 100.0);
-        String customerName = getAssociatedCustomer().getName();
-
-        // Add total savings at the bottom of the receipt
-        if (getTotalSaved() > 0) {
-            String totalSaved = String.format(
-                    "$%.2f", getTotalSaved() / 100.0);
-
-            List<String> listReceipt = buildPurchasesSectionEntries(
-                            generateReceiptLines(
-                                    headings, entries, total, customerName, totalSaved));
-
-            StringBuilder sb = new StringBuilder();
-            for (String string : listReceipt) {
-                sb.append(string).append("\n");
-            }
-            receipt = sb.toString();
-        } else {
-            receipt = ReceiptPrinter.createReceipt(headings, entries, total, customerName);
-        }
-
-        return receipt;
-    }
-
-    private List<String> generateReceiptLines(
-            List<String> headings,
-            List<List<String>> entries,
-            String total, String customerName, String totalSaved) {
-        String fullReceipt = ReceiptPrinter.createReceipt(
-                headings, entries, total, customerName, totalSaved);
-        return Arrays.asList(fullReceipt.split("\n"));
+        List<String> notes = new ArrayList<>(super.getReceiptNotes(barcode));
+        notes.add(String.format("Discount applied! %d%% off %s",
+                getDiscountAmount(barcode), barcode.getDisplayName().toLowerCase()));
+        return notes;
     }
 
-    private static List<String> buildPurchasesSectionEntries(
-            List<String> lines) {
-        // Create a set of valid Barcode names for quick lookup
-        Set<String> validBarcodeNames = Arrays.stream(Barcode.values())
-                .map(Enum::name)
-                .collect(Collectors.toSet());
-
-        List<String> updatedLines = new ArrayList<>(lines);
-
-        int index = 1;
-        for (String entry : lines) {
-            String[] itemSplit = entry.split(" ");
-            String item = itemSplit[0].toUpperCase(); // Convert to upper case for matching
-
-            if (validBarcodeNames.contains(item)) {
-                Barcode barcode = Barcode.valueOf(item);
-                if (discountMap.containsKey(barcode) && discountMap.get(barcode) != 0) {
-                    String discountMessage = String.format(
-                            "Discount applied! %d%% off %s",
-                            discountMap.get(barcode), item.toLowerCase());
-                    updatedLines.add(index, discountMessage);
-                    index++;
-                }
-            }
-            index++;
+    /**
+     * Lays out the receipt using the ReceiptPrinter, adding the total saved by the special
+     * sale's discounts at the bottom when there is any.
+     *
+     * @param headings The headings of the purchases section.
+     * @param entries The entries of the purchases section.
+     * @param total The formatted total.
+     * @param customerName The customer's name.
+     * @return The formatted receipt, without any notes.
+     */
+    @Override
+    protected String createReceipt(List<String> headings, List<List<String>> entries,
+                                   String total, String customerName) {
+        int saved = getTotalSaved();
+        if (saved == 0) {
+            return super.createReceipt(headings, entries, total, customerName);
         }
-        return updatedLines;
-
-
+        return ReceiptPrinter.createReceipt(headings, entries, total, customerName,
+                String.format("$%.2f", saved / 100.0));
     }
-
 }
-
@@ -1,7 +1,12 @@
 package farm.sales.transaction;
 
 import farm.customer.Customer;
+import farm.customer.CustomerKey;
 import farm.inventory.product.Product;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+import farm.sales.Cart;
+import farm.sales.PricingEngine;
 import farm.sales.ReceiptPrinter;
 
 import java.util.ArrayList;
@@ -10,11 +15,25 @@ import java.util.List;
 /**
  * Represents a transaction in the system.
  * Each transaction is associated with a customer and contains a list of purchased products.
+ * <p>
+ * Every kind of transaction is priced by a {@link PricingEngine}. As well as the total, a
+ * transaction can give the amount charged for each line of its purchases, that is each product
+ * type and quality, with promotions, discounts and the basket threshold shared out between the
+ * lines so that they add up to the total. Once the transaction is finalised its lines can no
+ * longer change, so they are only worked out once.
+ * </p>
  */
 public class Transaction {
+    private static final Barcode[] BARCODES = Barcode.values();
+    private static final Quality[] QUALITIES = Quality.values();
+
     private final Customer associatedCustomer;
-    private List<Product> purchases;
+    private final CustomerKey customerKey;
+    private final PricingEngine pricingEngine;
+    private Cart purchases;
     private boolean finalised;
+    private long finalisedAt;
+    private int[] lineSubtotals;
 
     /**
      * Constructs a new Transaction associated with the specified customer.
@@ -22,9 +41,23 @@ public class Transaction {
      * @param customer The customer associated with this transaction.
      */
     public Transaction(Customer customer) {
+        this(customer, PricingEngine.BASE_PRICES);
+    }
+
+    /**
+     * Constructs a new Transaction associated with the specified customer,
+     * whose total is calculated by the given pricing engine.
+     *
+     * @param customer The customer associated with this transaction.
+     * @param pricingEngine The engine applying promotions to this transaction's purchases.
+     */
+    public Transaction(Customer customer, PricingEngine pricingEngine) {
         this.associatedCustomer = customer;
-        this.purchases = customer.getCart().getContents();
+        this.customerKey = customer.getKey();
+        this.pricingEngine = pricingEngine;
+        this.purchases = null;
         this.finalised = false;
+        this.finalisedAt = -1;
     }
 
     /**
@@ -36,6 +69,25 @@ public class Transaction {
         return associatedCustomer;
     }
 
+    /**
+     * Returns the key of the customer this transaction is attributed to,
+     * as it was when the transaction was created.
+     *
+     * @return The key of the associated customer.
+     */
+    public CustomerKey getCustomerKey() {
+        return customerKey;
+    }
+
+    /**
+     * Returns the pricing engine used to calculate this transaction's total.
+     *
+     * @return The pricing engine.
+     */
+    public PricingEngine getPricingEngine() {
+        return pricingEngine;
+    }
+
     /**
      * Determines if the transaction is finalised (i.e. sale completed) or not.
      *
@@ -51,37 +103,176 @@ public class Transaction {
      * such that they are now treated as final purchases and
      * no additional modification can be made,
      * and empties the customer's cart.
+     * The transaction is timestamped with the current time.
      */
     public void finalise() {
+        finalise(System.currentTimeMillis());
+    }
+
+    /**
+     * Mark a transaction as finalised as of the given time, as with {@link #finalise()}.
+     * Used when the time of the sale is already known, such as when restoring past transactions.
+     *
+     * @param timestamp The time the sale completed, in milliseconds since the epoch.
+     */
+    public void finalise(long timestamp) {
         this.finalised = true;
-        this.purchases = associatedCustomer.getCart().getContents();
+        this.finalisedAt = timestamp;
+        this.purchases = new Cart(associatedCustomer.getCart());
         this.associatedCustomer.getCart().setEmpty();
     }
 
+    /**
+     * Returns the time this transaction was finalised.
+     *
+     * @return The time the sale completed in milliseconds since the epoch,
+     *         or -1 if the transaction is not yet finalised.
+     */
+    public long getFinalisedAt() {
+        return finalisedAt;
+    }
+
     /**
      * Returns the list of products in this transaction.
      *
      * @return A list of products.
      */
     public List<Product> getPurchases() {
-        if (!isFinalised()) {
-            return new ArrayList<>(associatedCustomer.getCart().getContents());
-        } else {
-            return new ArrayList<>(purchases);
+        return getPurchaseCart().getContents();
+    }
+
+    /**
+     * Returns the number of products in this transaction, without listing them.
+     *
+     * @return The number of products purchased.
+     */
+    public int getPurchaseCount() {
+        return getPurchaseCart().size();
+    }
+
+    /**
+     * Returns the total quantity of products for a given barcode.
+     *
+     * @param type The barcode of the product.
+     * @return The total quantity of products with the given barcode.
+     */
+    public int getPurchaseQuantity(Barcode type) {
+        return getPurchaseCart().getQuantity(type);
+    }
+
+    /**
+     * Returns the quantity of products for a given barcode and quality.
+     *
+     * @param type The barcode of the product.
+     * @param quality The quality of the product.
+     * @return The quantity of products with the given barcode and quality.
+     */
+    public int getPurchaseQuantity(Barcode type, Quality quality) {
+        return getPurchaseCart().getQuantity(type, quality);
+    }
+
+    /**
+     * Returns the combined price of the products of a given barcode before any discounts
+     * or promotions are applied.
+     *
+     * @param type The barcode of the product.
+     * @return The undiscounted subtotal of products with the given barcode, in cents.
+     */
+    public int getUndiscountedSubtotal(Barcode type) {
+        int subtotal = 0;
+        for (Quality quality : QUALITIES) {
+            subtotal += getPurchaseQuantity(type, quality) * getUnitPrice(type, quality);
+        }
+        return subtotal;
+    }
+
+    /**
+     * Returns the list price of a product of the given type and quality in this transaction,
+     * before any promotions or discounts.
+     *
+     * @param type The barcode of the product.
+     * @param quality The quality of the product.
+     * @return The unit price, in cents.
+     */
+    public int getUnitPrice(Barcode type, Quality quality) {
+        return pricingEngine.getUnitPrice(type, quality);
+    }
+
+    /**
+     * Returns the subtotal cost for all products of a given barcode, with that type's promotions
+     * applied but before any basket threshold.
+     *
+     * @param type The barcode of the product.
+     * @return The subtotal cost of products with the given barcode, in cents.
+     */
+    public int getPurchaseSubtotal(Barcode type) {
+        return pricingEngine.getSubtotal(getPurchaseCart(), type);
+    }
+
+    /**
+     * Returns the amount charged for the products of a given barcode and quality, with its share
+     * of every promotion and discount applied. The line subtotals of a transaction add up to its
+     * total.
+     *
+     * @param type The barcode of the product.
+     * @param quality The quality of the product.
+     * @return The amount charged for that line, in cents.
+     */
+    public int getLineSubtotal(Barcode type, Quality quality) {
+        int[] lines = lineSubtotals;
+        if (lines == null) {
+            lines = computeLineSubtotals();
+            if (isFinalised()) {
+                lineSubtotals = lines;
+            }
         }
+        return lines[type.ordinal() * QUALITIES.length + quality.ordinal()];
     }
 
     /**
-     * Returns the total cost of the transaction.
+     * Returns the total cost of the transaction, with any promotions from its pricing engine applied.
      *
      * @return The total cost.
      */
     public int getTotal() {
         int total = 0;
-        for (Product product : getPurchases()) {
-            total += product.getBasePrice();
+        for (Barcode type : BARCODES) {
+            total += getPurchaseSubtotal(type);
         }
-        return total;
+        return pricingEngine.applyBasketThreshold(total);
+    }
+
+    /*
+     * Shares each type's subtotal out between its qualities, then the basket threshold
+     * between every line.
+     */
+    private int[] computeLineSubtotals() {
+        Cart cart = getPurchaseCart();
+        int[] lines = new int[BARCODES.length * QUALITIES.length];
+        int sum = 0;
+        for (Barcode type : BARCODES) {
+            int subtotal = getPurchaseSubtotal(type);
+            if (subtotal != 0) {
+                int[] typeLines = PricingEngine.allocate(
+                        pricingEngine.getLineSubtotals(cart, type), subtotal);
+                System.arraycopy(typeLines, 0, lines, type.ordinal() * QUALITIES.length,
+                        QUALITIES.length);
+                sum += subtotal;
+            }
+        }
+        int total = getTotal();
+        return total == sum ? lines : PricingEngine.allocate(lines, total);
+    }
+
+    /**
+     * Returns the cart holding this transaction's products: the customer's live cart while
+     * the transaction is active, or the products locked in when it was finalised.
+     * The returned cart must not be modified.
+     *
+     * @return The cart of purchases for this transaction.
+     */
+    protected Cart getPurchaseCart() {
+        return isFinalised() ? purchases : associatedCustomer.getCart();
     }
 
     /**
@@ -106,6 +297,9 @@ public class Transaction {
 
     /**
      * Returns a detailed receipt of the transaction.
+     * Each product is listed at its list price, followed by a line taking off the promotions
+     * for each product type and one for the basket threshold, so that the lines add up to
+     * the total.
      * used chatgpt to help
      *
      * @return A string representing the receipt of the transaction.
@@ -122,10 +316,27 @@ public class Transaction {
         List<List<String>> entries = new ArrayList<>();
         for (Product product : getPurchases()) {
             String itemName = product.getDisplayName().toLowerCase();
-            String itemPrice = String.format("$%.2f", product.getBasePrice() / 100.0);
+            int unitPrice = getUnitPrice(product.getBarcode(), product.getQuality());
+            String itemPrice = String.format("$%.2f", unitPrice / 100.0);
             entries.add(List.of(itemName, itemPrice));
         }
 
+        // Promotions are shown as their own lines, taken off the list prices
+        int subtotal = 0;
+        for (Barcode type : BARCODES) {
+            int typeSubtotal = getPurchaseSubtotal(type);
+            int saved = getUndiscountedSubtotal(type) - typeSubtotal;
+            if (saved > 0) {
+                entries.add(List.of(type.getDisplayName().toLowerCase() + " promotion",
+                        String.format("-$%.2f", saved / 100.0)));
+            }
+            subtotal += typeSubtotal;
+        }
+        if (getTotal() < subtotal) {
+            entries.add(List.of("basket discount",
+                    String.format("-$%.2f", (subtotal - getTotal()) / 100.0)));
+        }
+
         // Calculate the total price
         String total = String.format("$%.2f", getTotal() / 100.0);
 
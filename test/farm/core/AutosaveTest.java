@@ -0,0 +1,108 @@
+package farm.core;
+
+import farm.customer.AddressBook;
+import farm.customer.Customer;
+import farm.inventory.BasicInventory;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+import farm.sales.transaction.Transaction;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static farm.core.TradedFarms.tradedFarm;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AutosaveTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void intervalTest() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("farm.sav");
+        Farm farm = tradedFarm(5);
+        try (Autosave autosave = new Autosave(farm, path, Duration.ofMillis(20))) {
+            long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (autosave.getSaveCount() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue("The farm should be saved in the background", autosave.getSaveCount() > 0);
+            assertTrue("The save file should exist", Files.exists(path));
+        }
+        Farm loaded = SaveGame.load(path);
+        assertEquals("Incorrect stock", farm.getAllStock(), loaded.getAllStock());
+        assertEquals("Incorrect transactions", 5,
+                loaded.getTransactionHistory().getTotalTransactionsMade());
+    }
+
+    @Test
+    public void timingsTest() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("farm.sav");
+        try (Autosave autosave = new Autosave(tradedFarm(5), path, Duration.ofHours(1))) {
+            assertEquals("No save should have run yet", "No autosaves yet.", autosave.getReport());
+            autosave.saveNow();
+            assertEquals("Incorrect save count", 1, autosave.getSaveCount());
+            assertFalse("Writing should take time", autosave.getLastWriteTime().isZero());
+            assertTrue("The longest capture should include the last",
+                    autosave.getLongestCaptureTime().compareTo(autosave.getLastCaptureTime()) >= 0);
+            assertNull("The save should not have failed", autosave.getLastFailure());
+            assertTrue("The report should give capture times",
+                    autosave.getReport().contains("Last Capture:"));
+        }
+    }
+
+    @Test
+    public void captureIsolationTest() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("farm.sav");
+        Farm farm = tradedFarm(3);
+        SaveGame capture = SaveGame.capture(farm);
+
+        Customer customer = farm.getAllCustomers().getFirst();
+        customer.setAddress("Changed Road");
+        farm.stockProduct(Barcode.WOOL, Quality.GOLD);
+        farm.startTransaction(new Transaction(customer));
+        farm.addToCart(Barcode.WOOL);
+        farm.checkout();
+        capture.write(path);
+
+        Farm loaded = SaveGame.load(path);
+        assertEquals("Later stock should not be saved", 3, loaded.getAllStock().size());
+        assertEquals("Later edits should not be saved", "Farm Road",
+                loaded.getAllCustomers().getFirst().getAddress());
+        assertEquals("Later transactions should not be saved", 3,
+                loaded.getTransactionHistory().getTotalTransactionsMade());
+    }
+
+    @Test
+    public void unloadedHistoryTest() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("farm.sav");
+        SaveGame.save(tradedFarm(4), path);
+        Farm loaded = SaveGame.load(path);
+        try (Autosave autosave = new Autosave(loaded, path, Duration.ofHours(1))) {
+            loaded.stockProduct(Barcode.WOOL, Quality.GOLD);
+            autosave.saveNow();
+            assertNull("The save should not have failed", autosave.getLastFailure());
+        }
+        assertFalse("Autosaving should not decode the history", loaded.isHistoryLoaded());
+
+        Farm reloaded = SaveGame.load(path);
+        assertEquals("Incorrect stock", loaded.getAllStock(), reloaded.getAllStock());
+        assertEquals("Incorrect transactions", 4,
+                reloaded.getTransactionHistory().getTotalTransactionsMade());
+        assertEquals("The unsaved farm should still load its history", 4,
+                loaded.getTransactionHistory().getTotalTransactionsMade());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroIntervalTest() {
+        new Autosave(new Farm(new BasicInventory(), new AddressBook()),
+                folder.getRoot().toPath().resolve("farm.sav"), Duration.ZERO);
+    }
+}
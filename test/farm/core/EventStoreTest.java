@@ -0,0 +1,215 @@
+package farm.core;
+
+import farm.customer.AddressBook;
+import farm.customer.Customer;
+import farm.inventory.BasicInventory;
+import farm.inventory.product.Product;
+import farm.inventory.product.Wool;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+import farm.sales.TransactionHistory;
+import farm.sales.transaction.Transaction;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static farm.core.TradedFarms.trade;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EventStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Farm newFarm() {
+        return new Farm(new BasicInventory(), new AddressBook());
+    }
+
+    private static void assertSameState(Farm expected, Farm actual) {
+        assertEquals("Incorrect stock", expected.getAllStock(), actual.getAllStock());
+        assertEquals("Incorrect customers", expected.getAllCustomers(), actual.getAllCustomers());
+        assertEquals("Incorrect transactions",
+                expected.getTransactionHistory().getTotalTransactionsMade(),
+                actual.getTransactionHistory().getTotalTransactionsMade());
+        assertEquals("Incorrect gross earnings",
+                expected.getTransactionHistory().getGrossEarnings(),
+                actual.getTransactionHistory().getGrossEarnings());
+        assertEquals("Incorrect eggs sold",
+                expected.getTransactionHistory().getTotalProductsSold(Barcode.EGG),
+                actual.getTransactionHistory().getTotalProductsSold(Barcode.EGG));
+    }
+
+    @Test
+    public void eventReplayTest() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        Farm original = newFarm();
+        try (EventStore events = new EventStore(directory)) {
+            original.setEventStore(events);
+            trade(original, 0, 20);
+        }
+
+        Farm restored = newFarm();
+        try (EventStore events = new EventStore(directory)) {
+            // 20 customers, 60 stockings and 20 checkouts
+            assertEquals("Every event should be replayed", 100, events.restore(restored));
+        }
+        assertSameState(original, restored);
+    }
+
+    @Test
+    public void snapshotTest() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        Farm original = newFarm();
+        try (EventStore events = new EventStore(directory, 50)) {
+            original.setEventStore(events);
+            trade(original, 0, 20);
+        }
+        assertTrue("A snapshot should have been taken",
+                Files.exists(directory.resolve(EventStore.SNAPSHOT_FILE_NAME)));
+
+        Farm restored = newFarm();
+        try (EventStore events = new EventStore(directory, 50)) {
+            int replayed = events.restore(restored);
+            // the second snapshot is skipped if the first is still being written when it is due
+            assertTrue("Only events after the snapshot should be replayed, not " + replayed,
+                    replayed < 100);
+            // restored farms keep logging to the same store
+            restored.setEventStore(events);
+            trade(restored, 20, 1);
+        }
+        original.setEventStore(null);
+        trade(original, 20, 1);
+
+        Farm again = newFarm();
+        try (EventStore events = new EventStore(directory, 50)) {
+            events.restore(again);
+        }
+        assertSameState(original, again);
+    }
+
+    @Test
+    public void damagedSnapshotTest() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        Farm original = newFarm();
+        try (EventStore events = new EventStore(directory, 50)) {
+            original.setEventStore(events);
+            trade(original, 0, 20);
+        }
+        Path snapshot = directory.resolve(EventStore.SNAPSHOT_FILE_NAME);
+        byte[] bytes = Files.readAllBytes(snapshot);
+        bytes[bytes.length / 2] ^= 0x7F;
+        Files.write(snapshot, bytes);
+
+        Farm restored = newFarm();
+        try (EventStore events = new EventStore(directory, 50)) {
+            assertEquals("A damaged snapshot should fall back to the full log", 100,
+                    events.restore(restored));
+        }
+        assertSameState(original, restored);
+    }
+
+    @Test
+    public void openCartRestartTest() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        Farm original = newFarm();
+        try (EventStore events = new EventStore(directory)) {
+            original.setEventStore(events);
+            trade(original, 0, 3);
+            Customer browser = new Customer("Browser", 2000, "Farm Road");
+            Customer buyer = new Customer("Buyer", 2001, "Farm Road");
+            original.saveCustomer(browser);
+            original.saveCustomer(buyer);
+            original.stockProduct(Barcode.WOOL, Quality.GOLD);
+            original.stockProduct(Barcode.WOOL, Quality.REGULAR);
+            original.startTransaction("till 1", new Transaction(browser));
+            original.addToCart("till 1", Barcode.WOOL);
+            original.startTransaction("till 2", new Transaction(buyer));
+            original.addToCart("till 2", Barcode.WOOL);
+
+            // taken with both carts open; only the buyer's checks out afterwards
+            events.snapshot(original);
+            original.checkout("till 2");
+        }
+
+        List<Product> expected = new ArrayList<>(original.getAllStock());
+        expected.add(new Wool(Quality.GOLD));
+        Farm restored = newFarm();
+        try (EventStore events = new EventStore(directory)) {
+            assertEquals("Only the checkout should follow the snapshot", 1,
+                    events.restore(restored));
+        }
+        assertEquals("Products in an open cart should be back in stock", expected,
+                restored.getAllStock());
+
+        Files.delete(directory.resolve(EventStore.SNAPSHOT_FILE_NAME));
+        Farm replayed = newFarm();
+        try (EventStore events = new EventStore(directory)) {
+            events.restore(replayed);
+        }
+        assertEquals("Replaying the whole log should restore the open cart too", expected,
+                replayed.getAllStock());
+        assertEquals("The checkout should be restored", 4,
+                replayed.getTransactionHistory().getTotalTransactionsMade());
+    }
+
+    @Test
+    public void backgroundSnapshotTest() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        Farm farm = newFarm();
+        try (EventStore events = new EventStore(directory, 5)) {
+            farm.setEventStore(events);
+            trade(farm, 0, 1);
+            long deadline = System.nanoTime() + 10_000_000_000L;
+            while (events.getEventsSinceSnapshot() >= 5 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue("The snapshot should be taken in the background",
+                    events.getEventsSinceSnapshot() < 5);
+        }
+        assertTrue("The snapshot should be written before the store closes",
+                Files.exists(directory.resolve(EventStore.SNAPSHOT_FILE_NAME)));
+    }
+
+    @Test
+    public void rollupSnapshotTest() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        long day = Duration.ofDays(1).toMillis();
+        TransactionHistory history = new TransactionHistory(3, Duration.ofDays(1), ZoneOffset.UTC);
+        Farm original = new Farm(new BasicInventory(), new AddressBook(), history);
+        try (EventStore events = new EventStore(directory)) {
+            original.setEventStore(events);
+            for (int i = 0; i < 5; i++) {
+                Customer customer = new Customer("Customer " + i, 1000 + i, "Farm Road");
+                customer.getCart().addProduct(new Wool(Quality.SILVER));
+                Transaction transaction = new Transaction(customer);
+                transaction.finalise(i * day);
+                history.recordTransaction(transaction);
+            }
+            events.snapshot(original);
+        }
+
+        TransactionHistory restored = new TransactionHistory(3, Duration.ofDays(1), ZoneOffset.UTC);
+        try (EventStore events = new EventStore(directory)) {
+            events.restore(new Farm(new BasicInventory(), new AddressBook(), restored));
+        }
+        assertTrue("Some transactions should be rolled up",
+                history.getRetainedTransactionCount() < 5);
+        assertEquals("Rolled up transactions should be restored", 5,
+                restored.getTotalTransactionsMade());
+        assertEquals("Incorrect gross earnings", history.getGrossEarnings(),
+                restored.getGrossEarnings());
+        assertEquals("Incorrect daily summaries", history.getDailySummaries().toString(),
+                restored.getDailySummaries().toString());
+        assertEquals("Incorrect distinct customers", 5, restored.getDistinctCustomerCount());
+        assertEquals("Incorrect rolled up line items",
+                history.getLineItems().getRolledUpCount(),
+                restored.getLineItems().getRolledUpCount());
+    }
+}
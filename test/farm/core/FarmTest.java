@@ -6,6 +6,12 @@ import farm.inventory.product.data.Barcode;
 import farm.inventory.product.data.Quality;
 import farm.sales.transaction.Transaction;
 import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.Assert.*;
 import farm.core.Farm;
 import farm.core.FailedTransactionException;
@@ -127,5 +133,50 @@ public class FarmTest {
 //            fail("Transaction failed unexpectedly: " + e.getMessage());
 //        }
 //    }
-}
 
+    @Test
+    public void findCustomerTest() throws DuplicateCustomerException {
+        assertTrue("Customer should not be found before being saved",
+                farm.findCustomer("Ali", 33651111).isEmpty());
+        farm.saveCustomer(customer);
+        assertSame("Saved customer should be found", customer,
+                farm.findCustomer("Ali", 33651111).orElseThrow());
+        assertSame("Cached customer should be found again", customer,
+                farm.findCustomer("Ali", 33651111).orElseThrow());
+        assertEquals("Second lookup should be answered by the cache", 1,
+                farm.getCustomerCache().getHits());
+    }
+
+    @Test
+    public void getCustomerNotFoundTest() {
+        try {
+            farm.getCustomer("Nobody", 1234);
+            fail("Looking up a missing customer should throw");
+        } catch (CustomerNotFoundException e) {
+            assertEquals("Incorrect message", "Customer not found: Nobody", e.getMessage());
+        }
+    }
+
+    @Test
+    public void checkoutDoesNotWaitForInventoryTest() throws Exception {
+        farm.saveCustomer(customer);
+        farm.stockProduct(Barcode.EGG, Quality.GOLD);
+        farm.startTransaction("till 1", transaction);
+        farm.addToCart("till 1", Barcode.EGG);
+
+        ExecutorService lane = Executors.newSingleThreadExecutor();
+        try {
+            // another lane's cart holding the inventory must not hold up this checkout
+            synchronized (farm.getInventory()) {
+                Future<Boolean> checkout = lane.submit(() -> farm.checkout("till 1"));
+                assertTrue("Checkout should not wait for the inventory's lock",
+                        checkout.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            lane.shutdownNow();
+        }
+        assertEquals("The sale should be recorded", 1,
+                farm.getTransactionHistory().getTotalTransactionsMade());
+        assertTrue("The stock should have been sold", farm.getAllStock().isEmpty());
+    }
+}
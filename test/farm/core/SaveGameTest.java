@@ -0,0 +1,198 @@
+package farm.core;
+
+import farm.customer.AddressBook;
+import farm.customer.Customer;
+import farm.inventory.FancyInventory;
+import farm.inventory.product.Wool;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+import farm.sales.TransactionHistory;
+import farm.sales.transaction.SpecialSaleTransaction;
+import farm.sales.transaction.Transaction;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static farm.core.TradedFarms.tradedFarm;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SaveGameTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void roundTripTest() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("farm.sav");
+        Farm original = tradedFarm(30);
+        SaveGame.save(original, path);
+
+        Farm loaded = SaveGame.load(path);
+        assertEquals("Incorrect stock", original.getAllStock(), loaded.getAllStock());
+        assertEquals("Incorrect customers",
+                original.getAllCustomers(), loaded.getAllCustomers());
+        assertEquals("Incorrect transactions", 30,
+                loaded.getTransactionHistory().getTotalTransactionsMade());
+        assertEquals("Incorrect gross earnings",
+                original.getTransactionHistory().getGrossEarnings(),
+                loaded.getTransactionHistory().getGrossEarnings());
+        assertEquals("Incorrect last receipt", original.getLastReceipt(), loaded.getLastReceipt());
+        assertSame("Loaded customers at the same address should share it",
+                loaded.getAllCustomers().get(0).getAddress(),
+                loaded.getAllCustomers().get(1).getAddress());
+    }
+
+    @Test
+    public void lazyHistoryTest() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("farm.sav");
+        SaveGame.save(tradedFarm(10), path);
+
+        Farm loaded = SaveGame.load(path);
+        assertFalse("The history should not be decoded on load", loaded.isHistoryLoaded());
+        assertEquals("Stock should be available before the history", 10,
+                loaded.getAllStock().size());
+        assertFalse("Reading stock should not decode the history", loaded.isHistoryLoaded());
+        assertEquals("Incorrect transactions", 10,
+                loaded.getTransactionHistory().getTotalTransactionsMade());
+        assertTrue("The history should be decoded once used", loaded.isHistoryLoaded());
+    }
+
+    @Test
+    public void resaveUnloadedHistoryTest() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("farm.sav");
+        Path resaved = folder.getRoot().toPath().resolve("resaved.sav");
+        Farm original = tradedFarm(10);
+        SaveGame.save(original, path);
+
+        Farm loaded = SaveGame.load(path);
+        loaded.stockProduct(Barcode.WOOL, Quality.GOLD);
+        SaveGame capture = SaveGame.capture(loaded);
+        assertFalse("Capturing should not decode the history", loaded.isHistoryLoaded());
+        assertEquals("Incorrect captured transactions", 10, capture.getTransactionCount());
+        capture.write(resaved);
+
+        Farm reloaded = SaveGame.load(resaved);
+        assertEquals("Incorrect stock", loaded.getAllStock(), reloaded.getAllStock());
+        assertEquals("Incorrect transactions", 10,
+                reloaded.getTransactionHistory().getTotalTransactionsMade());
+        assertEquals("Incorrect gross earnings",
+                original.getTransactionHistory().getGrossEarnings(),
+                reloaded.getTransactionHistory().getGrossEarnings());
+        assertEquals("Incorrect last receipt", original.getLastReceipt(), reloaded.getLastReceipt());
+    }
+
+    @Test
+    public void rollupRoundTripTest() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("farm.sav");
+        long day = Duration.ofDays(1).toMillis();
+        TransactionHistory history = new TransactionHistory(2, Duration.ofDays(1), ZoneOffset.UTC);
+        Farm original = new Farm(new FancyInventory(), new AddressBook(), history);
+        for (int i = 0; i < 6; i++) {
+            Customer customer = new Customer("Customer " + i, 1000 + i, "Farm Road");
+            for (int j = 0; j <= i; j++) {
+                customer.getCart().addProduct(new Wool(Quality.GOLD));
+            }
+            Transaction transaction = i % 2 == 0 ? new Transaction(customer)
+                    : new SpecialSaleTransaction(customer);
+            transaction.finalise(i * day);
+            history.recordTransaction(transaction);
+        }
+        assertTrue("Some transactions should be rolled up",
+                history.getRetainedTransactionCount() < 6);
+        SaveGame.save(original, path);
+
+        Farm loaded = SaveGame.load(path);
+        assertTrue("A farm saved with a fancy inventory should load with one",
+                loaded.hasFancyInventory());
+        TransactionHistory restored = loaded.getTransactionHistory();
+        assertEquals("Retention should be kept", Duration.ofDays(1),
+                restored.getDetailRetention());
+        assertEquals("Incorrect transactions", 6, restored.getTotalTransactionsMade());
+        assertEquals("Incorrect retained transactions", history.getRetainedTransactionCount(),
+                restored.getRetainedTransactionCount());
+        assertEquals("Incorrect gross earnings", history.getGrossEarnings(),
+                restored.getGrossEarnings());
+        assertEquals("Incorrect products sold", history.getTotalProductsSold(),
+                restored.getTotalProductsSold());
+        assertEquals("Incorrect average discount",
+                history.getAverageProductDiscount(Barcode.WOOL),
+                restored.getAverageProductDiscount(Barcode.WOOL), 0.0001);
+        assertEquals("Incorrect distinct customers", history.getDistinctCustomerCount(),
+                restored.getDistinctCustomerCount());
+        assertEquals("Incorrect daily summaries", history.getDailySummaries().toString(),
+                restored.getDailySummaries().toString());
+        assertEquals("Incorrect leaderboard",
+                history.getTopGrossingTransactions().stream().map(Transaction::getTotal).toList(),
+                restored.getTopGrossingTransactions().stream().map(Transaction::getTotal).toList());
+        assertEquals("Incorrect rolled up line items",
+                original.getHistoryReport().toString(), loaded.getHistoryReport().toString());
+    }
+
+    @Test
+    public void damagedHistoryTest() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("farm.sav");
+        Path resaved = folder.getRoot().toPath().resolve("resaved.sav");
+        SaveGame.save(tradedFarm(5), path);
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            // the history is the third entry of the section table
+            file.seek(16 + 2 * 20 + 4);
+            long offset = file.readLong();
+            int length = file.readInt();
+            file.seek(offset + length - 1);
+            int last = file.read();
+            file.seek(offset + length - 1);
+            file.write(last ^ 0xFF);
+        }
+
+        Farm loaded = SaveGame.load(path);
+        assertEquals("The stock should load despite the damaged history", 5,
+                loaded.getAllStock().size());
+        SaveGame.save(loaded, resaved);
+        for (Farm farm : List.of(loaded, SaveGame.load(resaved))) {
+            try {
+                farm.getTransactionHistory();
+                fail("A damaged history should be reported when it is used");
+            } catch (UncheckedIOException expected) {
+                assertFalse("A failed load should be retried", farm.isHistoryLoaded());
+            }
+        }
+    }
+
+    @Test
+    public void rejectsUnknownFilesTest() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("farm.sav");
+        SaveGame.save(tradedFarm(3), path);
+
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(4);
+            file.writeInt(SaveGame.VERSION + 1);
+        }
+        try {
+            SaveGame.load(path);
+            fail("A file from a later version should be rejected");
+        } catch (IOException expected) {
+            // expected
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.writeInt(0);
+        }
+        try {
+            SaveGame.load(path);
+            fail("A file that is not a save should be rejected");
+        } catch (IOException expected) {
+            // expected
+        }
+    }
+}
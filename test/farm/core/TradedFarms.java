@@ -0,0 +1,45 @@
+package farm.core;
+
+import farm.customer.AddressBook;
+import farm.customer.Customer;
+import farm.inventory.BasicInventory;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+import farm.sales.transaction.Transaction;
+
+/**
+ * Farms with a few days of trading behind them, shared by the tests of the ways a farm's
+ * state is saved and restored.
+ */
+final class TradedFarms {
+    private TradedFarms() {
+    }
+
+    /**
+     * Creates a farm with a basic inventory and the given number of days of trading.
+     */
+    static Farm tradedFarm(int days) throws Exception {
+        Farm farm = new Farm(new BasicInventory(), new AddressBook());
+        trade(farm, 0, days);
+        return farm;
+    }
+
+    /**
+     * Trades on the given farm for the given number of days, numbered from the first day. Each
+     * day a new customer registers, three products are stocked, and the customer buys an egg
+     * and the milk, leaving the other egg in stock.
+     */
+    static void trade(Farm farm, int firstDay, int days) throws Exception {
+        for (int day = firstDay; day < firstDay + days; day++) {
+            Customer customer = new Customer("Customer " + day, 1000 + day, "Farm Road");
+            farm.saveCustomer(customer);
+            farm.stockProduct(Barcode.EGG, Quality.REGULAR);
+            farm.stockProduct(Barcode.EGG, Quality.GOLD);
+            farm.stockProduct(Barcode.MILK, Quality.SILVER);
+            farm.startTransaction(new Transaction(customer));
+            farm.addToCart(Barcode.EGG);
+            farm.addToCart(Barcode.MILK);
+            farm.checkout();
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package farm.customer;
+
+import farm.core.CustomerNotFoundException;
+import farm.core.DuplicateCustomerException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AddressBookTest {
+    private AddressBook addressBook;
+
+    @Before
+    public void setUp() throws DuplicateCustomerException {
+        addressBook = new AddressBook();
+        addressBook.addCustomer(new Customer("Lauren", 3333, "1st Street"));
+        addressBook.addCustomer(new Customer("Ali", 5555, "UQ"));
+        addressBook.addCustomer(new Customer("James", 1111, "1st Street"));
+        addressBook.addCustomer(new Customer("Alex", 4444, "1st Street"));
+        addressBook.addCustomer(new Customer("Bea", 2222, "2nd Street"));
+    }
+
+    @Test
+    public void getPageInsertionOrderTest() {
+        CustomerPage page = addressBook.getPage(0, 2, CustomerOrder.INSERTION);
+        assertEquals("Incorrect first page", List.of("Lauren", "Ali"), names(page));
+        assertTrue("First page should have a next page", page.hasNext());
+        assertFalse("First page should not have a previous page", page.hasPrevious());
+    }
+
+    @Test
+    public void getPageContinuationTest() {
+        CustomerPage page = addressBook.getPage(0, 2, CustomerOrder.NAME);
+        page = addressBook.getPage(page.getNextOffset(), 2, page.getOrder());
+        assertEquals("Incorrect second page", List.of("Bea", "James"), names(page));
+        page = addressBook.getPage(page.getNextOffset(), 2, page.getOrder());
+        assertEquals("Incorrect last page", List.of("Lauren"), names(page));
+        assertFalse("Last page should not have a next page", page.hasNext());
+        page = addressBook.getPage(page.getPreviousOffset(), 2, page.getOrder());
+        assertEquals("Incorrect page after going back", List.of("Bea", "James"), names(page));
+    }
+
+    @Test
+    public void getPageByPhoneNumberTest() {
+        CustomerPage page = addressBook.getPage(0, 5, CustomerOrder.PHONE_NUMBER);
+        assertEquals("Incorrect phone order",
+                List.of("James", "Bea", "Lauren", "Alex", "Ali"), names(page));
+    }
+
+    @Test
+    public void getPageSeesNewCustomersTest() throws DuplicateCustomerException {
+        addressBook.getPage(0, 5, CustomerOrder.NAME);
+        addressBook.addCustomer(new Customer("Aaron", 6666, "3rd Street"));
+        CustomerPage page = addressBook.getPage(0, 1, CustomerOrder.NAME);
+        assertEquals("Sorted view was not refreshed", List.of("Aaron"), names(page));
+        assertEquals("Incorrect total", 6, page.getTotalRecords());
+    }
+
+    @Test
+    public void getPagePastEndTest() {
+        CustomerPage page = addressBook.getPage(10, 2, CustomerOrder.INSERTION);
+        assertTrue("Page past the end should be empty", page.getRecords().isEmpty());
+        assertFalse("Page past the end should not have a next page", page.hasNext());
+    }
+
+    @Test
+    public void findLikelyDuplicatesSamePhoneTest() throws DuplicateCustomerException {
+        Customer john = new Customer("John Smith", 7777, "4th Street");
+        addressBook.addCustomer(john);
+        List<Customer> matches = addressBook.findLikelyDuplicates(
+                new Customer("Jon Smith", 7777, "Somewhere Else"));
+        assertEquals("Misspelt name at the same phone should be flagged", List.of(john), matches);
+    }
+
+    @Test
+    public void findLikelyDuplicatesUnrelatedTest() {
+        List<Customer> matches = addressBook.findLikelyDuplicates(
+                new Customer("Alexa", 9999, "Far Away"));
+        assertTrue("Similar name with no shared details should not be flagged", matches.isEmpty());
+    }
+
+    @Test
+    public void findAllLikelyDuplicatesTest() throws DuplicateCustomerException {
+        addressBook.addCustomer(new Customer("Laurens", 3333, "1st Street"));
+        List<PossibleDuplicate> duplicates = addressBook.findAllLikelyDuplicates();
+        assertEquals("Incorrect number of duplicates", 1, duplicates.size());
+        assertEquals("Incorrect existing customer", "Lauren",
+                duplicates.getFirst().getExisting().getName());
+        assertEquals("Incorrect candidate customer", "Laurens",
+                duplicates.getFirst().getCandidate().getName());
+    }
+
+    @Test
+    public void filterRejectsMissingCustomersTest() throws DuplicateCustomerException {
+        addressBook = AddressBook.withExpectedCustomers(4);
+        for (int i = 0; i < 100; i++) {
+            addressBook.addCustomer(new Customer("Customer " + i, i, "Street " + i));
+        }
+        for (int i = 0; i < 100; i++) {
+            assertTrue("Added customer was not found",
+                    addressBook.findCustomer("Customer " + i, i).isPresent());
+        }
+        for (int i = 100; i < 1100; i++) {
+            assertFalse("Missing customer was found",
+                    addressBook.findCustomer("Customer " + i, i).isPresent());
+        }
+        // each add also checks for an existing customer first
+        assertEquals("Every miss should be counted", 1100,
+                addressBook.getFilterRejections() + addressBook.getFilterFalsePositives());
+        assertTrue("Filter let through too many misses",
+                addressBook.getObservedFalsePositiveRate() < 0.05);
+    }
+
+    @Test
+    public void renamedCustomerIsReindexedTest() throws Exception {
+        Customer ali = addressBook.getCustomer("Ali", 5555);
+        addressBook.getPage(0, 5, CustomerOrder.NAME);
+        ali.setName("Zara");
+
+        assertTrue("Renamed customer should be found by the new name",
+                addressBook.findCustomer("Zara", 5555).isPresent());
+        assertFalse("Renamed customer should not be found by the old name",
+                addressBook.findCustomer("Ali", 5555).isPresent());
+        assertEquals("Sorted view should reflect the new name", "Zara",
+                addressBook.getPage(4, 1, CustomerOrder.NAME).getRecords().getFirst().getName());
+        assertTrue("A new customer may now take the old name",
+                addressBook.findLikelyDuplicates(new Customer("Ali", 5555, "UQ")).isEmpty());
+        addressBook.addCustomer(new Customer("Ali", 5555, "UQ"));
+        assertEquals("Incorrect size", 6, addressBook.size());
+    }
+
+    @Test
+    public void collidingRenameTest() throws Exception {
+        Customer ali = addressBook.getCustomer("Ali", 5555);
+        ali.setPhoneNumber(3333);
+        try {
+            ali.setName("Lauren");
+            fail("Renaming onto another customer's name and phone number should be rejected");
+        } catch (IllegalArgumentException expected) {
+            assertEquals("Incorrect message", "Customer already exists: Lauren",
+                    expected.getMessage());
+        }
+        assertEquals("A rejected rename should leave the name alone", "Ali", ali.getName());
+        assertEquals("The renamed customer should still be found", ali,
+                addressBook.getCustomer("Ali", 3333));
+        assertEquals("The other customer should still be found", "1st Street",
+                addressBook.getCustomer("Lauren", 3333).getAddress());
+        ali.setPhoneNumber(3333);
+        assertEquals("A customer keeping its own key should be accepted", ali,
+                addressBook.getCustomer("Ali", 3333));
+    }
+
+    @Test
+    public void changedPhoneNumberIsReindexedTest() throws Exception {
+        Customer bea = addressBook.getCustomer("Bea", 2222);
+        bea.setPhoneNumber(7777);
+
+        assertEquals("Customer should be found by the new phone number", bea,
+                addressBook.getCustomer("Bea", 7777));
+        assertFalse("Customer should not be found by the old phone number",
+                addressBook.findCustomer("Bea", 2222).isPresent());
+        assertEquals("Duplicates should be found by the new phone number", List.of(bea),
+                addressBook.findLikelyDuplicates(new Customer("Bea.", 7777, "Elsewhere")));
+        assertTrue("Duplicates should not be found by the old phone number",
+                addressBook.findLikelyDuplicates(new Customer("Bea.", 2222, "Elsewhere")).isEmpty());
+    }
+
+    @Test
+    public void findCustomerTest() {
+        assertEquals("Existing customer should be found", "Ali",
+                addressBook.findCustomer("Ali", 5555).orElseThrow().getName());
+        assertTrue("Missing customer should not be found",
+                addressBook.findCustomer("Ali", 1111).isEmpty());
+    }
+
+    @Test
+    public void getCustomerNotFoundTest() {
+        try {
+            addressBook.getCustomer("Nobody", 1234);
+            fail("Looking up a missing customer should throw");
+        } catch (CustomerNotFoundException e) {
+            assertEquals("Incorrect message", "Customer not found: Nobody", e.getMessage());
+            assertEquals("Lookups should not capture a stack trace", 0, e.getStackTrace().length);
+        }
+    }
+
+    @Test
+    public void sharedAddressesTest() throws Exception {
+        assertEquals("Incorrect pooled addresses", 3, addressBook.getPooledAddressCount());
+        Customer first = new Customer("Cal", 6666, new String("Farm Road"));
+        Customer second = new Customer("Dee", 7777, new String("Farm Road"));
+        addressBook.addCustomer(first);
+        addressBook.addCustomer(second);
+        assertSame("Customers at the same address should share it",
+                first.getAddress(), second.getAddress());
+
+        Customer lauren = addressBook.getCustomer("Lauren", 3333);
+        lauren.setAddress(new String("Farm Road"));
+        assertSame("A changed address should be shared too",
+                first.getAddress(), lauren.getAddress());
+        assertEquals("Incorrect pooled addresses", 4, addressBook.getPooledAddressCount());
+    }
+
+    @Test
+    public void snapshotDetailsTest() throws Exception {
+        List<CustomerDetails> snapshot = addressBook.snapshotDetails();
+        assertEquals("Incorrect snapshot size", 5, snapshot.size());
+
+        addressBook.addCustomer(new Customer("Cal", 6666, "3rd Street"));
+        addressBook.streamRecords().findFirst().orElseThrow().setAddress("4th Street");
+        addressBook.getCustomer("Ali", 5555).setName("Alistair");
+        assertEquals("Customers added later should not show through", 5, snapshot.size());
+        assertEquals("Later edits should not show through", "1st Street",
+                snapshot.getFirst().getAddress());
+        assertEquals("Later renames should not show through", "Ali", snapshot.get(1).getName());
+
+        List<CustomerDetails> later = addressBook.snapshotDetails();
+        assertEquals("Incorrect later snapshot size", 6, later.size());
+        assertEquals("Edits should be snapshotted", "4th Street", later.getFirst().getAddress());
+        assertEquals("Renames should be snapshotted", "Alistair", later.get(1).getName());
+        assertEquals("Added customers should be snapshotted", 6666, later.getLast().getPhoneNumber());
+    }
+
+    private static List<String> names(CustomerPage page) {
+        return page.getRecords().stream().map(Customer::getName).toList();
+    }
+}
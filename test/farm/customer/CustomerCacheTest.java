@@ -0,0 +1,107 @@
+package farm.customer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CustomerCacheTest {
+    private static Customer customer(int number) {
+        return new Customer("Customer " + number, number, "Street " + number);
+    }
+
+    @Test
+    public void hitsAndMissesTest() {
+        CustomerCache cache = new CustomerCache(4, CacheEvictionPolicy.LRU);
+        Customer customer = customer(1);
+        assertNull("An empty cache should miss", cache.get(customer.getKey()));
+        cache.put(customer);
+        assertSame("A cached customer should be returned", customer, cache.get(customer.getKey()));
+        assertEquals("Incorrect hits", 1, cache.getHits());
+        assertEquals("Incorrect misses", 1, cache.getMisses());
+        assertEquals("Incorrect hit rate", 0.5, cache.getHitRate(), 0.0);
+    }
+
+    @Test
+    public void lruEvictsLeastRecentlyUsedTest() {
+        CustomerCache cache = new CustomerCache(2, CacheEvictionPolicy.LRU);
+        Customer first = customer(1);
+        Customer second = customer(2);
+        cache.put(first);
+        cache.put(second);
+        cache.get(first.getKey());
+
+        assertTrue("LRU should always admit", cache.put(customer(3)));
+        assertEquals("Incorrect evictions", 1, cache.getEvictions());
+        assertSame("Recently used customer should be kept", first, cache.get(first.getKey()));
+        assertNull("Least recently used customer should be evicted", cache.get(second.getKey()));
+    }
+
+    @Test
+    public void tinyLfuKeepsRegularsTest() {
+        CustomerCache cache = new CustomerCache(2, CacheEvictionPolicy.TINY_LFU);
+        Customer first = customer(1);
+        Customer second = customer(2);
+        cache.put(first);
+        cache.put(second);
+        for (int i = 0; i < 5; i++) {
+            cache.get(first.getKey());
+            cache.get(second.getKey());
+        }
+
+        Customer oneOff = customer(3);
+        cache.get(oneOff.getKey());
+        assertFalse("A one-off customer should not displace a regular", cache.put(oneOff));
+        assertEquals("Incorrect rejections", 1, cache.getRejections());
+        assertEquals("Nothing should be evicted", 0, cache.getEvictions());
+        assertSame("Regulars should be kept", first, cache.get(first.getKey()));
+        assertSame("Regulars should be kept", second, cache.get(second.getKey()));
+    }
+
+    @Test
+    public void tinyLfuAdmitsFrequentCustomerTest() {
+        CustomerCache cache = new CustomerCache(1, CacheEvictionPolicy.TINY_LFU);
+        Customer resident = customer(1);
+        cache.put(resident);
+
+        Customer popular = customer(2);
+        for (int i = 0; i < 3; i++) {
+            cache.get(popular.getKey());
+        }
+        assertTrue("A more frequent customer should be admitted", cache.put(popular));
+        assertNull("The less frequent customer should be evicted", cache.get(resident.getKey()));
+    }
+
+    @Test
+    public void invalidateTest() {
+        CustomerCache cache = new CustomerCache(4, CacheEvictionPolicy.LRU);
+        Customer customer = customer(1);
+        cache.put(customer);
+        cache.invalidate(customer.getKey());
+        assertNull("Invalidated customer should not be returned", cache.get(customer.getKey()));
+        assertEquals("Incorrect size", 0, cache.size());
+
+        cache.put(customer);
+        cache.clear();
+        assertEquals("Cleared cache should be empty", 0, cache.size());
+    }
+
+    @Test
+    public void renamedCustomerTest() {
+        CustomerCache cache = new CustomerCache(4, CacheEvictionPolicy.LRU);
+        Customer customer = customer(1);
+        CustomerKey oldKey = customer.getKey();
+        cache.put(customer);
+        customer.setName("Renamed");
+        assertNull("A renamed customer should not answer to its old key", cache.get(oldKey));
+        assertEquals("The stale entry should be dropped", 0, cache.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroCapacityTest() {
+        new CustomerCache(0, CacheEvictionPolicy.LRU);
+    }
+}
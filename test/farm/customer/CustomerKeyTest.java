@@ -0,0 +1,47 @@
+package farm.customer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class CustomerKeyTest {
+    @Test
+    public void equalKeysTest() {
+        CustomerKey key = new CustomerKey("Ali", 33651111);
+        CustomerKey same = new CustomerKey("Ali", 33651111);
+        assertEquals("Keys with the same details should be equal", key, same);
+        assertEquals("Equal keys should have equal hash codes", key.hashCode(), same.hashCode());
+    }
+
+    @Test
+    public void differentKeysTest() {
+        CustomerKey key = new CustomerKey("Ali", 33651111);
+        assertNotEquals("Keys with different names should differ",
+                key, new CustomerKey("Alex", 33651111));
+        assertNotEquals("Keys with different phone numbers should differ",
+                key, new CustomerKey("Ali", 33651112));
+        assertNotEquals("A key should not equal its customer",
+                key, new Customer("Ali", 33651111, "UQ"));
+    }
+
+    @Test
+    public void customerKeyTracksDetailsTest() {
+        Customer customer = new Customer("Ali", 33651111, "UQ");
+        CustomerKey key = customer.getKey();
+        assertSame("The key should be cached", key, customer.getKey());
+        customer.setAddress("Brisbane");
+        assertSame("Changing the address should keep the key", key, customer.getKey());
+        customer.setName("Alex");
+        assertNotSame("Renaming should give a new key", key, customer.getKey());
+        assertEquals("Incorrect renamed key", new CustomerKey("Alex", 33651111), customer.getKey());
+        assertEquals("The old key should be unchanged", "Ali", key.getName());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void nullNameTest() {
+        new CustomerKey(null, 1234);
+    }
+}
@@ -38,6 +38,33 @@ public class FancyInventoryTest {
         assertEquals(Quality.REGULAR, removedProducts.get(1).getQuality());
     }
 
+    @Test
+    public void snapshotProductsTest() throws Exception {
+        List<Product> snapshot = inventory.snapshotProducts();
+        inventory.removeProduct(Barcode.EGG);
+        inventory.addProduct(Barcode.MILK, Quality.GOLD);
+        assertEquals("Later changes should not show through", 3, snapshot.size());
+        assertTrue("Later changes should not show through", snapshot.stream()
+                .allMatch(product -> product.getBarcode() == Barcode.EGG));
+
+        List<Product> later = inventory.snapshotProducts();
+        inventory.addProduct(Barcode.JAM, Quality.REGULAR);
+        assertEquals("Incorrect later snapshot", 3, later.size());
+        assertEquals("Incorrect later snapshot", Barcode.MILK, later.getLast().getBarcode());
+        assertEquals("Incorrect stock", 4, inventory.getAllProducts().size());
+    }
+
+    @Test
+    public void separateStockTest() throws Exception {
+        FancyInventory other = new FancyInventory();
+        other.addProduct(Barcode.WOOL, Quality.SILVER);
+        assertEquals("A new inventory should not replace existing stock", 3,
+                inventory.getAllProducts().size());
+        assertFalse("Stock should not be shared between inventories",
+                inventory.existsProduct(Barcode.WOOL));
+        assertEquals("Incorrect stock in the new inventory", 1, other.getAllProducts().size());
+    }
+
 //    @Test
 //    public void removeProductQuantityNotEnoughTest() throws FailedTransactionException {
 //        // Test removing 10 eggs when there are only 5 in the inventory
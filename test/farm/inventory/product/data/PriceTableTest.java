@@ -0,0 +1,65 @@
+package farm.inventory.product.data;
+
+import farm.customer.Customer;
+import farm.inventory.product.Egg;
+import farm.inventory.product.Milk;
+import farm.sales.PricingEngine;
+import farm.sales.transaction.CategorisedTransaction;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PriceTableTest {
+
+    @Test
+    public void defaultMultipliersTest() {
+        PriceTable table = PriceTable.getDefault();
+        assertEquals("Regular eggs should sell at base price", 50,
+                table.getPrice(Barcode.EGG, Quality.REGULAR));
+        assertEquals("Incorrect silver price", 62, table.getPrice(Barcode.EGG, Quality.SILVER));
+        assertEquals("Incorrect gold price", 75, table.getPrice(Barcode.EGG, Quality.GOLD));
+        assertEquals("Incorrect iridium price", 100, table.getPrice(Barcode.EGG, Quality.IRIDIUM));
+        assertEquals("Product price should come from the table", 100,
+                new Egg(Quality.IRIDIUM).getBasePrice());
+    }
+
+    @Test
+    public void configuredMultipliersTest() {
+        PriceTable table = new PriceTable(Map.of(Quality.GOLD, 300));
+        assertEquals("Missing multipliers should default to the base price", 440,
+                table.getPrice(Barcode.MILK, Quality.SILVER));
+        assertEquals("Incorrect configured price", 1320, table.getPrice(Barcode.MILK, Quality.GOLD));
+        assertEquals("The default table should be unchanged", 660,
+                new Milk(Quality.GOLD).getBasePrice());
+    }
+
+    @Test
+    public void injectedTableTest() {
+        Customer customer = new Customer("Ali", 1111, "UQ");
+        customer.getCart().addProduct(new Milk());
+        customer.getCart().addProduct(new Milk(Quality.GOLD));
+        PricingEngine engine = new PricingEngine(new PriceTable(Map.of(Quality.GOLD, 300)), List.of());
+        CategorisedTransaction transaction = new CategorisedTransaction(customer, engine);
+        transaction.finalise();
+        assertEquals("Incorrect unit price", 1320,
+                transaction.getUnitPrice(Barcode.MILK, Quality.GOLD));
+        assertEquals("Incorrect total", 440 + 1320, transaction.getTotal());
+        assertTrue("Receipt should show the captured unit price",
+                transaction.getReceipt().matches("(?s).*milk \\(gold\\) +1 +\\$13\\.20 +\\$13\\.20\n.*"));
+    }
+
+    @Test
+    public void subtotalUsesQualityTest() {
+        Customer customer = new Customer("Ali", 1111, "UQ");
+        customer.getCart().addProduct(new Milk());
+        customer.getCart().addProduct(new Milk(Quality.IRIDIUM));
+        CategorisedTransaction transaction = new CategorisedTransaction(customer);
+        transaction.finalise();
+        assertEquals("Incorrect subtotal", 440 + 880, transaction.getPurchaseSubtotal(Barcode.MILK));
+        assertEquals("Incorrect total", 440 + 880, transaction.getTotal());
+    }
+}
@@ -0,0 +1,124 @@
+package farm.sales;
+
+import farm.customer.Customer;
+import farm.inventory.product.Egg;
+import farm.inventory.product.Jam;
+import farm.inventory.product.Milk;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+import farm.sales.transaction.SpecialSaleTransaction;
+import farm.sales.transaction.Transaction;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LineItemLogTest {
+    private TransactionHistory history;
+    private LineItemLog log;
+
+    @Before
+    public void setUp() {
+        history = new TransactionHistory();
+        log = history.getLineItems();
+        Customer customer = new Customer("Ali", 1111, "UQ");
+
+        customer.getCart().addProduct(new Egg());
+        customer.getCart().addProduct(new Egg(Quality.GOLD));
+        customer.getCart().addProduct(new Egg());
+        customer.getCart().addProduct(new Milk());
+        Transaction first = new Transaction(customer);
+        first.finalise(1000);
+        history.recordTransaction(first);
+
+        customer.getCart().addProduct(new Jam());
+        customer.getCart().addProduct(new Egg(Quality.IRIDIUM));
+        Transaction second = new SpecialSaleTransaction(customer,
+                Map.of(Barcode.JAM, 20, Barcode.EGG, 50));
+        second.finalise(2000);
+        history.recordTransaction(second);
+    }
+
+    @Test
+    public void linesTest() {
+        assertEquals("Incorrect transaction count", 2, log.getTransactionCount());
+        assertEquals("One line per barcode and quality", 5, log.getLineCount());
+        assertEquals("Lines should follow barcode order", Barcode.EGG, log.getBarcode(0));
+        assertEquals("Incorrect quantity", 2, log.getQuantity(0));
+        assertEquals("Incorrect quality", Quality.GOLD, log.getQuality(1));
+        assertEquals("Incorrect unit price", 75, log.getUnitPrice(1));
+        assertEquals("Second transaction should start after the first", 3, log.getFirstLine(1));
+        assertEquals("Incorrect transaction id", 1, log.getTransactionId(4));
+        assertEquals("Incorrect discount", 20, log.getDiscount(4));
+        assertEquals("Incorrect timestamp", 2000, log.getTimestamp(1));
+        assertFalse("First transaction is not a special sale", log.isSpecialSale(0));
+        assertTrue("Second transaction is a special sale", log.isSpecialSale(1));
+    }
+
+    @Test
+    public void scansMatchHistoryTest() {
+        int lines = log.getLineCount();
+        for (Barcode barcode : Barcode.values()) {
+            assertEquals("Incorrect units for " + barcode, history.getTotalProductsSold(barcode),
+                    log.sumQuantity(barcode, 0, lines));
+            assertEquals("Incorrect gross for " + barcode, history.getGrossEarnings(barcode),
+                    log.sumGross(barcode, 0, lines));
+            long specialUnits = log.sumSpecialSaleQuantity(barcode, 0, lines);
+            double averageDiscount = specialUnits == 0 ? 0.0
+                    : (double) log.sumDiscountPercentages(barcode, 0, lines) / specialUnits;
+            assertEquals("Incorrect average discount for " + barcode,
+                    history.getAverageProductDiscount(barcode), averageDiscount, 0.0001);
+        }
+        assertEquals("Incorrect total", history.getGrossEarnings(),
+                log.sumTotals(0, log.getTransactionCount()));
+    }
+
+    @Test
+    public void subtotalsTest() {
+        assertEquals("Incorrect subtotal", 75, log.getSubtotal(1));
+        assertEquals("Incorrect discounted subtotal", 670 - 670 * 20 / 100, log.getSubtotal(4));
+        long net = 0;
+        for (Barcode barcode : Barcode.values()) {
+            net += log.sumNet(barcode, 0, log.getLineCount());
+        }
+        assertEquals("Line subtotals should add up to the totals",
+                log.sumTotals(0, log.getTransactionCount()), net);
+    }
+
+    @Test
+    public void promotedPricesTest() {
+        Customer customer = new Customer("Bo", 2222, "UQ");
+        customer.getCart().addProduct(new Milk(Quality.GOLD));
+        customer.getCart().addProduct(new Milk());
+        PricingEngine engine = new PricingEngine(List.of(
+                PromotionRule.qualityPrice(Barcode.MILK, Quality.GOLD, 500),
+                PromotionRule.buyGet(Barcode.MILK, 1, 1)));
+        Transaction transaction = new Transaction(customer, engine);
+        transaction.finalise(3000);
+        history.recordTransaction(transaction);
+
+        int first = log.getFirstLine(2);
+        assertEquals("The regular milk should be free", 0, log.getSubtotal(first));
+        assertEquals("Unit price should be the list price", 660, log.getUnitPrice(first + 1));
+        assertEquals("Subtotal should be the promoted price", 500, log.getSubtotal(first + 1));
+    }
+
+    @Test
+    public void scanRangeTest() {
+        assertEquals("Range should only cover the first transaction", 3,
+                log.sumQuantity(Barcode.EGG, 0, log.getFirstLine(1)));
+        assertArrayEquals("Incorrect quality breakdown", new long[] {2, 0, 1, 1},
+                log.sumQuantityByQuality(Barcode.EGG, 0, log.getLineCount()));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void invalidRangeTest() {
+        log.sumQuantity(Barcode.EGG, 0, log.getLineCount() + 1);
+    }
+}
@@ -0,0 +1,105 @@
+package farm.sales;
+
+import farm.customer.Customer;
+import farm.inventory.product.Product;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+import farm.sales.transaction.SpecialSaleTransaction;
+import farm.sales.transaction.Transaction;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Times {@link ParallelHistoryAnalytics} over a large line-item log, sequentially and on fork/join
+ * pools of several sizes.
+ * <p>
+ * This is a standalone program rather than a test, so that the JUnit suite does not spend time
+ * on it or depend on the machine it runs on. Run it with the test classes on the classpath:
+ * </p>
+ * <pre>
+ * java -cp out farm.sales.ParallelHistoryAnalyticsBenchmark [transactions] [rounds]
+ * </pre>
+ */
+public class ParallelHistoryAnalyticsBenchmark {
+    private static final int DEFAULT_TRANSACTIONS = 1_000_000;
+    private static final int DEFAULT_ROUNDS = 20;
+
+    /**
+     * Builds the log, warms up every configuration and prints the average time of each.
+     *
+     * @param args The number of transactions to log and the number of timed rounds, both
+     *             optional.
+     */
+    public static void main(String[] args) {
+        int transactions = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_TRANSACTIONS;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ROUNDS;
+        LineItemLog log = buildLog(transactions);
+        ParallelHistoryAnalytics analytics = new ParallelHistoryAnalytics(log);
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%d transactions, %d lines, %d cores, %d rounds%n",
+                log.getTransactionCount(), log.getLineCount(), cores, rounds);
+
+        String expected = analytics.analyseSequentially().toString();
+        // warm up the sequential path before timing it
+        for (int i = 0; i < rounds; i++) {
+            analytics.analyseSequentially();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            analytics.analyseSequentially();
+        }
+        double sequentialMillis = (System.nanoTime() - start) / 1e6 / rounds;
+        System.out.printf("sequential: %8.2fms%n", sequentialMillis);
+
+        for (int parallelism = 1; parallelism <= 2 * cores; parallelism *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                if (!analytics.analyse(pool).toString().equals(expected)) {
+                    throw new IllegalStateException("Parallel report differs with "
+                            + parallelism + " threads");
+                }
+                for (int i = 0; i < rounds; i++) {
+                    analytics.analyse(pool);
+                }
+                start = System.nanoTime();
+                for (int i = 0; i < rounds; i++) {
+                    analytics.analyse(pool);
+                }
+                double millis = (System.nanoTime() - start) / 1e6 / rounds;
+                System.out.printf("pool of %3d: %8.2fms (%.2fx)%n", parallelism, millis,
+                        sequentialMillis / millis);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Logs the given number of random transactions of one to six products, every fifth of them
+     * a special sale.
+     */
+    private static LineItemLog buildLog(int transactions) {
+        LineItemLog log = new LineItemLog();
+        Random random = new Random(7);
+        Barcode[] barcodes = Barcode.values();
+        Quality[] qualities = Quality.values();
+        Customer customer = new Customer("Ali", 1111, "UQ");
+        for (int i = 0; i < transactions; i++) {
+            int items = 1 + random.nextInt(6);
+            for (int j = 0; j < items; j++) {
+                customer.getCart().addProduct(Product.create(
+                        barcodes[random.nextInt(barcodes.length)],
+                        qualities[random.nextInt(qualities.length)]));
+            }
+            Transaction transaction = i % 5 == 0
+                    ? new SpecialSaleTransaction(customer,
+                            Map.of(barcodes[random.nextInt(barcodes.length)], random.nextInt(50)))
+                    : new Transaction(customer);
+            transaction.finalise(i);
+            log.append(transaction);
+        }
+        return log;
+    }
+}
@@ -0,0 +1,100 @@
+package farm.sales;
+
+import farm.customer.Customer;
+import farm.inventory.product.Product;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+import farm.sales.transaction.SpecialSaleTransaction;
+import farm.sales.transaction.Transaction;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ParallelHistoryAnalyticsTest {
+    private static TransactionHistory history;
+
+    @BeforeClass
+    public static void setUp() {
+        history = new TransactionHistory();
+        Random random = new Random(7);
+        Barcode[] barcodes = Barcode.values();
+        Quality[] qualities = Quality.values();
+        Customer customer = new Customer("Ali", 1111, "UQ");
+        for (int i = 0; i < 100_000; i++) {
+            int items = 1 + random.nextInt(6);
+            for (int j = 0; j < items; j++) {
+                customer.getCart().addProduct(Product.create(
+                        barcodes[random.nextInt(barcodes.length)],
+                        qualities[random.nextInt(qualities.length)]));
+            }
+            Transaction transaction = i % 5 == 0
+                    ? new SpecialSaleTransaction(customer,
+                            Map.of(barcodes[random.nextInt(barcodes.length)], random.nextInt(50)))
+                    : new Transaction(customer);
+            transaction.finalise(i);
+            history.recordTransaction(transaction);
+        }
+    }
+
+    @Test
+    public void parallelMatchesHistoryTest() {
+        ParallelHistoryAnalytics analytics = new ParallelHistoryAnalytics(history.getLineItems());
+        HistoryReport report = analytics.analyse();
+        assertEquals("Parallel and sequential reports differ",
+                analytics.analyseSequentially().toString(), report.toString());
+        assertEquals("Incorrect transaction count", history.getTotalTransactionsMade(),
+                report.getTransactionCount());
+        assertEquals("Incorrect gross earnings", history.getGrossEarnings(),
+                report.getGrossEarnings());
+        assertEquals("Incorrect average spend", history.getAverageSpendPerVisit(),
+                report.getAverageSpendPerVisit(), 0.0001);
+        for (Barcode barcode : Barcode.values()) {
+            assertEquals("Incorrect units for " + barcode,
+                    history.getTotalProductsSold(barcode), report.getUnitsSold(barcode));
+            assertEquals("Incorrect gross for " + barcode,
+                    history.getGrossEarnings(barcode), report.getGrossEarnings(barcode));
+            assertEquals("Incorrect average discount for " + barcode,
+                    history.getAverageProductDiscount(barcode),
+                    report.getAverageProductDiscount(barcode), 0.0001);
+        }
+    }
+
+    @Test
+    public void parallelMatchesSequentialTest() {
+        ParallelHistoryAnalytics analytics = new ParallelHistoryAnalytics(
+                history.getLineItems(), ParallelHistoryAnalytics.DEFAULT_SPEND_UPPER_BOUNDS, 1000);
+        HistoryReport sequential = analytics.analyseSequentially();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        HistoryReport parallel;
+        try {
+            parallel = analytics.analyse(pool);
+        } finally {
+            pool.shutdown();
+        }
+        assertArrayEquals("Spend distributions differ", sequential.getSpendDistribution(),
+                parallel.getSpendDistribution());
+        assertEquals("Reports differ", sequential.toString(), parallel.toString());
+        long counted = 0;
+        for (long count : parallel.getSpendDistribution()) {
+            counted += count;
+        }
+        assertEquals("Every transaction should be in one bucket", 100_000, counted);
+    }
+
+    @Test
+    public void emptyHistoryTest() {
+        ParallelHistoryAnalytics analytics = new ParallelHistoryAnalytics(new LineItemLog());
+        HistoryReport report = analytics.analyse();
+        assertEquals("Parallel and sequential reports differ",
+                analytics.analyseSequentially().toString(), report.toString());
+        assertEquals("Empty report should have no transactions", 0, report.getTransactionCount());
+        assertEquals("Empty report should have no spend", 0.0,
+                report.getAverageSpendPerVisit(), 0.0);
+    }
+}
@@ -0,0 +1,259 @@
+package farm.sales;
+
+import farm.customer.Customer;
+import farm.inventory.product.Egg;
+import farm.inventory.product.Jam;
+import farm.inventory.product.Milk;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.PriceTable;
+import farm.inventory.product.data.Quality;
+import farm.sales.transaction.CategorisedTransaction;
+import farm.sales.transaction.DiscountTable;
+import farm.sales.transaction.SpecialSaleTransaction;
+import farm.sales.transaction.Transaction;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PricingEngineTest {
+    private Cart cart;
+
+    @Before
+    public void setUp() {
+        cart = new Cart();
+    }
+
+    @Test
+    public void noRulesTest() {
+        cart.addProduct(new Egg());
+        cart.addProduct(new Milk(Quality.GOLD));
+        int expected = 50 + PriceTable.getDefault().getPrice(Barcode.MILK, Quality.GOLD);
+        assertEquals("Engine without rules should charge base prices", expected,
+                PricingEngine.BASE_PRICES.getTotal(cart));
+        assertEquals("The cart should keep the same running subtotal", expected,
+                cart.getSubtotal());
+        PriceTable doubled = new PriceTable(Map.of(Quality.REGULAR, 200, Quality.GOLD, 300));
+        assertEquals("An injected price table should not read the cart's running subtotal",
+                2 * expected, new PricingEngine(doubled, List.of()).getTotal(cart));
+    }
+
+    @Test
+    public void buyGetTest() {
+        PricingEngine engine = new PricingEngine(List.of(PromotionRule.buyGet(Barcode.EGG, 2, 1)));
+        for (int i = 0; i < 7; i++) {
+            cart.addProduct(new Egg());
+        }
+        assertEquals("Two of seven eggs should be free", 5 * 50, engine.getTotal(cart));
+    }
+
+    @Test
+    public void buyGetFreesCheapestTest() {
+        PricingEngine engine = new PricingEngine(List.of(
+                PromotionRule.buyGet(Barcode.MILK, 1, 1),
+                PromotionRule.qualityPrice(Barcode.MILK, Quality.REGULAR, 300)));
+        cart.addProduct(new Milk(Quality.GOLD));
+        cart.addProduct(new Milk());
+        assertEquals("The cheaper milk should be the free one", 660, engine.getTotal(cart));
+    }
+
+    @Test
+    public void bestBuyGetWinsTest() {
+        PricingEngine engine = new PricingEngine(List.of(
+                PromotionRule.buyGet(Barcode.EGG, 3, 1),
+                PromotionRule.buyGet(Barcode.EGG, 1, 1),
+                PromotionRule.buyGet(Barcode.EGG, 2, 1)));
+        for (int i = 0; i < 4; i++) {
+            cart.addProduct(new Egg());
+        }
+        assertEquals("Buy one get one should win", 2 * 50, engine.getTotal(cart));
+    }
+
+    @Test
+    public void quantityBreakTest() {
+        PricingEngine engine = new PricingEngine(List.of(
+                PromotionRule.quantityBreak(Barcode.JAM, 3, 10),
+                PromotionRule.quantityBreak(Barcode.JAM, 5, 20),
+                PromotionRule.quantityBreak(Barcode.JAM, 10, 5)));
+        for (int i = 0; i < 2; i++) {
+            cart.addProduct(new Jam());
+        }
+        assertEquals("Below the first break", 2 * 670, engine.getTotal(cart));
+        for (int i = 0; i < 2; i++) {
+            cart.addProduct(new Jam());
+        }
+        assertEquals("First break reached", 4 * 670 * 90 / 100, engine.getTotal(cart));
+        for (int i = 0; i < 6; i++) {
+            cart.addProduct(new Jam());
+        }
+        assertEquals("A smaller break at a higher quantity should not apply",
+                10 * 670 * 80 / 100, engine.getTotal(cart));
+    }
+
+    @Test
+    public void qualityPriceAboveListTest() {
+        PricingEngine raised = new PricingEngine(List.of(
+                PromotionRule.qualityPrice(Barcode.EGG, Quality.REGULAR, 80)));
+        cart.addProduct(new Egg());
+        assertEquals("A quality price above list price should still be charged", 80,
+                raised.getTotal(cart));
+
+        PricingEngine competing = new PricingEngine(List.of(
+                PromotionRule.qualityPrice(Barcode.EGG, Quality.REGULAR, 80),
+                PromotionRule.qualityPrice(Barcode.EGG, Quality.REGULAR, 70),
+                PromotionRule.qualityPrice(Barcode.EGG, Quality.GOLD, 90)));
+        assertEquals("The lowest of competing quality prices should win", 70,
+                competing.getTotal(cart));
+    }
+
+    @Test
+    public void qualityPriceTest() {
+        PricingEngine engine = new PricingEngine(List.of(
+                PromotionRule.qualityPrice(Barcode.EGG, Quality.IRIDIUM, 30)));
+        cart.addProduct(new Egg(Quality.IRIDIUM));
+        cart.addProduct(new Egg(Quality.REGULAR));
+        assertEquals("Incorrect quality price", 30 + 50, engine.getTotal(cart));
+        assertTrue("Egg should have promotions", engine.hasPromotions(Barcode.EGG));
+        assertFalse("Milk should not have promotions", engine.hasPromotions(Barcode.MILK));
+    }
+
+    @Test
+    public void basketThresholdTest() {
+        PricingEngine engine = new PricingEngine(List.of(
+                PromotionRule.basketThreshold(1000, 10),
+                PromotionRule.buyGet(Barcode.MILK, 1, 1)));
+        cart.addProduct(new Milk());
+        cart.addProduct(new Milk());
+        cart.addProduct(new Jam());
+        assertEquals("Threshold should use the total after product promotions",
+                440 + 670, engine.getTotal(cart) * 100 / 90);
+        cart = new Cart();
+        cart.addProduct(new Milk());
+        cart.addProduct(new Milk());
+        assertEquals("Below threshold after product promotions", 440, engine.getTotal(cart));
+    }
+
+    @Test
+    public void transactionUsesEngineTest() {
+        Customer customer = new Customer("Ali", 1111, "UQ");
+        customer.getCart().addProduct(new Egg());
+        customer.getCart().addProduct(new Egg());
+        Transaction transaction = new Transaction(customer,
+                new PricingEngine(List.of(PromotionRule.buyGet(Barcode.EGG, 1, 1))));
+        assertEquals("Active total should use the engine", 50, transaction.getTotal());
+        transaction.finalise();
+        assertEquals("Finalised total should use the engine", 50, transaction.getTotal());
+    }
+
+    @Test
+    public void lineSubtotalsAddUpTest() {
+        Customer customer = new Customer("Ali", 1111, "UQ");
+        customer.getCart().addProduct(new Egg());
+        customer.getCart().addProduct(new Egg(Quality.GOLD));
+        customer.getCart().addProduct(new Milk());
+        customer.getCart().addProduct(new Milk(Quality.SILVER));
+        customer.getCart().addProduct(new Jam());
+        Transaction transaction = new Transaction(customer, new PricingEngine(List.of(
+                PromotionRule.buyGet(Barcode.EGG, 1, 1),
+                PromotionRule.quantityBreak(Barcode.MILK, 2, 10),
+                PromotionRule.basketThreshold(1000, 10))));
+        transaction.finalise();
+
+        int total = 75 + (440 + 550) * 90 / 100 + 670;
+        total -= total * 10 / 100;
+        assertEquals("Incorrect total", total, transaction.getTotal());
+        int sum = 0;
+        for (Barcode barcode : Barcode.values()) {
+            for (Quality quality : Quality.values()) {
+                sum += transaction.getLineSubtotal(barcode, quality);
+            }
+        }
+        assertEquals("Line subtotals should add up to the total", total, sum);
+        assertEquals("The free egg should be the cheaper one", 0,
+                transaction.getLineSubtotal(Barcode.EGG, Quality.REGULAR));
+        assertEquals("Incorrect unit price", 550,
+                transaction.getUnitPrice(Barcode.MILK, Quality.SILVER));
+
+        String receipt = transaction.getReceipt();
+        assertTrue("Receipt should list the egg promotion", receipt.contains("egg promotion"));
+        assertTrue("Receipt should list the milk promotion", receipt.contains("milk promotion"));
+        assertTrue("Receipt should list the basket discount", receipt.contains("basket discount"));
+    }
+
+    @Test
+    public void categorisedTransactionsUseEngineTest() {
+        PricingEngine engine = new PricingEngine(List.of(PromotionRule.buyGet(Barcode.MILK, 1, 1)));
+        Customer customer = new Customer("Ali", 1111, "UQ");
+        customer.getCart().addProduct(new Milk());
+        customer.getCart().addProduct(new Milk());
+        CategorisedTransaction categorised = new CategorisedTransaction(customer, engine);
+        assertEquals("Categorised subtotal should use the engine", 440,
+                categorised.getPurchaseSubtotal(Barcode.MILK));
+        assertEquals("Categorised total should use the engine", 440, categorised.getTotal());
+
+        SpecialSaleTransaction specialSale = new SpecialSaleTransaction(customer,
+                new DiscountTable(Map.of(Barcode.MILK, 50)), engine);
+        assertEquals("Discounts should apply after the engine's promotions", 220,
+                specialSale.getTotal());
+        assertEquals("Savings should not include the engine's promotions", 220,
+                specialSale.getTotalSaved());
+        specialSale.finalise();
+        String receipt = specialSale.getReceipt();
+        assertTrue("Receipt should note the promotion",
+                receipt.contains("Promotion applied! $4.40 off milk"));
+        assertTrue("Receipt should note the discount",
+                receipt.contains("Discount applied! 50% off milk"));
+    }
+
+    @Test
+    public void allocateTest() {
+        assertEquals("Shares should add up to the amount", List.of(33, 0, 67),
+                Arrays.stream(PricingEngine.allocate(new int[] {50, 0, 100}, 100))
+                        .boxed().toList());
+        assertEquals("Nothing to share between empty parts", List.of(0, 0),
+                Arrays.stream(PricingEngine.allocate(new int[] {0, 0}, 0))
+                        .boxed().toList());
+    }
+
+    @Test
+    public void thousandsOfRulesTest() {
+        Random random = new Random(42);
+        Barcode[] barcodes = Barcode.values();
+        Quality[] qualities = Quality.values();
+        List<PromotionRule> rules = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            Barcode barcode = barcodes[random.nextInt(barcodes.length)];
+            rules.add(switch (i % 4) {
+                case 0 -> PromotionRule.buyGet(barcode, 2 + random.nextInt(5), 1);
+                case 1 -> PromotionRule.quantityBreak(barcode, 1 + random.nextInt(50),
+                        random.nextInt(30));
+                case 2 -> PromotionRule.qualityPrice(barcode,
+                        qualities[random.nextInt(qualities.length)],
+                        barcode.getBasePrice() / 2 + random.nextInt(barcode.getBasePrice() / 2));
+                default -> PromotionRule.basketThreshold(random.nextInt(100_000),
+                        random.nextInt(15));
+            });
+        }
+        PricingEngine engine = new PricingEngine(rules);
+        assertEquals("Incorrect rule count", 5000, engine.getRuleCount());
+
+        for (int i = 0; i < 20; i++) {
+            cart.addProduct(new Egg(qualities[i % qualities.length]));
+            cart.addProduct(new Jam());
+        }
+        int expected = engine.getTotal(cart);
+        for (int i = 0; i < 100; i++) {
+            assertEquals("Pricing should be deterministic", expected, engine.getTotal(cart));
+        }
+        assertTrue("Promotions should not raise the price",
+                expected <= PricingEngine.BASE_PRICES.getTotal(cart));
+    }
+}
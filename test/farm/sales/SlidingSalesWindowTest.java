@@ -0,0 +1,82 @@
+package farm.sales;
+
+import farm.customer.Customer;
+import farm.inventory.product.Egg;
+import farm.inventory.product.Milk;
+import farm.inventory.product.data.Barcode;
+import farm.sales.transaction.Transaction;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.Assert.assertEquals;
+
+public class SlidingSalesWindowTest {
+    private static final long NOW = Instant.parse("2024-05-01T12:30:00Z").toEpochMilli();
+
+    private SlidingSalesWindow window;
+    private Customer customer;
+
+    @Before
+    public void setUp() {
+        window = new SlidingSalesWindow(Clock.fixed(Instant.ofEpochMilli(NOW), ZoneOffset.UTC));
+        customer = new Customer("Ali", 1111, "UQ");
+    }
+
+    private void sell(Duration ago, int eggs, int milk) {
+        for (int i = 0; i < eggs; i++) {
+            customer.getCart().addProduct(new Egg());
+        }
+        for (int i = 0; i < milk; i++) {
+            customer.getCart().addProduct(new Milk());
+        }
+        Transaction transaction = new Transaction(customer);
+        transaction.finalise(NOW - ago.toMillis());
+        window.record(transaction);
+    }
+
+    @Test
+    public void windowedUnitsTest() {
+        sell(Duration.ofMinutes(5), 2, 0);
+        sell(Duration.ofMinutes(90), 3, 1);
+        sell(Duration.ofHours(30), 4, 0);
+        sell(Duration.ofDays(10), 100, 0);
+
+        assertEquals("Incorrect eggs in the last hour", 2,
+                window.getUnitsSold(Barcode.EGG, Duration.ofHours(1)));
+        assertEquals("Incorrect eggs in the last day", 5,
+                window.getUnitsSold(Barcode.EGG, Duration.ofDays(1)));
+        assertEquals("Incorrect eggs in the last week", 9,
+                window.getUnitsSold(Barcode.EGG, Duration.ofDays(7)));
+        assertEquals("Incorrect milk in the last day", 1,
+                window.getUnitsSold(Barcode.MILK, Duration.ofDays(1)));
+        assertEquals("Incorrect transactions in the last week", 3,
+                window.getTransactionCount(Duration.ofDays(7)));
+        assertEquals("Incorrect earnings in the last hour", 100,
+                window.getGrossEarnings(Duration.ofHours(1)));
+    }
+
+    @Test
+    public void bucketsAreReusedTest() {
+        sell(Duration.ofMinutes(61), 7, 0);
+        sell(Duration.ofMinutes(1), 1, 0);
+        assertEquals("Old minute should have been evicted from its bucket", 1,
+                window.getUnitsSold(Barcode.EGG, Duration.ofMinutes(5)));
+        assertEquals("Old sale should still count towards the day", 8,
+                window.getUnitsSold(Barcode.EGG, Duration.ofDays(1)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void windowTooLongTest() {
+        window.getUnitsSold(Barcode.EGG, Duration.ofDays(8));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unfinalisedTransactionTest() {
+        window.record(new Transaction(customer));
+    }
+}
@@ -0,0 +1,308 @@
+package farm.sales;
+
+import farm.customer.Customer;
+import farm.customer.CustomerKey;
+import farm.inventory.product.Egg;
+import farm.inventory.product.Jam;
+import farm.inventory.product.Milk;
+import farm.inventory.product.Product;
+import farm.inventory.product.Wool;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+import farm.sales.transaction.CategorisedTransaction;
+import farm.sales.transaction.SpecialSaleTransaction;
+import farm.sales.transaction.Transaction;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class TransactionHistoryTest {
+    private TransactionHistory history;
+    private Customer customer;
+
+    @Before
+    public void setUp() {
+        history = new TransactionHistory();
+        customer = new Customer("Ali", 1111, "UQ");
+    }
+
+    private void record(Transaction transaction, List<Product> products) {
+        for (Product product : products) {
+            customer.getCart().addProduct(product);
+        }
+        transaction.finalise();
+        history.recordTransaction(transaction);
+    }
+
+    @Test
+    public void emptyHistoryTest() {
+        assertEquals("Incorrect gross earnings", 0, history.getGrossEarnings());
+        assertEquals("Incorrect products sold", 0, history.getTotalProductsSold());
+        assertEquals("Incorrect average spend", 0.0, history.getAverageSpendPerVisit(), 0.0001);
+        assertEquals("Incorrect average discount", 0.0,
+                history.getAverageProductDiscount(Barcode.EGG), 0.0001);
+        assertEquals("Ties should go to the first barcode", Barcode.EGG,
+                history.getMostPopularProduct());
+    }
+
+    @Test
+    public void aggregatesTest() {
+        record(new Transaction(customer), List.of(new Egg(), new Egg(), new Milk()));
+        record(new CategorisedTransaction(customer),
+                List.of(new Jam(), new Egg(Quality.IRIDIUM)));
+        record(new SpecialSaleTransaction(customer, Map.of(Barcode.JAM, 50)),
+                List.of(new Jam(), new Jam()));
+
+        assertEquals("Incorrect transactions made", 3, history.getTotalTransactionsMade());
+        assertEquals("Incorrect products sold", 7, history.getTotalProductsSold());
+        assertEquals("Incorrect eggs sold", 3, history.getTotalProductsSold(Barcode.EGG));
+        assertEquals("Incorrect jam sold", 3, history.getTotalProductsSold(Barcode.JAM));
+        assertEquals("Incorrect gross earnings", 540 + 770 + 670,
+                history.getGrossEarnings());
+        assertEquals("Gross earnings per type should be undiscounted", 3 * 670,
+                history.getGrossEarnings(Barcode.JAM));
+        assertEquals("Incorrect average spend", (540 + 770 + 670) / 3.0,
+                history.getAverageSpendPerVisit(), 0.0001);
+        assertEquals("Incorrect most popular product", Barcode.EGG,
+                history.getMostPopularProduct());
+        assertEquals("Average discount should only count special sales", 50.0,
+                history.getAverageProductDiscount(Barcode.JAM), 0.0001);
+        assertEquals("Incorrect average discount for undiscounted product", 0.0,
+                history.getAverageProductDiscount(Barcode.MILK), 0.0001);
+    }
+
+    @Test
+    public void grossEarningsOverflowTest() {
+        PricingEngine expensive = new PricingEngine(List.of(
+                PromotionRule.qualityPrice(Barcode.EGG, Quality.REGULAR, 1_500_000_000)));
+        record(new Transaction(customer, expensive), List.of(new Egg()));
+        record(new Transaction(customer, expensive), List.of(new Egg()));
+
+        assertEquals("Exact gross earnings should not wrap", 3_000_000_000L,
+                history.getExactGrossEarnings());
+        assertEquals("Incorrect exact products sold", 2, history.getExactProductsSold());
+        assertThrows("Gross earnings beyond an int should not be truncated",
+                ArithmeticException.class, history::getGrossEarnings);
+    }
+
+    @Test
+    public void averageDiscountWeightedByQuantityTest() {
+        record(new SpecialSaleTransaction(customer, Map.of(Barcode.MILK, 10)),
+                List.of(new Milk(), new Milk(), new Milk()));
+        record(new SpecialSaleTransaction(customer, Map.of(Barcode.MILK, 30)),
+                List.of(new Milk()));
+        assertEquals("Incorrect average discount", (3 * 10 + 30) / 4.0,
+                history.getAverageProductDiscount(Barcode.MILK), 0.0001);
+    }
+
+    @Test
+    public void highestGrossingTest() {
+        Transaction small = new Transaction(customer);
+        record(small, List.of(new Egg()));
+        Transaction first = new Transaction(customer);
+        record(first, List.of(new Milk()));
+        Transaction tied = new Transaction(customer);
+        record(tied, List.of(new Milk()));
+        assertSame("Earliest of the highest grossing should win", first,
+                history.getHighestGrossingTransaction());
+    }
+
+    @Test
+    public void highestGrossingUsesDiscountedTotalTest() {
+        Transaction discounted = new SpecialSaleTransaction(customer, Map.of(Barcode.JAM, 50));
+        record(discounted, List.of(new Jam()));
+        Transaction full = new Transaction(customer);
+        record(full, List.of(new Milk()));
+        assertSame("Discounted total should be compared", full,
+                history.getHighestGrossingTransaction());
+    }
+
+    @Test
+    public void topGrossingLeaderboardTest() {
+        history = new TransactionHistory(3);
+        List<Transaction> recorded = new ArrayList<>();
+        int[] eggs = {1, 5, 3, 5, 2, 4};
+        for (int count : eggs) {
+            Transaction transaction = new Transaction(customer);
+            List<Product> products = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                products.add(new Egg());
+            }
+            record(transaction, products);
+            recorded.add(transaction);
+        }
+        assertEquals("Incorrect leaderboard",
+                List.of(recorded.get(1), recorded.get(3), recorded.get(5)),
+                history.getTopGrossingTransactions());
+        assertNull("Empty history has no highest grossing transaction",
+                new TransactionHistory().getHighestGrossingTransaction());
+    }
+
+    @Test
+    public void secondaryIndexesTest() {
+        Customer other = new Customer("Bea", 2222, "UQ");
+        Transaction eggs = new Transaction(customer);
+        record(eggs, List.of(new Egg()));
+        other.getCart().addProduct(new Wool());
+        Transaction wool = new Transaction(other);
+        wool.finalise();
+        history.recordTransaction(wool);
+        Transaction both = new Transaction(customer);
+        record(both, List.of(new Egg(), new Wool()));
+
+        assertEquals("Incorrect customer transactions", List.of(eggs, both),
+                history.getTransactionsFor(customer.getKey()));
+        assertEquals("Incorrect wool transactions", List.of(wool, both),
+                history.getTransactionsContaining(Barcode.WOOL));
+        assertEquals("Incorrect customer wool transactions", List.of(both),
+                history.getTransactionsFor(customer.getKey(), Barcode.WOOL));
+        assertArrayEquals("Incorrect ids", new int[] {0, 2},
+                history.getTransactionIdsFor(customer.getKey()));
+        assertTrue("Unknown customers have no transactions",
+                history.getTransactionsFor(new CustomerKey("Nobody", 0)).isEmpty());
+        assertEquals("Incorrect phone lookup", List.of(other.getKey()),
+                history.getCustomersWithPhoneNumber(2222));
+    }
+
+    @Test
+    public void postingListCompressionTest() {
+        PostingList postings = new PostingList();
+        int[] ids = new int[1000];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = i * 3 + (i % 2 == 0 ? 0 : 200_000 * (i % 7 == 0 ? 1 : 0));
+        }
+        Arrays.sort(ids);
+        int[] distinct = Arrays.stream(ids).distinct().toArray();
+        for (int id : distinct) {
+            postings.add(id);
+        }
+        assertArrayEquals("Ids should round trip", distinct, postings.toArray());
+        PostingList dense = new PostingList();
+        for (int i = 0; i < 1000; i++) {
+            dense.add(i * 5);
+        }
+        assertEquals("Small gaps should take one byte each", 1000, dense.getEncodedLength());
+    }
+
+    @Test
+    public void retentionRollupTest() {
+        long day = Duration.ofDays(1).toMillis();
+        history = new TransactionHistory(3, Duration.ofDays(1), ZoneOffset.UTC);
+        Customer other = new Customer("Bob", 2222, "UQ");
+        List<Transaction> transactions = new ArrayList<>();
+        long[] times = {0, 1000, day + 1000, 3 * day};
+        for (int i = 0; i < times.length; i++) {
+            Customer buyer = i == 1 ? other : customer;
+            buyer.getCart().addProduct(new Egg());
+            if (i == 0) {
+                buyer.getCart().addProduct(new Jam());
+            }
+            Transaction transaction = new Transaction(buyer);
+            transaction.finalise(times[i]);
+            history.recordTransaction(transaction);
+            transactions.add(transaction);
+        }
+
+        assertEquals("Old transactions should be evicted", 1,
+                history.getRetainedTransactionCount());
+        assertEquals("Incorrect transactions made", 4, history.getTotalTransactionsMade());
+        assertEquals("Incorrect products sold", 5, history.getTotalProductsSold());
+        assertEquals("Incorrect eggs sold", 4, history.getTotalProductsSold(Barcode.EGG));
+        assertEquals("Incorrect gross earnings", 4 * 50 + 670, history.getGrossEarnings());
+        assertEquals("Incorrect average spend", (4 * 50 + 670) / 4.0,
+                history.getAverageSpendPerVisit(), 0.0001);
+        assertSame("Highest grossing should survive eviction", transactions.getFirst(),
+                history.getHighestGrossingTransaction());
+        assertEquals("Evicted customers should still be counted", 2,
+                history.getDistinctCustomerCount());
+
+        assertEquals("Incorrect number of summaries", 2, history.getDailySummaries().size());
+        DailySummary first = history.getDailySummary(LocalDate.ofEpochDay(0));
+        assertEquals("Incorrect summarised transactions", 2, first.getTransactionCount());
+        assertEquals("Incorrect summarised earnings", 50 + 670 + 50, first.getGrossEarnings());
+        assertEquals("Incorrect summarised eggs", 2, first.getUnitsSold(Barcode.EGG));
+        assertEquals("Incorrect summarised jam earnings", 670, first.getGrossEarnings(Barcode.JAM));
+        assertNull("Retained days should not be summarised",
+                history.getDailySummary(LocalDate.ofEpochDay(3)));
+
+        assertSame("Retained transactions keep their id", transactions.getLast(),
+                history.getTransaction(3));
+        assertThrows(IndexOutOfBoundsException.class, () -> history.getTransaction(0));
+        assertEquals("Lookups should only find retained transactions",
+                List.of(transactions.getLast()), history.getTransactionsFor(customer.getKey()));
+        assertArrayEquals("Evicted ids should be pruned from the index", new int[] {3},
+                history.getTransactionIdsContaining(Barcode.EGG));
+        assertTrue("Evicted customers have no retained transactions",
+                history.getTransactionsFor(other.getKey()).isEmpty());
+        assertTrue("Evicted customers should be dropped from the phone index",
+                history.getCustomersWithPhoneNumber(2222).isEmpty());
+        assertEquals("Evicted line items should be rolled up", 3,
+                history.getLineItems().getRolledUpCount());
+        assertEquals("Only retained line items should be kept", 1,
+                history.getLineItems().getLineCount());
+        HistoryReport report = new ParallelHistoryAnalytics(history.getLineItems()).analyse();
+        assertEquals("Rolled up line items should still be analysed",
+                (long) history.getGrossEarnings(), report.getGrossEarnings());
+        assertEquals("Rolled up line items should still be counted", 4L,
+                report.getTransactionCount());
+
+        Transaction returning = new Transaction(other);
+        other.getCart().addProduct(new Egg());
+        returning.finalise(3 * day + 1000);
+        history.recordTransaction(returning);
+        assertEquals("A returning customer should not be counted twice", 2,
+                history.getDistinctCustomerCount());
+        assertEquals("A returning customer should be indexed again", List.of(other.getKey()),
+                history.getCustomersWithPhoneNumber(2222));
+
+        assertEquals("Forcing a rollup should evict the rest", 2, history.rollUp(5 * day));
+        assertEquals("Incorrect transactions made after rollup", 5,
+                history.getTotalTransactionsMade());
+        assertNull("No transaction detail should remain", history.getLastTransaction());
+    }
+
+    @Test
+    public void retainedTransactionsSnapshotTest() {
+        long day = Duration.ofDays(1).toMillis();
+        history = new TransactionHistory(3, Duration.ofDays(2), ZoneOffset.UTC);
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            customer.getCart().addProduct(new Egg());
+            Transaction transaction = new Transaction(customer);
+            transaction.finalise(i * day / 4);
+            history.recordTransaction(transaction);
+            transactions.add(transaction);
+        }
+        List<Transaction> snapshot = history.getRetainedTransactions();
+        int evicted = 100 - snapshot.size();
+        assertTrue("Some transactions should be rolled up", evicted > 0);
+        assertEquals("The snapshot should hold the retained transactions",
+                transactions.subList(evicted, 100), snapshot);
+
+        for (int i = 100; i < 200; i++) {
+            customer.getCart().addProduct(new Egg());
+            Transaction transaction = new Transaction(customer);
+            transaction.finalise(i * day / 4);
+            history.recordTransaction(transaction);
+        }
+        history.rollUp(100 * day);
+        assertEquals("Later transactions and rollups should not show through",
+                transactions.subList(evicted, 100), snapshot);
+        assertTrue("Everything should be rolled up", history.getRetainedTransactions().isEmpty());
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.remove(0));
+    }
+}
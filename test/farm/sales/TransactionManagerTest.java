@@ -0,0 +1,88 @@
+package farm.sales;
+
+import farm.core.FailedTransactionException;
+import farm.customer.Customer;
+import farm.inventory.product.Egg;
+import farm.inventory.product.Milk;
+import farm.sales.transaction.Transaction;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TransactionManagerTest {
+    private TransactionManager manager;
+
+    @Before
+    public void setUp() {
+        manager = new TransactionManager();
+    }
+
+    @Test
+    public void separateLanesTest() throws FailedTransactionException {
+        Transaction first = new Transaction(new Customer("Ali", 1111, "UQ"));
+        Transaction second = new Transaction(new Customer("Bea", 2222, "UQ"));
+        manager.setOngoingTransaction("till-1", first);
+        manager.setOngoingTransaction("till-2", second);
+        manager.registerPendingPurchase("till-1", new Milk());
+        manager.registerPendingPurchase("till-2", new Egg());
+        manager.registerPendingPurchase("till-2", new Egg());
+
+        assertEquals("Incorrect purchases in first lane", 1,
+                manager.closeCurrentTransaction("till-1").getPurchases().size());
+        assertTrue("Second lane should still be busy", manager.hasOngoingTransaction("till-2"));
+        assertEquals("Incorrect purchases in second lane", 2,
+                manager.closeCurrentTransaction("till-2").getPurchases().size());
+        assertFalse("Default lane should be unaffected", manager.hasOngoingTransaction());
+    }
+
+    @Test
+    public void sameCustomerTwoLanesTest() throws FailedTransactionException {
+        Customer customer = new Customer("Ali", 1111, "UQ");
+        manager.setOngoingTransaction("till-1", new Transaction(customer));
+        try {
+            manager.setOngoingTransaction("till-2", new Transaction(customer));
+            fail("A customer should not be served in two lanes at once.");
+        } catch (FailedTransactionException e) {
+            assertFalse("Rejected lane should remain free", manager.hasOngoingTransaction("till-2"));
+        }
+        manager.closeCurrentTransaction("till-1");
+        manager.setOngoingTransaction("till-2", new Transaction(customer));
+    }
+
+    @Test
+    public void concurrentLanesTest() throws Exception {
+        int lanes = 8;
+        int purchases = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int lane = 0; lane < lanes; lane++) {
+                String laneId = "till-" + lane;
+                Customer customer = new Customer("Customer " + lane, lane, "UQ");
+                results.add(executor.submit(() -> {
+                    manager.setOngoingTransaction(laneId, new Transaction(customer));
+                    for (int i = 0; i < purchases; i++) {
+                        manager.registerPendingPurchase(laneId, new Milk());
+                    }
+                    return manager.closeCurrentTransaction(laneId).getPurchases().size();
+                }));
+            }
+            for (Future<Integer> result : results) {
+                assertEquals("Purchases leaked between lanes", purchases, (int) result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue("All lanes should be free", manager.getActiveLanes().isEmpty());
+    }
+}
@@ -0,0 +1,188 @@
+package farm.sales.journal;
+
+import farm.customer.Customer;
+import farm.inventory.product.Egg;
+import farm.inventory.product.Jam;
+import farm.inventory.product.Milk;
+import farm.inventory.product.Wool;
+import farm.inventory.product.data.Barcode;
+import farm.inventory.product.data.Quality;
+import farm.sales.PricingEngine;
+import farm.sales.PromotionRule;
+import farm.sales.TransactionHistory;
+import farm.sales.transaction.CategorisedTransaction;
+import farm.sales.transaction.DiscountTable;
+import farm.sales.transaction.SpecialSaleTransaction;
+import farm.sales.transaction.Transaction;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class TransactionJournalTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Transaction sale(int i) {
+        Customer customer = new Customer("Customer " + (i % 7), 1000 + i % 7, "UQ");
+        customer.getCart().addProduct(new Egg());
+        customer.getCart().addProduct(new Milk(Quality.GOLD));
+        for (int j = 0; j < i % 4; j++) {
+            customer.getCart().addProduct(new Jam());
+        }
+        Transaction transaction = switch (i % 3) {
+            case 0 -> new Transaction(customer);
+            case 1 -> new CategorisedTransaction(customer);
+            default -> new SpecialSaleTransaction(customer, Map.of(Barcode.JAM, 25));
+        };
+        transaction.finalise(1_000_000L + i);
+        return transaction;
+    }
+
+    @Test
+    public void codecRoundTripTest() {
+        TransactionCodec codec = new TransactionCodec();
+        Customer customer = new Customer("Ali", 1111, "UQ");
+        for (int i = 0; i < 4; i++) {
+            customer.getCart().addProduct(new Wool(Quality.SILVER));
+        }
+        PricingEngine engine = new PricingEngine(List.of(PromotionRule.buyGet(Barcode.WOOL, 3, 1),
+                PromotionRule.basketThreshold(1000, 10)));
+        Transaction original = new Transaction(customer, engine);
+        original.finalise(42);
+
+        Transaction decoded = codec.decode(codec.encode(original));
+        assertEquals("Incorrect customer", original.getCustomerKey(), decoded.getCustomerKey());
+        assertEquals("Incorrect time", 42, decoded.getFinalisedAt());
+        assertEquals("Incorrect quantity", 4,
+                decoded.getPurchaseQuantity(Barcode.WOOL, Quality.SILVER));
+        assertEquals("Promotions should survive encoding", original.getTotal(), decoded.getTotal());
+        for (int i = 1; i < 3; i++) {
+            Transaction sale = sale(i);
+            Transaction copy = codec.decode(codec.encode(sale));
+            assertEquals("Incorrect class", sale.getClass(), copy.getClass());
+            assertEquals("Incorrect total", sale.getTotal(), copy.getTotal());
+        }
+
+        customer.getCart().addProduct(new Wool(Quality.SILVER));
+        customer.getCart().addProduct(new Wool());
+        SpecialSaleTransaction special = new SpecialSaleTransaction(customer,
+                new DiscountTable(Map.of(Barcode.WOOL, 10)), engine);
+        special.finalise(43);
+        Transaction copy = codec.decode(codec.encode(special));
+        assertEquals("Special sale promotions should survive encoding",
+                special.getTotal(), copy.getTotal());
+        assertEquals("Incorrect line subtotal",
+                special.getLineSubtotal(Barcode.WOOL, Quality.SILVER),
+                copy.getLineSubtotal(Barcode.WOOL, Quality.SILVER));
+    }
+
+    @Test
+    public void replayTest() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("sales.journal");
+        TransactionHistory original = new TransactionHistory();
+        try (TransactionJournal journal = new TransactionJournal(path, 16, 2)) {
+            for (int i = 0; i < 1000; i++) {
+                Transaction transaction = sale(i);
+                original.recordTransaction(transaction);
+                journal.append(transaction);
+            }
+            journal.flush();
+            assertEquals("Every record should be durable after a flush", 1000,
+                    journal.getDurableCount());
+        }
+
+        TransactionHistory restored = new TransactionHistory();
+        try (TransactionJournal journal = new TransactionJournal(path)) {
+            assertEquals("Incorrect replayable count", 1000, journal.getReplayableCount());
+            assertEquals("Incorrect replayed count", 1000, journal.replay(restored));
+        }
+        assertEquals("Incorrect gross earnings", original.getGrossEarnings(),
+                restored.getGrossEarnings());
+        assertEquals("Incorrect products sold", original.getTotalProductsSold(),
+                restored.getTotalProductsSold());
+        assertEquals("Incorrect jam discount", original.getAverageProductDiscount(Barcode.JAM),
+                restored.getAverageProductDiscount(Barcode.JAM), 0.0001);
+        assertEquals("Incorrect customers", original.getDistinctCustomerCount(),
+                restored.getDistinctCustomerCount());
+    }
+
+    @Test
+    public void tornRecordTest() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("torn.journal");
+        try (TransactionJournal journal = new TransactionJournal(path)) {
+            for (int i = 0; i < 10; i++) {
+                journal.append(sale(i));
+            }
+        }
+        long intactLength = Files.size(path);
+        // a crash part way through a record leaves its length but not all of its bytes
+        Files.write(path, new byte[] {0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        try (TransactionJournal journal = new TransactionJournal(path)) {
+            assertEquals("Torn records should be ignored", 10, journal.getReplayableCount());
+            assertEquals("Torn records should be cut off", intactLength, Files.size(path));
+            journal.append(sale(10));
+        }
+        TransactionHistory history = new TransactionHistory();
+        try (TransactionJournal journal = new TransactionJournal(path)) {
+            assertEquals("Records after the cut should replay", 11, journal.replay(history));
+        }
+    }
+
+    @Test
+    public void corruptRecordTest() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("corrupt.journal");
+        try (TransactionJournal journal = new TransactionJournal(path)) {
+            for (int i = 0; i < 3; i++) {
+                journal.append(sale(i));
+            }
+        }
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[bytes.length - 1] ^= 0x55;
+        Files.write(path, bytes);
+        try (TransactionJournal journal = new TransactionJournal(path)) {
+            assertEquals("Records failing their checksum should be dropped", 2,
+                    journal.getReplayableCount());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void notAJournalTest() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("notes.txt");
+        Files.writeString(path, "not a journal");
+        new TransactionJournal(path).close();
+    }
+
+    @Test
+    public void groupCommitTest() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("group.journal");
+        try (TransactionJournal journal = new TransactionJournal(path, 4, 60_000)) {
+            for (int i = 0; i < 4; i++) {
+                journal.append(sale(i));
+            }
+            // a full group is committed without waiting out the delay
+            journal.awaitDurable(4);
+            journal.append(sale(4));
+            Thread.sleep(50);
+            assertEquals("A partial group should wait for the delay", 4,
+                    journal.getDurableCount());
+            // flushing commits the partial group without waiting out the delay
+            journal.flush();
+            assertEquals("Flushing should commit the partial group", 5,
+                    journal.getDurableCount());
+        }
+        try (TransactionJournal journal = new TransactionJournal(path)) {
+            assertEquals("Closing should commit the partial group", 5,
+                    journal.getReplayableCount());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package farm.sales.sketch;
+
+import farm.customer.Customer;
+import farm.customer.CustomerKey;
+import farm.inventory.product.Egg;
+import farm.inventory.product.Jam;
+import farm.inventory.product.Milk;
+import farm.inventory.product.data.Barcode;
+import farm.sales.transaction.Transaction;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SalesSketchesTest {
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    @Test
+    public void hyperLogLogAccuracyTest() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 100_000; i++) {
+            sketch.add(i);
+            sketch.add(i);
+        }
+        long estimate = sketch.estimate();
+        assertTrue("Estimate " + estimate + " too far from 100000",
+                Math.abs(estimate - 100_000) < 5_000);
+    }
+
+    @Test
+    public void hyperLogLogSmallCountTest() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 10; i++) {
+            sketch.add(i);
+        }
+        assertEquals("Small counts should be near exact", 10, sketch.estimate());
+    }
+
+    @Test
+    public void heavyHittersTest() {
+        HeavyHitters<Integer> hitters = new HeavyHitters<>(3);
+        Random random = new Random(3);
+        for (int i = 0; i < 50_000; i++) {
+            hitters.add(random.nextInt(5_000), 1);
+        }
+        hitters.add(-1, 3_000);
+        hitters.add(-2, 2_000);
+        hitters.add(-3, 1_000);
+        assertEquals("Incorrect heavy hitters", Arrays.asList(-1, -2, -3), hitters.getTop());
+        assertTrue("Estimates should never be too low", hitters.estimate(-2) >= 2_000);
+    }
+
+    @Test
+    public void quantileSketchTest() {
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 1; i <= 10_000; i++) {
+            sketch.add(i);
+        }
+        assertEquals("Incorrect median", 5_000, sketch.getQuantile(0.5), 50);
+        assertEquals("Incorrect 99th percentile", 9_900, sketch.getQuantile(0.99), 99);
+        assertEquals("Incorrect count", 10_000, sketch.getCount());
+    }
+
+    @Test
+    public void salesSketchesTest() {
+        SalesSketches sketches = new SalesSketches(ZoneOffset.UTC);
+        Customer regular = new Customer("Ali", 1111, "UQ");
+        for (int day = 0; day < 3; day++) {
+            for (int i = 0; i < 4; i++) {
+                Customer visitor = new Customer("Visitor " + i, 100 + i, "UQ");
+                visitor.getCart().addProduct(new Egg());
+                Transaction transaction = new Transaction(visitor);
+                transaction.finalise(day * DAY);
+                sketches.record(transaction);
+            }
+            regular.getCart().addProduct(new Milk());
+            regular.getCart().addProduct(new Milk());
+            regular.getCart().addProduct(new Jam());
+            Transaction transaction = new Transaction(regular);
+            transaction.finalise(day * DAY + 1000);
+            sketches.record(transaction);
+        }
+
+        assertEquals("Incorrect distinct customers", 5, sketches.getDistinctCustomers());
+        assertEquals("Incorrect customers on the first day", 5,
+                sketches.getDistinctCustomers(LocalDate.ofEpochDay(0)));
+        assertEquals("Days without sales should have no customers", 0,
+                sketches.getDistinctCustomers(LocalDate.ofEpochDay(5)));
+        assertEquals("Incorrect top product", Barcode.EGG, sketches.getTopProducts().getFirst());
+        assertEquals("Incorrect top customer", new CustomerKey("Ali", 1111),
+                sketches.getTopCustomers().getFirst());
+        assertEquals("Incorrect median spend", 50, sketches.getSpendQuantile(0.5), 1);
+    }
+}
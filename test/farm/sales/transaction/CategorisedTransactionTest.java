@@ -67,6 +67,38 @@ public class CategorisedTransactionTest {
                 purchasesByType);
     }
 
+    @Test
+    public void getPurchasesByTypeOrderTest() {
+        transaction.finalise();
+        assertEquals("Types should be listed in barcode order",
+                List.of(Barcode.EGG, Barcode.MILK, Barcode.JAM, Barcode.WOOL),
+                List.copyOf(transaction.getPurchasedTypes()));
+        assertEquals("Groups should be listed in barcode order",
+                List.of(Barcode.EGG, Barcode.MILK, Barcode.JAM, Barcode.WOOL),
+                List.copyOf(transaction.getPurchasesByType().keySet()));
+    }
+
+    @Test
+    public void getPurchasesByTypeCopyTest() {
+        transaction.finalise();
+        Map<Barcode, List<Product>> purchasesByType = transaction.getPurchasesByType();
+        purchasesByType.remove(Barcode.MILK);
+        assertEquals("Changing the returned map should not change the transaction",
+                3, transaction.getPurchasesByType().get(Barcode.MILK).size());
+    }
+
+    @Test
+    public void getPurchasesByTypeEmptyTest() {
+        transaction = new CategorisedTransaction(new Customer("Empty", 1, "Nowhere"));
+        transaction.finalise();
+        assertTrue("An empty transaction should have no types",
+                transaction.getPurchasedTypes().isEmpty());
+        assertTrue("An empty transaction should have no groups",
+                transaction.getPurchasesByType().isEmpty());
+        assertEquals("An empty transaction should have no subtotal",
+                0, transaction.getPurchaseSubtotal(Barcode.MILK));
+    }
+
     @Test
     public void getReceiptJavadocExampleTest() {
         transaction.finalise();
@@ -0,0 +1,101 @@
+package farm.sales.transaction;
+
+import farm.customer.Customer;
+import farm.inventory.product.Egg;
+import farm.inventory.product.Milk;
+import farm.inventory.product.data.Barcode;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SpecialSaleTransactionTest {
+
+    @Test
+    public void discountsArePerTransactionTest() {
+        Customer first = new Customer("Ali", 1111, "UQ");
+        first.getCart().addProduct(new Milk());
+        SpecialSaleTransaction half = new SpecialSaleTransaction(first, Map.of(Barcode.MILK, 50));
+
+        Customer second = new Customer("Bea", 2222, "UQ");
+        second.getCart().addProduct(new Milk());
+        SpecialSaleTransaction none = new SpecialSaleTransaction(second);
+
+        assertEquals("Later transaction overwrote the discount", 50,
+                half.getDiscountAmount(Barcode.MILK));
+        assertEquals("Discounted total is incorrect", 220, half.getTotal());
+        assertEquals("Undiscounted total is incorrect", 440, none.getTotal());
+    }
+
+    @Test
+    public void sharedDiscountTableTest() {
+        DiscountTable promotion = new DiscountTable(Map.of(Barcode.EGG, 20));
+        for (int i = 0; i < 3; i++) {
+            Customer customer = new Customer("Customer " + i, i, "UQ");
+            customer.getCart().addProduct(new Egg());
+            customer.getCart().addProduct(new Egg());
+            SpecialSaleTransaction transaction = new SpecialSaleTransaction(customer, promotion);
+            transaction.finalise();
+            assertEquals("Incorrect total with shared promotion", 80, transaction.getTotal());
+            assertEquals("Incorrect savings with shared promotion", 20, transaction.getTotalSaved());
+        }
+    }
+
+    @Test
+    public void receiptDoesNotChangeDiscountsTest() {
+        Customer customer = new Customer("Ali", 1111, "UQ");
+        customer.getCart().addProduct(new Milk());
+        SpecialSaleTransaction transaction =
+                new SpecialSaleTransaction(customer, Map.of(Barcode.MILK, 10));
+        transaction.finalise();
+        String discounts = transaction.getDiscounts().toString();
+        assertTrue("Receipt should mention the discount",
+                transaction.getReceipt().contains("Discount applied! 10% off milk"));
+        assertEquals("Receipt modified the discounts", discounts,
+                transaction.getDiscounts().toString());
+    }
+
+    @Test
+    public void concurrentSpecialSalesTest() throws Exception {
+        int threads = 8;
+        int rounds = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int discount = t * 10;
+                int phone = t;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < rounds; i++) {
+                        Customer customer = new Customer("Customer " + phone, phone, "UQ");
+                        customer.getCart().addProduct(new Milk());
+                        SpecialSaleTransaction transaction = new SpecialSaleTransaction(
+                                customer, Map.of(Barcode.MILK, discount));
+                        transaction.finalise();
+                        transaction.getReceipt();
+                        if (transaction.getTotal() != 440 - 440 * discount / 100) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            start.countDown();
+            for (Future<Boolean> result : results) {
+                assertTrue("Overlapping special sales interfered with each other", result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}